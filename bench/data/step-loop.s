@@ -0,0 +1,27 @@
+; step-loop.s - workload for the benchmark of CPU.step()
+; (c) 2016 EduMIPS64 project, licensed under the GNU GPL v2 or later
+; Sums an array of 8 doublewords 1000 times, mixing ALU instructions, loads,
+; stores, branches and the RAW stalls between them.
+                .data
+values:         .word64     1, 2, 3, 4, 5, 6, 7, 8
+sum:            .word64     0
+
+                .code
+    daddi       r4, r0, 1000
+
+outer:
+    daddi       r1, r0, 0
+    daddi       r2, r0, 0
+
+inner:
+    ld          r3, values(r1)
+    dadd        r2, r2, r3
+    daddi       r1, r1, 8
+    slti        r5, r1, 64
+    bnez        r5, inner
+
+    sd          r2, sum(r0)
+    daddi       r4, r4, -1
+    bnez        r4, outer
+
+    syscall     0
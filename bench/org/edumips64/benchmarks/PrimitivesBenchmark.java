@@ -0,0 +1,122 @@
+/* PrimitivesBenchmark.java
+ *
+ * Microbenchmarks of the bit and arithmetic primitives of the simulator.
+ * (c) 2016 EduMIPS64 project
+ *
+ * This file is part of the EduMIPS64 project, and is released under the GNU
+ * General Public License.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.edumips64.benchmarks;
+
+import org.edumips64.core.BitSet64;
+import org.edumips64.core.fpu.FPInstructionUtils;
+import org.edumips64.core.is.InstructionsUtils;
+import org.edumips64.utils.Converter;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/** Time taken by the operations on strings of bits that every instruction
+ * performs: reading and writing registers and memory cells, converting
+ * between numbers and strings of bits, and adding integers and doubles.
+ *
+ * The operands change at every invocation, so that the JIT can't fold the
+ * computations into constants.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PrimitivesBenchmark {
+  private static final int OPERANDS = 64;
+
+  private BitSet64 bits;
+  private long[] values = new long[OPERANDS];
+  private String[] binaries = new String[OPERANDS];
+  private String[] doubles = new String[OPERANDS];
+  private int next;
+
+  @Setup
+  public void setup() throws Exception {
+    bits = new BitSet64();
+
+    for (int i = 0; i < OPERANDS; ++i) {
+      values[i] = (i - OPERANDS / 2) * 0x123456789ABL;
+      binaries[i] = Converter.intToBin(64, values[i]);
+      doubles[i] = Converter.intToBin(64, Double.doubleToLongBits(i * 1.25 - 7.5));
+    }
+  }
+
+  // Index of the operands of the next invocation.
+  private int next() {
+    next = (next + 1) & (OPERANDS - 1);
+    return next;
+  }
+
+  @Benchmark
+  public BitSet64 bitSetWriteDoubleWord() throws Exception {
+    bits.writeDoubleWord(values[next()]);
+    return bits;
+  }
+
+  @Benchmark
+  public BitSet64 bitSetWriteByte() throws Exception {
+    int i = next();
+    bits.writeByte((int) values[i] & 0x7F, i & 7);
+    return bits;
+  }
+
+  @Benchmark
+  public int bitSetReadWord() throws Exception {
+    return bits.readWord((next() & 1) * 4);
+  }
+
+  @Benchmark
+  public int bitSetReadByte() {
+    return bits.readByte(next() & 7);
+  }
+
+  @Benchmark
+  public long binToLong() throws Exception {
+    return Converter.binToLong(binaries[next()], false);
+  }
+
+  @Benchmark
+  public String binToHex() throws Exception {
+    return Converter.binToHex(binaries[next()]);
+  }
+
+  @Benchmark
+  public String intToBin() {
+    return Converter.intToBin(64, values[next()]);
+  }
+
+  @Benchmark
+  public String twosComplementSum() throws Exception {
+    int i = next();
+    return InstructionsUtils.twosComplementSum(binaries[i], binaries[(i + 1) & (OPERANDS - 1)]);
+  }
+
+  @Benchmark
+  public String doubleSum() throws Exception {
+    int i = next();
+    return FPInstructionUtils.doubleSum(doubles[i], doubles[(i + 1) & (OPERANDS - 1)]);
+  }
+}
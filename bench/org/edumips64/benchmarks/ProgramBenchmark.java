@@ -0,0 +1,80 @@
+/* ProgramBenchmark.java
+ *
+ * Throughput of the simulator on whole programs.
+ * (c) 2016 EduMIPS64 project
+ *
+ * This file is part of the EduMIPS64 project, and is released under the GNU
+ * General Public License.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.edumips64.benchmarks;
+
+import org.edumips64.core.CPU;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/** Executes whole programs, from the parsing to the last instruction, as the
+ * command line interface does.
+ *
+ * Besides the programs executed per second, JMH reports the simulated
+ * instructions and cycles per second: the counters of the CPU are added to
+ * the fields of Simulated after each execution.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProgramBenchmark {
+  @Param({"src/org/edumips64/tests/data/test-strlen.s", "testcode/mysqrt.s"})
+  public String program;
+
+  /** Simulated work, reported by JMH as a rate. */
+  @AuxCounters
+  @State(Scope.Thread)
+  public static class Simulated {
+    public long instructions;
+    public long cycles;
+
+    @Setup(Level.Iteration)
+    public void clear() {
+      instructions = 0;
+      cycles = 0;
+    }
+  }
+
+  @Setup
+  public void setup() {
+    Programs.setup();
+  }
+
+  @Benchmark
+  public CPU run(Simulated simulated) throws Exception {
+    Programs.run(program);
+    CPU cpu = CPU.getInstance();
+    simulated.instructions += cpu.getInstructions();
+    simulated.cycles += cpu.getCycles();
+    return cpu;
+  }
+
+  @TearDown
+  public void tearDown() {
+    CPU.getInstance().reset();
+  }
+}
@@ -0,0 +1,86 @@
+/* Programs.java
+ *
+ * Loading and execution of MIPS64 programs for the benchmarks.
+ * (c) 2016 EduMIPS64 project
+ *
+ * This file is part of the EduMIPS64 project, and is released under the GNU
+ * General Public License.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.edumips64.benchmarks;
+
+import org.edumips64.core.CPU;
+import org.edumips64.core.Parser;
+import org.edumips64.core.ParserMultiWarningException;
+import org.edumips64.core.is.HaltException;
+import org.edumips64.core.is.Instruction;
+import org.edumips64.utils.ConfigManager;
+import org.edumips64.utils.ConfigStore;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/** Helpers shared by the benchmarks. The paths are relative to the root of
+ * the source tree, where the benchmark target of build.xml runs. */
+class Programs {
+  // The level of a logger is lost if nothing refers to it.
+  private static final Logger logger = Logger.getLogger("org.edumips64");
+
+  private Programs() {}
+
+  /** Silences the logs and uses the default configuration, so that the
+   * results don't depend on the preferences of the user. The programs are
+   * always parsed, instead of being loaded from their images. */
+  static void setup() {
+    logger.setLevel(Level.SEVERE);
+    ConfigStore config = ConfigManager.getTmpConfig();
+    config.putBoolean("image_cache", false);
+    ConfigManager.setConfig(config);
+    Instruction.setEnableForwarding(true);
+  }
+
+  /** Resets the CPU, parses the given program and makes the CPU ready to
+   * execute it. */
+  static void load(String path) throws Exception {
+    CPU cpu = CPU.getInstance();
+    cpu.reset();
+
+    try {
+      Parser.getInstance().parse(path);
+    } catch (ParserMultiWarningException e) {
+      // Warnings alone don't prevent the execution of the program.
+      if (e.hasErrors()) {
+        throw e;
+      }
+    }
+
+    cpu.setStatus(CPU.CPUStatus.RUNNING);
+  }
+
+  /** Loads the given program and executes it until it terminates. */
+  static void run(String path) throws Exception {
+    load(path);
+    CPU cpu = CPU.getInstance();
+
+    try {
+      while (true) {
+        cpu.step();
+      }
+    } catch (HaltException e) {
+      // The program ended.
+    }
+  }
+}
@@ -0,0 +1,91 @@
+/* SimulatorBenchmark.java
+ *
+ * Microbenchmarks of the parser, of the instruction factory and of a cycle
+ * of the CPU.
+ * (c) 2016 EduMIPS64 project
+ *
+ * This file is part of the EduMIPS64 project, and is released under the GNU
+ * General Public License.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.edumips64.benchmarks;
+
+import org.edumips64.core.CPU;
+import org.edumips64.core.is.HaltException;
+import org.edumips64.core.is.Instruction;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/** Time taken by the parsing of a program, by the creation of an
+ * instruction and by a single cycle of the pipelined CPU.
+ *
+ * The CPU and the parser are singletons: the benchmarks run on a single
+ * thread.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SimulatorBenchmark {
+  // Runs for about 100000 cycles, so that reloading it when it ends weighs
+  // little on the time of a cycle.
+  static final String STEP_PROGRAM = "bench/data/step-loop.s";
+  static final String PARSE_PROGRAM = "src/org/edumips64/tests/data/test-strlen.s";
+
+  private static final String[] OPCODES = {"DADD", "DADDI", "LD", "SD", "BNEZ", "J", "ADD.D", "MUL.D"};
+
+  private CPU cpu;
+  private int next;
+
+  @Setup
+  public void setup() throws Exception {
+    Programs.setup();
+    cpu = CPU.getInstance();
+    Programs.load(STEP_PROGRAM);
+  }
+
+  @Benchmark
+  public CPU parse() throws Exception {
+    Programs.load(PARSE_PROGRAM);
+    return cpu;
+  }
+
+  @Benchmark
+  public Instruction buildInstruction() {
+    next = (next + 1) % OPCODES.length;
+    return Instruction.buildInstruction(OPCODES[next]);
+  }
+
+  @Benchmark
+  public CPU step() throws Exception {
+    try {
+      cpu.step();
+    } catch (HaltException e) {
+      Programs.load(STEP_PROGRAM);
+    }
+
+    return cpu;
+  }
+
+  @TearDown
+  public void tearDown() {
+    cpu.reset();
+  }
+}
@@ -32,8 +32,11 @@ import java.awt.event.*;
 import java.util.*;
 import java.util.logging.Logger;
 import java.util.logging.Handler;
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Writer;
 
 import javax.swing.*;
 import javax.swing.event.*;
@@ -65,6 +68,7 @@ public class Main extends JApplet {
   private static JMenuItem multi_cycle;
   private static JMenuItem aboutUs;
   private static JMenuItem dinero_tracefile;
+  private static JMenuItem export_cycles;
   private static JMenuItem dinFrontend;
   private static JMenuItem manual;
   private static JMenuItem settings;
@@ -72,7 +76,7 @@ public class Main extends JApplet {
   private static StatusBar sb;
   private static JMenu file, lastfiles, exec, config, window, help, lang, tools;
   private static JCheckBoxMenuItem lang_en, lang_it;
-  private static JCheckBoxMenuItem pipelineJCB, registersJCB, memoryJCB, codeJCB, cyclesJCB, statsJCB, ioJCB;
+  private static JCheckBoxMenuItem pipelineJCB, registersJCB, memoryJCB, codeJCB, cyclesJCB, statsJCB, profilerJCB, ioJCB;
 
   public static GUIIO ioFrame;
   public static IOManager iom;
@@ -83,10 +87,13 @@ public class Main extends JApplet {
   private static JInternalFrame codeFrame;
   private static JInternalFrame cyclesFrame;
   private static JInternalFrame statsFrame;
+  private static JInternalFrame profilerFrame;
   private static Map<String, JInternalFrame> mapped_frames;
   private static java.util.List<JInternalFrame> ordered_frames;
 
   private static String openedFile = null;
+  // Periodic writer of the metrics, null if disabled.
+  private static MetricsReporter reporter;
   public static boolean debug_mode = true;
   private static JDesktopPane desk;
 
@@ -201,11 +208,15 @@ public class Main extends JApplet {
   }
 
   private static void addFrame(String name, JInternalFrame f) {
+    addFrame(name, name, f);
+  }
+
+  private static void addFrame(String name, String icon, JInternalFrame f) {
     mapped_frames.put(name, f);
     ordered_frames.add(f);
 
     try {
-      f.setFrameIcon(new ImageIcon(IMGLoader.getImage(name + ".png")));
+      f.setFrameIcon(new ImageIcon(IMGLoader.getImage(icon + ".png")));
     } catch (IOException e) {
       e.printStackTrace();
     }
@@ -229,6 +240,23 @@ public class Main extends JApplet {
 
     front = new GUIFrontend();
 
+    Metrics.getInstance().registerMBean();
+    reporter = MetricsReporter.fromConfig(configStore);
+
+    // Both the exit menu item and the closing of the frame call
+    // System.exit(), so the reporter is closed by a shutdown hook.
+    if (reporter != null) {
+      Runtime.getRuntime().addShutdownHook(new Thread("metrics-reporter-close") {
+        public void run() {
+          try {
+            reporter.close();
+          } catch (IOException e) {
+            log.warning("Could not close the metrics reporter: " + e);
+          }
+        }
+      });
+    }
+
     cgt = new CPUGUIThread();
     cgt.start();
 
@@ -291,6 +319,15 @@ public class Main extends JApplet {
         statsJCB.setState(true);
       }
     });
+    profilerFrame = new JInternalFrame(CurrentLocale.getString("PROFILER"), true, false, true, true);
+    profilerFrame.addInternalFrameListener(new InternalFrameAdapter() {
+      public void internalFrameIconified(InternalFrameEvent e) {
+        profilerJCB.setState(false);
+      }
+      public void internalFrameDeiconified(InternalFrameEvent e) {
+        profilerJCB.setState(true);
+      }
+    });
 
     ioFrame = new GUIIO(CurrentLocale.getString("IO"), true, false, true, true);
     ioFrame.addInternalFrameListener(new InternalFrameAdapter() {
@@ -328,6 +365,7 @@ public class Main extends JApplet {
     addFrame("pipeline", pipeFrame);
     addFrame("memory", memoryFrame);
     addFrame("code", codeFrame);
+    addFrame("profiler", "stats", profilerFrame);
     addFrame("io", ioFrame);
 
     // Setting icons for the main frame and for the internal frames
@@ -346,6 +384,7 @@ public class Main extends JApplet {
     front.setCodeContainer(codeFrame.getContentPane());
     front.setCyclesContainer(cyclesFrame.getContentPane());
     front.setStatisticsContainer(statsFrame.getContentPane());
+    front.setProfilerContainer(profilerFrame.getContentPane());
 
     sb = new StatusBar();
     cp.add(sb.getComponent(), BorderLayout.SOUTH);
@@ -355,9 +394,10 @@ public class Main extends JApplet {
   }
 
   public void start() {
-    // Auto-minimze the log window and the I/O window
+    // Auto-minimze the log window, the I/O window and the profiler
     try {
       ioFrame.setIcon(true);
+      profilerFrame.setIcon(true);
     } catch (java.beans.PropertyVetoException e) {}
 
     tileWindows();
@@ -388,6 +428,7 @@ public class Main extends JApplet {
   private static void setCacheMenuItemsStatus(boolean status) {
     tools.setEnabled(status);
     dinero_tracefile.setEnabled(status);
+    export_cycles.setEnabled(status);
     dinFrontend.setEnabled(status);
   }
 
@@ -618,6 +659,7 @@ public class Main extends JApplet {
     setMenuItem(lang_en, "MenuItem.ENGLISH");
     setMenuItem(lang_it, "MenuItem.ITALIAN");
     setMenuItem(dinero_tracefile, "MenuItem.DIN_TRACEFILE");
+    setMenuItem(export_cycles, "MenuItem.EXPORT_CYCLES");
     setMenuItem(aboutUs, "MenuItem.ABOUT_US");
     setMenuItem(dinFrontend, "MenuItem.DIN_FRONTEND");
     setMenuItem(manual, "MenuItem.MANUAL");
@@ -629,6 +671,7 @@ public class Main extends JApplet {
     setMenuItem(memoryJCB, "MEMORY");
     setMenuItem(statsJCB, "STATS");
     setMenuItem(registersJCB, "REGISTERS");
+    setMenuItem(profilerJCB, "PROFILER");
     setMenuItem(ioJCB, "IO");
   }
 
@@ -652,6 +695,7 @@ public class Main extends JApplet {
     reset = new JMenuItem();
     exit = new JMenuItem();
     dinero_tracefile = new JMenuItem();
+    export_cycles = new JMenuItem();
     single_cycle = new JMenuItem();
     run_to = new JMenuItem();
     multi_cycle = new JMenuItem();
@@ -666,6 +710,7 @@ public class Main extends JApplet {
     registersJCB = new JCheckBoxMenuItem();
     statsJCB = new JCheckBoxMenuItem();
     cyclesJCB = new JCheckBoxMenuItem();
+    profilerJCB = new JCheckBoxMenuItem();
     ioJCB = new JCheckBoxMenuItem();
 
     // Adding menus to the menu bar
@@ -739,6 +784,28 @@ public class Main extends JApplet {
       }
     });
 
+    // Export the temporal diagram, as JSON if the file name ends in .json,
+    // as CSV otherwise.
+    file.add(export_cycles);
+    export_cycles.addActionListener(new ActionListener() {
+      public void actionPerformed(ActionEvent e) {
+        jfc.setSelectedFile(new File(openedFile + ".csv"));
+        int val = jfc.showSaveDialog(f);
+
+        if (val == JFileChooser.APPROVE_OPTION) {
+          String filename = jfc.getSelectedFile().getPath();
+          CycleExporter.Format format = filename.toLowerCase().endsWith(".json") ? CycleExporter.Format.JSON : CycleExporter.Format.CSV;
+
+          try (Writer out = new BufferedWriter(new FileWriter(filename))) {
+            CycleExporter.export(front.getCycleBuilder(), format, out);
+            log.info("Exported the cycles to " + filename);
+          } catch (IOException ex) {
+            log.warning("Could not export the cycles: " + ex);
+          }
+        }
+      }
+    });
+
 
     // Exit
     file.add(exit);
@@ -986,6 +1053,20 @@ public class Main extends JApplet {
     });
     window.add(codeJCB);
 
+    profilerJCB.setText(CurrentLocale.getString("profiler".toUpperCase()));
+    profilerJCB.setState(true);
+    profilerJCB.addActionListener(new ActionListener() {
+      public void actionPerformed(ActionEvent e) {
+        boolean cur_state = mapped_frames.get("profiler").isIcon();
+
+        try {
+          mapped_frames.get("profiler").setIcon(!cur_state);
+        } catch (java.beans.PropertyVetoException ex) {
+        }
+      }
+    });
+    window.add(profilerJCB);
+
     ioJCB.setText(CurrentLocale.getString("log".toUpperCase()));
     ioJCB.setState(true);
     ioJCB.addActionListener(new ActionListener() {
@@ -0,0 +1,80 @@
+/* MainBatch.java
+ *
+ * Syntax checker for the source files of a directory tree.
+ * (c) 2016 EduMIPS64 project
+ *
+ * This file is part of the EduMIPS64 project, and is released under the GNU
+ * General Public License.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.edumips64;
+
+import org.edumips64.core.*;
+import org.edumips64.utils.*;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/** Assembles all the source files of a directory tree and prints their
+ * errors and warnings, one per line. The exit status is 1 if any file has
+ * errors.
+ *
+ * Usage: MainBatch directory [threads]
+ */
+public class MainBatch {
+  public static void main(String args[]) {
+    CurrentLocale.setLanguage("en");
+
+    if (args.length < 1) {
+      System.err.println(CurrentLocale.getString("BATCH.Usage"));
+      System.exit(2);
+    }
+
+    Logger.getLogger("org.edumips64").setLevel(Level.WARNING);
+    ForkJoinPool pool = (args.length > 1) ? new ForkJoinPool(Integer.parseInt(args[1])) : new ForkJoinPool();
+
+    long start = System.nanoTime();
+    List<Assembler.Result> results = new BatchAssembler(pool).assembleAll(new File(args[0]));
+    long elapsed = (System.nanoTime() - start) / 1000000;
+    int errors = 0;
+    int warnings = 0;
+
+    for (Assembler.Result r : results) {
+      ParserMultiException diagnostics = r.getDiagnostics();
+
+      if (diagnostics == null) {
+        continue;
+      }
+
+      if (r.hasErrors()) {
+        errors++;
+      } else {
+        warnings++;
+      }
+
+      for (ParserException e : diagnostics.getExceptionList()) {
+        System.out.println(r.getFilename() + ":" + e.getRow() + ":" + e.getColumn() + ": " + CurrentLocale.getString(e.isError() ? "BATCH.Error" : "BATCH.Warning") + ": " + CurrentLocale.getString(e.getKey()) + ": " + e.getLine());
+      }
+    }
+
+    System.out.println(results.size() + " " + CurrentLocale.getString("BATCH.Files") + ", " + errors + " " + CurrentLocale.getString("BATCH.WithErrors") + ", "
+                       + warnings + " " + CurrentLocale.getString("BATCH.WithWarnings") + " (" + elapsed + " ms, " + pool.getParallelism() + " " + CurrentLocale.getString("BATCH.Threads") + ")");
+    System.exit(errors > 0 ? 1 : 0);
+  }
+}
@@ -28,12 +28,43 @@ import org.edumips64.core.is.*;
 import org.edumips64.utils.*;
 
 import java.io.*;
+import java.util.Map;
 
 /** Interactive shell for EduMIPS64
  * @author Andrea Spadaccini
  * */
 
 public class MainCLI {
+  // Streaming exporter of the pipeline timeline, null if disabled.
+  private static PipelineTracer tracer;
+  // Periodic writer of the metrics, null if disabled.
+  private static MetricsReporter reporter;
+
+  /** Performs a CPU step, feeding the pipeline tracer if it is enabled. */
+  private static void step(CPU c) throws Exception {
+    try {
+      c.step();
+    } finally {
+      if (tracer != null) {
+        tracer.step();
+      }
+    }
+  }
+
+  private static void closeTracer() throws IOException {
+    if (tracer != null) {
+      tracer.close();
+      tracer = null;
+    }
+  }
+
+  private static void closeReporter() throws IOException {
+    if (reporter != null) {
+      reporter.close();
+      reporter = null;
+    }
+  }
+
   public static void main(String args[]) {
     CurrentLocale.setLanguage("en");
 
@@ -42,12 +73,26 @@ public class MainCLI {
       CPU c = CPU.getInstance();
       c.setStatus(CPU.CPUStatus.READY);
 
+      Metrics.getInstance().registerMBean();
+      reporter = MetricsReporter.fromConfig(ConfigManager.getConfig());
+
+      // The output of the program is buffered, and flushed at the end of
+      // each command, when the program terminates or asks for input.
+      IOManager iom = IOManager.getInstance();
+      OutputRingBuffer out = new OutputRingBuffer(new BufferedWriter(new OutputStreamWriter(System.out), OutputRingBuffer.DEFAULT_CAPACITY));
+      iom.setStdOutput(out);
+      iom.setStdError(new OutputRingBuffer(new OutputStreamWriter(System.err)));
+
+      // The shell and the program share the same reader, so that neither
+      // of them buffers input meant for the other one.
+      BufferedReader keyboard = new BufferedReader(new InputStreamReader(System.in));
+      iom.setStdInput(keyboard);
+
       if (args.length > 0) {
         p.parse(args[0]);
         c.setStatus(CPU.CPUStatus.RUNNING);
       }
 
-      BufferedReader keyboard = new BufferedReader(new InputStreamReader(System.in));
       System.out.println("Benvenuto nella shell di EduMIPS64!!");
 
       if (args.length > 0) {
@@ -72,6 +117,21 @@ public class MainCLI {
           help += "help\t\t\tmostra questo messaggio di aiuto\n";
           help += "step\t\t\tfa avanzare di uno step la macchina a stati della CPU:\n";
           help += "step n\t\t\tfa avanzare di n step la macchina a stati della CPU:\n";
+          help += "run\t\t\tesegue il programma fino alla sua terminazione\n";
+          help += "mode\t\t\tmostra la modalit di simulazione\n";
+          help += "mode pipeline\t\tsimula la pipeline ciclo per ciclo\n";
+          help += "mode functional [pc indirizzo] [count n]\n\t\t\tesegue un'istruzione per step senza simulare la pipeline,\n\t\t\tfino all'indirizzo o al numero di istruzioni indicati\n";
+          help += "mode ooo\t\tsimula l'esecuzione fuori ordine (algoritmo di Tomasulo)\n";
+          help += "mode superscalar [n]\tsimula l'esecuzione superscalare in ordine, emettendo\n\t\t\tfino a n istruzioni per ciclo\n";
+          help += "sample U W M\t\tesegue il programma alternando U istruzioni in modalit funzionale\n\t\t\ta finestre di W istruzioni di riscaldamento e M misurate\n\t\t\tnella pipeline, e stima le statistiche dell'intera esecuzione\n";
+          help += "trace bin file\t\tscrive l'evoluzione della pipeline su file (formato binario)\n";
+          help += "trace json file\t\tscrive l'evoluzione della pipeline su file (formato Chrome trace)\n";
+          help += "trace off\t\tchiude il file di traccia della pipeline\n";
+          help += "profile [n]\t\tmostra le n istruzioni, i blocchi base e le etichette\n\t\t\tche hanno richiesto pi cicli (default 10)\n";
+          help += "profile csv file\tscrive il profilo dell'esecuzione su file (formato CSV)\n";
+          help += "mix\t\t\tmostra le istruzioni eseguite per opcode e per classe, gli esiti\n\t\t\tdi ogni salto condizionato e gli ingressi in ogni blocco base\n";
+          help += "mix csv file\t\tscrive gli istogrammi delle istruzioni eseguite su file (formato CSV)\n";
+          help += "metrics\t\t\tmostra i valori delle metriche del simulatore\n";
           help += "show registers\t\tmostra il contenuto dei registri\n";
           help += "show memory\t\tmostra il contenuto della memoria\n";
           help += "show symbols\t\tmostra il contenuto della symbol table\n";
@@ -113,7 +173,7 @@ public class MainCLI {
               }
 
               for (int i = 0; i < num; ++i) {
-                c.step();
+                step(c);
                 System.out.println(c.pipeLineString());
               }
             } catch (Exception e) {
@@ -123,16 +183,186 @@ public class MainCLI {
           } catch (NumberFormatException e) {
             System.out.println("Il secondo parametro del comando step dev'essere un numero intero");
           }
+        } else if (tokens[0].compareToIgnoreCase("run") == 0) {
+          try {
+            while (true) {
+              step(c);
+            }
+          } catch (HaltException e) {
+            System.out.println("Esecuzione terminata in " + c.getCycles() + " cicli (" + c.getInstructions() + " istruzioni)");
+
+            if (c.getFunctionalInstructions() > 0) {
+              System.out.println(c.getFunctionalInstructions() + " istruzioni eseguite in modalit funzionale");
+            }
+
+            if (c.getRAWStalls() > 0) {
+              System.out.println(c.getRAWStalls() + " stalli RAW, causati da: " + c.getRAWStallCauses());
+            }
+
+            if (Instruction.getEnableForwarding()) {
+              System.out.println("Stalli evitati dal forwarding: EX->EX " + c.getAvoidedStalls(ForwardingNetwork.Path.EX_EX) +
+                                 ", MEM->EX " + c.getAvoidedStalls(ForwardingNetwork.Path.MEM_EX) +
+                                 ", MEM->MEM " + c.getAvoidedStalls(ForwardingNetwork.Path.MEM_MEM));
+            }
+
+            if (c.getSimulationMode() == CPU.SimulationMode.OUT_OF_ORDER) {
+              System.out.println("Stalli fuori ordine: issue " + c.getIssueStalls() +
+                                 ", dispatch " + c.getDispatchStalls() +
+                                 ", completamento " + c.getCompleteStalls() +
+                                 ", commit " + c.getCommitStalls());
+            }
+
+            if (c.getSimulationMode() == CPU.SimulationMode.SUPERSCALAR && c.getCycles() > 0) {
+              StringBuilder slots = new StringBuilder();
+
+              for (int i = 0; i < c.getIssueWidth(); ++i) {
+                slots.append(" ").append(100 * c.getSlotIssues(i) / c.getCycles()).append("%");
+              }
+
+              System.out.println(String.format("IPC: %.2f, utilizzo degli slot:", (float) c.getInstructions() / c.getCycles()) + slots);
+              System.out.println("Stalli superscalari: dipendenze " + c.getSuperscalarDependencyStalls() +
+                                 " (nel gruppo " + c.getGroupDependencyStalls() + ")" +
+                                 ", strutturali " + c.getSuperscalarStructuralStalls());
+            }
+          } catch (Exception e) {
+            System.out.println("Eccezione durante l'esecuzione!!");
+            e.printStackTrace();
+          }
+        } else if (tokens[0].compareToIgnoreCase("mode") == 0) {
+          if (tokens.length == 1) {
+            System.out.println("Modalit di simulazione: " + c.getSimulationMode());
+          } else if ((c.getSimulationMode() == CPU.SimulationMode.OUT_OF_ORDER || c.getSimulationMode() == CPU.SimulationMode.SUPERSCALAR) && c.getCycles() > 0) {
+            System.out.println("La modalit " + c.getSimulationMode() + " pu essere lasciata solo prima dell'esecuzione");
+          } else if (tokens[1].compareToIgnoreCase("pipeline") == 0) {
+            c.setSimulationMode(CPU.SimulationMode.PIPELINED);
+          } else if (tokens[1].compareToIgnoreCase("ooo") == 0) {
+            if (c.getCycles() > 0 || c.getFunctionalInstructions() > 0) {
+              System.out.println("La modalit fuori ordine pu essere scelta solo prima dell'esecuzione");
+            } else {
+              c.setSimulationMode(CPU.SimulationMode.OUT_OF_ORDER);
+            }
+          } else if (tokens[1].compareToIgnoreCase("superscalar") == 0) {
+            if (c.getCycles() > 0 || c.getFunctionalInstructions() > 0) {
+              System.out.println("La modalit superscalare pu essere scelta solo prima dell'esecuzione");
+            } else {
+              try {
+                if (tokens.length > 2) {
+                  c.setIssueWidth(Integer.parseInt(tokens[2]));
+                }
+
+                c.setSimulationMode(CPU.SimulationMode.SUPERSCALAR);
+              } catch (NumberFormatException e) {
+                System.out.println("L'ampiezza di emissione dev'essere un numero intero");
+              }
+            }
+          } else if (tokens[1].compareToIgnoreCase("functional") == 0) {
+            if (c.getSimulationMode() == CPU.SimulationMode.PIPELINED && c.getCycles() > 0) {
+              System.out.println("La modalit funzionale pu essere scelta solo prima dell'esecuzione");
+            } else {
+              try {
+                long switchPC = -1;
+                int switchCount = 0;
+
+                for (int i = 2; i + 1 < tokens.length; i += 2) {
+                  if (tokens[i].compareToIgnoreCase("pc") == 0) {
+                    switchPC = Long.decode(tokens[i + 1]);
+                  } else if (tokens[i].compareToIgnoreCase("count") == 0) {
+                    switchCount = Integer.parseInt(tokens[i + 1]);
+                  }
+                }
+
+                c.setFunctionalSwitchPoint(switchPC, switchCount);
+                c.setSimulationMode(CPU.SimulationMode.FUNCTIONAL);
+              } catch (NumberFormatException e) {
+                System.out.println("I parametri pc e count devono essere numeri interi");
+              }
+            }
+          } else {
+            System.out.println("Uso: mode pipeline, mode ooo, mode superscalar [n] oppure mode functional [pc indirizzo] [count n]");
+          }
+        } else if (tokens[0].compareToIgnoreCase("sample") == 0) {
+          if (tokens.length != 4) {
+            System.out.println("Uso: sample U W M");
+          } else {
+            try {
+              SampledSimulator sampler = new SampledSimulator(Integer.parseInt(tokens[1]), Integer.parseInt(tokens[2]), Integer.parseInt(tokens[3]));
+              sampler.run();
+              System.out.print(sampler.report());
+            } catch (NumberFormatException e) {
+              System.out.println("I parametri del comando sample devono essere numeri interi");
+            } catch (IllegalArgumentException e) {
+              System.out.println("U e M devono essere positivi, W non negativo");
+            } catch (Exception e) {
+              System.out.println("Eccezione durante l'esecuzione!!");
+              e.printStackTrace();
+            }
+          }
+        } else if (tokens[0].compareToIgnoreCase("trace") == 0) {
+          if (tokens.length == 2 && tokens[1].compareToIgnoreCase("off") == 0) {
+            closeTracer();
+          } else if (tokens.length == 3 && (tokens[1].compareToIgnoreCase("bin") == 0 || tokens[1].compareToIgnoreCase("json") == 0)) {
+            closeTracer();
+            PipelineTracer.Format format = (tokens[1].compareToIgnoreCase("bin") == 0) ? PipelineTracer.Format.BINARY : PipelineTracer.Format.CHROME;
+            tracer = PipelineTracer.create(format, tokens[2]);
+            System.out.println("Traccia della pipeline su " + tokens[2]);
+          } else {
+            System.out.println("Uso: trace bin|json file oppure trace off");
+          }
+        } else if (tokens[0].compareToIgnoreCase("profile") == 0) {
+          if (tokens.length == 3 && tokens[1].compareToIgnoreCase("csv") == 0) {
+            try (Writer w = new BufferedWriter(new FileWriter(tokens[2]))) {
+              c.getProfiler().writeCsv(w);
+              System.out.println("Profilo scritto su " + tokens[2]);
+            } catch (IOException e) {
+              System.out.println("Impossibile scrivere il file " + tokens[2]);
+            }
+          } else if (tokens.length <= 2) {
+            try {
+              int n = (tokens.length == 2) ? Integer.parseInt(tokens[1]) : 10;
+              System.out.print(c.getProfiler().report(n));
+            } catch (NumberFormatException e) {
+              System.out.println("Il parametro del comando profile dev'essere un numero intero");
+            }
+          } else {
+            System.out.println("Uso: profile [n] oppure profile csv file");
+          }
+        } else if (tokens[0].compareToIgnoreCase("mix") == 0) {
+          if (tokens.length == 3 && tokens[1].compareToIgnoreCase("csv") == 0) {
+            try (Writer w = new BufferedWriter(new FileWriter(tokens[2]))) {
+              c.getInstructionMix().writeCsv(w);
+              System.out.println("Istogrammi scritti su " + tokens[2]);
+            } catch (IOException e) {
+              System.out.println("Impossibile scrivere il file " + tokens[2]);
+            }
+          } else if (tokens.length == 1) {
+            System.out.print(c.getInstructionMix().report());
+          } else {
+            System.out.println("Uso: mix oppure mix csv file");
+          }
+        } else if (tokens[0].compareToIgnoreCase("metrics") == 0) {
+          for (Map.Entry<String, Long> e : Metrics.getInstance().snapshot().entrySet()) {
+            System.out.println(e.getKey() + " = " + e.getValue());
+          }
         } else {
           System.out.println("Comando non riconosciuto.\nDigitare 'help' per avere un elenco di comandi");
         }
 
+        iom.flush();
         System.out.print("> ");
       }
 
+      closeTracer();
+      closeReporter();
       System.out.println("Ciao ciao!");
     } catch (Exception e) {
       e.printStackTrace();
+
+      try {
+        closeReporter();
+      } catch (IOException ioe) {
+        ioe.printStackTrace();
+      }
+
       System.exit(1);
     }
   }
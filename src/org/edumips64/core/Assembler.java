@@ -0,0 +1,94 @@
+/* Assembler.java
+ *
+ * Assembles programs without changing the state of the simulator.
+ * (c) 2016 EduMIPS64 project
+ *
+ * This file is part of the EduMIPS64 project, and is released under the GNU
+ * General Public License.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.edumips64.core;
+
+import java.io.*;
+
+/** Assembles a source file into a program image, with a parser that fills
+ * its own memory and symbol table instead of the ones of the CPU. Programs
+ * can therefore be assembled by many threads at once, while the simulator
+ * is running.
+ */
+public class Assembler {
+  static {
+    // The instructions resolve their registers in the CPU: build it before
+    // the threads start, since the singletons are not thread-safe.
+    CPU.getInstance();
+  }
+
+  /** The outcome of the assembly of a file. */
+  public static class Result {
+    private final String filename;
+    private final ProgramImage image;
+    private final ParserMultiException diagnostics;
+
+    Result(String filename, ProgramImage image, ParserMultiException diagnostics) {
+      this.filename = filename;
+      this.image = image;
+      this.diagnostics = diagnostics;
+    }
+
+    public String getFilename() {
+      return filename;
+    }
+
+    /** Returns the image of the program, or null if there were errors. */
+    public ProgramImage getImage() {
+      return image;
+    }
+
+    /** Returns the errors and warnings of the parsing, or null if there
+     * were none. */
+    public ParserMultiException getDiagnostics() {
+      return diagnostics;
+    }
+
+    public boolean hasErrors() {
+      return diagnostics != null && diagnostics.hasErrors();
+    }
+  }
+
+  private Assembler() {}
+
+  /** Assembles a source file.
+   * @throws IOException if the file, or a file it includes, can't be read
+   */
+  public static Result assemble(String filename) throws IOException {
+    Memory mem = new Memory();
+    SymbolTable symTab = new SymbolTable(mem);
+    Parser parser = new Parser(mem, symTab);
+    ParserMultiException diagnostics = null;
+
+    try {
+      parser.parse(filename);
+    } catch (ParserMultiException e) {
+      diagnostics = e;
+    }
+
+    if (diagnostics != null && diagnostics.hasErrors()) {
+      return new Result(filename, null, diagnostics);
+    }
+
+    return new Result(filename, ProgramImage.capture(mem, symTab, diagnostics), diagnostics);
+  }
+}
@@ -0,0 +1,130 @@
+/* BatchAssembler.java
+ *
+ * Assembles all the source files of a directory tree in parallel.
+ * (c) 2016 EduMIPS64 project
+ *
+ * This file is part of the EduMIPS64 project, and is released under the GNU
+ * General Public License.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.edumips64.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.logging.Logger;
+import org.edumips64.utils.Metrics;
+import org.edumips64.utils.StripedCounter;
+
+/** Assembles the source files (*.s) of a directory tree with the Assembler,
+ * using a task for each directory and for each file of a ForkJoinPool.
+ */
+public class BatchAssembler {
+  private static final Logger logger = Logger.getLogger(BatchAssembler.class.getName());
+
+  // Files assembled by all the batch assemblers, counted by many threads.
+  private static final StripedCounter assembledFiles = Metrics.getInstance().counter("assembled_files");
+
+  private final ForkJoinPool pool;
+
+  /** Builds a batch assembler that uses the given pool. */
+  public BatchAssembler(ForkJoinPool pool) {
+    this.pool = pool;
+  }
+
+  /** Builds a batch assembler with a thread for each processor. */
+  public BatchAssembler() {
+    this(new ForkJoinPool());
+  }
+
+  /** Assembles the source files found in a directory and in its
+   * subdirectories.
+   * @return the results; the files of each directory are sorted by name and
+   * come before the ones of its subdirectories
+   */
+  public List<Assembler.Result> assembleAll(File root) {
+    return pool.invoke(new DirectoryTask(root));
+  }
+
+  private static class DirectoryTask extends RecursiveTask<List<Assembler.Result>> {
+    private final File dir;
+
+    DirectoryTask(File dir) {
+      this.dir = dir;
+    }
+
+    @Override
+    protected List<Assembler.Result> compute() {
+      File[] files = dir.listFiles();
+      List<Assembler.Result> results = new ArrayList<Assembler.Result>();
+
+      if (files == null) {
+        logger.warning("Can't list " + dir);
+        return results;
+      }
+
+      Arrays.sort(files);
+      List<DirectoryTask> dirs = new ArrayList<DirectoryTask>();
+      List<FileTask> sources = new ArrayList<FileTask>();
+
+      for (File f : files) {
+        if (f.isDirectory()) {
+          dirs.add(new DirectoryTask(f));
+        } else if (f.getName().toLowerCase().endsWith(".s")) {
+          sources.add(new FileTask(f));
+        }
+      }
+
+      invokeAll(dirs);
+      invokeAll(sources);
+
+      for (FileTask t : sources) {
+        results.add(t.join());
+      }
+
+      for (DirectoryTask t : dirs) {
+        results.addAll(t.join());
+      }
+
+      return results;
+    }
+  }
+
+  private static class FileTask extends RecursiveTask<Assembler.Result> {
+    private final File file;
+
+    FileTask(File file) {
+      this.file = file;
+    }
+
+    @Override
+    protected Assembler.Result compute() {
+      assembledFiles.increment();
+
+      try {
+        return Assembler.assemble(file.getPath());
+      } catch (IOException e) {
+        ParserMultiException diagnostics = new ParserMultiException();
+        diagnostics.add("FILE_NOT_FOUND", 0, 0, e.getMessage());
+        return new Assembler.Result(file.getPath(), null, diagnostics);
+      }
+    }
+  }
+}
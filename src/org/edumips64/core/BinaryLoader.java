@@ -0,0 +1,475 @@
+/* BinaryLoader.java
+ *
+ * Loader of MIPS64 machine code, from flat binaries and ELF64 files.
+ * (c) 2016 EduMIPS64 project
+ *
+ * This file is part of the EduMIPS64 project, and is released under the GNU
+ * General Public License.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.edumips64.core;
+
+import org.edumips64.core.is.*;
+import org.edumips64.utils.IrregularStringOfBitsException;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/** Loads programs in machine code instead of assembly source.
+ *
+ * Two kinds of files are accepted:
+ * <ul>
+ * <li>ELF64 files, big or little endian: the executable sections are loaded
+ * in the code memory and the other allocated sections in the data memory, at
+ * their addresses, and the execution starts from the entry point. The stack
+ * pointer (R29) is set to the end of the data memory and the return address
+ * (R31) to a SYSCALL 0 added after the code, so that returning from the entry
+ * point ends the program. The program must be linked at addresses that fit
+ * the memories of the simulator, e.g. with <code>-nostdlib -e main
+ * -Ttext=0 -Tdata=0</code>, and compiled without delayed branches, since
+ * the pipeline has no delay slot. Data bytes are stored at their addresses,
+ * and the memory takes the byte order of the file until the next reset.</li>
+ * <li>flat binaries, whose name ends with ".bin": a sequence of big-endian
+ * instruction words loaded from address 0, followed by a SYSCALL 0.</li>
+ * </ul>
+ *
+ * Instruction words are decoded with the encodings defined by the pack()
+ * methods of the instructions: the layout of each instruction is found by
+ * packing it with probe values of its parameters.
+ */
+public class BinaryLoader {
+  private static final Logger logger = Logger.getLogger(BinaryLoader.class.getName());
+
+  private static final int EM_MIPS = 8;
+  private static final int SHT_PROGBITS = 1;
+  private static final long SHF_ALLOC = 0x2;
+  private static final long SHF_EXECINSTR = 0x4;
+
+  /** A field of the encoding holding a parameter. */
+  private static class Field {
+    // Position of the least significant bit in the word, number of bits,
+    // and number of low bits of the parameter that are not encoded.
+    int position, width, shift;
+  }
+
+  /** The encoding of an instruction. */
+  private static class Format {
+    String name;
+    int fixedMask, fixedBits;
+    Field[] fields;
+  }
+
+  // Formats of the instructions, by primary opcode, with the most specific
+  // encodings first.
+  private static Map<Integer, List<Format>> formats;
+
+  private BinaryLoader() {}
+
+  /** Returns true if the file holds machine code: it is an ELF file, or its
+   * name ends with ".bin". */
+  static boolean isBinary(File file) throws IOException {
+    if (file.getName().toLowerCase().endsWith(".bin")) {
+      return true;
+    }
+
+    try (InputStream in = new FileInputStream(file)) {
+      byte[] magic = new byte[4];
+      return in.read(magic) == 4 && magic[0] == 0x7f && magic[1] == 'E' && magic[2] == 'L' && magic[3] == 'F';
+    }
+  }
+
+  /** Decodes an instruction word.
+   * @return an instruction with its parameters and its encoding set, or
+   * null if the word is not the encoding of any instruction
+   */
+  public static Instruction decode(int word) {
+    List<Format> candidates = getFormats().get(word >>> 26);
+
+    if (candidates == null) {
+      return null;
+    }
+
+    for (Format f : candidates) {
+      if ((word & f.fixedMask) != f.fixedBits) {
+        continue;
+      }
+
+      List<Integer> params = new ArrayList<Integer>(f.fields.length);
+
+      for (Field field : f.fields) {
+        int value = 0;
+
+        if (field != null) {
+          value = (word >>> field.position) & (int)((1L << field.width) - 1);
+
+          // 16-bit fields hold signed immediates and offsets.
+          if (field.width == 16) {
+            value = (short) value;
+          }
+
+          value <<= field.shift;
+        }
+
+        params.add(value);
+      }
+
+      Instruction instr = Instruction.buildInstruction(f.name);
+
+      try {
+        instr.getRepr().setBits(ProgramImage.toBinary(word), 0);
+      } catch (IrregularStringOfBitsException e) {
+        // toBinary() only returns 0s and 1s.
+        throw new RuntimeException(e);
+      }
+
+      instr.setParams(params);
+      instr.decode();
+      return instr;
+    }
+
+    return null;
+  }
+
+  /** Loads a flat binary or an ELF file in the memory, that must be empty.
+   * @throws ParserMultiException if the file is not a supported ELF file,
+   * holds words that are not instructions or doesn't fit the memory
+   */
+  static void load(File file) throws IOException, ParserMultiException {
+    byte[] bytes = new byte[(int) file.length()];
+
+    try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+      in.readFully(bytes);
+    }
+
+    ParserMultiException errors = new ParserMultiException();
+    ByteBuffer buf = ByteBuffer.wrap(bytes);
+
+    if (bytes.length < 4 || buf.getInt(0) != 0x7f454c46) {
+      int end = loadCode(buf, 0, bytes.length, 0, errors);
+      addHalt(end, errors);
+    } else if (bytes.length < 64 || bytes[4] != 2 || (bytes[5] != 1 && bytes[5] != 2)) {
+      errors.add("INVALID_BINARY", 0, 0, file.getName());
+    } else {
+      try {
+        loadElf(buf, errors);
+      } catch (IndexOutOfBoundsException e) {
+        // The headers point outside the file.
+        errors.add("INVALID_BINARY", 0, 0, file.getName());
+      }
+    }
+
+    if (errors.hasErrors()) {
+      throw errors;
+    }
+
+    logger.info(file + " loaded: " + Memory.getInstance().getInstructionsNumber() + " instructions.");
+  }
+
+  /** Loads the sections of an ELF64 file, and sets the PC, the stack pointer
+   * and the return address. */
+  private static void loadElf(ByteBuffer buf, ParserMultiException errors) {
+    byte[] bytes = buf.array();
+    CPU cpu = CPU.getInstance();
+    Memory mem = Memory.getInstance();
+    buf.order(bytes[5] == 1 ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+    mem.setBigEndian(buf.order() == ByteOrder.BIG_ENDIAN);
+
+    if (buf.getShort(0x12) != EM_MIPS) {
+      errors.add("INVALID_BINARY", 0, 0, "e_machine " + buf.getShort(0x12));
+      return;
+    }
+
+    long shoff = buf.getLong(0x28);
+    int shentsize = buf.getShort(0x3a) & 0xffff;
+    int shnum = buf.getShort(0x3c) & 0xffff;
+    int end = 0;
+
+    for (int i = 0; i < shnum; ++i) {
+      int sh = (int)(shoff + (long) i * shentsize);
+      long flags = buf.getLong(sh + 0x08);
+      long addr = buf.getLong(sh + 0x10);
+      int offset = (int) buf.getLong(sh + 0x18);
+      int size = (int) buf.getLong(sh + 0x20);
+
+      if (buf.getInt(sh + 0x04) != SHT_PROGBITS || (flags & SHF_ALLOC) == 0) {
+        continue;
+      }
+
+      if ((flags & SHF_EXECINSTR) != 0) {
+        end = Math.max(end, loadCode(buf, offset, size, addr, errors));
+      } else {
+        try {
+          ByteBuffer data = ByteBuffer.wrap(bytes, offset, size);
+          mem.writeBytes(addr, data, null);
+        } catch (MemoryElementNotFoundException e) {
+          errors.add("OUTOFMEMORY", i, 0, "0x" + Long.toHexString(addr));
+        } catch (AddressErrorException e) {
+          // The memory is empty, so nothing is mapped read-only.
+          throw new RuntimeException(e);
+        }
+      }
+    }
+
+    addHalt(end, errors);
+
+    try {
+      cpu.getPC().writeDoubleWord(buf.getLong(0x18));
+      cpu.getRegister(29).writeDoubleWord(mem.getMemorySize() * 8L);
+      cpu.getRegister(31).writeDoubleWord(end);
+    } catch (IrregularWriteOperationException e) {
+      // Doublewords are always written entirely.
+      throw new RuntimeException(e);
+    }
+  }
+
+  /** Decodes the instruction words of a section and stores them in the code
+   * memory.
+   * @return the address following the last instruction
+   */
+  private static int loadCode(ByteBuffer buf, int offset, int size, long address, ParserMultiException errors) {
+    Memory mem = Memory.getInstance();
+
+    for (int i = 0; i + 4 <= size; i += 4) {
+      int word = buf.getInt(offset + i);
+      int row = i / 4 + 1;
+      Instruction instr = decode(word);
+
+      if (instr == null) {
+        errors.add("UNKNOWN_INSTRUCTION_WORD", row, 0, String.format("%08x", word));
+        continue;
+      }
+
+      instr.setFullName(disassemble(instr, address + i));
+
+      try {
+        mem.addInstruction(instr, (int)(address + i));
+      } catch (SymbolTableOverflowException e) {
+        errors.add("OUTOFMEMORY", row, 0, instr.getFullName());
+        break;
+      }
+    }
+
+    return (int)(address + size / 4 * 4);
+  }
+
+  /** Adds a SYSCALL 0 at the given address, that ends the program. */
+  private static void addHalt(int address, ParserMultiException errors) {
+    Instruction halt = decode(0x0000000c);
+    halt.setFullName("SYSCALL 0");
+
+    try {
+      Memory.getInstance().addInstruction(halt, address);
+    } catch (SymbolTableOverflowException e) {
+      errors.add("OUTOFMEMORY", 0, 0, halt.getFullName());
+    }
+  }
+
+  /** Builds the text of an instruction from its syntax and its parameters.
+   * Branch and jump targets are written as addresses. */
+  private static String disassemble(Instruction instr, long address) {
+    StringBuilder sb = new StringBuilder(instr.getName());
+    String syntax = instr.getSyntax();
+    List<Integer> params = instr.getParams();
+    int p = 0;
+
+    if (!syntax.isEmpty()) {
+      sb.append(' ');
+    }
+
+    for (int i = 0; i < syntax.length(); ++i) {
+      char c = syntax.charAt(i);
+
+      if (c != '%' || i + 1 == syntax.length() || p == params.size()) {
+        sb.append(c);
+        continue;
+      }
+
+      int value = params.get(p++);
+
+      switch (syntax.charAt(++i)) {
+      case 'R':
+        sb.append('r').append(value);
+        break;
+      case 'F':
+        sb.append('f').append(value);
+        break;
+      case 'B':
+        sb.append("0x").append(Long.toHexString(address + 4 + value));
+        break;
+      case 'E':
+        sb.append("0x").append(Integer.toHexString(value));
+        break;
+      default:
+        sb.append(value);
+      }
+    }
+
+    return sb.toString();
+  }
+
+  /** Returns the formats of all the instructions, found the first time. */
+  private static synchronized Map<Integer, List<Format>> getFormats() {
+    if (formats != null) {
+      return formats;
+    }
+
+    List<Format> all = new ArrayList<Format>();
+    Set<Class<?>> classes = new HashSet<Class<?>>();
+
+    for (Instruction.InstructionEnumerator op : Instruction.InstructionEnumerator.values()) {
+      classes.add(Instruction.buildInstruction(op.name()).getClass());
+    }
+
+    for (Instruction.InstructionEnumerator op : Instruction.InstructionEnumerator.values()) {
+      // Aliases, such as TRAP for SYSCALL, extend the instruction they
+      // stand for and have its encoding.
+      if (classes.contains(Instruction.buildInstruction(op.name()).getClass().getSuperclass())) {
+        continue;
+      }
+
+      Format f = probe(op.name());
+
+      if (f != null) {
+        all.add(f);
+      }
+    }
+
+    // The most fixed bits an encoding has, the more specific it is: NOP is
+    // preferred to SLL, B to BEQ.
+    Collections.sort(all, new Comparator<Format>() {
+      @Override
+      public int compare(Format a, Format b) {
+        return Integer.bitCount(b.fixedMask) - Integer.bitCount(a.fixedMask);
+      }
+    });
+
+    formats = new HashMap<Integer, List<Format>>();
+
+    for (Format f : all) {
+      int opcode = f.fixedBits >>> 26;
+
+      if (!formats.containsKey(opcode)) {
+        formats.put(opcode, new ArrayList<Format>());
+      }
+
+      formats.get(opcode).add(f);
+    }
+
+    return formats;
+  }
+
+  /** Finds the format of an instruction by packing it with probe values of
+   * its parameters.
+   * @return the format, or null if the instruction can't be packed
+   */
+  private static Format probe(String name) {
+    Instruction sample = Instruction.buildInstruction(name);
+
+    if (sample.isBubble()) {
+      return null;
+    }
+
+    // The number of parameters is the smallest number for which pack()
+    // succeeds.
+    int[] values = null;
+    Integer base = null;
+
+    for (int n = 0; n <= 4 && base == null; ++n) {
+      values = new int[n];
+      base = pack(name, values);
+    }
+
+    if (base == null) {
+      logger.warning("Can't find the encoding of " + name);
+      return null;
+    }
+
+    Format f = new Format();
+    f.name = name;
+    f.fields = new Field[values.length];
+    int paramMask = 0;
+
+    for (int p = 0; p < values.length; ++p) {
+      Field field = new Field();
+
+      // Each bit of the parameter must change the next bit of the word,
+      // except for the low bits that are not encoded.
+      for (int b = 0; b < 31; ++b) {
+        values[p] = 1 << b;
+        Integer word = pack(name, values);
+        values[p] = 0;
+
+        if (word == null) {
+          break;
+        }
+
+        int diff = word ^ base;
+
+        if (diff == 0 && field.width == 0) {
+          field.shift++;
+          continue;
+        }
+
+        int position = Integer.numberOfTrailingZeros(diff);
+
+        if (Integer.bitCount(diff) != 1 || (paramMask & diff) != 0 || (field.width > 0 && position != field.position + field.width)) {
+          break;
+        }
+
+        if (field.width == 0) {
+          field.position = position;
+        }
+
+        field.width++;
+        paramMask |= diff;
+      }
+
+      f.fields[p] = (field.width > 0) ? field : null;
+    }
+
+    f.fixedMask = ~paramMask;
+    f.fixedBits = base & f.fixedMask;
+    return f;
+  }
+
+  /** Packs an instruction with the given parameters.
+   * @return the encoding, or null if the parameters are not valid
+   */
+  private static Integer pack(String name, int[] values) {
+    Instruction instr = Instruction.buildInstruction(name);
+
+    for (int v : values) {
+      instr.getParams().add(v);
+    }
+
+    try {
+      instr.pack();
+      return (int) Long.parseLong(instr.getRepr().getBinString(), 2);
+    } catch (IrregularStringOfBitsException | RuntimeException e) {
+      return null;
+    }
+  }
+}
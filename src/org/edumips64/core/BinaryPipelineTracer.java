@@ -0,0 +1,107 @@
+/* BinaryPipelineTracer.java
+ *
+ * Compact binary format for the pipeline timeline.
+ * (c) 2016 EduMIPS64 project
+ *
+ * This file is part of the EduMIPS64 project, and is released under the GNU
+ * General Public License.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.edumips64.core;
+
+import org.edumips64.core.is.Instruction;
+
+import java.io.*;
+import java.util.HashSet;
+import java.util.Set;
+
+/** Writes the pipeline timeline in a compact binary format.
+ *
+ * The stream starts with the magic bytes "EMPT", a version byte and the
+ * number of slots followed by their names (modified UTF-8, as written by
+ * DataOutputStream.writeUTF). Then a sequence of records follows, each one
+ * starting with a tag byte:
+ *
+ * 'I' serial name: defines the text of an instruction, and is written before
+ *     the first cycle record that refers to it.
+ * 'C' cycle stalls occupancy serial*: a cycle record. The cycle, the
+ *     occupancy mask (bit n set if slot n is not empty) and the serial
+ *     numbers of the instructions in the non-empty slots are unsigned
+ *     varints (7 bits per byte, least significant group first); stalls is
+ *     the stall mask byte.
+ * 'E': end of the trace.
+ */
+public class BinaryPipelineTracer extends PipelineTracer {
+  public static final int VERSION = 1;
+
+  private DataOutputStream out;
+  // Serial numbers of the instructions already defined in the stream. Its
+  // size is bounded by the size of the program, not by the length of the run.
+  private Set<Long> defined;
+
+  public BinaryPipelineTracer(OutputStream os) throws IOException {
+    out = new DataOutputStream(os);
+    defined = new HashSet<Long>();
+    out.writeBytes("EMPT");
+    out.writeByte(VERSION);
+    out.writeByte(SLOTS);
+
+    for (String name : SLOT_NAMES) {
+      out.writeUTF(name);
+    }
+  }
+
+  protected void writeCycle(int cycle, Instruction[] slots, int stalls) throws IOException {
+    int occupancy = 0;
+
+    for (int i = 0; i < slots.length; ++i) {
+      if (slots[i] != null) {
+        occupancy |= 1 << i;
+
+        if (defined.add(slots[i].getSerialNumber())) {
+          out.writeByte('I');
+          writeVarLong(slots[i].getSerialNumber());
+          out.writeUTF(slots[i].getFullName());
+        }
+      }
+    }
+
+    out.writeByte('C');
+    writeVarLong(cycle);
+    out.writeByte(stalls);
+    writeVarLong(occupancy);
+
+    for (Instruction i : slots) {
+      if (i != null) {
+        writeVarLong(i.getSerialNumber());
+      }
+    }
+  }
+
+  private void writeVarLong(long value) throws IOException {
+    while ((value & ~0x7FL) != 0) {
+      out.writeByte((int)((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+
+    out.writeByte((int) value);
+  }
+
+  public void close() throws IOException {
+    out.writeByte('E');
+    out.close();
+  }
+}
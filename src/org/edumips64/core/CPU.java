@@ -23,6 +23,7 @@
 
 package org.edumips64.core;
 import org.edumips64.core.fpu.*;
+import java.io.IOException;
 import java.util.*;
 import java.util.logging.Logger;
 import java.util.logging.Level;
@@ -45,6 +46,10 @@ public class CPU {
   public static List<String> knownFPInstructions; // set of Floating point instructions that must pass through the FPU pipeline
   private FPPipeline fpPipe;
   private List<String> terminatingInstructionsOPCodes;
+  // Opcodes of the known FP instructions and encodings of the terminating
+  // instructions, so that the pipeline doesn't compare strings at every cycle.
+  private static Set<Instruction.InstructionEnumerator> knownFPOpcodes;
+  private Set<Integer> terminatingEncodings;
 
   /** Program Counter*/
   private Register pc, old_pc;
@@ -82,6 +87,51 @@ public class CPU {
   public enum CPUStatus {READY, RUNNING, STOPPING, HALTED}
   private CPUStatus status;
 
+  /** Simulation mode.
+   *  PIPELINED - every step() is a clock cycle of the pipeline, with hazard
+   *  detection and timing statistics.
+   *
+   *  FUNCTIONAL - every step() executes a whole instruction in program order,
+   *  without modelling the pipeline. The architectural results (registers,
+   *  memory, system calls) are the same, but no timing statistic is updated.
+   *  The CPU goes back to the PIPELINED mode when the functional switch point
+   *  is reached.
+   *
+   *  OUT_OF_ORDER - every step() is a clock cycle of an out-of-order CPU
+   *  with reservation stations, register renaming and a reorder buffer,
+   *  modelled by the TomasuloEngine.
+   *
+   *  SUPERSCALAR - every step() is a clock cycle of an in-order CPU that
+   *  issues up to issue_width instructions per cycle, modelled by the
+   *  SuperscalarEngine.
+   */
+  public enum SimulationMode {PIPELINED, FUNCTIONAL, OUT_OF_ORDER, SUPERSCALAR}
+  private SimulationMode mode;
+
+  /** Functional switch point: PC of the first instruction that must be
+   *  executed in the pipeline (-1 if not set), and number of instructions to
+   *  execute in FUNCTIONAL mode (0 if not set). */
+  private long functionalSwitchPC;
+  private int functionalSwitchCount;
+
+  /** True while the pipeline is being drained before entering the FUNCTIONAL
+   *  mode: no instruction is fetched, and drainResumePC is the address of the
+   *  first instruction that did not enter the pipeline. */
+  private boolean draining;
+  private long drainResumePC;
+
+  /** Timing model of the OUT_OF_ORDER mode. */
+  private TomasuloEngine engine;
+
+  /** Timing model of the SUPERSCALAR mode. */
+  private SuperscalarEngine superscalar;
+
+  /** Per-address profile of the cycles and of the stalls. */
+  private Profiler profiler;
+
+  /** Histograms of the executed instructions. */
+  private InstructionMix mix;
+
   /** CPU pipeline, each status contains an Instruction object*/
   private Map<PipeStatus, Instruction> pipe;
   private SymbolTable symTable;
@@ -89,17 +139,17 @@ public class CPU {
   /** The current status of the pipeline.*/
   private PipeStatus currentPipeStatus;
 
-  /** The code and data sections limits*/
-  public static final int CODELIMIT = 1024; // bus da 12 bit (2^12 / 4)
-  public static final int DATALIMIT = 512;  // bus da 12 bit (2^12 / 8)
-
   /** Simulator configuration */
   private ConfigStore config;
 
   private static CPU cpu;
 
   /** Statistics */
+  private int functionalInstructions;
   private int cycles, instructions, RAWStalls, WAWStalls, dividerStalls, funcUnitStalls, memoryStalls, exStalls, branchMispredictionStalls, correctBranchPredictions;
+  // Number of RAW and WAW stalls caused by each instruction, by name.
+  private Map<String, Integer> rawStallCauses = new TreeMap<String, Integer>();
+  private Map<String, Integer> wawStallCauses = new TreeMap<String, Integer>();
 
   /** Static initializer */
   static {
@@ -113,29 +163,35 @@ public class CPU {
     logger.info("Creating the CPU...");
     cycles = 0;
     status = CPUStatus.READY;
+    mode = SimulationMode.PIPELINED;
+    engine = new TomasuloEngine(this);
+    superscalar = new SuperscalarEngine(this);
+    functionalSwitchPC = -1;
     mem = Memory.getInstance();
     logger.info("Got Memory instance..");
     symTable = SymbolTable.getInstance();
     logger.info("Got SymbolTable instance..");
+    profiler = new Profiler(mem, symTable);
+    mix = new InstructionMix(profiler);
 
     // Registers initialization
     gpr = new Register[32];
     gpr[0] = new R0();
 
     for (int i = 1; i < 32; i++) {
-      gpr[i] = new Register("R" + i);
+      gpr[i] = new Register("R" + i, Scoreboard.Bank.GPR, i);
     }
 
     pc = new Register("PC");
     old_pc = new Register("Old PC");
-    LO = new Register("LO");
-    HI = new Register("HI");
+    LO = new Register("LO", Scoreboard.Bank.SPECIAL, Scoreboard.LO);
+    HI = new Register("HI", Scoreboard.Bank.SPECIAL, Scoreboard.HI);
 
     //Floating point registers initialization
     fpr = new RegisterFP[32];
 
     for (int i = 0; i < 32; i++) {
-      fpr[i] = new RegisterFP();
+      fpr[i] = new RegisterFP(i);
     }
 
     FCSR = new FCSRRegister();
@@ -154,6 +210,17 @@ public class CPU {
     FPUConfigurator conf = new FPUConfigurator();
     knownFPInstructions = conf.getFPArithmeticInstructions();
     terminatingInstructionsOPCodes = conf.getTerminatingInstructions();
+    knownFPOpcodes = EnumSet.noneOf(Instruction.InstructionEnumerator.class);
+
+    for (String name : knownFPInstructions) {
+      knownFPOpcodes.add(Instruction.InstructionEnumerator.valueOf(name.replace('.', '_')));
+    }
+
+    terminatingEncodings = new HashSet<Integer>();
+
+    for (String hex : terminatingInstructionsOPCodes) {
+      terminatingEncodings.add((int) Long.parseLong(hex, 16));
+    }
 
     //Branch Predictor init
     if(config.getBoolean("branch_prediction")) {
@@ -165,9 +232,74 @@ public class CPU {
     } else { PREDICTING_BRANCHES = false; }
     ALREADY_JUMPED = false;
 
+    registerMetrics();
     logger.info("CPU Created.");
   }
 
+  /** Publishes the counters of the CPU, and the simulation speed. The
+   * counters are read by other threads without synchronization: their
+   * values may be some cycles old. */
+  private void registerMetrics() {
+    Metrics metrics = Metrics.getInstance();
+    metrics.gauge("cycles", new Metrics.Gauge() {
+      public long getValue() {
+        return cycles;
+      }
+    });
+    metrics.gauge("instructions", new Metrics.Gauge() {
+      public long getValue() {
+        return instructions;
+      }
+    });
+    metrics.gauge("functional_instructions", new Metrics.Gauge() {
+      public long getValue() {
+        return functionalInstructions;
+      }
+    });
+    metrics.gauge("raw_stalls", new Metrics.Gauge() {
+      public long getValue() {
+        return RAWStalls;
+      }
+    });
+    metrics.gauge("waw_stalls", new Metrics.Gauge() {
+      public long getValue() {
+        return WAWStalls;
+      }
+    });
+    metrics.gauge("divider_stalls", new Metrics.Gauge() {
+      public long getValue() {
+        return dividerStalls;
+      }
+    });
+    metrics.gauge("func_unit_stalls", new Metrics.Gauge() {
+      public long getValue() {
+        return funcUnitStalls;
+      }
+    });
+    metrics.gauge("ex_stalls", new Metrics.Gauge() {
+      public long getValue() {
+        return exStalls;
+      }
+    });
+    metrics.gauge("memory_stalls", new Metrics.Gauge() {
+      public long getValue() {
+        return memoryStalls;
+      }
+    });
+    metrics.gauge("branch_misprediction_stalls", new Metrics.Gauge() {
+      public long getValue() {
+        return branchMispredictionStalls;
+      }
+    });
+    metrics.gauge("correct_branch_predictions", new Metrics.Gauge() {
+      public long getValue() {
+        return correctBranchPredictions;
+      }
+    });
+    metrics.rate("cycles_per_second", "cycles");
+    metrics.rate("instructions_per_second", "instructions");
+  }
+
 
 // SETTING PROPERTIES ------------------------------------------------------------------
   /** Sets the CPU status.
@@ -178,27 +310,85 @@ public class CPU {
     this.status = status;
   }
 
+  /** Sets the simulation mode. The FUNCTIONAL mode can only be entered when
+   *  the pipeline is empty, i.e. before the execution starts.
+   *  @param mode a SimulationMode value
+   */
+  public void setSimulationMode(SimulationMode mode) {
+    logger.info("Changing simulation mode to " + mode.name());
+    this.mode = mode;
+  }
+
+  /** Asks the CPU to go from the PIPELINED mode to the FUNCTIONAL one. The
+   *  instruction in IF is discarded and no other instruction is fetched; the
+   *  mode changes as soon as the instructions already in the pipeline have
+   *  completed, and the functional execution resumes from the first
+   *  instruction that did not enter the pipeline. Ignored in the
+   *  OUT_OF_ORDER and SUPERSCALAR modes.
+   */
+  public void requestFunctionalMode() {
+    if (mode != SimulationMode.PIPELINED || draining) {
+      return;
+    }
+
+    logger.info("Draining the pipeline before entering the functional mode");
+    draining = true;
+    Instruction fetched = pipe.get(PipeStatus.IF);
+
+    if (fetched != null && !fetched.isBubble()) {
+      // The instruction in IF will be executed functionally.
+      drainResumePC = old_pc.getValue();
+      pipe.put(PipeStatus.IF, Instruction.buildInstruction("BUBBLE"));
+    } else {
+      drainResumePC = pc.getValue();
+    }
+  }
+
+  /** Returns true if the pipeline is being drained before entering the
+   *  FUNCTIONAL mode. */
+  public boolean isDraining() {
+    return draining;
+  }
+
+  /** Sets the point in which the CPU switches from the FUNCTIONAL mode to the
+   *  PIPELINED one. The switch happens as soon as one of the conditions is met.
+   *  @param pc address of the first instruction to execute in the pipeline, -1 to disable
+   *  @param count number of instructions to execute functionally, 0 to disable
+   */
+  public void setFunctionalSwitchPoint(long pc, int count) {
+    functionalSwitchPC = pc;
+    functionalSwitchCount = count;
+  }
+
   /** Sets the flag bits of the FCSR
-  * @param tag a string value between  V  Z O U I
+  * @param flag the exception
   * @param value a binary value
    */
-  public void setFCSRFlags(String tag, int value) throws IrregularStringOfBitsException {
-    FCSR.setFCSRFlags(tag, value);
+  public void setFCSRFlags(FCSRRegister.Flag flag, int value) {
+    FCSR.setFCSRFlags(flag, value);
   }
 
   /** Sets the cause bits of the FCSR
-  * @param tag a string value between  V  Z O U I
+  * @param flag the exception
   * @param value a binary value
    */
-  public void setFCSRCause(String tag, int value) throws IrregularStringOfBitsException {
-    FCSR.setFCSRCause(tag, value);
+  public void setFCSRCause(FCSRRegister.Flag flag, int value) {
+    FCSR.setFCSRCause(flag, value);
+  }
+
+  /** Signals an IEEE exception, setting its cause bit and, if it is not
+   *  enabled, its flag bit.
+   *  @return true if the exception is enabled and must trap
+   */
+  public boolean signalFPException(FCSRRegister.Flag flag) {
+    return FCSR.signal(flag);
   }
 
   /** Sets the selected FCC bit of the FCSR
    * @param cc condition code is an int value in the range [0,7]
    * @param condition the binary value of the relative bit
    */
-  public void setFCSRConditionCode(int cc, int condition) throws IrregularStringOfBitsException {
+  public void setFCSRConditionCode(int cc, int condition) {
     FCSR.setFCSRConditionCode(cc, condition);
   }
 
@@ -263,13 +453,22 @@ public class CPU {
     return fpPipe.isFuncUnitFilled(funcUnit, stage);
   }
 
+  /** Returns true if the instruction must pass through the FPU pipeline. */
+  public static boolean isFPArithmetic(Instruction instr) {
+    if (instr.getOpcode() == null) {
+      return knownFPInstructions.contains(instr.getName());
+    }
+
+    return knownFPOpcodes.contains(instr.getOpcode());
+  }
+
   /** Returns true if the pipeline is empty. In this case, if CPU is in stopping state
    *  we can halt the pipeline. The sufficient condition in order to return true is that fpPipe doesn't work
    *  and it hadn't issued any instrution now in the MEM stage */
   public boolean isPipelinesEmpty() {
-    boolean empty = pipe.get(PipeStatus.ID) == null || pipe.get(PipeStatus.ID).getName().equals(" ");
-    empty = empty && (pipe.get(PipeStatus.EX) == null || pipe.get(PipeStatus.EX).getName().equals(" "));
-    empty = empty && (pipe.get(PipeStatus.MEM) == null || pipe.get(PipeStatus.MEM).getName().equals(" "));
+    boolean empty = pipe.get(PipeStatus.ID) == null || pipe.get(PipeStatus.ID).isBubble();
+    empty = empty && (pipe.get(PipeStatus.EX) == null || pipe.get(PipeStatus.EX).isBubble());
+    empty = empty && (pipe.get(PipeStatus.MEM) == null || pipe.get(PipeStatus.MEM).isBubble());
     // WB is not checked because currently this method is called before the
     // instruction in WB is removed from the pipeline.
     empty = empty && fpPipe.isEmpty();
@@ -291,6 +490,11 @@ public class CPU {
     return FCSR.getBinString();
   }
 
+  /** Gets the Floating Point Control Status Register */
+  public FCSRRegister getFCSRRegister() {
+    return FCSR;
+  }
+
   /** Gets the selected FCC bit of the FCSR
    * @param cc condition code is an int value in the range [0,7]
    */
@@ -330,6 +534,20 @@ public class CPU {
     return instructions;
   }
 
+  /** Returns the number of instructions executed in FUNCTIONAL mode
+   *  @return an integer
+   */
+  public int getFunctionalInstructions() {
+    return functionalInstructions;
+  }
+
+  /** Gets the simulation mode
+   *  @return a SimulationMode value
+   */
+  public SimulationMode getSimulationMode() {
+    return mode;
+  }
+
   /** Returns the number of RAW Stalls that happened inside the pipeline
    * @return an integer
    */
@@ -337,6 +555,151 @@ public class CPU {
     return RAWStalls;
   }
 
+  /** Returns the number of RAW stalls avoided by a forwarding path
+   * @param path the forwarding path
+   * @return an integer
+   */
+  public int getAvoidedStalls(ForwardingNetwork.Path path) {
+    return ForwardingNetwork.getInstance().getAvoidedStalls(path);
+  }
+
+  /** Returns the number of cycles in which the OUT_OF_ORDER mode could not
+   * issue an instruction because the reorder buffer or the reservation
+   * stations were full
+   * @return an integer
+   */
+  public int getIssueStalls() {
+    return engine.getIssueStalls();
+  }
+
+  /** Returns the number of cycles spent in the reservation stations by the
+   * instructions waiting for their operands or functional unit
+   * @return an integer
+   */
+  public int getDispatchStalls() {
+    return engine.getDispatchStalls();
+  }
+
+  /** Returns the number of cycles spent by the instructions waiting for the
+   * common data bus
+   * @return an integer
+   */
+  public int getCompleteStalls() {
+    return engine.getCompleteStalls();
+  }
+
+  /** Returns the number of cycles in which the OUT_OF_ORDER mode could not
+   * commit because the oldest instruction had not completed
+   * @return an integer
+   */
+  public int getCommitStalls() {
+    return engine.getCommitStalls();
+  }
+
+  /** Returns the per-address profile of the execution. */
+  public Profiler getProfiler() {
+    return profiler;
+  }
+
+  /** Returns the histograms of the executed instructions. */
+  public InstructionMix getInstructionMix() {
+    return mix;
+  }
+
+  /** Records the outcome of a branch, when it is resolved in ID or EX.
+   * Called by the branch instructions. */
+  public void branchResolved(Instruction branch, boolean taken) {
+    mix.branch(branch, taken);
+  }
+
+  /** Records that an instruction other than a bubble left the CPU in the
+   * current cycle. */
+  void retired(Instruction instr) {
+    profiler.retire(instr, cycles);
+    mix.retire(instr);
+  }
+
+  /** Returns the number of instructions issued per cycle in the SUPERSCALAR
+   * mode
+   * @return an integer
+   */
+  public int getIssueWidth() {
+    return superscalar.getIssueWidth();
+  }
+
+  /** Sets the number of instructions issued per cycle in the SUPERSCALAR
+   * mode. Must be called before the execution starts.
+   * @param width the issue width
+   */
+  public void setIssueWidth(int width) {
+    superscalar.setIssueWidth(width);
+  }
+
+  /** Returns the number of cycles in which an issue slot of the SUPERSCALAR
+   * mode was used
+   * @param slot the index of the slot, from 0 to the issue width - 1
+   * @return an integer
+   */
+  public int getSlotIssues(int slot) {
+    return superscalar.getSlotIssues(slot);
+  }
+
+  /** Returns the number of cycles in which the SUPERSCALAR mode stopped
+   * issuing because an operand was not ready
+   * @return an integer
+   */
+  public int getSuperscalarDependencyStalls() {
+    return superscalar.getDependencyStalls();
+  }
+
+  /** Returns the number of dependency stalls of the SUPERSCALAR mode caused
+   * by an instruction issued in the same cycle
+   * @return an integer
+   */
+  public int getGroupDependencyStalls() {
+    return superscalar.getGroupDependencyStalls();
+  }
+
+  /** Returns the number of cycles in which the SUPERSCALAR mode stopped
+   * issuing because a functional unit was busy
+   * @return an integer
+   */
+  public int getSuperscalarStructuralStalls() {
+    return superscalar.getStructuralStalls();
+  }
+
+  /** Returns the number of RAW stalls caused by each instruction
+   * @return a map from the names of the instructions to the number of stalls
+   */
+  public Map<String, Integer> getRAWStallCauses() {
+    return Collections.unmodifiableMap(rawStallCauses);
+  }
+
+  /** Returns the number of WAW stalls caused by each instruction
+   * @return a map from the names of the instructions to the number of stalls
+   */
+  public Map<String, Integer> getWAWStallCauses() {
+    return Collections.unmodifiableMap(wawStallCauses);
+  }
+
+  /** Returns the instruction that prevented the issue of the instruction in
+   * ID during the last cycle, if any
+   * @return an Instruction, or null
+   */
+  public Instruction getBlocker() {
+    return (Instruction) Scoreboard.getInstance().getBlocker();
+  }
+
+  /** Counts a stall for the instruction that blocks the one in ID. */
+  private void countStallCause(Map<String, Integer> causes) {
+    Instruction blocker = getBlocker();
+
+    if (blocker != null) {
+      Integer n = causes.get(blocker.getName());
+      causes.put(blocker.getName(), (n == null) ? 1 : n + 1);
+    }
+  }
+
   /** Returns the number of WAW stalls that happened inside the pipeline
    * @return an integer
    */
@@ -482,6 +845,62 @@ public class CPU {
       throw new StoppedCPUException();
     }
 
+    if (draining && isPipelineDrained()) {
+      logger.info("Pipeline drained, resuming functionally at PC " + drainResumePC);
+      draining = false;
+      clearPipe();
+      pc.writeDoubleWord(drainResumePC);
+      setSimulationMode(SimulationMode.FUNCTIONAL);
+    }
+
+    if (mode == SimulationMode.FUNCTIONAL) {
+      if (!isFunctionalSwitchPointReached()) {
+        try {
+          functionalStep(masked, terminate);
+        } catch (HaltException ex) {
+          flushOutput();
+          throw ex;
+        }
+
+        return;
+      }
+
+      logger.info("Functional switch point reached at PC " + pc.getValue());
+      setSimulationMode(SimulationMode.PIPELINED);
+    }
+
+    if (mode == SimulationMode.OUT_OF_ORDER) {
+      logger.info("\n\nStarting out-of-order cycle " + ++cycles);
+      int committed = engine.getCommitted();
+
+      try {
+        engine.step(masked, terminate);
+      } catch (HaltException ex) {
+        flushOutput();
+        throw ex;
+      } finally {
+        instructions += engine.getCommitted() - committed;
+      }
+
+      return;
+    }
+
+    if (mode == SimulationMode.SUPERSCALAR) {
+      logger.info("\n\nStarting superscalar cycle " + ++cycles);
+      int completed = superscalar.getCompleted();
+
+      try {
+        superscalar.step(masked, terminate);
+      } catch (HaltException ex) {
+        flushOutput();
+        throw ex;
+      } finally {
+        instructions += superscalar.getCompleted() - completed;
+      }
+
+      return;
+    }
+
     try {
       // Stages are executed from the last one (WB) to the first one (IF). After the
       // logic for the given stage is executed, the instruction is moved to the next
@@ -494,15 +913,16 @@ public class CPU {
       // *** WB: write-back stage
       // *************************
       if (pipe.get(PipeStatus.WB) != null) {
-        boolean terminatorInstrInWB = terminatingInstructionsOPCodes.contains(pipe.get(PipeStatus.WB).getRepr().getHexString());
+        boolean terminatorInstrInWB = terminatingEncodings.contains(pipe.get(PipeStatus.WB).getEncoding());
         //we have to execute the WB method only if some conditions occur
         //the current instruction in WB is a terminating instruction and the fpPipe is working
         boolean notWBable = terminatorInstrInWB && !fpPipe.isEmpty();
         //the current instruction in WB is a terminating instruction, the fpPipe doesn't work because it has just issued an instruction and it is in the MEM stage
-        notWBable = notWBable || (terminatorInstrInWB && !pipe.get(PipeStatus.MEM).getName().equals(" "));
+        notWBable = notWBable || (terminatorInstrInWB && !pipe.get(PipeStatus.MEM).isBubble());
 
-        if (!pipe.get(PipeStatus.WB).getName().equals(" ")) {
+        if (!pipe.get(PipeStatus.WB).isBubble()) {
           instructions++;
+          retired(pipe.get(PipeStatus.WB));
         }
 
         if (!notWBable) {
@@ -510,6 +930,8 @@ public class CPU {
           pipe.get(PipeStatus.WB).WB();
         }
 
+        ForwardingNetwork.getInstance().retire(pipe.get(PipeStatus.WB));
+
         // Move the instruction in WB out of the pipeline.
         logger.info("Instruction " + pipe.get(PipeStatus.WB) + " has been completed. Removing it.");
         pipe.put(PipeStatus.WB, null);
@@ -576,8 +998,9 @@ public class CPU {
         pipe.put(PipeStatus.EX, null);
       } else {
         //a structural stall has to be raised if the EX stage contains an instruction different from a bubble or other fu's contain instructions (counter of structural stalls must be incremented)
-        if ((pipe.get(PipeStatus.EX) != null && !(pipe.get(PipeStatus.EX).getName().compareTo(" ") == 0)) || fpPipe.getNReadyToExitInstr() > 1) {
+        if ((pipe.get(PipeStatus.EX) != null && !pipe.get(PipeStatus.EX).isBubble()) || fpPipe.getNReadyToExitInstr() > 1) {
           memoryStalls++;
+          profiler.stall(Profiler.Stall.MEMORY, pipe.get(PipeStatus.EX), 1, null);
         }
 
         //the fpPipe is issuing an instruction and the EX method has to be called on it
@@ -622,9 +1045,11 @@ public class CPU {
       currentPipeStatus = PipeStatus.ID;
 
       if (pipe.get(PipeStatus.ID) != null) {
+        Scoreboard.getInstance().setIssuing(pipe.get(PipeStatus.ID));
+
         //if an FP instruction fills the ID stage a checking for InputStructuralStall must be performed before the ID() invocation.
         //This operation is carried out by checking if the fpPipe could accept the instruction we would insert in it (2nd condition)
-        if (knownFPInstructions.contains(pipe.get(PipeStatus.ID).getName())) {
+        if (isFPArithmetic(pipe.get(PipeStatus.ID))) {
           //it is an FPArithmetic and it must be inserted in the fppipe
           //the fu is free
           if (fpPipe.putInstruction(pipe.get(PipeStatus.ID), true) == 0) {
@@ -637,7 +1062,7 @@ public class CPU {
             fpPipe.putInstruction(pipe.get(PipeStatus.ID), false);
             pipe.put(PipeStatus.ID, null);
           } else { //the fu is filled by another instruction
-            if (pipe.get(PipeStatus.ID).getName().compareToIgnoreCase("DIV.D") == 0) {
+            if (pipe.get(PipeStatus.ID).getOpcode() == Instruction.InstructionEnumerator.DIV_D) {
               throw new FPDividerNotAvailableException();
             } else {
               throw new FPFunctionalUnitNotAvailableException();
@@ -647,7 +1072,7 @@ public class CPU {
         //if an integer instruction or an FP instruction that will not pass through the FP pipeline fills the ID stage a checking for
         //InputStructuralStall (second type) must be performed. We must control if the EX stage is filled by another instruction, in this case we have to raise a stall
         else {
-          if (pipe.get(PipeStatus.EX) == null || /*testing*/ pipe.get(PipeStatus.EX).getName().compareTo(" ") == 0) {
+          if (pipe.get(PipeStatus.EX) == null || /*testing*/ pipe.get(PipeStatus.EX).isBubble()) {
             if (fpPipe.isEmpty() || (!fpPipe.isEmpty() /* && !terminatingInstructionsOPCodes.contains(pipe.get(PipeStatus.ID).getRepr().getHexString())*/)) {
               logger.info("Executing ID() for " + pipe.get(PipeStatus.ID));
               // Can change the CPU status from RUNNING to STOPPING.
@@ -688,7 +1113,9 @@ public class CPU {
 
         logger.info("Moving " + pipe.get(PipeStatus.IF) + " to ID");
         pipe.put(PipeStatus.ID, pipe.get(PipeStatus.IF));
-        Instruction next_if = mem.getInstruction(pc);
+        // While draining, the PC keeps advancing as if instructions were
+        // fetched, because the instructions in ID and EX rely on it.
+        Instruction next_if = draining ? Instruction.buildInstruction("BUBBLE") : mem.getInstruction(pc);
         logger.info("Fetched new instruction " + next_if);
         old_pc.writeDoubleWord((pc.getValue()));
         pc.writeDoubleWord((pc.getValue()) + 4);
@@ -723,7 +1150,7 @@ public class CPU {
 
       // A J-Type instruction has just modified the Program Counter. We need to
       // put in the IF state the instruction the PC points to
-      pipe.put(PipeStatus.IF, mem.getInstruction(pc));
+      pipe.put(PipeStatus.IF, fetchAfterRedirect());
       pipe.put(PipeStatus.EX, pipe.get(PipeStatus.ID));
       pipe.put(PipeStatus.ID, Instruction.buildInstruction("BUBBLE"));
       old_pc.writeDoubleWord((pc.getValue()));
@@ -736,12 +1163,13 @@ public class CPU {
     } catch (BranchMispredictionException ex) {
 
       branchMispredictionStalls = branchMispredictionStalls + 2;
+      profiler.stall(Profiler.Stall.BRANCH_MISPREDICTION, pipe.get(PipeStatus.EX), 2, null);
       logger.info("BranchMisprediction stalls incremented to " + RAWStalls);
 
       // A J-Type instruction has just modified the Program Counter. We need to
       // put in the IF state the instruction the PC points to
       pipe.put(PipeStatus.MEM, pipe.get(PipeStatus.EX));    
-      pipe.put(PipeStatus.IF, mem.getInstruction(pc));
+      pipe.put(PipeStatus.IF, fetchAfterRedirect());
       pipe.put(PipeStatus.ID, Instruction.buildInstruction("BUBBLE"));
       pipe.put(PipeStatus.EX, Instruction.buildInstruction("BUBBLE"));
       old_pc.writeDoubleWord((pc.getValue()));
@@ -758,6 +1186,8 @@ public class CPU {
 
       RAWStalls++;
       logger.info("RAW stalls incremented to " + RAWStalls);
+      countStallCause(rawStallCauses);
+      profiler.stall(Profiler.Stall.RAW, pipe.get(currentPipeStatus), 1, getBlocker());
 
       if (syncex != null) {
         throw new SynchronousException(syncex);
@@ -772,6 +1202,8 @@ public class CPU {
 
       WAWStalls++;
       logger.info("WAW stalls incremented to " + RAWStalls);
+      countStallCause(wawStallCauses);
+      profiler.stall(Profiler.Stall.WAW, pipe.get(currentPipeStatus), 1, getBlocker());
 
       if (syncex != null) {
         throw new SynchronousException(syncex);
@@ -782,6 +1214,7 @@ public class CPU {
       }
 
       dividerStalls++;
+      profiler.stall(Profiler.Stall.DIVIDER, pipe.get(currentPipeStatus), 1, null);
 
       if (syncex != null) {
         throw new SynchronousException(syncex);
@@ -793,12 +1226,14 @@ public class CPU {
       }
 
       funcUnitStalls++;
+      profiler.stall(Profiler.Stall.FUNC_UNIT, pipe.get(currentPipeStatus), 1, null);
 
       if (syncex != null) {
         throw new SynchronousException(syncex);
       }
     } catch (EXNotAvailableException ex) {
       exStalls++;
+      profiler.stall(Profiler.Stall.EX, pipe.get(currentPipeStatus), 1, null);
 
       if (syncex != null) {
         throw new SynchronousException(syncex);
@@ -808,6 +1243,7 @@ public class CPU {
       throw ex;
     } catch (HaltException ex) {
       pipe.put(PipeStatus.WB, null);
+      flushOutput();
       throw ex;
     } finally {
       logger.info("End of cycle " + cycles + "\n---------------------------------------------\n" + pipeLineString() + "\n");
@@ -815,6 +1251,128 @@ public class CPU {
   }
 
 
+  /** Shows all the output of the program, when it terminates. */
+  private void flushOutput() {
+    try {
+      IOManager.getInstance().flush();
+    } catch (IOException e) {
+      logger.warning("Could not flush the standard output: " + e);
+    }
+  }
+
+  /** Fetches the instruction pointed by the PC after a jump or a branch
+   *  misprediction. While draining, the instruction is not fetched, but it
+   *  becomes the point where the functional execution will resume. */
+  private Instruction fetchAfterRedirect() throws HaltException, IrregularStringOfBitsException {
+    if (draining) {
+      drainResumePC = pc.getValue();
+      return Instruction.buildInstruction("BUBBLE");
+    }
+
+    return mem.getInstruction(pc);
+  }
+
+  /** Returns true if no instruction is in the integer and FP pipelines. */
+  private boolean isPipelineDrained() {
+    for (Instruction i : pipe.values()) {
+      if (i != null && !i.isBubble()) {
+        return false;
+      }
+    }
+
+    return fpPipe.isEmpty();
+  }
+
+  private boolean isFunctionalSwitchPointReached() {
+    return (functionalSwitchPC >= 0 && pc.getValue() == functionalSwitchPC) ||
+           (functionalSwitchCount > 0 && functionalInstructions >= functionalSwitchCount);
+  }
+
+  /** Executes the instruction pointed by the PC from IF to WB, without any
+   *  pipeline modelling. The instruction sees PC + 4 in IF and PC + 8 in the
+   *  following stages, as if the next instruction had already been fetched,
+   *  which is what the branch and jump instructions expect.
+   */
+  private void functionalStep(boolean masked, boolean terminate) throws AddressErrorException, HaltException, IrregularWriteOperationException, MemoryElementNotFoundException, IrregularStringOfBitsException, TwosComplementSumException, SynchronousException, BreakException, NotAlignException {
+    Instruction instr = mem.getInstruction(pc);
+
+    if (!instr.isBubble()) {
+      functionalInstructions++;
+      retired(instr);
+    }
+
+    execute(instr, masked, terminate);
+  }
+
+  /** Executes the given instruction, that must be the one pointed by the PC,
+   *  from IF to WB. Used by the FUNCTIONAL, OUT_OF_ORDER and SUPERSCALAR
+   *  modes.
+   */
+  void execute(Instruction instr, boolean masked, boolean terminate) throws AddressErrorException, HaltException, IrregularWriteOperationException, MemoryElementNotFoundException, IrregularStringOfBitsException, TwosComplementSumException, SynchronousException, BreakException, NotAlignException {
+    boolean breaking = false;
+    String syncex = null;
+
+    logger.info("Functional execution of " + instr);
+    old_pc.writeDoubleWord(pc.getValue());
+    pc.writeDoubleWord(pc.getValue() + 4);
+
+    try {
+      instr.IF();
+    } catch (BreakException e) {
+      breaking = true;
+    }
+
+    // IF may have changed the PC (branch prediction).
+    long next = pc.getValue();
+    boolean redirected = false;
+    pc.writeDoubleWord(next + 4);
+
+    try {
+      Scoreboard.getInstance().setIssuing(instr);
+      instr.ID();
+    } catch (JumpException e) {
+      // The PC already contains the jump target.
+      redirected = true;
+    } catch (RAWException e) {
+      throw new IllegalStateException("RAW hazard in functional mode: " + instr);
+    } catch (WAWException e) {
+      throw new IllegalStateException("WAW hazard in functional mode: " + instr);
+    }
+
+    try {
+      instr.EX();
+    } catch (JumpException e) {
+      redirected = true;
+    } catch (BranchMispredictionException e) {
+      // EX has already written the right PC.
+      redirected = true;
+    } catch (SynchronousException e) {
+      if (masked) {
+        logger.info("[EXCEPTION] [MASKED] " + e.getCode());
+      } else if (terminate) {
+        throw new SynchronousException(e.getCode());
+      } else {
+        syncex = e.getCode();
+      }
+    }
+
+    if (!redirected) {
+      pc.writeDoubleWord(next);
+    }
+
+    instr.MEM();
+    instr.WB();
+    ForwardingNetwork.getInstance().retire(instr);
+
+    if (breaking) {
+      throw new BreakException();
+    }
+
+    if (syncex != null) {
+      throw new SynchronousException(syncex);
+    }
+  }
+
   /** This method resets the CPU components (GPRs, memory,statistics,
    *   PC, pipeline and Symbol table).
    *   It resets also the Dinero Tracefile object associated to the current
@@ -824,6 +1382,22 @@ public class CPU {
     // Reset CPU state.
     config = ConfigManager.getConfig();
     status = CPUStatus.READY;
+    mode = config.getBoolean("functional_mode") ? SimulationMode.FUNCTIONAL : SimulationMode.PIPELINED;
+
+    if (config.getBoolean("out_of_order")) {
+      mode = SimulationMode.OUT_OF_ORDER;
+    } else if (config.getBoolean("superscalar")) {
+      mode = SimulationMode.SUPERSCALAR;
+    }
+
+    engine.reset(config);
+    superscalar.reset(config);
+    profiler.reset();
+    mix.reset();
+    functionalSwitchPC = config.getInt("functional_switch_pc");
+    functionalSwitchCount = config.getInt("functional_switch_count");
+    functionalInstructions = 0;
+    draining = false;
     cycles = 0;
     instructions = 0;
     RAWStalls = 0;
@@ -834,6 +1408,10 @@ public class CPU {
     memoryStalls = 0;
     branchMispredictionStalls = 0;
     correctBranchPredictions = 0;
+    ForwardingNetwork.getInstance().reset();
+    Scoreboard.getInstance().reset();
+    rawStallCauses.clear();
+    wawStallCauses.clear();
 
     // Reset registers.
     for (int i = 0; i < 32; i++) {
@@ -855,26 +1433,8 @@ public class CPU {
     } else { PREDICTING_BRANCHES = false; }
     ALREADY_JUMPED = false;
 
-    try {
-      // Reset the FCSR condition codes.
-      for (int cc = 0; cc < 8; cc++) {
-        setFCSRConditionCode(cc, 0);
-      }
-
-      // Reset the FCSR flags.
-      setFCSRFlags("V", 0);
-      setFCSRFlags("O", 0);
-      setFCSRFlags("U", 0);
-      setFCSRFlags("Z", 0);
-
-      // Reset the FCSR cause bits.
-      setFCSRCause("V", 0);
-      setFCSRCause("O", 0);
-      setFCSRCause("U", 0);
-      setFCSRCause("Z", 0);
-    } catch (IrregularStringOfBitsException ex) {
-      ex.printStackTrace();
-    }
+    // Reset the FCSR condition codes, flags and cause bits.
+    FCSR.resetStatus();
 
 
     LO.reset();
@@ -948,26 +1508,18 @@ public class CPU {
   }
 
   public void configFPExceptionsAndRM() {
-    try {
-      FCSR.setFPExceptions(CPU.FPExceptions.INVALID_OPERATION, config.getBoolean("INVALID_OPERATION"));
-      FCSR.setFPExceptions(CPU.FPExceptions.OVERFLOW, config.getBoolean("OVERFLOW"));
-      FCSR.setFPExceptions(CPU.FPExceptions.UNDERFLOW, config.getBoolean("UNDERFLOW"));
-      FCSR.setFPExceptions(CPU.FPExceptions.DIVIDE_BY_ZERO, config.getBoolean("DIVIDE_BY_ZERO"));
-
-      //setting the rounding mode
-      if (config.getBoolean("NEAREST")) {
-        FCSR.setFCSRRoundingMode(FPRoundingMode.TO_NEAREST);
-      } else if (config.getBoolean("TOWARDZERO")) {
-        FCSR.setFCSRRoundingMode(FPRoundingMode.TOWARD_ZERO);
-      } else if (config.getBoolean("TOWARDS_PLUS_INFINITY")) {
-        FCSR.setFCSRRoundingMode(FPRoundingMode.TOWARDS_PLUS_INFINITY);
-      } else if (config.getBoolean("TOWARDS_MINUS_INFINITY")) {
-        FCSR.setFCSRRoundingMode(FPRoundingMode.TOWARDS_MINUS_INFINITY);
-      }
-    } catch (IrregularStringOfBitsException ex) {
-      Logger.getLogger(CPU.class.getName()).log(Level.SEVERE, null, ex);
+    FCSR.setEnables(FCSRRegister.configuredEnables(config));
+
+    //setting the rounding mode
+    if (config.getBoolean("NEAREST")) {
+      FCSR.setFCSRRoundingMode(FPRoundingMode.TO_NEAREST);
+    } else if (config.getBoolean("TOWARDZERO")) {
+      FCSR.setFCSRRoundingMode(FPRoundingMode.TOWARD_ZERO);
+    } else if (config.getBoolean("TOWARDS_PLUS_INFINITY")) {
+      FCSR.setFCSRRoundingMode(FPRoundingMode.TOWARDS_PLUS_INFINITY);
+    } else if (config.getBoolean("TOWARDS_MINUS_INFINITY")) {
+      FCSR.setFCSRRoundingMode(FPRoundingMode.TOWARDS_MINUS_INFINITY);
     }
-
   }
 
   public String toString() {
@@ -983,7 +1535,7 @@ public class CPU {
   // TODO: DEVE IMPOSTARE I SEMAFORI?????
   private class R0 extends Register {
     public R0() {
-      super("R0");
+      super("R0", Scoreboard.Bank.GPR, 0);
     }
     public long getValue() {
       return (long) 0;
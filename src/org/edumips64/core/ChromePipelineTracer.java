@@ -0,0 +1,169 @@
+/* ChromePipelineTracer.java
+ *
+ * Chrome trace / Perfetto JSON format for the pipeline timeline.
+ * (c) 2016 EduMIPS64 project
+ *
+ * This file is part of the EduMIPS64 project, and is released under the GNU
+ * General Public License.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.edumips64.core;
+
+import org.edumips64.core.is.Instruction;
+
+import java.io.*;
+
+/** Writes the pipeline timeline in the JSON array format of the Chrome trace
+ * event profiler, which is also understood by Perfetto.
+ *
+ * Every slot of the pipeline is a thread of a single process, and a clock
+ * cycle is mapped to one microsecond. Consecutive cycles spent by the same
+ * instruction in the same slot are merged in a single complete ("X") event,
+ * and so are consecutive stalls of the same kind, which are drawn on an
+ * additional "Stalls" thread. Only the currently open event of every slot is
+ * kept in memory.
+ *
+ * The array format doesn't require the closing bracket, so a trace of a run
+ * that was interrupted can still be loaded.
+ */
+public class ChromePipelineTracer extends PipelineTracer {
+  private static final int STALLS_TID = SLOTS + 1;
+
+  private Writer out;
+  private StringBuilder sb;
+
+  // Open event of every slot.
+  private Instruction[] open;
+  private int[] openStart;
+  private int openStalls, openStallsStart;
+  private int lastCycle;
+
+  public ChromePipelineTracer(OutputStream os) throws IOException {
+    out = new OutputStreamWriter(os, "UTF-8");
+    sb = new StringBuilder(256);
+    open = new Instruction[SLOTS];
+    openStart = new int[SLOTS];
+    out.write("[\n");
+    out.write("{\"name\":\"process_name\",\"ph\":\"M\",\"pid\":1,\"args\":{\"name\":\"EduMIPS64 pipeline\"}}");
+
+    for (int i = 0; i < SLOTS; ++i) {
+      writeThreadMetadata(i + 1, i, SLOT_NAMES[i]);
+    }
+
+    writeThreadMetadata(STALLS_TID, SLOTS, "Stalls");
+  }
+
+  private void writeThreadMetadata(int tid, int index, String name) throws IOException {
+    out.write(",\n{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":" + tid + ",\"args\":{\"name\":\"" + name + "\"}}");
+    out.write(",\n{\"name\":\"thread_sort_index\",\"ph\":\"M\",\"pid\":1,\"tid\":" + tid + ",\"args\":{\"sort_index\":" + index + "}}");
+  }
+
+  protected void writeCycle(int cycle, Instruction[] slots, int stalls) throws IOException {
+    for (int i = 0; i < SLOTS; ++i) {
+      if (open[i] != null && (slots[i] == null || slots[i].getSerialNumber() != open[i].getSerialNumber() || lastCycle + 1 != cycle)) {
+        writeInstructionEvent(i);
+      }
+
+      if (open[i] == null && slots[i] != null) {
+        open[i] = slots[i];
+        openStart[i] = cycle;
+      }
+    }
+
+    if (openStalls != 0 && (openStalls != stalls || lastCycle + 1 != cycle)) {
+      writeStallEvent();
+    }
+
+    if (openStalls == 0 && stalls != 0) {
+      openStalls = stalls;
+      openStallsStart = cycle;
+    }
+
+    lastCycle = cycle;
+  }
+
+  private void writeInstructionEvent(int slot) throws IOException {
+    Instruction i = open[slot];
+    sb.setLength(0);
+    sb.append(",\n{\"name\":");
+    appendString(i.getFullName());
+    sb.append(",\"cat\":\"").append(SLOT_NAMES[slot]).append('"');
+    sb.append(",\"ph\":\"X\",\"pid\":1,\"tid\":").append(slot + 1);
+    sb.append(",\"ts\":").append(openStart[slot]);
+    sb.append(",\"dur\":").append(lastCycle - openStart[slot] + 1);
+    sb.append(",\"args\":{\"serial\":").append(i.getSerialNumber()).append("}}");
+    out.write(sb.toString());
+    open[slot] = null;
+  }
+
+  private void writeStallEvent() throws IOException {
+    sb.setLength(0);
+    sb.append(",\n{\"name\":\"");
+    boolean first = true;
+
+    for (int bit = 0; bit < STALL_NAMES.length; ++bit) {
+      if ((openStalls & (1 << bit)) != 0) {
+        if (!first) {
+          sb.append('+');
+        }
+
+        sb.append(STALL_NAMES[bit]);
+        first = false;
+      }
+    }
+
+    sb.append("\",\"cat\":\"stall\",\"ph\":\"X\",\"pid\":1,\"tid\":").append(STALLS_TID);
+    sb.append(",\"ts\":").append(openStallsStart);
+    sb.append(",\"dur\":").append(lastCycle - openStallsStart + 1).append('}');
+    out.write(sb.toString());
+    openStalls = 0;
+  }
+
+  private void appendString(String s) {
+    sb.append('"');
+
+    for (int i = 0; i < s.length(); ++i) {
+      char c = s.charAt(i);
+
+      if (c == '"' || c == '\\') {
+        sb.append('\\');
+      }
+
+      if (c < 0x20) {
+        sb.append(' ');
+      } else {
+        sb.append(c);
+      }
+    }
+
+    sb.append('"');
+  }
+
+  public void close() throws IOException {
+    for (int i = 0; i < SLOTS; ++i) {
+      if (open[i] != null) {
+        writeInstructionEvent(i);
+      }
+    }
+
+    if (openStalls != 0) {
+      writeStallEvent();
+    }
+
+    out.write("\n]\n");
+    out.close();
+  }
+}
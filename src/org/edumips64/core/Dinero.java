@@ -42,6 +42,16 @@ public class Dinero {
   /**Singlethon constructor */
   private Dinero() {
     dineroData = new LinkedList <String>();
+    Metrics.getInstance().gauge("dinero_trace_records", new Metrics.Gauge() {
+      public long getValue() {
+        return getSize();
+      }
+    });
+  }
+
+  /** Returns the number of accesses recorded in the trace. */
+  public int getSize() {
+    return dineroData.size();
   }
   public static Dinero getInstance() {
     if (dinero == null) {
@@ -65,19 +75,35 @@ public class Dinero {
   /**
    */
   public void Load(String address, int nByte) {
+    try {
+      Load(Long.parseLong(Converter.hexToLong("0x" + address)), nByte);
+    } catch (IrregularStringOfHexException ex) {
+      ex.printStackTrace();
+    }
+  }
+
+  /** Records a load from the given address, without string conversions.
+   */
+  public void Load(long address, int nByte) {
     if (offset == 0) {
       findOffset();
     }
 
-    try {
-      long addr = Long.parseLong(Converter.hexToLong("0x" + address));
-      addr += offset;
-      dineroData.add("r " + Converter.binToHex(Converter.intToBin(64, addr)) + " " + nByte);
-    } catch (IrregularStringOfHexException ex) {
-      ex.printStackTrace();
-    } catch (IrregularStringOfBitsException ex) {
-      ex.printStackTrace();
+    dineroData.add("r " + toHex(address + offset) + " " + nByte);
+  }
+
+  private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+  /** Returns the 16 hexadecimal digits of a 64-bit value. */
+  private static String toHex(long value) {
+    char[] digits = new char[16];
+
+    for (int i = 15; i >= 0; --i) {
+      digits[i] = HEX_DIGITS[(int)(value & 0xf)];
+      value >>>= 4;
     }
+
+    return new String(digits);
   }
   /**
    */
@@ -110,7 +136,7 @@ public class Dinero {
     CPU cpu = CPU.getInstance();
     int i;
 
-    for (i = 0; i < CPU.CODELIMIT; i++) {
+    for (i = 0; i < cpu.getMemory().getCodeSize(); i++) {
       if (cpu.getMemory().getInstruction(i * 4).getName().equals(" ")) {
         break;
       }
@@ -125,8 +151,9 @@ public class Dinero {
    *  @param buff the Writer to output the data to
    */
   public void writeTraceData(Writer buff) throws java.io.IOException {
-    for (int i = 0; i < dineroData.size(); i++) {
-      String tmp = dineroData.get(i) + "\n";
+    // The data is a linked list: get(i) would walk it from the start.
+    for (String record : dineroData) {
+      String tmp = record + "\n";
       buff.write(tmp, 0, tmp.length());
     }
   }
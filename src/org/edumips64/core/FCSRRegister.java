@@ -21,246 +21,261 @@
  * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
  */
 package org.edumips64.core;
-import org.edumips64.utils.*;
+
+import org.edumips64.utils.ConfigStore;
 
 /** This class models the Floating Point Control and Status Register
  * @author Massimo Trubia
  * */
 
-public class FCSRRegister extends BitSet32 {
-//SETTING PROPERTIES ----------------------------------------------------------
-  /** Sets the FCSR Enables bits (the numeration of the bitset bits goes in this way  0 1 .... 30 31
-  *    31 30 29 28 27 26 25  | 24 | 23 | 22 21 | 20 19 18 |17 16 15 14 13 12 | 11 10 9 8 7 | 6 5 4 3 2 | 1 0
-        *      FCC           | FS | FCC|  Impl |    000   |        Cause     |    Enables  |   Flags   |  RM
-  *       7  6  5  4  3  2  1  |       0               |  V  Z O U I | V Z O U I
-  * @param tag a string value between  V  Z O U I
-  * @param value a binary value
-  */
-  public void setFCSREnables(String tag, int value) throws IrregularStringOfBitsException {
-    if (tag.compareToIgnoreCase("V") == 0) {
-      setBits(String.valueOf(value), 20);
-    } else if (tag.compareToIgnoreCase("Z") == 0) {
-      setBits(String.valueOf(value), 21);
-    } else if (tag.compareToIgnoreCase("O") == 0) {
-      setBits(String.valueOf(value), 22);
-    } else if (tag.compareToIgnoreCase("U") == 0) {
-      setBits(String.valueOf(value), 23);
-    } else if (tag.compareToIgnoreCase("I") == 0) {  //not implemented
-      setBits(String.valueOf(value), 24);
+public class FCSRRegister {
+  /*  31 30 29 28 27 26 25  | 24 | 23 | 22 21 | 20 19 18 |17 16 15 14 13 12 | 11 10 9 8 7 | 6 5 4 3 2 | 1 0
+   *          FCC           | FS | FCC|  Impl |    000   |        Cause     |    Enables  |   Flags   |  RM
+   *   7  6  5  4  3  2  1  |       0               |  E V Z O U I     |  V Z O U I  | V Z O U I
+   *
+   * The register is stored in an int, using the bit numbers above.
+   */
+  private static final int FLAGS_SHIFT = 2;
+  private static final int ENABLES_SHIFT = 7;
+  private static final int CAUSE_SHIFT = 12;
+  private static final int FCC0_BIT = 23;
+  private static final int FCC1_BIT = 25;
+  private static final int RM_MASK = 3;
+
+  /** The IEEE exceptions, in the order of their bits inside the Flags,
+   *  Enables and Cause fields (I = Inexact is not implemented). */
+  public enum Flag {
+    I, U, O, Z, V;
+
+    /** Returns the mask of this exception inside a field. */
+    public int mask() {
+      return 1 << ordinal();
+    }
+  }
+
+  /** Mask of all the exceptions inside a field. */
+  public static final int ALL_FLAGS = (1 << 5) - 1;
+
+  private int value;
+
+  /** Returns the mask of the given exceptions inside a field, that can be
+   *  passed to the methods that set or clear several bits at once. */
+  public static int mask(Flag... flags) {
+    int m = 0;
+
+    for (Flag f : flags) {
+      m |= f.mask();
     }
 
+    return m;
   }
 
-  /** Sets the flags bits of the FCSR
-  * @param tag a string value between  V  Z O U I
-  * @param value a binary value
+  /** Returns the mask of the exceptions enabled by the configuration. */
+  public static int configuredEnables(ConfigStore config) {
+    int enables = 0;
+
+    if (config.getBoolean("INVALID_OPERATION")) {
+      enables |= Flag.V.mask();
+    }
+
+    if (config.getBoolean("OVERFLOW")) {
+      enables |= Flag.O.mask();
+    }
+
+    if (config.getBoolean("UNDERFLOW")) {
+      enables |= Flag.U.mask();
+    }
+
+    if (config.getBoolean("DIVIDE_BY_ZERO")) {
+      enables |= Flag.Z.mask();
+    }
+
+    return enables;
+  }
+
+//SETTING PROPERTIES ----------------------------------------------------------
+  /** Sets the given bits of the Flags field
+   * @param mask a mask of the exceptions (see mask())
+   */
+  public void setFlags(int mask) {
+    value |= (mask & ALL_FLAGS) << FLAGS_SHIFT;
+  }
+
+  /** Clears the given bits of the Flags field */
+  public void clearFlags(int mask) {
+    value &= ~((mask & ALL_FLAGS) << FLAGS_SHIFT);
+  }
+
+  /** Sets the given bits of the Cause field */
+  public void setCause(int mask) {
+    value |= (mask & ALL_FLAGS) << CAUSE_SHIFT;
+  }
+
+  /** Clears the given bits of the Cause field */
+  public void clearCause(int mask) {
+    value &= ~((mask & ALL_FLAGS) << CAUSE_SHIFT);
+  }
+
+  /** Replaces the whole Enables field
+   * @param mask a mask of the enabled exceptions
    */
-  public void setFCSRFlags(String tag, int value) throws IrregularStringOfBitsException {
-    if (tag.compareToIgnoreCase("V") == 0) {
-      setBits(String.valueOf(value), 25);
-    } else if (tag.compareToIgnoreCase("Z") == 0) {
-      setBits(String.valueOf(value), 26);
-    } else if (tag.compareToIgnoreCase("O") == 0) {
-      setBits(String.valueOf(value), 27);
-    } else if (tag.compareToIgnoreCase("U") == 0) {
-      setBits(String.valueOf(value), 28);
-    } else if (tag.compareToIgnoreCase("I") == 0) {  // not implemented
-      setBits(String.valueOf(value), 29);
+  public void setEnables(int mask) {
+    value = (value & ~(ALL_FLAGS << ENABLES_SHIFT)) | ((mask & ALL_FLAGS) << ENABLES_SHIFT);
+  }
+
+  /** Signals an IEEE exception: the cause bit is set, and if the exception
+   *  is not enabled (i.e. it does not trap) the flag bit is set too.
+   *  @return true if the exception is enabled, and therefore must trap
+   */
+  public boolean signal(Flag flag) {
+    int m = flag.mask();
+    value |= m << CAUSE_SHIFT;
+
+    if ((value & (m << ENABLES_SHIFT)) != 0) {
+      return true;
     }
+
+    value |= m << FLAGS_SHIFT;
+    return false;
+  }
+
+  /** Sets the FCSR Enables bits
+  * @param flag the exception
+  * @param value a binary value
+  */
+  public void setFCSREnables(Flag flag, int value) {
+    setBit(flag.mask() << ENABLES_SHIFT, value);
   }
 
   /** Sets the flags bits of the FCSR
-  * @param tag a string value between  V  Z O U I
+  * @param flag the exception
   * @param value a binary value
    */
-  public void setFCSRCause(String tag, int value) throws IrregularStringOfBitsException {
-    if (tag.compareToIgnoreCase("V") == 0) {
-      setBits(String.valueOf(value), 15);
-    } else if (tag.compareToIgnoreCase("Z") == 0) {
-      setBits(String.valueOf(value), 16);
-    } else if (tag.compareToIgnoreCase("O") == 0) {
-      setBits(String.valueOf(value), 17);
-    } else if (tag.compareToIgnoreCase("U") == 0) {
-      setBits(String.valueOf(value), 18);
-    } else if (tag.compareToIgnoreCase("I") == 0) {  // not implemented
-      setBits(String.valueOf(value), 19);
-    }
+  public void setFCSRFlags(Flag flag, int value) {
+    setBit(flag.mask() << FLAGS_SHIFT, value);
   }
 
+  /** Sets the cause bits of the FCSR
+  * @param flag the exception
+  * @param value a binary value
+   */
+  public void setFCSRCause(Flag flag, int value) {
+    setBit(flag.mask() << CAUSE_SHIFT, value);
+  }
 
   /** Sets the selected condition bit of the FCSR
    * @param cc condition code is an int value in the range [0,7]
    * @param condition the binary value of the relative bit
    */
-  public void setFCSRConditionCode(int cc, int condition) throws IrregularStringOfBitsException {
-    final int FCC0 = 8;
-    final int DISCONTINUITY = 1;
-    final int OFFSET = FCC0 - DISCONTINUITY;
+  public void setFCSRConditionCode(int cc, int condition) {
+    setBit(conditionCodeMask(cc), condition);
+  }
 
-    if (cc == 0) {
-      setBits(String.valueOf(condition), FCC0);
-    } else {
-      setBits(String.valueOf(condition), OFFSET - cc);
-    }
+  /** Clears the condition codes, the Flags and the Cause fields, keeping the
+   *  Enables and the rounding mode. */
+  public void resetStatus() {
+    value &= (ALL_FLAGS << ENABLES_SHIFT) | RM_MASK;
   }
 
   /** Sets the current rouding mode
    * @param rm a constant that belongs to the following values TO_NEAREST ,TOWARD_ZERO,TOWARDS_PLUS_INFINITY,TOWARDS_MINUS_INFINITY*/
-  public void setFCSRRoundingMode(CPU.FPRoundingMode rm) throws IrregularStringOfBitsException {
-    final int FCSR_RM_FIELD_INIT = 30;
-
-    switch (rm) {
-    case TO_NEAREST:
-      setBits("00", FCSR_RM_FIELD_INIT);
-      break;
-    case TOWARD_ZERO:
-      setBits("01", FCSR_RM_FIELD_INIT);
-      break;
-    case TOWARDS_PLUS_INFINITY:
-      setBits("10", FCSR_RM_FIELD_INIT);
-      break;
-    case TOWARDS_MINUS_INFINITY:
-      setBits("11", FCSR_RM_FIELD_INIT);
-      break;
-    }
+  public void setFCSRRoundingMode(CPU.FPRoundingMode rm) {
+    // The constants of FPRoundingMode follow the encoding of the RM field.
+    value = (value & ~RM_MASK) | rm.ordinal();
   }
 
   /** Sets the floating point unit enabled exceptions
    *  @param exceptionName the exception name to set
    *  @param value boolean that is true in order to enable that exception or false for disabling it
    */
-  public  void setFPExceptions(CPU.FPExceptions exceptionName, boolean value) throws IrregularStringOfBitsException {
+  public  void setFPExceptions(CPU.FPExceptions exceptionName, boolean value) {
+    setFCSREnables(toFlag(exceptionName), value ? 1 : 0);
+  }
+
+  private void setBit(int mask, int bit) {
+    if (bit != 0) {
+      value |= mask;
+    } else {
+      value &= ~mask;
+    }
+  }
+
+  private static int conditionCodeMask(int cc) {
+    return 1 << ((cc == 0) ? FCC0_BIT : FCC1_BIT + cc - 1);
+  }
+
+  private static Flag toFlag(CPU.FPExceptions exceptionName) {
     switch (exceptionName) {
     case DIVIDE_BY_ZERO:
-      setFCSREnables("Z", (value == true) ? 1 : 0);
-      break;
+      return Flag.Z;
     case OVERFLOW:
-      setFCSREnables("O", (value == true) ? 1 : 0);
-      break;
+      return Flag.O;
     case UNDERFLOW:
-      setFCSREnables("U", (value == true) ? 1 : 0);
-      break;
-    case INVALID_OPERATION:
-      setFCSREnables("V", (value == true) ? 1 : 0);
-      break;
+      return Flag.U;
+    default:
+      return Flag.V;
     }
   }
 
 
 // GETTING PROPERTIES ---------------------------------------------------------------------
-  /** Gets the selected flag bit of the FCSR
-  * @param tag a string value between  V=Invalid  Z=Divide by zero O=Overflow U=Underflow I=Inexact (not implemented)
-   */
-  public boolean getFCSREnables(String tag) {
-    if (tag.compareToIgnoreCase("V") == 0) {
-      return (getBinString().charAt(20) == '1') ? true : false;
-    }
-
-    if (tag.compareToIgnoreCase("Z") == 0) {
-      return (getBinString().charAt(21) == '1') ? true : false;
-    }
-
-    if (tag.compareToIgnoreCase("O") == 0) {
-      return (getBinString().charAt(22) == '1') ? true : false;
-    }
-
-    if (tag.compareToIgnoreCase("U") == 0) {
-      return (getBinString().charAt(23) == '1') ? true : false;
-    }
-
-    if (tag.compareToIgnoreCase("I") == 0) {  //not implemented
-      return (getBinString().charAt(24) == '1') ? true : false;
-    }
-
-    return false;
+  /** Gets the whole register as an int */
+  public int getValue() {
+    return value;
   }
 
-  /** Gets the flags bits of the FCSR
-  * @param tag a string value between  V=Invalid  Z=Divide by zero O=Overflow U=Underflow I=Inexact (not implemented)
-   */
-  public boolean getFCSRFlags(String tag) {
-    if (tag.compareToIgnoreCase("V") == 0) {
-      return (getBinString().charAt(25) == '1') ? true : false;
-    }
-
-    if (tag.compareToIgnoreCase("Z") == 0) {
-      return (getBinString().charAt(26) == '1') ? true : false;
-    }
+  /** Gets the Flags field as a mask of exceptions */
+  public int getFlags() {
+    return (value >>> FLAGS_SHIFT) & ALL_FLAGS;
+  }
 
-    if (tag.compareToIgnoreCase("O") == 0) {
-      return (getBinString().charAt(27) == '1') ? true : false;
-    }
+  /** Gets the Cause field as a mask of exceptions */
+  public int getCause() {
+    return (value >>> CAUSE_SHIFT) & ALL_FLAGS;
+  }
 
-    if (tag.compareToIgnoreCase("U") == 0) {
-      return (getBinString().charAt(28) == '1') ? true : false;
-    }
+  /** Gets the Enables field as a mask of exceptions */
+  public int getEnables() {
+    return (value >>> ENABLES_SHIFT) & ALL_FLAGS;
+  }
 
-    if (tag.compareToIgnoreCase("I") == 0) {  // not implemented
-      return (getBinString().charAt(29) == '1') ? true : false;
-    }
+  /** Gets the selected enable bit of the FCSR */
+  public boolean getFCSREnables(Flag flag) {
+    return (getEnables() & flag.mask()) != 0;
+  }
 
-    return false;
+  /** Gets the selected flag bit of the FCSR */
+  public boolean getFCSRFlags(Flag flag) {
+    return (getFlags() & flag.mask()) != 0;
   }
 
   /** Gets the selected FCC bit of the FCSR
    * @param cc condition code is an int value in the range [0,7]
    */
   public int getFCSRConditionCode(int cc) {
-    final int FCC0 = 8;
-    final int DISCONTINUITY = 1;
-    final int OFFSET = FCC0 - DISCONTINUITY;
-
-    if (cc == 0) {
-      return (Integer.valueOf(getBinString().substring(FCC0, FCC0 + 1)));
-    } else {
-      return (Integer.valueOf(getBinString().substring(OFFSET - cc, OFFSET - cc + 1)));
-    }
+    return ((value & conditionCodeMask(cc)) != 0) ? 1 : 0;
   }
 
   public CPU.FPRoundingMode getFCSRRoundingMode() {
-    final int FCSR_RM_FIELD_INIT = 30;
-
-    if (getBinString().substring(FCSR_RM_FIELD_INIT, size).compareTo("00") == 0) {
-      return CPU.FPRoundingMode.TO_NEAREST;
-    }
-
-    if (getBinString().substring(FCSR_RM_FIELD_INIT, size).compareTo("01") == 0) {
-      return CPU.FPRoundingMode.TOWARD_ZERO;
-    }
-
-    if (getBinString().substring(FCSR_RM_FIELD_INIT, size).compareTo("10") == 0) {
-      return CPU.FPRoundingMode.TOWARDS_PLUS_INFINITY;
-    }
-
-    if (getBinString().substring(FCSR_RM_FIELD_INIT, size).compareTo("11") == 0) {
-      return CPU.FPRoundingMode.TOWARDS_MINUS_INFINITY;
-    }
-
-    return null;
+    return CPU.FPRoundingMode.values()[value & RM_MASK];
   }
 
   /** Gets the floating point unit enabled exceptions
    *  @return true if exceptionName is enabled, false in the other case
    */
   public boolean getFPExceptions(CPU.FPExceptions exceptionName) {
-    //return this.fpEnabledExceptions.get(exceptionName);
-    switch (exceptionName) {
-    case DIVIDE_BY_ZERO:
-      return getFCSREnables("Z");
-    case OVERFLOW:
-      return getFCSREnables("O");
-    case UNDERFLOW:
-      return getFCSREnables("U");
-    case INVALID_OPERATION:
-      return getFCSREnables("V");
-    }
-
-    return false;
+    return getFCSREnables(toFlag(exceptionName));
   }
 
+  /** Gets the 32-bit binary representation of the register */
+  public String getBinString() {
+    String bin = Integer.toBinaryString(value);
+    StringBuilder sb = new StringBuilder(32);
 
+    for (int i = bin.length(); i < 32; ++i) {
+      sb.append('0');
+    }
 
+    return sb.append(bin).toString();
+  }
 }
-
-
-
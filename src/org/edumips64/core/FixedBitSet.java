@@ -23,30 +23,46 @@
  */
 package org.edumips64.core;
 
-import java.util.BitSet;
 import org.edumips64.utils.*;
-/** Abstract class: it contains a fixed-size BitSet instance.
+/** Abstract class: it contains a fixed-size sequence of at most 64 bits.
+ * The bits are stored in a long, the first bit of the sequence being the most
+ * significant one; subclasses may keep the long elsewhere overriding
+ * loadBits() and storeBits().
  * @author Salvatore Scellato
  * */
 public abstract class FixedBitSet {
-  private BitSet bitset;
+  private long bits;
   protected int size;
 
   /** Creates a default new instance of FixedBitSet with zero size. */
   public FixedBitSet() {
-    bitset = new BitSet();
     size = 0;
   }
 
+  /** Returns the long holding the bits of this FixedBitSet. */
+  protected long loadBits() {
+    return bits;
+  }
+
+  /** Replaces the long holding the bits of this FixedBitSet. */
+  protected void storeBits(long value) {
+    bits = value;
+  }
+
+  /** Returns the mask of the given bit of the sequence within the long. */
+  private long mask(int index) {
+    return 1L << (size - 1 - index);
+  }
+
   /** Resets this FixedBitSet, setting all bits to one if value is true and setting all bits to zero
    * if value is false
    * @param value if true bits will be set to '1', if false bits will be set to '0'
    * */
   public void reset(boolean value) {
     if (!value) {
-      bitset.clear();
+      storeBits(0);
     } else {
-      bitset.set(0, size);   //imposta tutto a true
+      storeBits(size == 64 ? -1L : (1L << size) - 1);   //imposta tutto a true
     }
   }
 
@@ -59,46 +75,46 @@ public abstract class FixedBitSet {
    */
   public void setBits(String bits, int start) throws IrregularStringOfBitsException {
     //System.err.println("setBits() " + bits + ", " + start);
+    long value = loadBits();
     int index = 0;
 
     for (int i = 0; i < bits.length(); i++) {
       index = i + start;
 
       if (index >= size) {
-        return;
+        break;
       }
 
       char c = bits.charAt(i);
 
       switch (c) {
       case '1':
-        bitset.set(index, true);
+        value |= mask(index);
         break;
       case '0':
-        bitset.set(index, false);
+        value &= ~mask(index);
         break;
       default:
         throw new IrregularStringOfBitsException();
       }
     }
+
+    storeBits(value);
   }
 
   /** Returns the bit sequence of this FixedBitSet as a string containing "0"s and "1"s.
    * @return string form of the bit sequence stored in this FixedBitSet
    */
   public String getBinString() {
-    StringBuffer buf = new StringBuffer(size);
+    long value = loadBits();
+    char[] buf = new char[size];
 
-    for (int i = 0; i < size; i++)
-      if (bitset.get(i)) {
-        buf.append("1");
-      } else {
-        buf.append("0");
-      }
+    for (int i = 0; i < size; i++) {
+      buf[i] = ((value & mask(i)) != 0) ? '1' : '0';
+    }
 
     return new String(buf);
   }
-
   /** Returns the bit sequence of this FixedBitSet as a string containing hexadecimal
    * digits.
    * @return string form of the bit sequence stored in this FixedBitSet as hexadecimal digits
@@ -0,0 +1,204 @@
+/* ForwardingNetwork.java
+ *
+ * Bypass paths of the pipeline.
+ * (c) 2016 EduMIPS64 project
+ *
+ * This file is part of the EduMIPS64 project, and is released under the GNU
+ * General Public License.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.edumips64.core;
+
+import org.edumips64.utils.ConfigManager;
+import org.edumips64.utils.ConfigStore;
+
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/** Models the forwarding network of the pipeline.
+ *
+ * Each bypass path can be enabled on its own, as long as forwarding is
+ * enabled. A result that travels on a bypass path is written to its register
+ * before the WB stage of the producer: the network remembers the registers
+ * written in this way until the producer leaves the pipeline, so that it can
+ * count the instructions that read them, i.e. the stalls that the path
+ * avoided.
+ */
+public class ForwardingNetwork {
+  /** The bypass paths. */
+  public enum Path {
+    /** From the output of EX to the input of EX of the next instruction. */
+    EX_EX("forwarding_ex_ex"),
+    /** From the output of MEM to the input of EX. */
+    MEM_EX("forwarding_mem_ex"),
+    /** From the output of MEM to the input of MEM, for the stored values. */
+    MEM_MEM("forwarding_mem_mem");
+
+    private final String configKey;
+
+    Path(String configKey) {
+      this.configKey = configKey;
+    }
+
+    /** Returns the configuration key that enables the path. */
+    public String getConfigKey() {
+      return configKey;
+    }
+  }
+
+  /** A register written through a bypass path. */
+  private static class Bypass {
+    final Path path;
+    final Object producer;
+    Object consumer;
+
+    Bypass(Path path, Object producer) {
+      this.path = path;
+      this.producer = producer;
+    }
+  }
+
+  private static ForwardingNetwork instance;
+  private static final Logger logger = Logger.getLogger(ForwardingNetwork.class.getName());
+
+  private boolean forwarding;
+  private final boolean[] enabled = new boolean[Path.values().length];
+  private final int[] avoidedStalls = new int[Path.values().length];
+  private final Map<Object, Bypass> bypassed = new IdentityHashMap<Object, Bypass>();
+
+  // The path and the producer of the value being written, if any.
+  private Path releasing;
+  private Object producer;
+
+  private ForwardingNetwork() {
+    setForwarding(ConfigManager.getConfig().getBoolean("forwarding"));
+  }
+
+  public static ForwardingNetwork getInstance() {
+    if (instance == null) {
+      instance = new ForwardingNetwork();
+    }
+
+    return instance;
+  }
+
+  /** Enables or disables forwarding. The paths are enabled according to
+   * the configuration.
+   * @param value true if forwarding must be enabled
+   */
+  public void setForwarding(boolean value) {
+    ConfigStore config = ConfigManager.getConfig();
+    forwarding = value;
+
+    for (Path p : Path.values()) {
+      enabled[p.ordinal()] = value && config.getBoolean(p.getConfigKey());
+    }
+  }
+
+  /** Returns true if forwarding is enabled. */
+  public boolean isForwarding() {
+    return forwarding;
+  }
+
+  /** Enables or disables a single path. */
+  public void setEnabled(Path path, boolean value) {
+    enabled[path.ordinal()] = value;
+  }
+
+  /** Returns true if the given path is enabled. */
+  public boolean isEnabled(Path path) {
+    return enabled[path.ordinal()];
+  }
+
+  /** Returns the number of stalls avoided by the given path. */
+  public int getAvoidedStalls(Path path) {
+    return avoidedStalls[path.ordinal()];
+  }
+
+  /** Resets the counters and forgets the registers written through the
+   * bypass paths. */
+  public void reset() {
+    for (int i = 0; i < avoidedStalls.length; ++i) {
+      avoidedStalls[i] = 0;
+    }
+
+    bypassed.clear();
+    releasing = null;
+    producer = null;
+  }
+
+  /** Marks the beginning of the write of a result through a path: the
+   * registers released until endRelease() are written by the given
+   * producer through that path. */
+  public void beginRelease(Path path, Object producer) {
+    releasing = path;
+    this.producer = producer;
+  }
+
+  public void endRelease() {
+    releasing = null;
+    producer = null;
+  }
+
+  /** Called when a register is released by its producer. */
+  public void released(Object register) {
+    if (releasing != null) {
+      bypassed.put(register, new Bypass(releasing, producer));
+    } else if (!bypassed.isEmpty()) {
+      bypassed.remove(register);
+    }
+  }
+
+  /** Called when an instruction reads a register that is not waiting to be
+   * written. If the value was written through a bypass path, the stall that
+   * the consumer would have suffered is counted once for that path. */
+  public void read(Object register, Object consumer) {
+    if (bypassed.isEmpty()) {
+      return;
+    }
+
+    Bypass b = bypassed.get(register);
+
+    if (b != null && b.consumer != consumer) {
+      b.consumer = consumer;
+      avoidedStalls[b.path.ordinal()]++;
+      logger.info("Stall avoided by " + b.path + " forwarding");
+    }
+  }
+
+  /** Called when a store reads in MEM a value that was not yet written
+   * when it was decoded. */
+  public void storeForwarded() {
+    avoidedStalls[Path.MEM_MEM.ordinal()]++;
+    logger.info("Stall avoided by " + Path.MEM_MEM + " forwarding");
+  }
+
+  /** Called when an instruction leaves the pipeline: the registers it wrote
+   * early are now written by the WB stage. */
+  public void retire(Object instruction) {
+    if (bypassed.isEmpty()) {
+      return;
+    }
+
+    for (Iterator<Bypass> it = bypassed.values().iterator(); it.hasNext();) {
+      if (it.next().producer == instruction) {
+        it.remove();
+      }
+    }
+  }
+}
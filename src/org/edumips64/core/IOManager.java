@@ -22,13 +22,24 @@
  */
 
 package org.edumips64.core;
+import org.edumips64.core.is.AddressErrorException;
+import org.edumips64.utils.ConfigManager;
+
 import java.util.*;
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.logging.Logger;
 
 /** Class used as a proxy for I/O operations.
  *  This class handles input/output from/to files, including stdin, stdout and
  *  stderr.
+ *
+ *  Files are accessed through NIO channels, and each direction of a file
+ *  descriptor has its own buffer, allocated outside the heap if the
+ *  direct_io option is set: reads fill the buffer in advance, writes are
+ *  accumulated in it until it is full or the file is closed. Data is moved
+ *  between the buffers and the memory in bulk.
  *  @author Andrea Spadaccini */
 public class IOManager {
   // * File modes
@@ -45,26 +56,56 @@ public class IOManager {
   // These modes can be ORed together as in the standard POSIX open syscall().
 
   /** Open the file in read-only mode */
-  public final int O_RDONLY = 0x01;   // 00001
+  public static final int O_RDONLY = 0x01;   // 00001
 
   /** Open the file in write-only mode */
-  public final int O_WRONLY = 0x02;   // 00010
+  public static final int O_WRONLY = 0x02;   // 00010
 
   /** Open the file in read/write mode */
-  public final int O_RDWR = 0x03;   // 00011
+  public static final int O_RDWR = 0x03;   // 00011
 
   /** Create the file if it doesn't exist */
-  public final int O_CREAT = 0x04;  // 00100
+  public static final int O_CREAT = 0x04;  // 00100
 
   /** Append text to the end of the file */
-  public final int O_APPEND = 0x08; // 01000
+  public static final int O_APPEND = 0x08; // 01000
 
   /** Truncate the file if it exists */
-  public final int O_TRUNC = 0x10;  // 10000
+  public static final int O_TRUNC = 0x10;  // 10000
+
+  /** Size of the buffers of the files. */
+  public static final int BUFFER_SIZE = 64 * 1024;
+
+  /** A file opened for reading or for writing, with its buffer. */
+  private static class BufferedChannel {
+    FileChannel channel;
+    ByteBuffer buffer;
+
+    BufferedChannel(FileChannel channel, boolean direct) {
+      this.channel = channel;
+      buffer = direct ? ByteBuffer.allocateDirect(BUFFER_SIZE) : ByteBuffer.allocate(BUFFER_SIZE);
+    }
+
+    /** Writes to the file the bytes accumulated in the buffer. */
+    void flush() throws IOException {
+      buffer.flip();
+
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+
+      buffer.clear();
+    }
+  }
 
+  // Standard streams, provided by the user interface.
   private Map<Integer, Reader> ins;
   private Map<Integer, Writer> outs;
 
+  // Files opened by the program.
+  private Map<Integer, BufferedChannel> inFiles;
+  private Map<Integer, BufferedChannel> outFiles;
+
   private int next_descriptor;
 
   private static final Logger logger = Logger.getLogger(IOManager.class.getName());
@@ -75,11 +116,15 @@ public class IOManager {
   /** Closes all the open files */
   public void reset() throws IOException {
     logger.info("IOManager: resetting... next_fd = " + next_descriptor);
+    Set<Integer> files = new HashSet<Integer>(inFiles.keySet());
+    files.addAll(outFiles.keySet());
 
-    while (next_descriptor > 3) {
-      close(next_descriptor--);
+    for (int fd : files) {
+      close(fd);
     }
 
+    next_descriptor = 3;
+
     logger.info("IOManager: resetted. next_fd = " + next_descriptor);
   }
 
@@ -94,6 +139,8 @@ public class IOManager {
   private IOManager() {
     ins = new HashMap<Integer, Reader>();
     outs = new HashMap<Integer, Writer>();
+    inFiles = new HashMap<Integer, BufferedChannel>();
+    outFiles = new HashMap<Integer, BufferedChannel>();
 
     // We set the next descriptor to 3, because 0 is stdin, 1 is stdout and
     // 2 is stderr
@@ -125,6 +172,28 @@ public class IOManager {
       ret = 0;
     }
 
+    BufferedChannel f = inFiles.remove(fd);
+
+    if (f != null) {
+      logger.info("found open input file");
+      f.channel.close();
+      ret = 0;
+    }
+
+    f = outFiles.remove(fd);
+
+    if (f != null) {
+      logger.info("found open output file");
+
+      try {
+        f.flush();
+      } finally {
+        f.channel.close();
+      }
+
+      ret = 0;
+    }
+
     return ret;
   }
 
@@ -174,16 +243,19 @@ public class IOManager {
       append = true;
     }
 
+    boolean direct = ConfigManager.getConfig().getBoolean("direct_io");
+
     if ((flags & O_RDONLY) == O_RDONLY) {
       logger.info("flags & O_RDONLY = " + O_RDONLY);
-      Reader r = new FileReader(pathname);
-      ins.put(next_descriptor, r);
+      BufferedChannel f = new BufferedChannel(new FileInputStream(pathname).getChannel(), direct);
+      // The input buffer starts empty, in read mode.
+      f.buffer.limit(0);
+      inFiles.put(next_descriptor, f);
     }
 
     if ((flags & O_WRONLY) == O_WRONLY) {
       logger.info("flags & O_WRONLY = " + O_WRONLY);
-      Writer w = new FileWriter(pathname, append);
-      outs.put(next_descriptor, w);
+      outFiles.put(next_descriptor, new BufferedChannel(new FileOutputStream(pathname, append).getChannel(), direct));
     }
 
     // TODO: gestire creat, trunc
@@ -196,40 +268,41 @@ public class IOManager {
    *  @param count the number of bytes to write
    */
   public int write(int fd, long address, int count) throws IOManagerException, IOException {
+    BufferedChannel f = outFiles.get(fd);
+
     // Let's verify if we've got a valid file descriptor
-    if (!outs.containsKey(fd)) {
+    if (f == null && !outs.containsKey(fd)) {
       logger.info("File descriptor " + fd + " not valid for writing.");
       throw new IOManagerException("FILENOTOPENED");
     }
 
-    byte[] bytes_array = new byte[count];
-    MemoryElement memEl = null;
-    StringBuffer buff = null ;
-
     try {
-      buff = new StringBuffer();
-      int posInWord = 0;
-
-      for (int i = 0; i < count; ++i) {
-        if (i % 8 == 0) {
-          posInWord = 0;
-          logger.info("write(): getting a new cell at address " + address);
-          memEl = Memory.getInstance().getCellByAddress(address);
-          address += 8;
+      if (f == null) {
+        // Write to stdout or stderr.
+        byte[] bytes_array = new byte[count];
+        Memory.getInstance().readBytes(address, ByteBuffer.wrap(bytes_array));
+        write(fd, new String(bytes_array));
+      } else {
+        int written = 0;
+
+        while (written < count) {
+          if (!f.buffer.hasRemaining()) {
+            f.flush();
+          }
+
+          ByteBuffer chunk = f.buffer.duplicate();
+          chunk.limit(chunk.position() + Math.min(chunk.remaining(), count - written));
+          Memory.getInstance().readBytes(address + written, chunk);
+          written += chunk.position() - f.buffer.position();
+          f.buffer.position(chunk.position());
         }
-
-        byte rb = (byte) memEl.readByte(posInWord++);
-        bytes_array[i] = rb;
-        buff.append((char) rb);
       }
     } catch (MemoryElementNotFoundException e) {
       throw new IOManagerException("OUTOFMEMORY");
     }
 
-    // Write to stdout or to a classic file
-    write(fd, new String(bytes_array));
-    logger.info("Wrote " + buff.toString() + " to fd " + fd);
-    return buff.length();
+    logger.info("Wrote " + count + " bytes to fd " + fd);
+    return count;
   }
 
   /** Writes a string to a file.
@@ -242,53 +315,97 @@ public class IOManager {
     w.write(textToBeWritten);
   }
 
+  /** Writes some characters to a file.
+   * @param fd the file descriptor identifying the file
+   * @param text buffer holding the characters
+   * @param offset index of the first character to write
+   * @param count number of characters to write
+   * @throws IOException
+   */
+  public void write(int fd, char[] text, int offset, int count) throws IOException {
+    Writer w = outs.get(fd);
+    w.write(text, offset, count);
+  }
+
   /** Reads some bytes from a file, writing them to memory.
    *  @param fd the file descriptor identifying the file
    *  @param address the address to write the data to
    *  @param count the number of bytes to read
+   *  @return the number of bytes read, or -1 at the end of the file
    */
-  public int read(int fd, long address, int count) throws IOManagerException, java.io.FileNotFoundException, IOException {
-    if (!ins.containsKey(fd)) {
+  public int read(int fd, long address, int count) throws IOManagerException, java.io.FileNotFoundException, IOException, AddressErrorException {
+    BufferedChannel f = inFiles.get(fd);
+
+    if (f == null && !ins.containsKey(fd)) {
       logger.info("File descriptor " + fd + " not valid for reading");
       throw new IOManagerException("FILENOTOPENED");
     }
 
-    Reader r = ins.get(fd);
-    char buffer[] = new char[count];
-    int read_byte = r.read(buffer, 0, count);
-    String read_str = new String(buffer);
+    try {
+      if (f == null) {
+        // Read from stdin. The pending output is shown first, since it is
+        // usually the prompt for the input.
+        flush();
+        Reader r = ins.get(fd);
+        char buffer[] = new char[count];
+        int read_byte = r.read(buffer, 0, count);
+        byte[] bytes_array = new byte[Math.max(read_byte, 0)];
+
+        for (int i = 0; i < bytes_array.length; ++i) {
+          bytes_array[i] = (byte) buffer[i];
+        }
+
+        Memory.getInstance().writeBytes(address, ByteBuffer.wrap(bytes_array), "SYSCALL 3");
+        logger.info("Read " + read_byte + " bytes from fd " + fd);
+        return read_byte;
+      }
 
-    logger.info("Read the string " + read_str + " from fd " + fd);
-    MemoryElement memEl = null;
+      int read = 0;
 
-    try {
-      int posInWord = 0;
-
-      for (int i = 0; i < read_str.length(); ++i) {
-        if (i % 8 == 0) {
-          posInWord = 0;
-          logger.info("read(): getting a new cell at address " + address);
-          memEl = Memory.getInstance().getCellByAddress(address);
-          address += 8;
+      while (read < count) {
+        if (!f.buffer.hasRemaining()) {
+          f.buffer.clear();
+          int n = f.channel.read(f.buffer);
+          f.buffer.flip();
+
+          if (n <= 0) {
+            break;
+          }
         }
 
-        int rb = (int) read_str.charAt(i);
-        memEl.writeByte(rb, posInWord++);
+        ByteBuffer chunk = f.buffer.duplicate();
+        chunk.limit(chunk.position() + Math.min(chunk.remaining(), count - read));
+        Memory.getInstance().writeBytes(address + read, chunk, "SYSCALL 3");
+        read += chunk.position() - f.buffer.position();
+        f.buffer.position(chunk.position());
       }
 
-      logger.info("Wrote " + read_str + " to memory");
-      return read_byte;
+      logger.info("Read " + read + " bytes from fd " + fd);
+      return (read == 0 && count > 0) ? -1 : read;
     } catch (MemoryElementNotFoundException e) {
       throw new IOManagerException("OUTOFMEMORY");
-    } catch (IrregularWriteOperationException e) {
-      e.printStackTrace();
     }
+  }
 
-    return -1;
+  /** Flushes the standard output and error streams. */
+  public void flush() throws IOException {
+    for (Writer w : outs.values()) {
+      w.flush();
+    }
   }
 
+  /** Sets the standard output; null unsets it. */
   public void setStdOutput(Writer writer) {
-    outs.put(1, writer);
+    if (writer == null) {
+      outs.remove(1);
+    } else {
+      outs.put(1, writer);
+    }
+  }
+
+  /** Returns the standard output, or null if it is not set. */
+  public Writer getStdOutput() {
+    return outs.get(1);
   }
 
   public void setStdError(Writer writer) {
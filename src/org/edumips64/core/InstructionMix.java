@@ -0,0 +1,258 @@
+/* InstructionMix.java
+ *
+ * Histograms of the executed instructions.
+ * (c) 2016 EduMIPS64 project
+ *
+ * This file is part of the EduMIPS64 project, and is released under the GNU
+ * General Public License.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.edumips64.core;
+
+import org.edumips64.core.is.*;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Map;
+
+/** Dynamic instruction mix of the execution: the executed instructions by
+ * opcode and by class, the outcomes of each conditional branch and the
+ * number of times each basic block was entered.
+ *
+ * The counters are arrays indexed by opcode and by address, updated when an
+ * instruction leaves the CPU. The branches are counted by class when they
+ * are resolved, in ID or EX, since their outcome can't be told from the
+ * order in which the instructions leave the CPU: the FP instructions leave
+ * it out of order.
+ */
+public class InstructionMix {
+  /** Classes of instructions. */
+  public enum Kind {ALU, LOAD, STORE, BRANCH_TAKEN, BRANCH_NOT_TAKEN, JUMP, FP_ADDER, FP_MULTIPLIER, FP_DIVIDER, FP_OTHER, OTHER}
+
+  private static final Instruction.InstructionEnumerator[] OPCODES = Instruction.InstructionEnumerator.values();
+
+  // Class of each opcode, the conditional branches as BRANCH_TAKEN.
+  private static final Kind[] kinds = new Kind[OPCODES.length];
+
+  private final Profiler profiler;
+
+  private int[] opcodeCounts = new int[OPCODES.length];
+  private int[] kindCounts = new int[Kind.values().length];
+
+  // Outcomes of the branches, indexed by address / 4 and grown on demand.
+  private int[] taken, notTaken;
+
+  InstructionMix(Profiler profiler) {
+    this.profiler = profiler;
+    reset();
+  }
+
+  /** Clears the histograms. */
+  void reset() {
+    Arrays.fill(opcodeCounts, 0);
+    Arrays.fill(kindCounts, 0);
+    taken = new int[0];
+    notTaken = new int[0];
+  }
+
+  /** Returns the class of an instruction, considering the conditional
+   * branches as taken. */
+  static Kind kindOf(Instruction instr) {
+    if (instr instanceof FlowControl_IType || instr instanceof FPConditionalBranchesInstructions) {
+      return Kind.BRANCH_TAKEN;
+    } else if (instr instanceof FlowControlInstructions) {
+      return Kind.JUMP;
+    } else if (instr instanceof Loading || instr instanceof FPLoading) {
+      return Kind.LOAD;
+    } else if (instr instanceof Storing || instr instanceof FPStoring) {
+      return Kind.STORE;
+    } else if (CPU.isFPArithmetic(instr)) {
+      switch (TomasuloEngine.getUnit(instr)) {
+      case FP_MUL:
+        return Kind.FP_MULTIPLIER;
+      case FP_DIV:
+        return Kind.FP_DIVIDER;
+      default:
+        return Kind.FP_ADDER;
+      }
+    } else if (instr instanceof ALUInstructions || instr instanceof ALU_IType || instr instanceof ALU_RType) {
+      return Kind.ALU;
+    } else if (instr instanceof ComputationalInstructions) {
+      return Kind.FP_OTHER;
+    }
+
+    return Kind.OTHER;
+  }
+
+  /** Records the outcome of a branch. */
+  void branch(Instruction instr, boolean isTaken) {
+    int address = instr.getAddress();
+    kindCounts[(isTaken ? Kind.BRANCH_TAKEN : Kind.BRANCH_NOT_TAKEN).ordinal()]++;
+
+    if (address < 0) {
+      return;
+    }
+
+    int index = address / 4;
+
+    if (index >= taken.length) {
+      int length = Math.max(index + 1, Math.max(64, 2 * taken.length));
+      taken = Arrays.copyOf(taken, length);
+      notTaken = Arrays.copyOf(notTaken, length);
+    }
+
+    if (isTaken) {
+      taken[index]++;
+    } else {
+      notTaken[index]++;
+    }
+  }
+
+  /** Records that an instruction other than a bubble left the CPU. */
+  void retire(Instruction instr) {
+    Instruction.InstructionEnumerator opcode = instr.getOpcode();
+    Kind kind;
+
+    if (opcode != null) {
+      opcodeCounts[opcode.ordinal()]++;
+      kind = kinds[opcode.ordinal()];
+
+      if (kind == null) {
+        kind = kinds[opcode.ordinal()] = kindOf(instr);
+      }
+    } else {
+      kind = kindOf(instr);
+    }
+
+    // The branches were counted when they were resolved.
+    if (kind != Kind.BRANCH_TAKEN) {
+      kindCounts[kind.ordinal()]++;
+    }
+  }
+
+  /** Returns the number of executed instructions with the given opcode. */
+  public int getCount(Instruction.InstructionEnumerator opcode) {
+    return opcodeCounts[opcode.ordinal()];
+  }
+
+  /** Returns the number of executed instructions of the given class. The
+   * conditional branches are counted when their outcome is known. */
+  public int getCount(Kind kind) {
+    return kindCounts[kind.ordinal()];
+  }
+
+  /** Returns the number of times the branch at the given address was taken. */
+  public int getTaken(int address) {
+    int index = address / 4;
+    return (index < taken.length) ? taken[index] : 0;
+  }
+
+  /** Returns the number of times the branch at the given address was not
+   * taken. */
+  public int getNotTaken(int address) {
+    int index = address / 4;
+    return (index < notTaken.length) ? notTaken[index] : 0;
+  }
+
+  /** Returns the number of times the basic block that starts at the given
+   * address was entered. */
+  public int getBlockCount(int address) {
+    return profiler.getExecutions(address);
+  }
+
+  private int total() {
+    int total = 0;
+
+    for (int n : kindCounts) {
+      total += n;
+    }
+
+    return total;
+  }
+
+  /** Returns a textual report of the histograms. */
+  public String report() {
+    StringBuilder sb = new StringBuilder();
+    int total = total();
+    sb.append(String.format("Instruction mix (%d instructions):%n", total));
+
+    for (Kind kind : Kind.values()) {
+      float share = (total > 0) ? 100f * kindCounts[kind.ordinal()] / total : 0;
+      sb.append(String.format("  %-18s %8d %5.1f%%%n", kind, kindCounts[kind.ordinal()], share));
+    }
+
+    sb.append(String.format("%nOpcodes:%n"));
+
+    for (Instruction.InstructionEnumerator opcode : OPCODES) {
+      if (opcodeCounts[opcode.ordinal()] > 0) {
+        sb.append(String.format("  %-18s %8d%n", opcode, opcodeCounts[opcode.ordinal()]));
+      }
+    }
+
+    sb.append(String.format("%nBranches:%n  %-8s %8s %8s%n", "Address", "Taken", "Not tak."));
+
+    for (int i = 0; i < taken.length; ++i) {
+      if (taken[i] > 0 || notTaken[i] > 0) {
+        sb.append(String.format("  %-8s %8d %8d%n", Profiler.hex(i * 4), taken[i], notTaken[i]));
+      }
+    }
+
+    sb.append(String.format("%nBasic blocks:%n  %-8s %8s  %s%n", "Address", "Entries", "Name"));
+
+    for (Map.Entry<Integer, String> e : profiler.basicBlocks().entrySet()) {
+      int entries = getBlockCount(e.getKey());
+
+      if (entries > 0) {
+        sb.append(String.format("  %-8s %8d  %s%n", Profiler.hex(e.getKey()), entries, e.getValue()));
+      }
+    }
+
+    return sb.toString();
+  }
+
+  /** Writes the histograms as comma-separated values, with a header row:
+   * a row for each class, executed opcode, branch and entered basic block. */
+  public void writeCsv(Writer out) throws IOException {
+    out.write("histogram,key,count,taken,not_taken\n");
+
+    for (Kind kind : Kind.values()) {
+      out.write("class," + kind.name().toLowerCase() + "," + kindCounts[kind.ordinal()] + ",,\n");
+    }
+
+    for (Instruction.InstructionEnumerator opcode : OPCODES) {
+      if (opcodeCounts[opcode.ordinal()] > 0) {
+        out.write("opcode," + opcode + "," + opcodeCounts[opcode.ordinal()] + ",,\n");
+      }
+    }
+
+    for (int i = 0; i < taken.length; ++i) {
+      if (taken[i] > 0 || notTaken[i] > 0) {
+        out.write("branch," + (i * 4) + "," + (taken[i] + notTaken[i]) + "," + taken[i] + "," + notTaken[i] + "\n");
+      }
+    }
+
+    for (int address : profiler.basicBlocks().keySet()) {
+      int entries = getBlockCount(address);
+
+      if (entries > 0) {
+        out.write("block," + address + "," + entries + ",,\n");
+      }
+    }
+
+    out.flush();
+  }
+}
@@ -26,15 +26,78 @@ package org.edumips64.core;
 import org.edumips64.utils.*;
 import java.util.*;
 import org.edumips64.core.is.*;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
 import java.util.logging.Logger;
 
 /**  This class models the main memory of a computer, with 64-bit elements (that is 8 byte).
- * The Memory is composed of MemoryElement and its size is not limited.
+ * The sizes of the data and code sections are read from the configuration.
+ * Both sections are divided in pages of PAGE_SIZE bytes, that are allocated
+ * only when an address within them is first written: the values of the data
+ * pages are kept in arrays of longs, and the MemoryElement objects are views
+ * created on demand. Reading an untouched address gives zero, or a BUBBLE in
+ * the code section, without allocating its page.
+ *
+ * A binary file can be mapped in the data section (see mapFile()): the pages
+ * entirely covered by the file read the mapped buffer directly.
  */
 public class Memory {
-  // cancellabile?
-  private List<MemoryElement> cells;
-  private List<Instruction> instructions;
+  /** Size of a page, in bytes. */
+  public static final int PAGE_SIZE = 4096;
+  static final int CELLS_PER_PAGE = PAGE_SIZE / 8;
+  private static final int INSTRUCTIONS_PER_PAGE = PAGE_SIZE / 4;
+  // Maximum number of pages of a section, so that its addresses fit in an int.
+  private static final int MAX_PAGES = Integer.MAX_VALUE / PAGE_SIZE;
+
+  /** A page of the data section, whose values are stored either in an array
+   * or in a slice of a mapped file. The first store to a mapped page copies
+   * it to an array. */
+  static class DataPage {
+    private long[] values;
+    private LongBuffer buffer;
+    MemoryElement[] cells = new MemoryElement[CELLS_PER_PAGE];
+
+    DataPage() {
+      values = new long[CELLS_PER_PAGE];
+    }
+
+    DataPage(LongBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    long load(int slot) {
+      return (values != null) ? values[slot] : buffer.get(slot);
+    }
+
+    void store(int slot, long value) {
+      if (values == null) {
+        values = new long[CELLS_PER_PAGE];
+        buffer.get(values);
+        buffer = null;
+      }
+
+      values[slot] = value;
+    }
+  }
+
+  // Page tables, and indexes of the pages allocated since the last reset.
+  private DataPage[] dataPages;
+  private Instruction[][] codePages;
+  private List<Integer> dataPagesInUse;
+  private List<Integer> codePagesInUse;
+
+  // Ranges of indexes [first, last) of the read-only mapped files.
+  private List<int[]> readOnlyRanges;
+
+  // Number of memory elements and of instructions.
+  private int dataSize;
+  private int codeSize;
+
+  // True if the bytes of each doubleword are stored from the most
+  // significant one, as in the big-endian ELF files.
+  private boolean bigEndian;
 
   private Map<Integer, String> mem_comments;
 
@@ -43,29 +106,77 @@ public class Memory {
 
   private static final Logger logger = Logger.getLogger(Memory.class.getName());
 
-  private Memory() {
+  /** Builds an empty memory. The memory of the CPU is returned by
+   * getInstance(); other instances are used by the Assembler.
+   */
+  Memory() {
     logger.info("Building Memory: " + this.hashCode());
     mem_comments = new HashMap<Integer, String>();
-    cells = new ArrayList<MemoryElement>();
+    dataPagesInUse = new ArrayList<Integer>();
+    codePagesInUse = new ArrayList<Integer>();
+    readOnlyRanges = new ArrayList<int[]>();
     instr_num = 0;
-    instructions = new LinkedList<Instruction>();
+    configureSize();
+    logger.info("Memory built: " + this.hashCode());
+  }
+
+  /** Reads the sizes of the sections from the configuration, and builds
+   * empty page tables if they have changed. */
+  private void configureSize() {
+    ConfigStore config = ConfigManager.getConfig();
+    int dataPageCount = pageCount(config, "data_memory_size");
+    int codePageCount = pageCount(config, "code_memory_size");
 
-    for (int i = 0; i < CPU.DATALIMIT; i++) {
-      cells.add(new MemoryElement(i * 8));
+    if (dataPages == null || dataPages.length != dataPageCount) {
+      dataPages = new DataPage[dataPageCount];
+      dataPagesInUse.clear();
     }
 
-    for (int i = 0; i < CPU.CODELIMIT; i++) {
-      instructions.add(Instruction.buildInstruction("BUBBLE"));
+    if (codePages == null || codePages.length != codePageCount) {
+      codePages = new Instruction[codePageCount][];
+      codePagesInUse.clear();
     }
 
-    logger.info("Memory built: " + this.hashCode());
+    dataSize = dataPageCount * CELLS_PER_PAGE;
+    codeSize = codePageCount * INSTRUCTIONS_PER_PAGE;
+  }
+
+  /** Returns the number of pages of a section whose size in KB is the given
+   * configuration value. The size is computed in a long, and clamped between
+   * one page and MAX_PAGES. */
+  private static int pageCount(ConfigStore config, String key) {
+    long pages = config.getInt(key) * 1024L / PAGE_SIZE;
+
+    if (pages > MAX_PAGES) {
+      logger.warning(key + " is too big, using " + (MAX_PAGES * (long) PAGE_SIZE / 1024) + " KB");
+      pages = MAX_PAGES;
+    }
+
+    return (int) Math.max(1, pages);
   }
 
   /** Returns the maximum number of MemoryElement stored in Memory
    * @return size of the memory
    */
   public int getMemorySize() {
-    return CPU.DATALIMIT;
+    return dataSize;
+  }
+
+  /** Returns the maximum number of instructions stored in Memory
+   * @return size of the code section, in instructions
+   */
+  public int getCodeSize() {
+    return codeSize;
+  }
+
+  /** Returns the number of data pages allocated since the last reset. */
+  public int getDataPageCount() {
+    return dataPagesInUse.size();
+  }
+
+  /** Returns the number of code pages allocated since the last reset. */
+  public int getCodePageCount() {
+    return codePagesInUse.size();
   }
 
   /** Gets the instr_num of the Symbol Table.
@@ -75,10 +186,9 @@ public class Memory {
     return instr_num;
   }
 
-  /** Singleton pattern: since the unique constructor of this class is private, this static method
-   * returns the unique allowed instance of Memory, thus subsequent calls of this method will return exactly
-   * the same object.
-   * @return unique instance of Memory
+  /** Singleton pattern: this static method returns the instance of Memory used by the CPU, thus
+   * subsequent calls of this method will return exactly the same object.
+   * @return the instance of Memory used by the CPU
    */
   public static Memory getInstance() {
     if (memory == null) {
@@ -88,11 +198,20 @@ public class Memory {
     return memory;
   }
 
-  /** Gets the index of the given instruction
+  /** Gets the index of the given instruction, from the address it was
+   * stored at.
    * @return the position of the instruction in the list, or -1 if the instruction doesn't exist.
    */
   public int getInstructionIndex(Instruction i) {
-    return instructions.indexOf(i);
+    if (i == null || i.getAddress() < 0 || i.getAddress() / 4 >= codeSize) {
+      return -1;
+    }
+
+    int index = i.getAddress() / 4;
+    Instruction[] page = codePages[index / INSTRUCTIONS_PER_PAGE];
+
+    // The instruction may belong to a program that is no longer loaded.
+    return (page != null && page[index % INSTRUCTIONS_PER_PAGE] == i) ? index : -1;
   }
 
   /** Returns the MemoryElement at given address.
@@ -102,67 +221,357 @@ public class Memory {
    * @throws MemoryElementNotFoundException if given index is too large for this memory.
    */
   public MemoryElement getCellByAddress(long address) throws MemoryElementNotFoundException {
-    int index = (int)(address / 8);
-    return getCellByIndex(index);
+    if (address < 0) {
+      throw new MemoryElementNotFoundException();
+    }
+
+    return getCellByIndex((int) Math.min(address / 8, Integer.MAX_VALUE));
   }
 
-  /** Returns the MemoryElement with the given index.
+  /** Returns the MemoryElement with the given index. If its page was never
+   * written, the element reads zero and allocates the page when its value is
+   * first stored; its label, code and comment are not kept (see
+   * allocateCell()).
    * @param index index of the requested element
    * @return MemoryElement
    * @throws MemoryElementNotFoundException if the given index is out of
    * bounds
    */
   public MemoryElement getCellByIndex(int index) throws MemoryElementNotFoundException {
-    if (index >= CPU.DATALIMIT || index < 0) {
+    if (index >= dataSize || index < 0) {
       throw new MemoryElementNotFoundException();
     }
 
-    return cells.get(index);
+    if (dataPages[index / CELLS_PER_PAGE] == null) {
+      return new MemoryElement(index * 8, this);
+    }
+
+    return allocateCell(index);
   }
 
-  /** This method resets the memory*/
-  public void reset() {
-    for (int i = 0; i < CPU.DATALIMIT; i++) {
-      cells.get(i).reset(false);
-      cells.get(i).setComment("");
-      cells.get(i).setCode("");
-      cells.get(i).setLabel("");
+  /** Returns the MemoryElement with the given index, allocating its page:
+   * used by the loaders, that set the labels and comments of the elements.
+   * @throws MemoryElementNotFoundException if the given index is out of
+   * bounds
+   */
+  MemoryElement allocateCell(int index) throws MemoryElementNotFoundException {
+    if (index >= dataSize || index < 0) {
+      throw new MemoryElementNotFoundException();
+    }
+
+    DataPage page = allocatePage(index);
+    int slot = index % CELLS_PER_PAGE;
+    MemoryElement cell = page.cells[slot];
+
+    if (cell == null) {
+      cell = new MemoryElement(index * 8, page, slot);
+      cell.setReadOnly(isReadOnly(index));
+      page.cells[slot] = cell;
     }
 
-    instructions.clear();
+    return cell;
+  }
+
+  /** Returns the page holding the element with the given index, or null if
+   * the page was never written. */
+  DataPage getPage(int index) {
+    return dataPages[index / CELLS_PER_PAGE];
+  }
+
+  /** Returns the page holding the element with the given index, allocating
+   * it if needed. */
+  DataPage allocatePage(int index) {
+    int p = index / CELLS_PER_PAGE;
+    DataPage page = dataPages[p];
 
-    for (int i = 0; i < CPU.CODELIMIT; i++) {
-      instructions.add(Instruction.buildInstruction("BUBBLE"));
+    if (page == null) {
+      page = new DataPage();
+      dataPages[p] = page;
+      dataPagesInUse.add(p);
     }
 
+    return page;
+  }
+
+  /** Sets the byte order of the data section until the next reset. The
+   * memory is little-endian by default: the byte at the lowest address of a
+   * doubleword is its least significant one.
+   */
+  public void setBigEndian(boolean bigEndian) {
+    this.bigEndian = bigEndian;
+  }
+
+  public boolean isBigEndian() {
+    return bigEndian;
+  }
+
+  /** Returns the offset, counted from the least significant byte of its
+   * doubleword, of the value of the given size stored at the given aligned
+   * address. */
+  public int byteOffset(long address, int size) {
+    int offset = (int)(address % 8);
+    return bigEndian ? 8 - size - offset : offset;
+  }
+
+  /** Copies bytes from the memory to a buffer, filling the remaining space
+   * of the buffer.
+   * @param address address of the first byte, not necessarily aligned
+   * @param dst the buffer, whose position is advanced
+   * @throws MemoryElementNotFoundException if the range exceeds the data section
+   */
+  public void readBytes(long address, ByteBuffer dst) throws MemoryElementNotFoundException {
+    while (dst.hasRemaining()) {
+      long value = getCellByAddress(address).loadBits();
+      int offset = (int)(address % 8);
+      int n = Math.min(8 - offset, dst.remaining());
+
+      for (int b = offset; b < offset + n; ++b) {
+        dst.put((byte)(value >>> (8 * byteOffset(b, 1))));
+      }
+
+      address += n;
+    }
+  }
+
+  /** Copies the remaining bytes of a buffer to the memory.
+   * @param address address of the first byte, not necessarily aligned
+   * @param src the buffer, whose position is advanced
+   * @param instruction the instruction doing the store, or null
+   * @throws MemoryElementNotFoundException if the range exceeds the data section
+   * @throws AddressErrorException if the range includes a read-only mapped file
+   */
+  public void writeBytes(long address, ByteBuffer src, String instruction) throws MemoryElementNotFoundException, AddressErrorException {
+    while (src.hasRemaining()) {
+      MemoryElement cell = getCellForStore(address, instruction);
+      int offset = (int)(address % 8);
+      int n = Math.min(8 - offset, src.remaining());
+      long value = (n == 8) ? 0 : cell.loadBits();
+
+      for (int b = offset; b < offset + n; ++b) {
+        int shift = 8 * byteOffset(b, 1);
+        value = (value & ~(0xffL << shift)) | ((src.get() & 0xffL) << shift);
+      }
+
+      cell.storeBits(value);
+      address += n;
+    }
+  }
+
+  /** Returns the element at the given address, in order to store a value in
+   * it. Every store (instructions, system calls, loaders and the GUI) must get
+   * its elements from here or from writeBytes(), that check that they can be
+   * written.
+   * @param address address of the element, that must be aligned
+   * @param instruction the instruction doing the store, or null if the store
+   *        is not done by an instruction
+   * @throws AddressErrorException if the element belongs to a read-only
+   *         mapped file
+   */
+  public MemoryElement getCellForStore(long address, String instruction) throws MemoryElementNotFoundException, AddressErrorException {
+    MemoryElement cell = getCellByAddress(address);
+
+    if (cell.isReadOnly()) {
+      String message = (instruction == null) ? CurrentLocale.getString("READONLYCELL") : CurrentLocale.getString("READONLYADDRERR") + " " + instruction;
+      throw new AddressErrorException(message + ". " + CurrentLocale.getString("ADDRESS") + ": " + address + ".");
+    }
+
+    return cell;
+  }
+
+  private boolean isReadOnly(int index) {
+    for (int[] range : readOnlyRanges) {
+      if (index >= range[0] && index < range[1]) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /** Maps a binary file in the data section, starting from the element with
+   * the given index. The bytes of the file are stored in the memory in the
+   * same order as the addresses, and the last element is padded with zeros.
+   *
+   * The pages entirely covered by the file are backed by the mapped buffer,
+   * so that loading a large file neither copies it nor grows the heap; the
+   * other elements are filled with a copy of the bytes. The mapping is
+   * copy-on-write (the first store to a page copies it, and the file is
+   * never changed), or read-only, in which case the elements of the file
+   * can't be written.
+   *
+   * @param filename path of the file
+   * @param index index of the first element
+   * @param readOnly true for a read-only mapping, false for copy-on-write
+   * @return the number of elements occupied by the file
+   * @throws MemoryElementNotFoundException if the file doesn't fit in the data section
+   */
+  public int mapFile(String filename, int index, boolean readOnly) throws IOException, MemoryElementNotFoundException {
+    try (RandomAccessFile file = new RandomAccessFile(filename, "r")) {
+      FileChannel channel = file.getChannel();
+      long size = channel.size();
+      long cells = (size + 7) / 8;
+
+      if (index < 0 || size > Integer.MAX_VALUE || index + cells > dataSize) {
+        throw new MemoryElementNotFoundException();
+      }
+
+      ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      int last = index + (int) cells;
+
+      if (readOnly) {
+        readOnlyRanges.add(new int[] {index, last});
+      }
+
+      int i = index;
+
+      while (i < last) {
+        int p = i / CELLS_PER_PAGE;
+        int pageEnd = Math.min((p + 1) * CELLS_PER_PAGE, last);
+        int offset = (i - index) * 8;
+
+        if (i % CELLS_PER_PAGE == 0 && dataPages[p] == null && offset + PAGE_SIZE <= size) {
+          ByteBuffer slice = data.duplicate();
+          slice.limit(offset + PAGE_SIZE);
+          slice.position(offset);
+          dataPages[p] = new DataPage(slice.slice().order(ByteOrder.LITTLE_ENDIAN).asLongBuffer());
+          dataPagesInUse.add(p);
+        } else {
+          for (int j = i; j < pageEnd; ++j, offset += 8) {
+            long value = 0;
+
+            for (int b = Math.min(7, (int)(size - offset - 1)); b >= 0; --b) {
+              value = (value << 8) | (data.get(offset + b) & 0xff);
+            }
+
+            MemoryElement cell = allocateCell(j);
+            cell.setReadOnly(false);
+            cell.storeBits(value);
+            cell.setReadOnly(readOnly);
+          }
+        }
+
+        i = pageEnd;
+      }
+
+      logger.info("Mapped " + filename + " (" + size + " bytes) at address " + index * 8);
+      return (int) cells;
+    }
+  }
+
+  /** This method resets the memory. Only the pages allocated since the last
+   * reset are released, and the sizes of the sections are read again from
+   * the configuration. */
+  public void reset() {
+    for (int p : dataPagesInUse) {
+      dataPages[p] = null;
+    }
+
+    for (int p : codePagesInUse) {
+      codePages[p] = null;
+    }
+
+    dataPagesInUse.clear();
+    codePagesInUse.clear();
+    readOnlyRanges.clear();
+    bigEndian = false;
+    configureSize();
     mem_comments.clear();
     instr_num = 0;
-    // TODO sistemare il reset
   }
 
+  /** Returns the elements of the data pages in use, in order of address. */
   public String toString() {
-    String tmp = "";
+    StringBuilder tmp = new StringBuilder();
+
+    for (int p = 0; p < dataPages.length; p++) {
+      if (dataPages[p] == null) {
+        continue;
+      }
+
+      for (int i = 0; i < CELLS_PER_PAGE; i++) {
+        try {
+          tmp.append(getCellByIndex(p * CELLS_PER_PAGE + i)).append("\n");
+        } catch (MemoryElementNotFoundException e) {
+          // Not possible, the index is within an allocated page.
+        }
+      }
+    }
+
+    return tmp.toString();
+  }
+
+  /** Returns the memory elements built in the data pages in use, in order
+   * of address. */
+  List<MemoryElement> getCells() {
+    List<MemoryElement> list = new ArrayList<MemoryElement>();
+
+    for (DataPage page : dataPages) {
+      if (page == null) {
+        continue;
+      }
+
+      for (MemoryElement cell : page.cells) {
+        if (cell != null) {
+          list.add(cell);
+        }
+      }
+    }
 
-    for (int i = 0; i < CPU.DATALIMIT; i++) {
-      tmp += cells.get(i).toString() + "\n";
+    return list;
+  }
+
+  /** Returns the slots of the code page holding the given instruction index,
+   * allocating the page if needed. */
+  private Instruction[] codePage(int index) {
+    int p = index / INSTRUCTIONS_PER_PAGE;
+    Instruction[] page = codePages[p];
+
+    if (page == null) {
+      page = new Instruction[INSTRUCTIONS_PER_PAGE];
+      codePages[p] = page;
+      codePagesInUse.add(p);
     }
 
-    return tmp;
+    return page;
   }
 
   public void addInstruction(Instruction i, int address) throws SymbolTableOverflowException {
     instr_num++;
 
-    if (address > CPU.CODELIMIT) {
+    if (address < 0 || address / 4 >= codeSize) {
       throw new SymbolTableOverflowException();
     }
 
     int listIndex = address / 4;
-    instructions.set(listIndex, i);
+    codePage(listIndex)[listIndex % INSTRUCTIONS_PER_PAGE] = i;
+    i.setAddress(address);
   }
 
+  /** Returns the instruction at the given address. Empty addresses hold a
+   * BUBBLE, kept once built if its page is allocated: the pages of the code
+   * section are only allocated by addInstruction().
+   * @throws IndexOutOfBoundsException if the address is outside the code section
+   */
   public Instruction getInstruction(int address) {
-    return instructions.get(address / 4);
+    int index = address / 4;
+
+    if (address < 0 || index >= codeSize) {
+      throw new IndexOutOfBoundsException("Address " + address + " outside of the code section");
+    }
+
+    Instruction[] page = codePages[index / INSTRUCTIONS_PER_PAGE];
+    Instruction instr = (page != null) ? page[index % INSTRUCTIONS_PER_PAGE] : null;
+
+    if (instr == null) {
+      instr = Instruction.buildInstruction("BUBBLE");
+      instr.setAddress(index * 4);
+
+      if (page != null) {
+        page[index % INSTRUCTIONS_PER_PAGE] = instr;
+      }
+    }
+
+    return instr;
   }
 
   /** This method returns the instruction at the specified position.
@@ -170,16 +579,33 @@ public class Memory {
   *   @param address a BitSet64 object holding the address of the Instruction
     */
   public Instruction getInstruction(BitSet64 address) throws HaltException, IrregularStringOfBitsException {
-    try {
-      return instructions.get((int)(Converter.binToLong(address.getBinString(), false) / 4));
-    } catch (IndexOutOfBoundsException e) {
+    long value = Converter.binToLong(address.getBinString(), false);
+
+    if (value < 0 || value / 4 >= codeSize) {
       throw new HaltException();
     }
+
+    return getInstruction((int) value);
   }
 
-  /** This method returns the list of instructions in memory in order to be showed in the GUICode
+  /** This method returns the list of the instructions added to the memory,
+   * in order of address. The bubbles and the empty slots are skipped, so
+   * the index of an instruction in the list is not its address / 4: use
+   * Instruction.getAddress() to get the address.
    */
   public List<Instruction> getInstructions() {
-    return instructions;
+    List<Instruction> list = new ArrayList<Instruction>(instr_num);
+    List<Integer> pages = new ArrayList<Integer>(codePagesInUse);
+    Collections.sort(pages);
+
+    for (int p : pages) {
+      for (Instruction i : codePages[p]) {
+        if (i != null && !i.isBubble()) {
+          list.add(i);
+        }
+      }
+    }
+
+    return list;
   }
 }
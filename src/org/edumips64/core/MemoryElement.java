@@ -33,17 +33,82 @@ public class MemoryElement extends BitSet64 {
   private String label;
   private String code;
 
+  // The value is stored in a slot of a memory page, if any.
+  private Memory.DataPage page;
+  private int slot;
+  private long value;
+  private boolean readOnly;
+  // Memory whose page, not allocated yet, will hold the value.
+  private Memory memory;
+
   /** Creates a new MemoryElement with given address.
    * @param address address of the MemoryElement
    */
   public MemoryElement(int address) {
+    this(address, null, 0);
+  }
+
+  /** Creates a new MemoryElement with given address, whose value is kept in
+   * the given slot of a memory page.
+   * @param address address of the MemoryElement
+   * @param page the memory page holding the value
+   * @param slot position of the value of this MemoryElement in the page
+   */
+  MemoryElement(int address, Memory.DataPage page, int slot) {
     super();
     this.address = address;
+    this.page = page;
+    this.slot = slot;
     comment = "";
     label = "";
     code = "";
   }
 
+  /** Creates a MemoryElement of a page of the given memory that was never
+   * written: it reads zero until the page is allocated, and its first store
+   * allocates it. */
+  MemoryElement(int address, Memory memory) {
+    this(address, null, address / 8 % Memory.CELLS_PER_PAGE);
+    this.memory = memory;
+  }
+
+  protected long loadBits() {
+    if (page == null && memory != null) {
+      page = memory.getPage(address / 8);
+    }
+
+    return (page != null) ? page.load(slot) : value;
+  }
+
+  /** The stores are checked by Memory.getCellForStore(), that raises an
+   * AddressErrorException; this only guards the read-only pages.
+   * @throws ReadOnlyBufferException if this MemoryElement is read-only */
+  protected void storeBits(long value) {
+    if (readOnly) {
+      throw new java.nio.ReadOnlyBufferException();
+    }
+
+    if (page == null && memory != null) {
+      page = memory.allocatePage(address / 8);
+    }
+
+    if (page != null) {
+      page.store(slot, value);
+    } else {
+      this.value = value;
+    }
+  }
+
+  /** Returns true if this MemoryElement belongs to a read-only mapped file,
+   * and can't be written. */
+  public boolean isReadOnly() {
+    return readOnly;
+  }
+
+  void setReadOnly(boolean readOnly) {
+    this.readOnly = readOnly;
+  }
+
   /** Returns the address of this MemoryElement
    * @return address of the MemoryElement
    */
@@ -100,13 +165,7 @@ public class MemoryElement extends BitSet64 {
    * @return signed numerical value stored in this MemoryElement.
    */
   public long getValue() {
-    try {
-      return Converter.binToLong(this.getBinString(), false);
-    } catch (IrregularStringOfBitsException e) {
-      System.err.println("Errore in un registro");
-      this.reset(false);  //azzeriamo il registro
-      return 0;
-    }
+    return loadBits();
   }
 
   /** Returns a string represention of this MemoryElement, formatted with the address and
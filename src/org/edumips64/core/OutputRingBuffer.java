@@ -0,0 +1,135 @@
+/* OutputRingBuffer.java
+ *
+ * Bounded buffer between the simulated standard outputs and their consumers.
+ * (c) 2016 EduMIPS64 project
+ *
+ * This file is part of the EduMIPS64 project, and is released under the GNU
+ * General Public License.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.edumips64.core;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** Ring buffer of characters written by the simulator and drained to a sink.
+ *
+ * The buffer has a single producer, the thread running the simulation, that
+ * writes without taking locks: it only publishes the new end of the data.
+ * The data is moved to the sink by drain(), called periodically by the
+ * consumer (e.g. a timer of the GUI), and by the producer itself when the
+ * buffer is full or when it is flushed, so that the producer never waits for
+ * the consumer. Consecutive writes reach the sink as a single block.
+ */
+public class OutputRingBuffer extends Writer {
+  /** Default capacity, in characters. */
+  public static final int DEFAULT_CAPACITY = 64 * 1024;
+
+  private final char[] ring;
+  private final int mask;
+  private final Writer sink;
+
+  // Number of characters written and drained since the creation.
+  private final AtomicLong tail = new AtomicLong();
+  private final AtomicLong head = new AtomicLong();
+
+  /** Creates a buffer with the default capacity.
+   * @param sink the writer that receives the drained characters
+   */
+  public OutputRingBuffer(Writer sink) {
+    this(DEFAULT_CAPACITY, sink);
+  }
+
+  /**
+   * @param capacity the capacity, rounded up to a power of two
+   * @param sink the writer that receives the drained characters
+   */
+  public OutputRingBuffer(int capacity, Writer sink) {
+    int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+    ring = new char[size];
+    mask = size - 1;
+    this.sink = sink;
+  }
+
+  /** Writes the characters in the buffer, draining it when it is full. Must
+   * be called by the producer only. */
+  @Override
+  public void write(char[] cbuf, int off, int len) throws IOException {
+    while (len > 0) {
+      long t = tail.get();
+      int free = ring.length - (int)(t - head.get());
+
+      if (free == 0) {
+        drain();
+        continue;
+      }
+
+      int n = Math.min(free, len);
+      int start = (int)(t & mask);
+      int first = Math.min(n, ring.length - start);
+      System.arraycopy(cbuf, off, ring, start, first);
+      System.arraycopy(cbuf, off + first, ring, 0, n - first);
+
+      // Publish the characters to the consumer.
+      tail.lazySet(t + n);
+      off += n;
+      len -= n;
+    }
+  }
+
+  /** Moves the buffered characters to the sink. Can be called by any thread.
+   * @return the number of characters moved
+   */
+  public synchronized int drain() throws IOException {
+    long h = head.get();
+    long t = tail.get();
+    int n = (int)(t - h);
+
+    if (n == 0) {
+      return 0;
+    }
+
+    int start = (int)(h & mask);
+    int first = Math.min(n, ring.length - start);
+    sink.write(ring, start, first);
+
+    if (n > first) {
+      sink.write(ring, 0, n - first);
+    }
+
+    // The space is given back to the producer only after the copy.
+    head.set(t);
+    return n;
+  }
+
+  /** Returns the number of characters waiting to be drained. */
+  public int pending() {
+    return (int)(tail.get() - head.get());
+  }
+
+  /** Drains the buffer and flushes the sink. */
+  @Override
+  public void flush() throws IOException {
+    drain();
+    sink.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    flush();
+  }
+}
@@ -73,13 +73,53 @@ public class Parser {
   int memoryCount;
   String filename;
   private SymbolTable symTab;
+  /** Included files, kept across the parsings
+  */
+  private SourceCache sources = new SourceCache(this);
+  /** Images of the programs parsed without errors, by key
+  */
+  private Map<String, ProgramImage> images = new LinkedHashMap<String, ProgramImage>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, ProgramImage> eldest) {
+      return size() > MAX_IMAGES;
+    }
+  };
+  private static final int MAX_IMAGES = 16;
+  /** Programs loaded from their images, and images read from disk
+  */
+  private static final StripedCounter imageLoads = Metrics.getInstance().counter("program_images_loaded");
+  private static final StripedCounter imageReads = Metrics.getInstance().counter("program_images_read");
+  /** True if the program being parsed maps a file, so that its image can't
+   *  be cached
+  */
+  private boolean mapsFiles;
+  /** Memory filled by the parser
+  */
+  private Memory mem;
+  /** True for the parser of the CPU, that loads binaries and keeps the
+   *  images of the programs
+  */
+  private boolean shared;
+  /** FP exceptions raised by the conversion of the .double values, kept
+   *  apart from the FCSR of the CPU
+  */
+  private FCSRRegister fcsr = new FCSRRegister();
 
   /** Singleton pattern constructor
   */
   private Parser() {
-    symTab = SymbolTable.getInstance();
+    this(Memory.getInstance(), SymbolTable.getInstance());
+    shared = true;
     CPU.getInstance();
   }
+
+  /** Builds a parser that fills the given memory and symbol table, used by
+   *  the Assembler
+  */
+  Parser(Memory mem, SymbolTable symTab) {
+    this.mem = mem;
+    this.symTab = symTab;
+  }
   /** Singleton Pattern implementation
    *  @return get the Singleton instance of the Parser
    */
@@ -91,112 +131,65 @@ public class Parser {
     return instance;
   }
 
-  private String fileToString(String filename) throws IOException {
-    String tmp;
-    try (BufferedReader r = new BufferedReader(new InputStreamReader(new FileInputStream(filename), "ISO-8859-1"))) {
-      tmp = fileToString(r);
-    } catch (IOException e) {
-      throw e;
-    }
-    return tmp;
-  }
-
-  private String fileToString(BufferedReader in) throws IOException {
-    String ret = "";
-    String line;
-
-    while ((line = in.readLine()) != null) {
-      String tmp = cleanFormat(line);
-
-      if (tmp != null) {
-        ret += tmp + "\n";
-      }
-    }
-
-    return ret;
-  }
-
-  /**
-   *
+  /** Process the #include (Syntax #include file.ext )
+   * @return the lines of the program, with the included files
    */
-  private void checkLoop(String data, Stack<String> included) throws IOException, ParserMultiException {
-    int i = 0;
-
-    do {
-      i = data.indexOf("#include ", i);
-
-      if (i != -1) {
-        int end = data.indexOf("\n", i);
-
-        if (end == -1) {
-          end = data.length();
-        }
-
-        int a = included.search(data.substring(i + 9, end).trim());
-
-        if (a != -1) {
-          error = new ParserMultiException();
-          error.add("INCLUDE_LOOP", 0, 0, "#include " + data.substring(i + 9, end).trim());
-          throw error;
-        }
-
-        String filename = data.substring(i + 9, end).split(";") [0].trim();
-
-        if (!(new File(filename)).isAbsolute()) {
-          filename = path + filename;
-        }
-        
-        String filetmp = fileToString(filename);
-        checkLoop(filetmp , included);
-        i ++;
-      }
-    } while (i != -1);
+  private List<String> preprocessor() throws IOException, ParserMultiException {
+    List<String> source = new ArrayList<String>();
+    Deque<String> included = new ArrayDeque<String>();
+    included.push(new File(this.filename).getCanonicalPath());
+    include(sources.readLines(in), source, included);
+    return source;
   }
 
-  /** Process the #include (Syntax #include file.ext )
+  /** Appends the given lines to the source, replacing each #include with
+   * the lines of the included file.
+   * @param included canonical paths of the files being included, used to
+   * detect loops
    */
-  private String preprocessor() throws IOException, ParserMultiException {
-    String filetmp = "";
-
-    filetmp = fileToString(in);
-
-    int i = 0;
-
-    //check loop
-    Stack<String> included = new Stack<String>();
-    included.push(this.filename);
+  private void include(List<String> lines, List<String> source, Deque<String> included) throws IOException, ParserMultiException {
+    for (String line : lines) {
+      int i = line.indexOf("#include ");
 
-    checkLoop(filetmp, included);
-
-    // include
-    do {
-      i = filetmp.indexOf("#include ", i);
+      if (i == -1) {
+        source.add(line);
+        continue;
+      }
 
-      if (i != -1) {
-        int end = filetmp.indexOf("\n", i);
+      logger.info("Open by #include: " + line.substring(i + 9).trim());
+      String filename = line.substring(i + 9).split(";") [0].trim();
 
-        if (end == -1) {
-          end = filetmp.length();
-        }
-
-        logger.info("Open by #include: " + filetmp.substring(i + 9, end).trim());
-        String filename = filetmp.substring(i + 9, end).split(";") [0].trim();
+      if (!(new File(filename)).isAbsolute()) {
+        filename = path + filename;
+      }
 
-        if (!(new File(filename)).isAbsolute()) {
-          filename = path + filename;
-        }
+      File file = new File(filename).getCanonicalFile();
 
-        String fileContents = fileToString(filename);
-        filetmp = filetmp.substring(0, i) + fileContents + filetmp.substring(end);
+      if (included.contains(file.getPath())) {
+        error = new ParserMultiException();
+        error.add("INCLUDE_LOOP", 0, 0, "#include " + line.substring(i + 9).trim());
+        throw error;
       }
 
-    } while (i != -1);
+      int first = source.size();
+      included.push(file.getPath());
+      include(sources.getLines(file), source, included);
+      included.pop();
 
-    return filetmp;
+      // The text before the directive is joined to the first included line,
+      // and the line of the directive ends after the included text.
+      if (source.size() > first) {
+        source.set(first, line.substring(0, i) + source.get(first));
+        source.add("");
+      } else {
+        source.add(line.substring(0, i));
+      }
+    }
   }
 
 
-  /** Loading from File
+  /** Loading from File. Files holding machine code are loaded by
+   * BinaryLoader.
    * @param filename A String with the system-dependent file name
    * @throws FileNotFoundException if the file does not exist, is a directory rather than a regular file, or for some other reason cannot be opened for reading
    * @throws SecurityException if a security manager exists and its checkRead method denies read access to the file.
@@ -205,6 +198,12 @@ public class Parser {
 
   {
     logger.info("About to parse " + filename);
+
+    if (shared && BinaryLoader.isBinary(new File(filename))) {
+      BinaryLoader.load(new File(filename));
+      return;
+    }
+
     in = new BufferedReader(new InputStreamReader(new FileInputStream(filename), "ISO-8859-1"));
     this.filename = filename;
     int oldindex = 0;
@@ -218,20 +217,148 @@ public class Parser {
     }
 
     path = filename.substring(0, oldindex + 1);
-    String code = preprocessor();
-    parse(code.toCharArray());
+    List<String> source;
+
+    try {
+      source = preprocessor();
+    } finally {
+      in.close();
+    }
+
+    // The images can be disabled, e.g. to time the parsing itself.
+    if (!shared || !ConfigManager.getConfig().getBoolean("image_cache")) {
+      doParsing(source.iterator());
+      return;
+    }
+
+    String key = ProgramImage.key(source, ConfigManager.getConfig());
+
+    if (loadImage(key)) {
+      logger.info(filename + " loaded from its program image.");
+      return;
+    }
+
+    mapsFiles = false;
+
+    try {
+      doParsing(source.iterator());
+    } catch (ParserMultiException e) {
+      if (!e.hasErrors()) {
+        saveImage(key, e);
+      }
+
+      throw e;
+    }
+
+    saveImage(key, null);
     logger.info(filename + " correctly parsed.");
   }
+
+  /** Directory of the program images on disk, or null if they are kept
+   *  only in memory
+   */
+  private File getImageDirectory() {
+    String dir = ConfigManager.getConfig().getString("image_cache_dir");
+    return (dir == null || dir.isEmpty()) ? null : new File(dir);
+  }
+
+  /** Loads the image with the given key, from memory or from disk, in the
+   *  memory and in the symbol table.
+   *  @return false if there is no such image
+   *  @throws ParserMultiWarningException if the parsing of the program gave
+   *  warnings
+   */
+  private boolean loadImage(String key) throws ParserMultiWarningException {
+    ProgramImage image = images.get(key);
+    File dir = getImageDirectory();
+
+    if (image == null && dir != null) {
+      File file = new File(dir, key + ".img");
+
+      if (file.isFile()) {
+        try {
+          image = ProgramImage.read(file);
+          images.put(key, image);
+          imageReads.increment();
+        } catch (IOException e) {
+          logger.warning("Can't read the program image " + file + ": " + e.getMessage());
+        }
+      }
+    }
+
+    if (image == null) {
+      return false;
+    }
+
+    ParserMultiWarningException warnings;
+
+    try {
+      warnings = image.load(mem, symTab);
+    } catch (Exception e) {
+      // The image doesn't fit the memory: parse the program again.
+      logger.warning("Can't load the program image " + key + ": " + e);
+      images.remove(key);
+      mem.reset();
+      symTab.reset();
+      return false;
+    }
+
+    imageLoads.increment();
+
+    if (warnings != null) {
+      throw warnings;
+    }
+
+    return true;
+  }
+
+  /** Forgets the images kept in memory: the next parsings read them from
+   *  disk, if there is an image directory, or parse the programs again.
+   */
+  public void clearImages() {
+    images.clear();
+  }
+
+  /** Saves the image of the program just parsed, unless it maps files
+   *  whose content may change.
+   */
+  private void saveImage(String key, ParserMultiException warnings) {
+    if (mapsFiles) {
+      return;
+    }
+
+    ProgramImage image = ProgramImage.capture(mem, symTab, warnings);
+    images.put(key, image);
+    File dir = getImageDirectory();
+
+    if (dir != null) {
+      try {
+        dir.mkdirs();
+        image.write(new File(dir, key + ".img"));
+      } catch (IOException e) {
+        logger.warning("Can't write the program image " + key + ": " + e.getMessage());
+      }
+    }
+  }
   /** Loading from buffer
    * @param buffer An Array of char with the MIPS code
    * */
   public void parse(char[] buffer)  throws  IOException, ParserMultiException {
-    in = new BufferedReader(new CharArrayReader(buffer));
-    doParsing();
+    List<String> source = new ArrayList<String>();
+
+    try (BufferedReader r = new BufferedReader(new CharArrayReader(buffer))) {
+      String line;
+
+      while ((line = r.readLine()) != null) {
+        source.add(line);
+      }
+    }
+
+    doParsing(source.iterator());
   }
   /** commit the parsing (public or private?)
   */
-  private void doParsing() throws IOException, ParserMultiException {
+  private void doParsing(Iterator<String> lines) throws IOException, ParserMultiException {
 
     boolean isFirstOutOfInstructionMemory = false;
     isFirstOutOfMemory = true;
@@ -247,12 +374,12 @@ public class Parser {
 
     LinkedList<VoidJump> voidJump = new LinkedList<VoidJump>();
 
-    Memory mem = Memory.getInstance();
 
     memoryCount = 0;
     String lastLabel = "";
 
-    while ((line = in.readLine()) != null) {  //read all file
+    while (lines.hasNext()) {  //read all file
+      line = lines.next();
       row++;
 
       for (int i = 0; i < line.length(); i++) {
@@ -299,7 +426,7 @@ public class Parser {
               }
 
               try {
-                if (!((instr.compareToIgnoreCase(".ASCII") == 0) || instr.compareToIgnoreCase(".ASCIIZ") == 0)) {
+                if (!((instr.compareToIgnoreCase(".ASCII") == 0) || instr.compareToIgnoreCase(".ASCIIZ") == 0 || instr.compareToIgnoreCase(".MMAP") == 0)) {
                   // We don't want strings to be uppercase, do we?
                   parameters = cleanFormat(line.substring(end + 2));
                   parameters = parameters.toUpperCase();
@@ -330,7 +457,7 @@ public class Parser {
               }
 
               MemoryElement tmpMem = null;
-              tmpMem = mem.getCellByIndex(memoryCount);
+              tmpMem = mem.allocateCell(memoryCount);
               logger.info("line: " + line);
               String[] comment = (line.substring(i)).split(";", 2);
 
@@ -355,7 +482,7 @@ public class Parser {
                   for (String current_string : pList) {
                     logger.info("Current string: [" + current_string + "]");
                     logger.info(".ascii(z): requested new memory cell (" + memoryCount + ")");
-                    tmpMem = mem.getCellByIndex(memoryCount);
+                    tmpMem = mem.allocateCell(memoryCount);
                     memoryCount++;
                     int posInWord = 0;
                     // TODO: Controllo sui parametri (es. virgolette?)
@@ -367,7 +494,7 @@ public class Parser {
                     for (int tmpi = 0; tmpi < num; tmpi++) {
                       if ((tmpi - escaped) % 8 == 0 && (tmpi - escaped) != 0 && !escape) {
                         logger.info(".ascii(z): requested new memory cell (" + memoryCount + ")");
-                        tmpMem = mem.getCellByIndex(memoryCount);
+                        tmpMem = mem.allocateCell(memoryCount);
                         memoryCount++;
                         posInWord = 0;
                       }
@@ -448,7 +575,7 @@ public class Parser {
 
                     for (int tmpi = 0; tmpi < num; tmpi++) {
                       if (tmpi % 8 == 0 && tmpi != 0) {
-                        tmpMem = mem.getCellByIndex(memoryCount);
+                        tmpMem = mem.allocateCell(memoryCount);
                         memoryCount++;
                         posInWord = 0;
                       }
@@ -469,6 +596,46 @@ public class Parser {
                 }
 
                 posInWord ++;
+                end = line.length();
+              } else if (instr.compareToIgnoreCase(".MMAP") == 0) {
+                // .mmap "file"[, ro|cow]
+                String[] mmapParams = parameters.split(",");
+                String mapped = mmapParams[0].trim();
+
+                if (mapped.length() > 1 && mapped.startsWith("\"") && mapped.endsWith("\"")) {
+                  mapped = mapped.substring(1, mapped.length() - 1);
+                }
+
+                boolean readOnly = true;
+
+                if (mmapParams.length > 1) {
+                  String mode = mmapParams[1].trim();
+
+                  if (mode.equalsIgnoreCase("cow")) {
+                    readOnly = false;
+                  } else if (!mode.equalsIgnoreCase("ro")) {
+                    numError++;
+                    error.add("INVALIDVALUE", row, i + 1, line);
+                    i = line.length();
+                    continue;
+                  }
+                }
+
+                if (path != null && !(new File(mapped)).isAbsolute()) {
+                  mapped = path + mapped;
+                }
+
+                mapsFiles = true;
+
+                try {
+                  memoryCount += mem.mapFile(mapped, memoryCount, readOnly);
+                } catch (IOException ex) {
+                  numError++;
+                  error.add("FILE_NOT_FOUND", row, i + 1, line);
+                  i = line.length();
+                  continue;
+                }
+
                 end = line.length();
               } else if (instr.compareToIgnoreCase(".WORD") == 0 || instr.compareToIgnoreCase(".WORD64") == 0) {
                 logger.info("pamword: " + parameters);
@@ -499,7 +666,7 @@ public class Parser {
             if (status == 1) {
               logger.info("in .data section");
               MemoryElement tmpMem = null;
-              tmpMem = mem.getCellByIndex(memoryCount);
+              tmpMem = mem.allocateCell(memoryCount);
 
               try {
                 symTab.setCellLabel(memoryCount * 8, line.substring(i, end));
@@ -996,12 +1163,12 @@ public class Parser {
                         } else if (isNumber(param.substring(indPar, endPar).trim())) {
                           int tmp = Integer.parseInt(param.substring(indPar, endPar).trim());
 
-                          //if (tmp<0 || tmp%2!=0 || tmp > org.edumips64.core.CPU.DATALIMIT)
-                          if (tmp < 0 || tmp > org.edumips64.core.CPU.DATALIMIT) {
+                          //if (tmp<0 || tmp%2!=0 || tmp > mem.getMemorySize())
+                          if (tmp < 0 || tmp > mem.getMemorySize()) {
                             numError++;
                             String er = "LABELADDRESSINVALID";
 
-                            if (tmp > org.edumips64.core.CPU.DATALIMIT) {
+                            if (tmp > mem.getMemorySize()) {
                               er = "LABELTOOLARGE";
                             }
 
@@ -1209,8 +1376,6 @@ public class Parser {
       }
     }
 
-    in.close();
-
     if (!halt) { //if Halt is not present in code
       numWarning++;
       warning.add("HALT_NOT_PRESENT", row, 0, "");
@@ -1241,6 +1406,11 @@ public class Parser {
       } // impossible
     }
 
+    // Pre-decode the whole code segment, now that all the parameters are known.
+    for (Instruction instr : mem.getInstructions()) {
+      instr.decode();
+    }
+
     if (numError > 0) {
       throw error;
     } else if (numWarning > 0) {
@@ -1433,12 +1603,11 @@ public class Parser {
    *  @param instr params
    */
   private void writeDoubleInMemory(int row,  int i, int end, String line, String instr) throws MemoryElementNotFoundException {
-    Memory mem = Memory.getInstance();
     String value[] = instr.split(",");
     MemoryElement tmpMem = null;
 
     for (int j = 0; j < Array.getLength(value); j++) {
-      tmpMem = mem.getCellByIndex(memoryCount);
+      tmpMem = mem.allocateCell(memoryCount);
       memoryCount++;
       Pattern p = Pattern.compile("-?[0-9]+.[0-9]+");
       Matcher m = p.matcher(value[j]);
@@ -1475,7 +1644,19 @@ public class Parser {
 
       if (b) {
         try {
-          tmpMem.setBits(org.edumips64.core.fpu.FPInstructionUtils.doubleToBin(value[j]), 0);
+          fcsr.resetStatus();
+          fcsr.setEnables(FCSRRegister.configuredEnables(ConfigManager.getConfig()));
+          tmpMem.setBits(org.edumips64.core.fpu.FPInstructionUtils.doubleToBin(value[j], fcsr), 0);
+
+          // Exceptions that don't trap store the special value, with a
+          // warning. An exponent too large to be read flags V.
+          if (fcsr.getFCSRFlags(FCSRRegister.Flag.O) || fcsr.getFCSRFlags(FCSRRegister.Flag.V)) {
+            numWarning++;
+            warning.add("FP_OVERFLOW", row, i + 1, line);
+          } else if (fcsr.getFCSRFlags(FCSRRegister.Flag.U)) {
+            numWarning++;
+            warning.add("FP_UNDERFLOW", row, i + 1, line);
+          }
         }
         /* catch(org.edumips64.core.fpu.FPExponentTooLargeException ex)
          {
@@ -1525,7 +1706,6 @@ public class Parser {
    *  @param name type of data
    */
   private void writeIntegerInMemory(int row,  int i, int end, String line, String instr, int numBit, String name) throws MemoryElementNotFoundException {
-    Memory mem = Memory.getInstance();
     int posInWord = 0; //position of byte to write into a doubleword
     String value[] = instr.split(",");
     MemoryElement tmpMem = null;
@@ -1533,7 +1713,7 @@ public class Parser {
     for (int j = 0; j < Array.getLength(value); j++) {
       if (j % (64 / numBit) == 0) {
         posInWord = 0;
-        tmpMem = mem.getCellByIndex(memoryCount);
+        tmpMem = mem.allocateCell(memoryCount);
         memoryCount++;
       }
 
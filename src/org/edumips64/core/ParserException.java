@@ -34,7 +34,7 @@ import org.edumips64.utils.*;
 public class ParserException {
 
   private int row, column;
-  private String line, description;
+  private String line, description, key;
   private boolean isError;
 
   /** Create a new instance of ParserException
@@ -47,6 +47,7 @@ public class ParserException {
     this.row = row;
     this.column = column;
     this.line = line;
+    this.key = description;
     this.description = CurrentLocale.getString(description);
 
   }
@@ -57,6 +58,20 @@ public class ParserException {
   public boolean isError() {
     return isError;
   }
+  /** Returns the key of the description, in the messages bundle
+   */
+  public String getKey() {
+    return key;
+  }
+  public int getRow() {
+    return row;
+  }
+  public int getColumn() {
+    return column;
+  }
+  public String getLine() {
+    return line;
+  }
   /** Returns a string representation of the ParserException
    * @return a string representation of the ParserException
    */
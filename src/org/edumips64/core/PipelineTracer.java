@@ -0,0 +1,163 @@
+/* PipelineTracer.java
+ *
+ * Base class for the streaming exporters of the pipeline timeline.
+ * (c) 2016 EduMIPS64 project
+ *
+ * This file is part of the EduMIPS64 project, and is released under the GNU
+ * General Public License.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.edumips64.core;
+
+import org.edumips64.core.is.Instruction;
+
+import java.io.*;
+import java.util.Map;
+
+/** Streams the occupancy of the pipeline to a file, one record per cycle.
+ *
+ * Like CycleBuilder, a tracer must be stepped after every CPU.step(): it
+ * samples the integer pipeline, the stages of the FP pipeline and the stall
+ * counters of the CPU, and hands a snapshot to the concrete format. Nothing
+ * is kept in memory besides the current snapshot, so that runs of any length
+ * can be traced.
+ */
+public abstract class PipelineTracer implements Closeable {
+  public enum Format {BINARY, CHROME}
+
+  /** Names of the traced slots, in the order used by the snapshots. */
+  public static final String[] SLOT_NAMES = {
+    "IF", "ID", "EX", "MEM", "WB",
+    "A1", "A2", "A3", "A4",
+    "M1", "M2", "M3", "M4", "M5", "M6", "M7",
+    "DIV"
+  };
+  public static final int SLOTS = SLOT_NAMES.length;
+
+  /** Stall reasons, used as bits of the stall mask of each cycle. */
+  public static final int STALL_RAW = 1;
+  public static final int STALL_WAW = 1 << 1;
+  public static final int STALL_DIVIDER = 1 << 2;
+  public static final int STALL_EX = 1 << 3;
+  public static final int STALL_FUNC_UNIT = 1 << 4;
+  public static final int STALL_MEMORY = 1 << 5;
+  public static final int STALL_BRANCH_MISPREDICTION = 1 << 6;
+  public static final String[] STALL_NAMES = {"RAW", "WAW", "StDiv", "StEx", "StFun", "Str", "BranchMispred"};
+
+  protected CPU cpu;
+  private Instruction[] slots;
+  private int lastCycle;
+  private int RAWStalls, WAWStalls, dividerStalls, exStalls, funcUnitStalls, memoryStalls, branchStalls;
+
+  protected PipelineTracer() {
+    cpu = CPU.getInstance();
+    slots = new Instruction[SLOTS];
+    lastCycle = cpu.getCycles();
+    updateStalls();
+  }
+
+  /** Creates a tracer of the given format writing to the given file. */
+  public static PipelineTracer create(Format format, String filename) throws IOException {
+    OutputStream out = new BufferedOutputStream(new FileOutputStream(filename), 1 << 16);
+
+    if (format == Format.BINARY) {
+      return new BinaryPipelineTracer(out);
+    }
+
+    return new ChromePipelineTracer(out);
+  }
+
+  /** Samples the CPU. Must be called after each CPU.step(). */
+  public void step() throws IOException {
+    int cycle = cpu.getCycles();
+
+    if (cycle == lastCycle) {
+      return;
+    }
+
+    lastCycle = cycle;
+    Map<CPU.PipeStatus, Instruction> pipe = cpu.getPipeline();
+    slots[0] = visible(pipe.get(CPU.PipeStatus.IF));
+    slots[1] = visible(pipe.get(CPU.PipeStatus.ID));
+    slots[2] = visible(pipe.get(CPU.PipeStatus.EX));
+    slots[3] = visible(pipe.get(CPU.PipeStatus.MEM));
+    slots[4] = visible(pipe.get(CPU.PipeStatus.WB));
+
+    for (int i = 1; i <= 4; ++i) {
+      slots[4 + i] = visible(cpu.getInstructionByFuncUnit("ADDER", i));
+    }
+
+    for (int i = 1; i <= 7; ++i) {
+      slots[8 + i] = visible(cpu.getInstructionByFuncUnit("MULTIPLIER", i));
+    }
+
+    slots[16] = visible(cpu.getInstructionByFuncUnit("DIVIDER", 0));
+
+    int stalls = 0;
+
+    if (RAWStalls != cpu.getRAWStalls()) {
+      stalls |= STALL_RAW;
+    }
+
+    if (WAWStalls != cpu.getWAWStalls()) {
+      stalls |= STALL_WAW;
+    }
+
+    if (dividerStalls != cpu.getStructuralStallsDivider()) {
+      stalls |= STALL_DIVIDER;
+    }
+
+    if (exStalls != cpu.getStructuralStallsEX()) {
+      stalls |= STALL_EX;
+    }
+
+    if (funcUnitStalls != cpu.getStructuralStallsFuncUnit()) {
+      stalls |= STALL_FUNC_UNIT;
+    }
+
+    if (memoryStalls != cpu.getMemoryStalls()) {
+      stalls |= STALL_MEMORY;
+    }
+
+    if (branchStalls != cpu.getBranchMispredictionStalls()) {
+      stalls |= STALL_BRANCH_MISPREDICTION;
+    }
+
+    updateStalls();
+    writeCycle(cycle, slots, stalls);
+  }
+
+  private static Instruction visible(Instruction i) {
+    return (i == null || i.isBubble()) ? null : i;
+  }
+
+  private void updateStalls() {
+    RAWStalls = cpu.getRAWStalls();
+    WAWStalls = cpu.getWAWStalls();
+    dividerStalls = cpu.getStructuralStallsDivider();
+    exStalls = cpu.getStructuralStallsEX();
+    funcUnitStalls = cpu.getStructuralStallsFuncUnit();
+    memoryStalls = cpu.getMemoryStalls();
+    branchStalls = cpu.getBranchMispredictionStalls();
+  }
+
+  /** Writes the snapshot of a cycle.
+   * @param cycle the cycle number
+   * @param slots the instructions in each slot (see SLOT_NAMES), null if empty
+   * @param stalls the mask of the stalls that happened in the cycle
+   */
+  protected abstract void writeCycle(int cycle, Instruction[] slots, int stalls) throws IOException;
+}
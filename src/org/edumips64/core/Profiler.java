@@ -0,0 +1,444 @@
+/* Profiler.java
+ *
+ * Attribution of cycles and stalls to the addresses of the instructions.
+ * (c) 2016 EduMIPS64 project
+ *
+ * This file is part of the EduMIPS64 project, and is released under the GNU
+ * General Public License.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.edumips64.core;
+
+import org.edumips64.core.is.FlowControlInstructions;
+import org.edumips64.core.is.Instruction;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+
+/** Per-address profile of the execution.
+ *
+ * Every cycle is charged to an instruction: when an instruction leaves the
+ * CPU (WB in the pipeline, commit or completion in the other modes) it gets
+ * the cycles elapsed since the previous one left, so that the cycles of the
+ * whole run add up to the cycles of the CPU. Each stall is charged to the
+ * instruction that was stalled, and the RAW and WAW stalls also to the
+ * instruction that caused them.
+ *
+ * The counters are arrays indexed by address, and are aggregated on demand
+ * per basic block and per label of the symbol table.
+ */
+public class Profiler {
+  /** The kinds of stall counted by the CPU in the PIPELINED mode. */
+  public enum Stall {RAW, WAW, DIVIDER, FUNC_UNIT, EX, MEMORY, BRANCH_MISPREDICTION}
+
+  private static final int KINDS = Stall.values().length;
+
+  /** Cycles, executions and stalls of a range of addresses. */
+  public static class Region {
+    private final String name;
+    private final int start, end;
+    private int cycles, executions, causedStalls;
+    private int[] stalls = new int[KINDS];
+
+    Region(String name, int start, int end) {
+      this.name = name;
+      this.start = start;
+      this.end = end;
+    }
+
+    /** Returns the instruction, the label or the first address of the region. */
+    public String getName() {
+      return name;
+    }
+
+    /** Returns the address of the first instruction of the region. */
+    public int getStart() {
+      return start;
+    }
+
+    /** Returns the address that follows the last instruction of the region. */
+    public int getEnd() {
+      return end;
+    }
+
+    public int getCycles() {
+      return cycles;
+    }
+
+    /** Returns the number of instructions executed in the region. */
+    public int getExecutions() {
+      return executions;
+    }
+
+    public int getStalls(Stall kind) {
+      return stalls[kind.ordinal()];
+    }
+
+    /** Returns the stalls of all the kinds suffered by the region. */
+    public int getStalls() {
+      int total = 0;
+
+      for (int n : stalls) {
+        total += n;
+      }
+
+      return total;
+    }
+
+    /** Returns the stalls that the instructions of the region caused to
+     * other instructions. */
+    public int getCausedStalls() {
+      return causedStalls;
+    }
+
+    private boolean isEmpty() {
+      return cycles == 0 && executions == 0 && causedStalls == 0 && getStalls() == 0;
+    }
+  }
+
+  // Regions with more cycles first, then in order of address.
+  private static final Comparator<Region> BY_CYCLES = new Comparator<Region>() {
+    public int compare(Region a, Region b) {
+      if (a.cycles != b.cycles) {
+        return (a.cycles > b.cycles) ? -1 : 1;
+      }
+
+      return (a.start < b.start) ? -1 : ((a.start == b.start) ? 0 : 1);
+    }
+  };
+
+  private final Memory mem;
+  private final SymbolTable symTab;
+
+  // Counters, indexed by address / 4 and grown on demand.
+  private int[] cycles, executions, causedStalls;
+  private int[][] stalls;
+
+  private int lastRetireCycle, totalCycles, maxCycles;
+
+  Profiler(Memory mem, SymbolTable symTab) {
+    this.mem = mem;
+    this.symTab = symTab;
+    reset();
+  }
+
+  /** Clears the profile. */
+  void reset() {
+    cycles = new int[0];
+    executions = new int[0];
+    causedStalls = new int[0];
+    stalls = new int[KINDS][0];
+    lastRetireCycle = totalCycles = maxCycles = 0;
+  }
+
+  /** Records that an instruction left the CPU in the given cycle, charging
+   * it with the cycles elapsed since the previous one. Bubbles leave their
+   * cycles to the next instruction. */
+  void retire(Instruction instr, int cycle) {
+    int index = index(instr);
+
+    if (index < 0) {
+      return;
+    }
+
+    int elapsed = cycle - lastRetireCycle;
+    lastRetireCycle = cycle;
+    cycles[index] += elapsed;
+    executions[index]++;
+    totalCycles += elapsed;
+    maxCycles = Math.max(maxCycles, cycles[index]);
+  }
+
+  /** Records n stalls of the given instruction.
+   * @param blocker the instruction that caused the stalls, or null
+   */
+  void stall(Stall kind, Instruction instr, int n, Instruction blocker) {
+    int index = index(instr);
+
+    if (index >= 0) {
+      stalls[kind.ordinal()][index] += n;
+    }
+
+    index = index(blocker);
+
+    if (index >= 0) {
+      causedStalls[index] += n;
+    }
+  }
+
+  /** Returns the index of the counters of an instruction, or -1 if it is
+   * not stored in the code memory. */
+  private int index(Instruction instr) {
+    if (instr == null || instr.isBubble() || instr.getAddress() < 0) {
+      return -1;
+    }
+
+    int index = instr.getAddress() / 4;
+
+    if (index >= cycles.length) {
+      int length = Math.max(index + 1, Math.max(64, 2 * cycles.length));
+      cycles = Arrays.copyOf(cycles, length);
+      executions = Arrays.copyOf(executions, length);
+      causedStalls = Arrays.copyOf(causedStalls, length);
+
+      for (int k = 0; k < KINDS; ++k) {
+        stalls[k] = Arrays.copyOf(stalls[k], length);
+      }
+    }
+
+    return index;
+  }
+
+  public int getCycles(int address) {
+    int index = address / 4;
+    return (index < cycles.length) ? cycles[index] : 0;
+  }
+
+  public int getExecutions(int address) {
+    int index = address / 4;
+    return (index < executions.length) ? executions[index] : 0;
+  }
+
+  public int getStalls(int address, Stall kind) {
+    int index = address / 4;
+    return (index < cycles.length) ? stalls[kind.ordinal()][index] : 0;
+  }
+
+  public int getCausedStalls(int address) {
+    int index = address / 4;
+    return (index < causedStalls.length) ? causedStalls[index] : 0;
+  }
+
+  /** Returns the cycles charged to the instructions so far. */
+  public int getTotalCycles() {
+    return totalCycles;
+  }
+
+  /** Returns the cycles of the instruction that was charged the most. */
+  public int getMaxCycles() {
+    return maxCycles;
+  }
+
+  /** Adds the counters of the addresses from start to end to a region. */
+  private Region region(String name, int start, int end) {
+    Region r = new Region(name, start, end);
+
+    for (int index = start / 4; index < end / 4 && index < cycles.length; ++index) {
+      r.cycles += cycles[index];
+      r.executions += executions[index];
+      r.causedStalls += causedStalls[index];
+
+      for (int k = 0; k < KINDS; ++k) {
+        r.stalls[k] += stalls[k][index];
+      }
+    }
+
+    return r;
+  }
+
+  /** Builds the regions that start at the given addresses, dropping the
+   * ones that were never executed, and sorts them by cycles. */
+  private List<Region> regions(SortedMap<Integer, String> starts) {
+    List<Region> list = new ArrayList<Region>();
+    int end = Math.max(cycles.length * 4, endOfCode());
+    Iterator<Map.Entry<Integer, String>> it = starts.entrySet().iterator();
+    Map.Entry<Integer, String> e = it.hasNext() ? it.next() : null;
+
+    while (e != null) {
+      Map.Entry<Integer, String> next = it.hasNext() ? it.next() : null;
+      Region r = region(e.getValue(), e.getKey(), (next != null) ? next.getKey() : end);
+
+      if (!r.isEmpty()) {
+        list.add(r);
+      }
+
+      e = next;
+    }
+
+    Collections.sort(list, BY_CYCLES);
+    return list;
+  }
+
+  private int endOfCode() {
+    List<Instruction> program = mem.getInstructions();
+    return program.isEmpty() ? 0 : program.get(program.size() - 1).getAddress() + 4;
+  }
+
+  /** Returns the labels of the code, by address. More labels of the same
+   * instruction are joined by commas. */
+  private SortedMap<Integer, String> labels() {
+    SortedMap<Integer, String> labels = new TreeMap<Integer, String>();
+
+    for (Map.Entry<String, Integer> e : new TreeMap<String, Integer>(symTab.getInstructionLabels()).entrySet()) {
+      String other = labels.get(e.getValue());
+      labels.put(e.getValue(), (other == null) ? e.getKey() : other + "," + e.getKey());
+    }
+
+    return labels;
+  }
+
+  static String hex(int address) {
+    return String.format("0x%04x", address);
+  }
+
+  /** Returns true if any counter of an address is not zero. */
+  private boolean isProfiled(int index) {
+    if (cycles[index] > 0 || executions[index] > 0 || causedStalls[index] > 0) {
+      return true;
+    }
+
+    for (int k = 0; k < KINDS; ++k) {
+      if (stalls[k][index] > 0) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /** Returns the n instructions that were charged the most cycles. */
+  public List<Region> getHotSpots(int n) {
+    List<Region> list = new ArrayList<Region>();
+
+    for (int index = 0; index < cycles.length; ++index) {
+      if (isProfiled(index)) {
+        list.add(region(mem.getInstruction(index * 4).getFullName(), index * 4, index * 4 + 4));
+      }
+    }
+
+    Collections.sort(list, BY_CYCLES);
+    return new ArrayList<Region>(list.subList(0, Math.min(n, list.size())));
+  }
+
+  /** Returns the basic blocks that were executed, sorted by cycles. A
+   * block starts at the first instruction, at labels, at the targets of
+   * branches and jumps and after them; it is named after its label, or its
+   * address. */
+  public List<Region> getBasicBlocks() {
+    return regions(basicBlocks());
+  }
+
+  /** Returns the first addresses of the basic blocks, with their names. */
+  SortedMap<Integer, String> basicBlocks() {
+    SortedMap<Integer, String> labels = labels();
+    SortedSet<Integer> leaders = new TreeSet<Integer>(labels.keySet());
+    leaders.add(0);
+
+    for (Instruction instr : mem.getInstructions()) {
+      if (instr instanceof FlowControlInstructions) {
+        leaders.add(instr.getAddress() + 4);
+        addTargets(instr, leaders);
+      }
+    }
+
+    SortedMap<Integer, String> blocks = new TreeMap<Integer, String>();
+
+    for (int address : leaders) {
+      String label = labels.get(address);
+      blocks.put(address, (label != null) ? label : hex(address));
+    }
+
+    return blocks;
+  }
+
+  /** Adds the addresses that a branch or a jump can reach to a set. */
+  private static void addTargets(Instruction instr, Set<Integer> targets) {
+    String syntax = instr.getSyntax();
+    List<Integer> params = instr.getParams();
+    int p = 0;
+
+    for (int i = 0; i + 1 < syntax.length() && p < params.size(); ++i) {
+      if (syntax.charAt(i) != '%') {
+        continue;
+      }
+
+      char type = syntax.charAt(++i);
+      int value = params.get(p++);
+
+      if (type == 'B') {
+        targets.add(instr.getAddress() + 4 + value);
+      } else if (type == 'E') {
+        targets.add(value);
+      }
+    }
+  }
+
+  /** Returns the code that follows each label, up to the next one, sorted
+   * by cycles. The code before the first label is named after its address. */
+  public List<Region> getLabels() {
+    SortedMap<Integer, String> labels = labels();
+
+    if (labels.isEmpty() || labels.firstKey() > 0) {
+      labels.put(0, hex(0));
+    }
+
+    return regions(labels);
+  }
+
+  /** Returns a textual report of the n hot spots, basic blocks and labels
+   * that took the most cycles. */
+  public String report(int n) {
+    StringBuilder sb = new StringBuilder();
+    sb.append(String.format("Cycles attributed: %d%n", totalCycles));
+    report(sb, "Instructions", getHotSpots(n), n);
+    report(sb, "Basic blocks", getBasicBlocks(), n);
+    report(sb, "Labels", getLabels(), n);
+    return sb.toString();
+  }
+
+  private void report(StringBuilder sb, String title, List<Region> regions, int n) {
+    sb.append(String.format("%n%s:%n", title));
+    sb.append(String.format("%-8s %8s %6s %8s %6s %8s %8s  %s%n", "Address", "Cycles", "%", "Instr", "CPI", "Stalls", "Caused", "Name"));
+
+    for (Region r : regions.subList(0, Math.min(n, regions.size()))) {
+      float share = (totalCycles > 0) ? 100f * r.cycles / totalCycles : 0;
+      float cpi = (r.executions > 0) ? (float) r.cycles / r.executions : 0;
+      sb.append(String.format("%-8s %8d %5.1f%% %8d %6.2f %8d %8d  %s%n", hex(r.start), r.cycles, share, r.executions, cpi, r.getStalls(), r.causedStalls, r.name));
+    }
+  }
+
+  /** Writes the profile of the instructions, of the basic blocks and of the
+   * labels as comma-separated values, with a header row. */
+  public void writeCsv(Writer out) throws IOException {
+    StringBuilder header = new StringBuilder("kind,start,end,name,executions,cycles");
+
+    for (Stall kind : Stall.values()) {
+      header.append(',').append(kind.name().toLowerCase());
+    }
+
+    out.write(header.append(",caused\n").toString());
+    writeCsv(out, "instruction", getHotSpots(Integer.MAX_VALUE));
+    writeCsv(out, "block", getBasicBlocks());
+    writeCsv(out, "label", getLabels());
+    out.flush();
+  }
+
+  private static void writeCsv(Writer out, String kind, List<Region> regions) throws IOException {
+    for (Region r : regions) {
+      StringBuilder sb = new StringBuilder(kind);
+      sb.append(',').append(r.start).append(',').append(r.end);
+      sb.append(",\"").append(r.name.replace("\"", "\"\"")).append('"');
+      sb.append(',').append(r.executions).append(',').append(r.cycles);
+
+      for (int n : r.stalls) {
+        sb.append(',').append(n);
+      }
+
+      out.write(sb.append(',').append(r.causedStalls).append('\n').toString());
+    }
+  }
+}
@@ -0,0 +1,415 @@
+/* ProgramImage.java
+ *
+ * Image of an assembled program, that can be saved to a file.
+ * (c) 2016 EduMIPS64 project
+ *
+ * This file is part of the EduMIPS64 project, and is released under the GNU
+ * General Public License.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.edumips64.core;
+
+import org.edumips64.core.is.*;
+import org.edumips64.utils.ConfigStore;
+import org.edumips64.utils.IrregularStringOfBitsException;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/** The result of the parsing of a program: the encoded instructions with
+ * their parameters and source text, the initialized data section, the
+ * labels and the warnings. Loading an image in an empty memory gives the
+ * same state as parsing the program again.
+ *
+ * Images are identified by a hash of the preprocessed source, which
+ * includes the included files, and of the sizes of the memory sections.
+ *
+ * On disk, an image is a sequence of arrays written with a DataOutputStream,
+ * after a magic number and a version: reading a file never instantiates
+ * other classes than the arrays of this image.
+ */
+public class ProgramImage {
+  private static final int MAGIC = 0x45444d49;    // "EDMI"
+  private static final int VERSION = 1;
+
+  // Instructions, in order of address.
+  private int[] addresses;
+  private String[] names;
+  private int[] encodings;
+  private int[][] params;
+  private String[] fullNames, comments;
+
+  // Memory elements that are not in their initial state.
+  private int[] cellIndexes;
+  private long[] cellValues;
+  private String[] cellLabels, cellCodes, cellComments;
+
+  // Symbol table.
+  private String[] dataLabels, codeLabels;
+  private int[] dataLabelAddresses, codeLabelAddresses;
+
+  // Warnings: keys of the descriptions, rows, columns and lines.
+  private String[] warningKeys, warningLines;
+  private int[] warningRows, warningColumns;
+
+  /** Returns the number of instructions of the program. */
+  public int getInstructionCount() {
+    return names.length;
+  }
+
+  /** Computes the key of the image of a preprocessed source.
+   * @param source the lines of the source, with the included files
+   * @param config the configuration holding the sizes of the memory
+   * @return a hexadecimal string
+   */
+  static String key(List<String> source, ConfigStore config) {
+    try {
+      MessageDigest md = MessageDigest.getInstance("SHA-256");
+      Charset charset = Charset.forName("ISO-8859-1");
+
+      for (String line : source) {
+        md.update(line.getBytes(charset));
+        md.update((byte) '\n');
+      }
+
+      md.update((config.getInt("data_memory_size") + "," + config.getInt("code_memory_size")).getBytes(charset));
+
+      StringBuilder sb = new StringBuilder();
+
+      for (byte b : md.digest()) {
+        sb.append(String.format("%02x", b));
+      }
+
+      return sb.toString();
+    } catch (NoSuchAlgorithmException e) {
+      // SHA-256 is available in every Java platform.
+      throw new RuntimeException(e);
+    }
+  }
+
+  /** Builds the image of the program held by the memory and the symbol
+   * table.
+   * @param warnings the warnings of the parsing, or null
+   */
+  static ProgramImage capture(Memory mem, SymbolTable symTab, ParserMultiException warnings) {
+    ProgramImage image = new ProgramImage();
+
+    List<Instruction> instructions = mem.getInstructions();
+    int n = instructions.size();
+    image.addresses = new int[n];
+    image.names = new String[n];
+    image.encodings = new int[n];
+    image.params = new int[n][];
+    image.fullNames = new String[n];
+    image.comments = new String[n];
+
+    for (int i = 0; i < n; ++i) {
+      Instruction instr = instructions.get(i);
+      List<Integer> p = instr.getParams();
+      image.addresses[i] = instr.getAddress();
+      image.names[i] = instr.getName();
+      image.encodings[i] = instr.getEncoding();
+      image.params[i] = new int[p.size()];
+
+      for (int j = 0; j < p.size(); ++j) {
+        image.params[i][j] = p.get(j);
+      }
+
+      image.fullNames[i] = instr.getFullName();
+      image.comments[i] = instr.getComment();
+    }
+
+    List<MemoryElement> cells = new ArrayList<MemoryElement>();
+
+    for (MemoryElement cell : mem.getCells()) {
+      if (cell.getValue() != 0 || !cell.getLabel().isEmpty() || !cell.getCode().isEmpty() || !cell.getComment().isEmpty()) {
+        cells.add(cell);
+      }
+    }
+
+    n = cells.size();
+    image.cellIndexes = new int[n];
+    image.cellValues = new long[n];
+    image.cellLabels = new String[n];
+    image.cellCodes = new String[n];
+    image.cellComments = new String[n];
+
+    for (int i = 0; i < n; ++i) {
+      MemoryElement cell = cells.get(i);
+      image.cellIndexes[i] = cell.getAddress() / 8;
+      image.cellValues[i] = cell.getValue();
+      image.cellLabels[i] = cell.getLabel();
+      image.cellCodes[i] = cell.getCode();
+      image.cellComments[i] = cell.getComment();
+    }
+
+    Map<String, Integer> labels = symTab.getCellLabels();
+    image.dataLabels = labels.keySet().toArray(new String[labels.size()]);
+    image.dataLabelAddresses = new int[labels.size()];
+
+    for (int i = 0; i < image.dataLabels.length; ++i) {
+      image.dataLabelAddresses[i] = labels.get(image.dataLabels[i]);
+    }
+
+    labels = symTab.getInstructionLabels();
+    image.codeLabels = labels.keySet().toArray(new String[labels.size()]);
+    image.codeLabelAddresses = new int[labels.size()];
+
+    for (int i = 0; i < image.codeLabels.length; ++i) {
+      image.codeLabelAddresses[i] = labels.get(image.codeLabels[i]);
+    }
+
+    n = (warnings == null) ? 0 : warnings.getNumError();
+    image.warningKeys = new String[n];
+    image.warningLines = new String[n];
+    image.warningRows = new int[n];
+    image.warningColumns = new int[n];
+
+    for (int i = 0; i < n; ++i) {
+      ParserException w = warnings.getError(i);
+      image.warningKeys[i] = w.getKey();
+      image.warningLines[i] = w.getLine();
+      image.warningRows[i] = w.getRow();
+      image.warningColumns[i] = w.getColumn();
+    }
+
+    return image;
+  }
+
+  /** Loads the program in the memory and in the symbol table, that must
+   * be empty.
+   * @return the warnings of the parsing, or null if there were none
+   */
+  ParserMultiWarningException load(Memory mem, SymbolTable symTab) throws MemoryElementNotFoundException, SymbolTableOverflowException, SameLabelsException, IrregularStringOfBitsException, IrregularWriteOperationException {
+    for (int i = 0; i < names.length; ++i) {
+      Instruction instr = Instruction.buildInstruction(names[i]);
+      instr.getRepr().setBits(toBinary(encodings[i]), 0);
+
+      List<Integer> p = new ArrayList<Integer>(params[i].length);
+
+      for (int value : params[i]) {
+        p.add(value);
+      }
+
+      instr.setParams(p);
+      instr.decode();
+      instr.setFullName(fullNames[i]);
+
+      if (comments[i] != null) {
+        instr.setComment(comments[i]);
+      }
+
+      mem.addInstruction(instr, addresses[i]);
+    }
+
+    for (int i = 0; i < cellIndexes.length; ++i) {
+      MemoryElement cell = mem.allocateCell(cellIndexes[i]);
+      cell.writeDoubleWord(cellValues[i]);
+      cell.setCode(cellCodes[i]);
+      cell.setComment(cellComments[i]);
+    }
+
+    for (int i = 0; i < dataLabels.length; ++i) {
+      symTab.setCellLabel(dataLabelAddresses[i], dataLabels[i]);
+    }
+
+    for (int i = 0; i < codeLabels.length; ++i) {
+      symTab.setInstructionLabel(codeLabelAddresses[i], codeLabels[i]);
+    }
+
+    // A cell with more labels shows the last one defined.
+    for (int i = 0; i < cellIndexes.length; ++i) {
+      mem.allocateCell(cellIndexes[i]).setLabel(cellLabels[i]);
+    }
+
+    if (warningKeys.length == 0) {
+      return null;
+    }
+
+    ParserMultiWarningException warnings = new ParserMultiWarningException();
+
+    for (int i = 0; i < warningKeys.length; ++i) {
+      warnings.add(warningKeys[i], warningRows[i], warningColumns[i], warningLines[i]);
+    }
+
+    return warnings;
+  }
+
+  /** Returns the 32 bits of a word as a string of 0s and 1s. */
+  static String toBinary(int word) {
+    String bits = Integer.toBinaryString(word);
+    StringBuilder sb = new StringBuilder(32);
+
+    for (int i = bits.length(); i < 32; ++i) {
+      sb.append('0');
+    }
+
+    return sb.append(bits).toString();
+  }
+
+  /** Writes the image to a file. */
+  void write(File file) throws IOException {
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+
+      out.writeInt(names.length);
+      writeInts(out, addresses);
+      writeStrings(out, names);
+      writeInts(out, encodings);
+
+      for (int[] p : params) {
+        out.writeInt(p.length);
+        writeInts(out, p);
+      }
+
+      writeStrings(out, fullNames);
+      writeStrings(out, comments);
+
+      out.writeInt(cellIndexes.length);
+      writeInts(out, cellIndexes);
+
+      for (long v : cellValues) {
+        out.writeLong(v);
+      }
+
+      writeStrings(out, cellLabels);
+      writeStrings(out, cellCodes);
+      writeStrings(out, cellComments);
+
+      out.writeInt(dataLabels.length);
+      writeStrings(out, dataLabels);
+      writeInts(out, dataLabelAddresses);
+      out.writeInt(codeLabels.length);
+      writeStrings(out, codeLabels);
+      writeInts(out, codeLabelAddresses);
+
+      out.writeInt(warningKeys.length);
+      writeStrings(out, warningKeys);
+      writeStrings(out, warningLines);
+      writeInts(out, warningRows);
+      writeInts(out, warningColumns);
+    }
+  }
+
+  /** Reads an image from a file.
+   * @throws IOException if the file can't be read or doesn't hold an image
+   */
+  static ProgramImage read(File file) throws IOException {
+    // Every element takes at least a byte: longer arrays mean a bad file.
+    long limit = file.length();
+
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+        throw new IOException("Not a program image: " + file);
+      }
+
+      ProgramImage image = new ProgramImage();
+
+      int n = readLength(in, limit);
+      image.addresses = readInts(in, n);
+      image.names = readStrings(in, n);
+      image.encodings = readInts(in, n);
+      image.params = new int[n][];
+
+      for (int i = 0; i < n; ++i) {
+        image.params[i] = readInts(in, readLength(in, limit));
+      }
+
+      image.fullNames = readStrings(in, n);
+      image.comments = readStrings(in, n);
+
+      n = readLength(in, limit);
+      image.cellIndexes = readInts(in, n);
+      image.cellValues = new long[n];
+
+      for (int i = 0; i < n; ++i) {
+        image.cellValues[i] = in.readLong();
+      }
+
+      image.cellLabels = readStrings(in, n);
+      image.cellCodes = readStrings(in, n);
+      image.cellComments = readStrings(in, n);
+
+      n = readLength(in, limit);
+      image.dataLabels = readStrings(in, n);
+      image.dataLabelAddresses = readInts(in, n);
+      n = readLength(in, limit);
+      image.codeLabels = readStrings(in, n);
+      image.codeLabelAddresses = readInts(in, n);
+
+      n = readLength(in, limit);
+      image.warningKeys = readStrings(in, n);
+      image.warningLines = readStrings(in, n);
+      image.warningRows = readInts(in, n);
+      image.warningColumns = readInts(in, n);
+      return image;
+    }
+  }
+
+  private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+    for (int v : values) {
+      out.writeInt(v);
+    }
+  }
+
+  /** Writes an array of strings, that can be null. */
+  private static void writeStrings(DataOutputStream out, String[] values) throws IOException {
+    for (String s : values) {
+      out.writeBoolean(s != null);
+
+      if (s != null) {
+        out.writeUTF(s);
+      }
+    }
+  }
+
+  /** Reads the length of the following arrays, that can't exceed the limit. */
+  private static int readLength(DataInputStream in, long limit) throws IOException {
+    int n = in.readInt();
+
+    if (n < 0 || n > limit) {
+      throw new IOException("Bad array length in a program image: " + n);
+    }
+
+    return n;
+  }
+
+  private static int[] readInts(DataInputStream in, int n) throws IOException {
+    int[] values = new int[n];
+
+    for (int i = 0; i < n; ++i) {
+      values[i] = in.readInt();
+    }
+
+    return values;
+  }
+
+  private static String[] readStrings(DataInputStream in, int n) throws IOException {
+    String[] values = new String[n];
+
+    for (int i = 0; i < n; ++i) {
+      values[i] = in.readBoolean() ? in.readUTF() : null;
+    }
+
+    return values;
+  }
+}
@@ -34,60 +34,54 @@ import org.edumips64.utils.*;
  * @author Salvatore Scellato
  */
 public class Register extends BitSet64 {
-  private int writeSemaphore;
-  private int readSemaphore;
+  // Position of the register in the scoreboard, null if its writes are not
+  // tracked (e.g. temporary registers).
+  private Scoreboard.Bank bank;
+  private int index;
   private String reg_name;
 
   public final static Logger logger = Logger.getLogger(Register.class.getName());
 
-  /** Creates a new instance of Register.
+  /** Creates a new instance of Register, whose writes are not tracked.
      *  @param name name of the register (for debugging purposes).
      */
   public Register(String name) {
-    writeSemaphore = 0;
-    readSemaphore = 0;
     reg_name = name;
   }
 
-  /** Returns the value of the semaphore
-   *  @return the numerical value of the semaphore
+  /** Creates a new instance of Register, whose writes are tracked by the
+   *  scoreboard.
+   *  @param name name of the register (for debugging purposes).
+   *  @param bank bank of the register in the scoreboard
+   *  @param index index of the register in the bank
    */
-  public int getWriteSemaphore() {
-    return writeSemaphore;
+  public Register(String name, Scoreboard.Bank bank, int index) {
+    this(name);
+    this.bank = bank;
+    this.index = index;
   }
 
-  /** Returns the value of the semaphore
+  /** Returns the number of instructions that still have to write the register
    *  @return the numerical value of the semaphore
    */
-  public int getReadSemaphore() {
-    return readSemaphore;
+  public int getWriteSemaphore() {
+    return (bank == null) ? 0 : Scoreboard.getInstance().getWriters(bank, index);
   }
 
-  /** Increments the value of the semaphore
+  /** Returns true if the register still has to be written by an instruction,
+   *  which becomes the blocker of the scoreboard.
    */
-  public void incrReadSemaphore() {
-    readSemaphore++;
-    logger.info("Incremented read semaphore for " + reg_name + ": " + readSemaphore);
+  public boolean isWaiting() {
+    return bank != null && Scoreboard.getInstance().isPending(bank, index);
   }
 
-  /** Increments the value of the semaphore
+  /** Increments the value of the semaphore. Does nothing if the writes of
+   *  the register are not tracked.
    */
   public void incrWriteSemaphore() {
-    writeSemaphore++;
-    logger.info("Incremented write semaphore for " + reg_name + ": " + writeSemaphore);
-  }
-
-  /** Decrements the value of the semaphore.
-   *  It throws a <code>RuntimeException</code> if the semaphore value gets below zero, because
-   *  the value becomes negative only in case of programming errors, and the EduMIPS64 team
-   *  doesn't make any programming error.
-   */
-  public void decrWriteSemaphore() {
-    if (--writeSemaphore < 0) {
-      throw new RuntimeException();
+    if (bank != null) {
+      Scoreboard.getInstance().lock(bank, index);
     }
-
-    logger.info("Decremented write semaphore for " + reg_name + ": " + writeSemaphore);
   }
 
   /** Decrements the value of the semaphore.
@@ -95,12 +89,10 @@ public class Register extends BitSet64 {
    *  the value becomes negative only in case of programming errors, and the EduMIPS64 team
    *  doesn't make any programming error.
    */
-  public void decrReadSemaphore() {
-    if (--readSemaphore < 0) {
-      throw new RuntimeException();
+  public void decrWriteSemaphore() {
+    if (bank != null && Scoreboard.getInstance().unlock(bank, index)) {
+      ForwardingNetwork.getInstance().released(this);
     }
-
-    logger.info("Decremented read semaphore for " + reg_name + ": " + writeSemaphore);
   }
 
   /** Returns the signed numeric decimal value stored in this register.
@@ -116,12 +108,10 @@ public class Register extends BitSet64 {
     }
   }
 
-  /** Reset the register and its associated semaphores
+  /** Reset the register. The pending writes are reset by the scoreboard.
    */
   public void reset() {
     super.reset(false);
-    writeSemaphore = 0;
-    readSemaphore = 0;
   }
 
 
@@ -32,39 +32,63 @@ import org.edumips64.utils.*;
  * @author Massimo Trubia
  */
 public class RegisterFP extends BitSet64FP {
-  private int writeSemaphore;
-  private int WAWSemaphore;
+  // Index of the register in the scoreboard, -1 if its writes are not
+  // tracked (e.g. temporary registers).
+  private int index;
 
-  /** Creates a default new instance of Register. */
+  /** Creates a default new instance of Register, whose writes are not tracked. */
   public RegisterFP() {
-    writeSemaphore = 0;
-    WAWSemaphore = 0;
+    index = -1;
   }
 
-  /** Returns the value of the semaphore
+  /** Creates a new instance of Register, whose writes are tracked by the
+   *  scoreboard.
+   *  @param index index of the register
+   */
+  public RegisterFP(int index) {
+    this.index = index;
+  }
+
+  /** Returns the number of instructions that still have to write the register
    *  @return the numerical value of the semaphore
    */
   public int getWriteSemaphore() {
-    return writeSemaphore;
+    return (index < 0) ? 0 : Scoreboard.getInstance().getWriters(Scoreboard.Bank.FPR, index);
   }
 
-  /** Returns the value of the semaphore
+  /** Returns the number of instructions that still have to write the
+   *  register, and did not reach the MEM stage
    *  @return the numerical value of the semaphore
    */
   public int getWAWSemaphore() {
-    return WAWSemaphore;
+    return (index < 0) ? 0 : Scoreboard.getInstance().getWriters(Scoreboard.Bank.FPR_WAW, index);
+  }
+
+  /** Returns true if the register still has to be written by an instruction,
+   *  which becomes the blocker of the scoreboard.
+   */
+  public boolean isWaiting() {
+    return index >= 0 && Scoreboard.getInstance().isPending(Scoreboard.Bank.FPR, index);
+  }
+
+  /** Returns true if the register still has to be written by an instruction
+   *  that did not reach the MEM stage, which becomes the blocker of the
+   *  scoreboard.
+   */
+  public boolean isWAWWaiting() {
+    return index >= 0 && Scoreboard.getInstance().isPending(Scoreboard.Bank.FPR_WAW, index);
   }
 
   /** Increments the value of the semaphore
    */
   public void incrWAWSemaphore() {
-    WAWSemaphore++;
+    Scoreboard.getInstance().lock(Scoreboard.Bank.FPR_WAW, index);
   }
 
   /** Increments the value of the semaphore
    */
   public void incrWriteSemaphore() {
-    writeSemaphore++;
+    Scoreboard.getInstance().lock(Scoreboard.Bank.FPR, index);
   }
 
   /** Decrements the value of the semaphore.
@@ -73,8 +97,8 @@ public class RegisterFP extends BitSet64FP {
    *  doesn't make any programming error.
    */
   public void decrWriteSemaphore() {
-    if (--writeSemaphore < 0) {
-      throw new RuntimeException();
+    if (Scoreboard.getInstance().unlock(Scoreboard.Bank.FPR, index)) {
+      ForwardingNetwork.getInstance().released(this);
     }
   }
 
@@ -84,9 +108,7 @@ public class RegisterFP extends BitSet64FP {
    *  doesn't make any programming error.
    */
   public void decrWAWSemaphore() {
-    if (--WAWSemaphore < 0) {
-      throw new RuntimeException();
-    }
+    Scoreboard.getInstance().unlock(Scoreboard.Bank.FPR_WAW, index);
   }
 
   /**Returns a string with a double value or the name of a special value
@@ -97,12 +119,10 @@ public class RegisterFP extends BitSet64FP {
     return super.readDouble();
   }
 
-  /** Reset the register and its associated semaphores
+  /** Reset the register. The pending writes are reset by the scoreboard.
    */
   public void reset() {
     super.reset(false);
-    writeSemaphore = 0;
-    WAWSemaphore = 0;
   }
 
 
@@ -0,0 +1,252 @@
+/* SampledSimulator.java
+ *
+ * SMARTS-style sampled simulation.
+ * (c) 2016 EduMIPS64 project
+ *
+ * This file is part of the EduMIPS64 project, and is released under the GNU
+ * General Public License.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.edumips64.core;
+
+import org.edumips64.core.is.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+/** Runs a program alternating functional fast-forwarding and detailed
+ * simulation windows, and estimates the timing statistics of the whole run
+ * from the windows.
+ *
+ * Every period is made of:
+ * - a functional fast-forward of a given number of instructions;
+ * - a warm-up window in the pipeline, to fill it and train the branch
+ *   predictor, whose statistics are discarded;
+ * - a measurement window in the pipeline, whose cycles and stalls are
+ *   recorded as a sample;
+ * - the drain of the pipeline, not measured.
+ *
+ * The CPI and the stalls per instruction are estimated as the mean of the
+ * samples, with a confidence interval computed from their standard
+ * deviation; the totals are extrapolated multiplying these values by the
+ * number of instructions executed in the whole run, which is exact.
+ *
+ * The CPU must be already loaded with a program, in the RUNNING state and
+ * with an empty pipeline.
+ */
+public class SampledSimulator {
+  private static final Logger logger = Logger.getLogger(SampledSimulator.class.getName());
+
+  /** Index of the counters of a sample. */
+  public static final int CYCLES = 0, INSTRUCTIONS = 1, RAW = 2, WAW = 3, DIVIDER = 4,
+                          FUNC_UNIT = 5, MEMORY = 6, EX = 7, BRANCH_MISPREDICTION = 8;
+  public static final String[] COUNTER_NAMES = {"Cycles", "Instructions", "RAW stalls", "WAW stalls",
+      "Structural stalls (divider)", "Structural stalls (FP functional units)", "Structural stalls (memory)",
+      "Structural stalls (EX)", "Branch misprediction stalls"
+  };
+  private static final int COUNTERS = COUNTER_NAMES.length;
+
+  /** Normal quantile for a 95% confidence interval. */
+  public static final double Z_95 = 1.96;
+
+  private CPU cpu;
+  private int fastForward, warmUp, measurement;
+  private List<int[]> samples;
+  private int totalInstructions;
+
+  /**
+   * @param fastForward instructions executed functionally between two windows
+   * @param warmUp instructions executed in the pipeline before each measurement
+   * @param measurement instructions measured in each window
+   */
+  public SampledSimulator(int fastForward, int warmUp, int measurement) {
+    if (fastForward <= 0 || measurement <= 0 || warmUp < 0) {
+      throw new IllegalArgumentException("Invalid sampling parameters");
+    }
+
+    this.cpu = CPU.getInstance();
+    this.fastForward = fastForward;
+    this.warmUp = warmUp;
+    this.measurement = measurement;
+    samples = new ArrayList<int[]>();
+  }
+
+  /** Runs the program until its termination, collecting the samples. */
+  public void run() throws Exception {
+    int[] start = null;
+
+    try {
+      // The switch point is set before entering the functional mode, because
+      // the CPU checks it as soon as the pipeline has been drained.
+      cpu.setFunctionalSwitchPoint(-1, cpu.getFunctionalInstructions() + fastForward);
+      cpu.setSimulationMode(CPU.SimulationMode.FUNCTIONAL);
+
+      while (true) {
+        // Fast-forward. The CPU switches to the pipeline by itself.
+        while (cpu.getSimulationMode() == CPU.SimulationMode.FUNCTIONAL) {
+          cpu.step();
+        }
+
+        // Warm-up.
+        int target = cpu.getInstructions() + warmUp;
+
+        while (cpu.getInstructions() < target) {
+          cpu.step();
+        }
+
+        // Measurement.
+        start = snapshot();
+        target = cpu.getInstructions() + measurement;
+
+        while (cpu.getInstructions() < target) {
+          cpu.step();
+        }
+
+        addSample(start, snapshot());
+        start = null;
+
+        // Drain.
+        cpu.setFunctionalSwitchPoint(-1, cpu.getFunctionalInstructions() + fastForward);
+        cpu.requestFunctionalMode();
+
+        while (cpu.isDraining()) {
+          cpu.step();
+        }
+      }
+    } catch (HaltException e) {
+      // A partial window is used only if no complete window was measured.
+      if (start != null && samples.isEmpty()) {
+        addSample(start, snapshot());
+      }
+    } finally {
+      cpu.setFunctionalSwitchPoint(-1, 0);
+    }
+
+    totalInstructions = cpu.getInstructions() + cpu.getFunctionalInstructions();
+    logger.info("Sampled simulation finished: " + samples.size() + " samples, " + totalInstructions + " instructions.");
+  }
+
+  private int[] snapshot() {
+    int[] c = new int[COUNTERS];
+    c[CYCLES] = cpu.getCycles();
+    c[INSTRUCTIONS] = cpu.getInstructions();
+    c[RAW] = cpu.getRAWStalls();
+    c[WAW] = cpu.getWAWStalls();
+    c[DIVIDER] = cpu.getStructuralStallsDivider();
+    c[FUNC_UNIT] = cpu.getStructuralStallsFuncUnit();
+    c[MEMORY] = cpu.getStructuralStallsMemory();
+    c[EX] = cpu.getStructuralStallsEX();
+    c[BRANCH_MISPREDICTION] = cpu.getBranchMispredictionStalls();
+    return c;
+  }
+
+  private void addSample(int[] start, int[] end) {
+    int[] sample = new int[COUNTERS];
+
+    for (int i = 0; i < COUNTERS; ++i) {
+      sample[i] = end[i] - start[i];
+    }
+
+    if (sample[INSTRUCTIONS] > 0) {
+      samples.add(sample);
+    }
+  }
+
+  /** Returns the number of measured windows. */
+  public int getSampleCount() {
+    return samples.size();
+  }
+
+  /** Returns the counters of a measured window (see the counter indexes). */
+  public int[] getSample(int index) {
+    return samples.get(index).clone();
+  }
+
+  /** Returns the number of instructions executed in the whole run. */
+  public int getTotalInstructions() {
+    return totalInstructions;
+  }
+
+  /** Returns the estimated mean of the given counter per instruction (for
+   * CYCLES, the CPI). */
+  public double getMeanPerInstruction(int counter) {
+    double sum = 0;
+
+    for (int[] s : samples) {
+      sum += perInstruction(s, counter);
+    }
+
+    return samples.isEmpty() ? 0 : sum / samples.size();
+  }
+
+  /** Returns the half width of the confidence interval of the mean of the
+   * given counter per instruction.
+   * @param z the normal quantile of the confidence level (e.g. Z_95)
+   */
+  public double getConfidenceHalfWidth(int counter, double z) {
+    int n = samples.size();
+
+    if (n < 2) {
+      return Double.NaN;
+    }
+
+    double mean = getMeanPerInstruction(counter);
+    double squares = 0;
+
+    for (int[] s : samples) {
+      double d = perInstruction(s, counter) - mean;
+      squares += d * d;
+    }
+
+    return z * Math.sqrt(squares / (n - 1)) / Math.sqrt(n);
+  }
+
+  /** Returns the estimated total of the given counter for the whole run. */
+  public double getEstimatedTotal(int counter) {
+    return getMeanPerInstruction(counter) * totalInstructions;
+  }
+
+  private static double perInstruction(int[] sample, int counter) {
+    return (double) sample[counter] / sample[INSTRUCTIONS];
+  }
+
+  /** Returns a textual report of the estimates, with 95% confidence intervals. */
+  public String report() {
+    StringBuilder sb = new StringBuilder();
+    sb.append(String.format("Samples: %d (fast-forward %d, warm-up %d, measurement %d instructions)%n", samples.size(), fastForward, warmUp, measurement));
+    sb.append(String.format("Instructions: %d%n", totalInstructions));
+
+    if (samples.isEmpty()) {
+      sb.append("No sample was measured.\n");
+      return sb.toString();
+    }
+
+    sb.append(String.format("CPI: %.4f +/- %.4f%n", getMeanPerInstruction(CYCLES), getConfidenceHalfWidth(CYCLES, Z_95)));
+
+    for (int i = 0; i < COUNTERS; ++i) {
+      if (i == INSTRUCTIONS) {
+        continue;
+      }
+
+      double total = getEstimatedTotal(i);
+      double interval = getConfidenceHalfWidth(i, Z_95) * totalInstructions;
+      sb.append(String.format("%s: %.0f +/- %.0f%n", COUNTER_NAMES[i], total, interval));
+    }
+
+    return sb.toString();
+  }
+}
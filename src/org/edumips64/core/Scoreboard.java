@@ -0,0 +1,197 @@
+/* Scoreboard.java
+ *
+ * Pending writes of the registers, used for the detection of hazards.
+ * (c) 2016 EduMIPS64 project
+ *
+ * This file is part of the EduMIPS64 project, and is released under the GNU
+ * General Public License.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.edumips64.core;
+
+/** Keeps track of the registers that are waiting to be written.
+ *
+ * The registers are grouped in banks of at most 64 elements, and each bank
+ * has a bitmask of the registers with at least one pending writer. The number
+ * of pending writers of each register, and the last instruction that locked
+ * it, are kept alongside: when a check fails, the instruction that blocks
+ * the issue is remembered, so that stalls can be attributed to their cause.
+ *
+ * While recording, the registers checked and locked by the instructions are
+ * also collected, so that the dependencies of an instruction can be derived
+ * from its execution.
+ */
+public class Scoreboard {
+  /** Banks of registers. */
+  public enum Bank {
+    /** General purpose registers. */
+    GPR,
+    /** Floating point registers, written in WB or through forwarding. */
+    FPR,
+    /** Floating point registers, written by an instruction that did not
+     * reach MEM yet. Used for WAW hazards. */
+    FPR_WAW,
+    /** LO and HI. */
+    SPECIAL,
+    /** Condition codes of the FCSR. */
+    FCC
+  }
+
+  /** Indexes of LO and HI in the SPECIAL bank. */
+  public static final int LO = 0, HI = 1;
+
+  private static final int BANKS = Bank.values().length;
+  private static Scoreboard instance;
+
+  private final long[] pending = new long[BANKS];
+  private final int[][] writers = new int[BANKS][64];
+  private final Object[][] producers = new Object[BANKS][64];
+
+  // Instruction being decoded, and instruction that blocked it.
+  private Object issuing;
+  private Object blocker;
+
+  // Registers read and written since startRecording(), if recording.
+  private boolean recording;
+  private final long[] reads = new long[BANKS];
+  private final long[] writes = new long[BANKS];
+
+  private Scoreboard() {}
+
+  public static Scoreboard getInstance() {
+    if (instance == null) {
+      instance = new Scoreboard();
+    }
+
+    return instance;
+  }
+
+  /** Forgets all the pending writes. */
+  public void reset() {
+    for (int b = 0; b < BANKS; ++b) {
+      pending[b] = 0;
+
+      for (int i = 0; i < 64; ++i) {
+        writers[b][i] = 0;
+        producers[b][i] = null;
+      }
+    }
+
+    issuing = null;
+    blocker = null;
+    recording = false;
+  }
+
+  /** Starts collecting the registers read and written. */
+  public void startRecording() {
+    for (int b = 0; b < BANKS; ++b) {
+      reads[b] = 0;
+      writes[b] = 0;
+    }
+
+    recording = true;
+  }
+
+  public void stopRecording() {
+    recording = false;
+  }
+
+  /** Returns the mask of the registers of a bank checked since the last
+   * startRecording(). */
+  public long getRecordedReads(Bank bank) {
+    return reads[bank.ordinal()];
+  }
+
+  /** Returns the mask of the registers of a bank locked since the last
+   * startRecording(). */
+  public long getRecordedWrites(Bank bank) {
+    return writes[bank.ordinal()];
+  }
+
+  /** Sets the instruction that is being decoded: the registers it locks are
+   * attributed to it. */
+  public void setIssuing(Object instruction) {
+    issuing = instruction;
+    blocker = null;
+  }
+
+  /** Returns the instruction that blocked the last failed check, or null. */
+  public Object getBlocker() {
+    return blocker;
+  }
+
+  /** Adds a pending writer to a register. */
+  public void lock(Bank bank, int index) {
+    int b = bank.ordinal();
+
+    if (recording) {
+      writes[b] |= 1L << index;
+    }
+
+    if (writers[b][index]++ == 0) {
+      pending[b] |= 1L << index;
+    }
+
+    producers[b][index] = issuing;
+  }
+
+  /** Removes a pending writer from a register.
+   * @return true if the register has no more pending writers
+   * @throws RuntimeException if the register had no pending writers
+   */
+  public boolean unlock(Bank bank, int index) {
+    int b = bank.ordinal();
+
+    if (writers[b][index] == 0) {
+      throw new RuntimeException("No pending writes on " + bank + " " + index);
+    }
+
+    if (--writers[b][index] == 0) {
+      pending[b] &= ~(1L << index);
+      producers[b][index] = null;
+      return true;
+    }
+
+    return false;
+  }
+
+  /** Returns the number of pending writers of a register. */
+  public int getWriters(Bank bank, int index) {
+    if (recording) {
+      reads[bank.ordinal()] |= 1L << index;
+    }
+
+    return writers[bank.ordinal()][index];
+  }
+
+  /** Returns true if a register has pending writers, remembering the
+   * instruction that locked it as the blocker. */
+  public boolean isPending(Bank bank, int index) {
+    int b = bank.ordinal();
+    long mask = 1L << index;
+
+    if (recording) {
+      reads[b] |= mask;
+    }
+
+    if ((pending[b] & mask) == 0) {
+      return false;
+    }
+
+    blocker = producers[b][index];
+    return true;
+  }
+}
@@ -0,0 +1,108 @@
+/* SourceCache.java
+ *
+ * Cache of the source files read by the parser.
+ * (c) 2016 EduMIPS64 project
+ *
+ * This file is part of the EduMIPS64 project, and is released under the GNU
+ * General Public License.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.edumips64.core;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/** Keeps the cleaned lines of the files included by the programs, so that
+ * a library included by many programs, or by a program parsed many times,
+ * is read only once. An entry is used only if the modification time and
+ * the length of the file did not change.
+ */
+class SourceCache {
+  private static final Logger logger = Logger.getLogger(SourceCache.class.getName());
+
+  // Maximum number of cached files.
+  private static final int MAX_FILES = 64;
+
+  /** The lines of a file, and the attributes it had when it was read. */
+  private static class Source {
+    final long lastModified, length;
+    final List<String> lines;
+
+    Source(long lastModified, long length, List<String> lines) {
+      this.lastModified = lastModified;
+      this.length = length;
+      this.lines = lines;
+    }
+  }
+
+  private final Parser parser;
+  private final Map<String, Source> sources = new LinkedHashMap<String, Source>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, Source> eldest) {
+      return size() > MAX_FILES;
+    }
+  };
+
+  SourceCache(Parser parser) {
+    this.parser = parser;
+  }
+
+  /** Returns the lines of a file, cleaned by Parser.cleanFormat(); empty
+   * lines and comment lines are left out.
+   * @param file the file, with a canonical path
+   * @return an unmodifiable list of lines
+   */
+  List<String> getLines(File file) throws IOException {
+    String key = file.getPath();
+    long lastModified = file.lastModified();
+    long length = file.length();
+    Source source = sources.get(key);
+
+    if (source != null && source.lastModified == lastModified && source.length == length) {
+      return source.lines;
+    }
+
+    logger.info("Reading " + key);
+
+    try (BufferedReader r = new BufferedReader(new InputStreamReader(new FileInputStream(file), "ISO-8859-1"))) {
+      source = new Source(lastModified, length, Collections.unmodifiableList(readLines(r)));
+    }
+
+    sources.put(key, source);
+    return source.lines;
+  }
+
+  /** Reads the lines of a reader, cleaned by Parser.cleanFormat(). */
+  List<String> readLines(BufferedReader in) throws IOException {
+    List<String> lines = new ArrayList<String>();
+    String line;
+
+    while ((line = in.readLine()) != null) {
+      String tmp = parser.cleanFormat(line);
+
+      if (tmp != null) {
+        lines.add(tmp);
+      }
+    }
+
+    return lines;
+  }
+}
@@ -0,0 +1,336 @@
+/* SuperscalarEngine.java
+ *
+ * Timing model of an in-order CPU that issues several instructions per cycle.
+ * (c) 2016 EduMIPS64 project
+ *
+ * This file is part of the EduMIPS64 project, and is released under the GNU
+ * General Public License.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.edumips64.core;
+
+import org.edumips64.core.is.*;
+import org.edumips64.utils.ConfigStore;
+import org.edumips64.utils.IrregularStringOfBitsException;
+
+import java.util.ArrayDeque;
+import java.util.logging.Logger;
+
+/** In-order superscalar execution with a configurable issue width N.
+ *
+ * The front end fetches a group of instructions from an address aligned to
+ * N instructions, up to the end of the aligned block or to the first taken
+ * branch. The instructions of the group are issued in program order, up to N
+ * per cycle: an instruction is not issued if one of its operands is not yet
+ * available, even when it is produced by an older instruction of the same
+ * group, or if its functional unit is busy, and the younger instructions of
+ * the group wait with it. There are N integer ALUs, one load/store unit, one
+ * FP adder and one FP multiplier, both pipelined, and an FP divider that is
+ * not pipelined, with the latencies of TomasuloEngine.Unit. Each instruction
+ * then goes through EX, MEM and WB as in the 5-stage pipeline, results are
+ * forwarded if forwarding is enabled, and instructions complete in order.
+ *
+ * As in the OUT_OF_ORDER mode, instructions are executed functionally when
+ * they are fetched, and their dependencies are the registers recorded by the
+ * scoreboard.
+ */
+public class SuperscalarEngine {
+  private static final Logger logger = Logger.getLogger(SuperscalarEngine.class.getName());
+  private static final int BANKS = Scoreboard.Bank.values().length;
+
+  /** An instruction in flight. */
+  private static class Entry {
+    Instruction instr;
+    TomasuloEngine.Unit unit;
+    long[] reads = new long[BANKS];
+    long[] writes = new long[BANKS];
+    int fetchCycle, issueCycle, wbCycle;
+    boolean halt, breaking;
+    String syncex;
+  }
+
+  private final CPU cpu;
+  private int width;
+  private boolean forwarding;
+
+  // Fetched group, and issued instructions that did not complete yet.
+  private final ArrayDeque<Entry> group = new ArrayDeque<Entry>();
+  private final ArrayDeque<Entry> inFlight = new ArrayDeque<Entry>();
+
+  // Cycle in which each register can be read by an instruction in ID, and
+  // cycle of the issue of its last producer.
+  private final int[] readyCycle = new int[BANKS * 64];
+  private final int[] producerIssue = new int[BANKS * 64];
+  private final int[] unitFreeCycle = new int[TomasuloEngine.Unit.values().length];
+  private int lastWB;
+
+  private int cycle, completed;
+  private int[] slotIssues;
+  private int dependencyStalls, groupDependencyStalls, structuralStalls;
+
+  // True if no instruction can be fetched until the pipeline is empty.
+  private boolean stopped;
+  private boolean endOfCode;
+
+  SuperscalarEngine(CPU cpu) {
+    this.cpu = cpu;
+  }
+
+  /** Empties the pipeline, resets the statistics and reads the issue width
+   * from the configuration. */
+  public void reset(ConfigStore config) {
+    group.clear();
+    inFlight.clear();
+
+    for (int i = 0; i < readyCycle.length; ++i) {
+      readyCycle[i] = 0;
+      producerIssue[i] = -1;
+    }
+
+    for (int i = 0; i < unitFreeCycle.length; ++i) {
+      unitFreeCycle[i] = 0;
+    }
+
+    setIssueWidth(config.getInt("issue_width"));
+    lastWB = cycle = completed = 0;
+    dependencyStalls = groupDependencyStalls = structuralStalls = 0;
+    stopped = endOfCode = false;
+  }
+
+  /** Sets the number of instructions issued per cycle, and resets the
+   * utilisation of the issue slots. */
+  public void setIssueWidth(int width) {
+    this.width = Math.max(1, width);
+    slotIssues = new int[this.width];
+  }
+
+  public int getIssueWidth() {
+    return width;
+  }
+
+  /** Number of instructions completed since the reset. */
+  public int getCompleted() {
+    return completed;
+  }
+
+  /** Returns the number of cycles in which the given issue slot was used,
+   * i.e. in which at least slot + 1 instructions were issued. */
+  public int getSlotIssues(int slot) {
+    return (slot < width) ? slotIssues[slot] : 0;
+  }
+
+  /** Cycles in which the issue stopped because an operand was not ready. */
+  public int getDependencyStalls() {
+    return dependencyStalls;
+  }
+
+  /** Dependency stalls caused by an instruction issued in the same cycle,
+   * i.e. by a dependency inside the issue group. */
+  public int getGroupDependencyStalls() {
+    return groupDependencyStalls;
+  }
+
+  /** Cycles in which the issue stopped because a functional unit was busy. */
+  public int getStructuralStalls() {
+    return structuralStalls;
+  }
+
+  /** Simulates a clock cycle.
+   * @throws HaltException when the instruction that ends the program completes
+   * @throws BreakException when a BREAK instruction completes
+   * @throws SynchronousException when an instruction that raised a
+   * synchronous exception completes
+   */
+  void step(boolean masked, boolean terminate) throws HaltException, BreakException, SynchronousException, AddressErrorException, IrregularWriteOperationException, MemoryElementNotFoundException, IrregularStringOfBitsException, TwosComplementSumException, NotAlignException {
+    cycle++;
+    forwarding = ForwardingNetwork.getInstance().isForwarding();
+    Entry last = complete();
+    issue();
+    fetch(masked, terminate);
+
+    if (last != null && last.breaking) {
+      throw new BreakException();
+    }
+
+    if (last != null && last.syncex != null) {
+      throw new SynchronousException(last.syncex);
+    }
+  }
+
+  /** Completes the instructions whose WB stage is in this cycle. */
+  private Entry complete() throws HaltException {
+    Entry last = null;
+
+    while (!inFlight.isEmpty() && inFlight.peekFirst().wbCycle <= cycle) {
+      last = inFlight.pollFirst();
+
+      if (!last.instr.isBubble()) {
+        completed++;
+        cpu.retired(last.instr);
+      }
+
+      if (last.halt) {
+        cpu.setStatus(CPU.CPUStatus.HALTED);
+        throw new HaltException();
+      }
+
+      if (last.breaking || last.syncex != null) {
+        stopped = false;
+        break;
+      }
+    }
+
+    if (endOfCode && group.isEmpty() && inFlight.isEmpty()) {
+      cpu.setStatus(CPU.CPUStatus.HALTED);
+      throw new HaltException();
+    }
+
+    return last;
+  }
+
+  private void issue() {
+    int issued = 0;
+
+    while (issued < width && !group.isEmpty()) {
+      Entry e = group.peekFirst();
+
+      if (e.fetchCycle >= cycle) {
+        break;
+      }
+
+      int blocking = blockingRegister(e);
+
+      if (blocking >= 0) {
+        dependencyStalls++;
+
+        if (producerIssue[blocking] == cycle) {
+          groupDependencyStalls++;
+        }
+
+        break;
+      }
+
+      int u = e.unit.ordinal();
+
+      // There is an integer ALU for each issue slot, and one unit of each
+      // other kind.
+      if (unitFreeCycle[u] > cycle) {
+        structuralStalls++;
+        break;
+      }
+
+      if (e.unit != TomasuloEngine.Unit.INT) {
+        unitFreeCycle[u] = cycle + (e.unit.isPipelined() ? 1 : e.unit.getLatency());
+      }
+
+      group.pollFirst();
+      inFlight.addLast(e);
+      slotIssues[issued++]++;
+      e.issueCycle = cycle;
+
+      // EX takes the latency of the unit (loads and stores include MEM),
+      // then MEM and WB. Results are forwarded at the end of EX.
+      int latency = e.unit.getLatency();
+      int ready = cycle + latency + (forwarding ? 0 : 2);
+      e.wbCycle = Math.max(cycle + latency + 2, lastWB);
+      lastWB = e.wbCycle;
+
+      for (int b = 0; b < BANKS; ++b) {
+        for (long w = e.writes[b]; w != 0; w &= w - 1) {
+          int key = b * 64 + Long.numberOfTrailingZeros(w);
+          readyCycle[key] = ready;
+          producerIssue[key] = cycle;
+        }
+      }
+
+      logger.info("Issued " + e.instr + " to " + e.unit + " in slot " + (issued - 1));
+    }
+  }
+
+  /** Returns the first register read by the entry that is not available
+   * in this cycle, or -1. */
+  private int blockingRegister(Entry e) {
+    for (int b = 0; b < BANKS; ++b) {
+      for (long r = e.reads[b]; r != 0; r &= r - 1) {
+        int key = b * 64 + Long.numberOfTrailingZeros(r);
+
+        if (readyCycle[key] > cycle) {
+          return key;
+        }
+      }
+    }
+
+    return -1;
+  }
+
+  /** Fetches a new group when the previous one has been issued. */
+  private void fetch(boolean masked, boolean terminate) throws AddressErrorException, IrregularWriteOperationException, MemoryElementNotFoundException, IrregularStringOfBitsException, TwosComplementSumException, NotAlignException {
+    if (!group.isEmpty() || stopped || endOfCode) {
+      return;
+    }
+
+    Scoreboard scoreboard = Scoreboard.getInstance();
+    long address = cpu.getPC().getValue();
+    int size = width - (int)((address / 4) % width);
+
+    for (int i = 0; i < size && !stopped; ++i) {
+      Instruction instr;
+
+      try {
+        instr = cpu.getMemory().getInstruction(cpu.getPC());
+      } catch (HaltException ex) {
+        endOfCode = true;
+        return;
+      }
+
+      Entry e = new Entry();
+      e.instr = instr;
+      e.unit = TomasuloEngine.getUnit(instr);
+      e.fetchCycle = cycle;
+      scoreboard.startRecording();
+
+      try {
+        cpu.execute(instr, masked, terminate);
+      } catch (HaltException ex) {
+        cpu.setStatus(CPU.CPUStatus.STOPPING);
+        e.halt = true;
+      } catch (BreakException ex) {
+        e.breaking = true;
+      } catch (SynchronousException ex) {
+        e.syncex = ex.getCode();
+      } finally {
+        scoreboard.stopRecording();
+      }
+
+      // Renaming is not available: WAW hazards are avoided by the in-order
+      // completion, so the FPR_WAW bank is ignored.
+      for (Scoreboard.Bank bank : Scoreboard.Bank.values()) {
+        if (bank != Scoreboard.Bank.FPR_WAW) {
+          e.reads[bank.ordinal()] = scoreboard.getRecordedReads(bank);
+          e.writes[bank.ordinal()] = scoreboard.getRecordedWrites(bank);
+        }
+      }
+
+      group.addLast(e);
+      stopped = e.halt || e.breaking || e.syncex != null;
+
+      // A taken branch ends the group.
+      if (cpu.getPC().getValue() != address + 4 * (i + 1)) {
+        break;
+      }
+    }
+  }
+}
@@ -44,9 +44,14 @@ public class SymbolTable {
   private Memory mem = null;
 
   private SymbolTable() {
+    this(Memory.getInstance());
+  }
+
+  /** Builds a symbol table for the given memory. */
+  SymbolTable(Memory mem) {
     mem_labels = new HashMap<String, Integer>();
     instr_labels = new HashMap<String, Integer>();
-    mem = Memory.getInstance();
+    this.mem = mem;
   }
 
   public void setCellLabel(int address, String label) throws SameLabelsException, MemoryElementNotFoundException {
@@ -58,7 +63,7 @@ public class SymbolTable {
       }
 
       mem_labels.put(label, address);
-      MemoryElement temp = mem.getCellByAddress(address);
+      MemoryElement temp = mem.allocateCell(address / 8);
       // TODO: attualmente la cella  si prende l'ultima etichetta
       temp.setLabel(label);
       logger.info("Added label " + label + " to address " + address);
@@ -128,6 +133,16 @@ public class SymbolTable {
   }
 
 
+  /** Returns the labels of the memory cells, mapped to their addresses */
+  Map<String, Integer> getCellLabels() {
+    return Collections.unmodifiableMap(mem_labels);
+  }
+
+  /** Returns the labels of the instructions, mapped to their addresses */
+  Map<String, Integer> getInstructionLabels() {
+    return Collections.unmodifiableMap(instr_labels);
+  }
+
   /** This method resets the symbol table */
   public void reset() {
     instr_labels.clear();
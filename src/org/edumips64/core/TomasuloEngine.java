@@ -0,0 +1,492 @@
+/* TomasuloEngine.java
+ *
+ * Timing model of an out-of-order CPU with dynamic scheduling.
+ * (c) 2016 EduMIPS64 project
+ *
+ * This file is part of the EduMIPS64 project, and is released under the GNU
+ * General Public License.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.edumips64.core;
+
+import org.edumips64.core.is.*;
+import org.edumips64.utils.ConfigStore;
+import org.edumips64.utils.IrregularStringOfBitsException;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Logger;
+
+/** Out-of-order execution with Tomasulo's algorithm and a reorder buffer.
+ *
+ * Every cycle is made of the following steps, from the last to the first:
+ * - commit: the oldest instruction of the reorder buffer (ROB) leaves it, if
+ *   its result was broadcast in a previous cycle; exceptions, BREAK and the
+ *   end of the program are reported here, so that they are precise;
+ * - write result: the oldest instruction that finished its execution
+ *   broadcasts its result on the common data bus (CDB), which carries one
+ *   result per cycle;
+ * - dispatch: each functional unit starts the oldest instruction of its
+ *   reservation stations whose operands were broadcast in a previous cycle;
+ * - issue: the next instruction enters the ROB and a reservation station of
+ *   its functional unit, and its source registers are renamed to the ROB
+ *   entries that will produce them.
+ *
+ * Instructions are executed at issue with the same code of the FUNCTIONAL
+ * mode, so that the architectural state is always the one of a sequential
+ * execution; the scoreboard records the registers read and written by each
+ * instruction, and the register operands of its syntax are added to the
+ * sources, so that the registers read without a scoreboard check (such as
+ * the FCC read by MOVT.D) are dependencies as well. This means that the front end is
+ * ideal (branches are always predicted correctly) and that the output of the
+ * system calls is produced at issue. Loads and stores are started by the
+ * memory unit in program order.
+ */
+public class TomasuloEngine {
+  /** Functional units. */
+  public enum Unit {
+    INT(1, true), MEM(2, true), FP_ADD(4, true), FP_MUL(7, true), FP_DIV(24, false);
+
+    private final int latency;
+    private final boolean pipelined;
+
+    Unit(int latency, boolean pipelined) {
+      this.latency = latency;
+      this.pipelined = pipelined;
+    }
+
+    public int getLatency() {
+      return latency;
+    }
+
+    public boolean isPipelined() {
+      return pipelined;
+    }
+  }
+
+  // States of the instructions in the ROB.
+  private static final int WAITING = 0, EXECUTING = 1, COMPLETED = 2;
+
+  private static final Logger logger = Logger.getLogger(TomasuloEngine.class.getName());
+  private static final int BANKS = Scoreboard.Bank.values().length;
+
+  /** An entry of the reorder buffer. */
+  private static class Entry {
+    Instruction instr;
+    Unit unit;
+    int state;
+    Entry[] sources = new Entry[8];
+    int nSources;
+    int[] dests = new int[4];
+    int nDests;
+    int issueCycle, finishCycle, completeCycle;
+    boolean halt, breaking;
+    String syncex;
+
+    void addSource(Entry e) {
+      for (int i = 0; i < nSources; ++i) {
+        if (sources[i] == e) {
+          return;
+        }
+      }
+
+      if (nSources == sources.length) {
+        Entry[] larger = new Entry[nSources * 2];
+        System.arraycopy(sources, 0, larger, 0, nSources);
+        sources = larger;
+      }
+
+      sources[nSources++] = e;
+    }
+
+    void addDest(int key) {
+      if (nDests == dests.length) {
+        int[] larger = new int[nDests * 2];
+        System.arraycopy(dests, 0, larger, 0, nDests);
+        dests = larger;
+      }
+
+      dests[nDests++] = key;
+    }
+  }
+
+  private final CPU cpu;
+  private Entry[] rob;
+  private int head, count;
+  private int rsSize;
+  private final int[] rsUsed = new int[Unit.values().length];
+  private final int[] unitFreeCycle = new int[Unit.values().length];
+
+  // Functional units that started an instruction in the current cycle.
+  private final boolean[] started = new boolean[Unit.values().length];
+
+  // Register operands of the instruction being issued, one mask per bank.
+  private final long[] operands = new long[BANKS];
+
+  // Register alias table: the ROB entry that will write each register.
+  private final Entry[] producers = new Entry[BANKS * 64];
+
+  private int cycle, committed;
+  private int issueStalls, dispatchStalls, completeStalls, commitStalls;
+
+  // True if no instruction can be issued until the ROB is empty, because the
+  // last one issued ends the program or raises an exception.
+  private boolean stopped;
+  private boolean endOfCode;
+
+  TomasuloEngine(CPU cpu) {
+    this.cpu = cpu;
+  }
+
+  /** Empties the ROB and the reservation stations, resets the statistics
+   * and reads the sizes of the structures from the configuration. */
+  public void reset(ConfigStore config) {
+    rob = new Entry[Math.max(1, config.getInt("ooo_rob_entries"))];
+    rsSize = Math.max(1, config.getInt("ooo_rs_entries"));
+    head = count = 0;
+
+    for (int i = 0; i < rsUsed.length; ++i) {
+      rsUsed[i] = 0;
+      unitFreeCycle[i] = 0;
+    }
+
+    for (int i = 0; i < producers.length; ++i) {
+      producers[i] = null;
+    }
+
+    cycle = committed = 0;
+    issueStalls = dispatchStalls = completeStalls = commitStalls = 0;
+    stopped = endOfCode = false;
+  }
+
+  /** Number of instructions committed since the reset. */
+  public int getCommitted() {
+    return committed;
+  }
+
+  /** Cycles in which the next instruction could not enter the ROB or a
+   * reservation station because they were full. */
+  public int getIssueStalls() {
+    return issueStalls;
+  }
+
+  /** Cycles spent by the instructions in the reservation stations waiting
+   * for their operands or for their functional unit. */
+  public int getDispatchStalls() {
+    return dispatchStalls;
+  }
+
+  /** Cycles spent by the instructions waiting for the common data bus. */
+  public int getCompleteStalls() {
+    return completeStalls;
+  }
+
+  /** Cycles in which no instruction was committed because the oldest one
+   * had not completed. */
+  public int getCommitStalls() {
+    return commitStalls;
+  }
+
+  /** Returns the number of instructions in the ROB. */
+  public int getROBOccupancy() {
+    return count;
+  }
+
+  /** Returns the functional unit that executes the given instruction. */
+  public static Unit getUnit(Instruction instr) {
+    String name = instr.getName();
+
+    if (CPU.isFPArithmetic(instr)) {
+      if ("MUL.D".equalsIgnoreCase(name)) {
+        return Unit.FP_MUL;
+      } else if ("DIV.D".equalsIgnoreCase(name)) {
+        return Unit.FP_DIV;
+      }
+
+      return Unit.FP_ADD;
+    }
+
+    if (instr instanceof LDSTInstructions) {
+      return Unit.MEM;
+    }
+
+    return Unit.INT;
+  }
+
+  /** Simulates a clock cycle.
+   * @throws HaltException when the instruction that ends the program commits
+   * @throws BreakException when a BREAK instruction commits
+   * @throws SynchronousException when an instruction that raised a
+   * synchronous exception commits
+   */
+  void step(boolean masked, boolean terminate) throws HaltException, BreakException, SynchronousException, AddressErrorException, IrregularWriteOperationException, MemoryElementNotFoundException, IrregularStringOfBitsException, TwosComplementSumException, NotAlignException {
+    cycle++;
+    Entry retired = commit();
+
+    if (retired != null && retired.halt) {
+      cpu.setStatus(CPU.CPUStatus.HALTED);
+      throw new HaltException();
+    }
+
+    writeResult();
+    dispatch();
+    issue(masked, terminate);
+
+    if (retired != null && retired.breaking) {
+      throw new BreakException();
+    }
+
+    if (retired != null && retired.syncex != null) {
+      throw new SynchronousException(retired.syncex);
+    }
+  }
+
+  private Entry entry(int i) {
+    return rob[(head + i) % rob.length];
+  }
+
+  private Entry commit() throws HaltException {
+    if (count == 0) {
+      if (endOfCode) {
+        cpu.setStatus(CPU.CPUStatus.HALTED);
+        throw new HaltException();
+      }
+
+      return null;
+    }
+
+    Entry e = rob[head];
+
+    if (e.state != COMPLETED || e.completeCycle >= cycle) {
+      commitStalls++;
+      return null;
+    }
+
+    rob[head] = null;
+    head = (head + 1) % rob.length;
+    count--;
+
+    for (int i = 0; i < e.nDests; ++i) {
+      if (producers[e.dests[i]] == e) {
+        producers[e.dests[i]] = null;
+      }
+    }
+
+    if (!e.instr.isBubble()) {
+      committed++;
+      cpu.retired(e.instr);
+    }
+
+    if (e.halt || e.breaking || e.syncex != null) {
+      stopped = false;
+    }
+
+    logger.info("Committed " + e.instr);
+    return e;
+  }
+
+  private void writeResult() {
+    boolean busy = false;
+
+    for (int i = 0; i < count; ++i) {
+      Entry e = entry(i);
+
+      if (e.state == EXECUTING && e.finishCycle < cycle) {
+        if (busy) {
+          completeStalls++;
+        } else {
+          e.state = COMPLETED;
+          e.completeCycle = cycle;
+          busy = true;
+        }
+      }
+    }
+  }
+
+  private boolean isReady(Entry e) {
+    for (int i = 0; i < e.nSources; ++i) {
+      Entry s = e.sources[i];
+
+      if (s.state != COMPLETED || s.completeCycle >= cycle) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  private void dispatch() {
+    Arrays.fill(started, false);
+    boolean memoryBlocked = false;
+
+    for (int i = 0; i < count; ++i) {
+      Entry e = entry(i);
+
+      if (e.state != WAITING || e.issueCycle >= cycle) {
+        continue;
+      }
+
+      int u = e.unit.ordinal();
+      boolean canStart = !started[u] && unitFreeCycle[u] <= cycle && isReady(e);
+
+      // The memory unit starts loads and stores in program order.
+      if (e.unit == Unit.MEM) {
+        canStart = canStart && !memoryBlocked;
+        memoryBlocked = true;
+      }
+
+      if (!canStart) {
+        dispatchStalls++;
+        continue;
+      }
+
+      started[u] = true;
+      e.state = EXECUTING;
+      e.finishCycle = cycle + e.unit.latency - 1;
+      rsUsed[u]--;
+
+      if (!e.unit.pipelined) {
+        unitFreeCycle[u] = cycle + e.unit.latency;
+      }
+    }
+  }
+
+  private void issue(boolean masked, boolean terminate) throws AddressErrorException, IrregularWriteOperationException, MemoryElementNotFoundException, IrregularStringOfBitsException, TwosComplementSumException, NotAlignException {
+    if (stopped || endOfCode) {
+      return;
+    }
+
+    Instruction instr;
+
+    try {
+      instr = cpu.getMemory().getInstruction(cpu.getPC());
+    } catch (HaltException ex) {
+      endOfCode = true;
+      return;
+    }
+
+    Unit unit = getUnit(instr);
+
+    if (count == rob.length || rsUsed[unit.ordinal()] == rsSize) {
+      issueStalls++;
+      return;
+    }
+
+    Entry e = new Entry();
+    e.instr = instr;
+    e.unit = unit;
+    e.issueCycle = cycle;
+
+    Scoreboard scoreboard = Scoreboard.getInstance();
+    scoreboard.startRecording();
+
+    try {
+      cpu.execute(instr, masked, terminate);
+    } catch (HaltException ex) {
+      // The program ends when the instruction commits.
+      cpu.setStatus(CPU.CPUStatus.STOPPING);
+      e.halt = true;
+    } catch (BreakException ex) {
+      e.breaking = true;
+    } catch (SynchronousException ex) {
+      e.syncex = ex.getCode();
+    } finally {
+      scoreboard.stopRecording();
+    }
+
+    stopped = e.halt || e.breaking || e.syncex != null;
+    rename(e, scoreboard);
+
+    rob[(head + count) % rob.length] = e;
+    count++;
+    rsUsed[unit.ordinal()]++;
+    logger.info("Issued " + instr + " to " + unit);
+  }
+
+  /** Fills the operands with the registers named by the syntax of the
+   * instruction, as BinaryLoader does when it disassembles it. */
+  private void collectOperands(Instruction instr) {
+    Arrays.fill(operands, 0);
+    String syntax = instr.getSyntax();
+    List<Integer> params = instr.getParams();
+
+    if (syntax == null || params == null) {
+      return;
+    }
+
+    int p = 0;
+
+    for (int i = 0; i + 1 < syntax.length() && p < params.size(); ++i) {
+      if (syntax.charAt(i) != '%') {
+        continue;
+      }
+
+      int value = params.get(p++);
+      Scoreboard.Bank bank;
+
+      switch (syntax.charAt(++i)) {
+      case 'R':
+        bank = Scoreboard.Bank.GPR;
+        break;
+      case 'F':
+        bank = Scoreboard.Bank.FPR;
+        break;
+      case 'C':
+        bank = Scoreboard.Bank.FCC;
+        break;
+      default:
+        continue;
+      }
+
+      operands[bank.ordinal()] |= 1L << value;
+    }
+  }
+
+  /** Links the entry to the producers of the registers it reads, and makes
+   * it the producer of the registers it writes. The registers read are the
+   * ones recorded by the scoreboard and the operands that the instruction
+   * does not only write. WAW hazards on the FPRs disappear with the
+   * renaming. */
+  private void rename(Entry e, Scoreboard scoreboard) {
+    collectOperands(e.instr);
+    boolean readsDest = e.instr.readsDestination();
+
+    for (Scoreboard.Bank bank : Scoreboard.Bank.values()) {
+      if (bank == Scoreboard.Bank.FPR_WAW) {
+        continue;
+      }
+
+      int base = bank.ordinal() * 64;
+      long recorded = scoreboard.getRecordedReads(bank);
+      long writes = scoreboard.getRecordedWrites(bank);
+      long writesOnly = readsDest ? 0 : writes & ~recorded;
+
+      for (long reads = recorded | (operands[bank.ordinal()] & ~writesOnly); reads != 0; reads &= reads - 1) {
+        Entry p = producers[base + Long.numberOfTrailingZeros(reads)];
+
+        if (p != null) {
+          e.addSource(p);
+        }
+      }
+
+      for (; writes != 0; writes &= writes - 1) {
+        int key = base + Long.numberOfTrailingZeros(writes);
+        producers[key] = e;
+        e.addDest(key);
+      }
+    }
+  }
+}
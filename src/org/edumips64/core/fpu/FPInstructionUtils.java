@@ -25,6 +25,7 @@
 package org.edumips64.core.fpu;
 import java.math.*;
 import org.edumips64.core.CPU;
+import org.edumips64.core.FCSRRegister;
 import org.edumips64.utils.*;
 //import java.util.regex.Matcher;
 //import java.util.regex.Pattern;
@@ -58,13 +59,24 @@ public class FPInstructionUtils {
   final static String QNAN_PATTERN = "X111111111110XXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXX"; //XX..XX cannot be equal to zero at the same time
 
 
-  /** Converts a double value passed as string to a 64 bit binary string according with IEEE754 standard for double precision floating point numbers
+  /** Converts a double value passed as string to a 64 bit binary string according with IEEE754 standard for double precision floating point numbers,
+  *  signaling the exceptions in the FCSR of the CPU
   *  @param value the double value in the format "123.213" or "1.23213E2"
   *       value belongs to [-1.797693134862315708145274237317E308,-4.9406564584124654417656879286822E-324] U [4.9406564584124654417656879286822E-324, 1.797693134862315708145274237317E308]
   *  @throws ExponentTooLargeException,FPOverflowException,FPUnderflowException
   *  @return the binary string
   */
   public static String doubleToBin(String value) throws FPOverflowException, FPUnderflowException, IrregularStringOfBitsException {
+    return doubleToBin(value, cpu.getFCSRRegister());
+  }
+
+  /** Converts a double value passed as string to a 64 bit binary string, signaling the exceptions in the given FCSR
+  *  @param value the double value in the format "123.213" or "1.23213E2"
+  *  @param fcsr the register whose Cause and Flags fields are set, and whose Enables field tells which exceptions trap
+  *  @throws FPOverflowException,FPUnderflowException if the exception is enabled
+  *  @return the binary string
+  */
+  public static String doubleToBin(String value, FCSRRegister fcsr) throws FPOverflowException, FPUnderflowException, IrregularStringOfBitsException {
     //if a special value is passed then the proper binary string is returned
     String old_value = value;
     value = parseKeywords(value);
@@ -86,12 +98,8 @@ public class FPInstructionUtils {
       if (value_bd.compareTo(theBiggest) == 1 || value_bd.compareTo(theSmallest) == -1) {
         //exception
         //before raising the trap or return the special value we modify the cause bit
-        cpu.setFCSRCause("O", 1);
-
-        if (cpu.getFPExceptions(CPU.FPExceptions.OVERFLOW)) {
+        if (fcsr.signal(FCSRRegister.Flag.O)) {
           throw new FPOverflowException();
-        } else {
-          cpu.setFCSRFlags("O", 1);
         }
 
         if (value_bd.compareTo(theBiggest) == 1) {
@@ -107,12 +115,8 @@ public class FPInstructionUtils {
       if ((value_bd.compareTo(theZeroMinus) == 1 && value_bd.compareTo(theZeroPlus) == -1) && (value_bd.compareTo(zero) != 0 && value_bd.compareTo(minuszero) != 0)) {
         //exception
         //before raising the trap or return the special value we modify the cause bit
-        cpu.setFCSRCause("U", 1);
-
-        if (cpu.getFPExceptions(CPU.FPExceptions.UNDERFLOW)) {
+        if (fcsr.signal(FCSRRegister.Flag.U)) {
           throw new FPUnderflowException();
-        } else {
-          cpu.setFCSRFlags("U", 1);
         }
 
         if (value_bd.compareTo(zero) == 1) {
@@ -129,11 +133,11 @@ public class FPInstructionUtils {
 
       return padding64(output);
     } catch (NumberFormatException e) {
-      if (cpu.getFPExceptions(CPU.FPExceptions.OVERFLOW)) {
-        cpu.setFCSRCause("O", 1);
+      if (fcsr.getFPExceptions(CPU.FPExceptions.OVERFLOW)) {
+        fcsr.setFCSRCause(FCSRRegister.Flag.O, 1);
         throw new FPOverflowException();
       } else {
-        cpu.setFCSRFlags("V", 1);
+        fcsr.setFCSRFlags(FCSRRegister.Flag.V, 1);
       }
 
       return PLUSZERO;
@@ -211,12 +215,8 @@ public class FPInstructionUtils {
       //and if the trap is enabled an exception occurs, else a Qnan is returned
       if ((isQNaN(value1) || isQNaN(value2)) || (isSNaN(value1) || isSNaN(value2))) {
         //before raising the trap or return the special value we modify the cause bit
-        cpu.setFCSRCause("V", 1);
-
-        if (cpu.getFPExceptions(CPU.FPExceptions.INVALID_OPERATION)) {
+        if (cpu.signalFPException(FCSRRegister.Flag.V)) {
           throw new FPInvalidOperationException();
-        } else {
-          cpu.setFCSRFlags("V", 1);
         }
 
         return QNAN_NEW;
@@ -231,12 +231,8 @@ public class FPInstructionUtils {
 
       if (cond) {
         //before raising the trap or return the special value we modify the cause bit
-        cpu.setFCSRCause("V", 1);
-
-        if (cpu.getFPExceptions(CPU.FPExceptions.INVALID_OPERATION)) {
+        if (cpu.signalFPException(FCSRRegister.Flag.V)) {
           throw new FPInvalidOperationException();
-        } else {
-          cpu.setFCSRFlags("V", 1);
         }
 
         return QNAN_NEW;
@@ -326,12 +322,8 @@ public class FPInstructionUtils {
       //and if the trap is enabled an exception occurs, else a Qnan is returned
       if ((isQNaN(value1) || isQNaN(value2)) || (isSNaN(value1) || isSNaN(value2))) {
         //before raising the trap or return the special value we modify the cause bit
-        cpu.setFCSRCause("V", 1);
-
-        if (cpu.getFPExceptions(CPU.FPExceptions.INVALID_OPERATION)) {
+        if (cpu.signalFPException(FCSRRegister.Flag.V)) {
           throw new FPInvalidOperationException();
-        } else {
-          cpu.setFCSRFlags("V", 1);
         }
 
         return QNAN_NEW;
@@ -347,12 +339,8 @@ public class FPInstructionUtils {
 
       if (cond) {
         //before raising the trap or return the special value we modify the cause bit
-        cpu.setFCSRCause("V", 1);
-
-        if (cpu.getFPExceptions(CPU.FPExceptions.INVALID_OPERATION)) {
+        if (cpu.signalFPException(FCSRRegister.Flag.V)) {
           throw new FPInvalidOperationException();
-        } else {
-          cpu.setFCSRFlags("V", 1);
         }
 
         return QNAN_NEW;
@@ -441,12 +429,8 @@ public class FPInstructionUtils {
       //and if the exception is enabled a trap occurs, else a Qnan is returned
       if ((isQNaN(value1) || isQNaN(value2)) || (isSNaN(value1) || isSNaN(value2))) {
         //before raising the trap or return the special value we modify the cause bit
-        cpu.setFCSRCause("V", 1);
-
-        if (cpu.getFPExceptions(CPU.FPExceptions.INVALID_OPERATION)) {
+        if (cpu.signalFPException(FCSRRegister.Flag.V)) {
           throw new FPInvalidOperationException();
-        } else {
-          cpu.setFCSRFlags("V", 1);
         }
 
         return QNAN_NEW;
@@ -460,12 +444,8 @@ public class FPInstructionUtils {
 
       if (cond) {
         //before raising the trap or return the special value we modify the cause bit
-        cpu.setFCSRCause("V", 1);
-
-        if (cpu.getFPExceptions(CPU.FPExceptions.INVALID_OPERATION)) {
+        if (cpu.signalFPException(FCSRRegister.Flag.V)) {
           throw new FPInvalidOperationException();
-        } else {
-          cpu.setFCSRFlags("V", 1);
         }
 
         return QNAN_NEW;
@@ -552,12 +532,8 @@ public class FPInstructionUtils {
       //and if the exception is enabled a trap occurs, else a Qnan is returned
       if ((isQNaN(value1) || isQNaN(value2)) || (isSNaN(value1) || isSNaN(value2))) {
         //before raising the trap or return the special value we modify the cause bit
-        cpu.setFCSRCause("V", 1);
-
-        if (cpu.getFPExceptions(CPU.FPExceptions.INVALID_OPERATION)) {
+        if (cpu.signalFPException(FCSRRegister.Flag.V)) {
           throw new FPInvalidOperationException();
-        } else {
-          cpu.setFCSRFlags("V", 1);
         }
 
         return QNAN_NEW;
@@ -570,12 +546,8 @@ public class FPInstructionUtils {
 
       if (cond) {
         //before raising the trap or return the special value we modify the cause bit
-        cpu.setFCSRCause("V", 1);
-
-        if (cpu.getFPExceptions(CPU.FPExceptions.INVALID_OPERATION)) {
+        if (cpu.signalFPException(FCSRRegister.Flag.V)) {
           throw new FPInvalidOperationException();
-        } else {
-          cpu.setFCSRFlags("V", 1);
         }
 
         return QNAN_NEW;
@@ -602,12 +574,8 @@ public class FPInstructionUtils {
 
       if (cond) {
         //before raising the trap or return the special value we modify the cause bit
-        cpu.setFCSRCause("Z", 1);
-
-        if (cpu.getFPExceptions(CPU.FPExceptions.DIVIDE_BY_ZERO)) {
+        if (cpu.signalFPException(FCSRRegister.Flag.Z)) {
           throw new FPDivideByZeroException();
-        } else {
-          cpu.setFCSRFlags("Z", 1);
         }
 
         int sign1 = getDoubleSign(value1);
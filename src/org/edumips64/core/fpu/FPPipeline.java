@@ -176,7 +176,7 @@ public class FPPipeline {
   public int putInstruction(Instruction instr, boolean simulation) {  //throws InputStructuralHazardException
     cpu = CPU.getInstance();
 
-    if (instr != null && CPU.knownFPInstructions.contains(instr.getName())) {
+    if (instr != null && CPU.isFPArithmetic(instr)) {
       String instrName = instr.getName();
 
       if ((instrName.compareToIgnoreCase("ADD.D") == 0) || (instrName.compareToIgnoreCase("SUB.D") == 0))
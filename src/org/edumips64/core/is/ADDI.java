@@ -62,9 +62,7 @@ class ADDI extends ALU_IType {
       //if the enable forwarding is turned on we have to ensure that registers
       //should be unlocked also if a synchronous exception occurs. This is performed
       //by executing the WB method before raising the trap
-      if (enableForwarding) {
-        doWB();
-      }
+      forwardFromEX();
 
       throw new IntegerOverflowException();
     } else {
@@ -79,9 +77,7 @@ class ADDI extends ALU_IType {
       TR[RT_FIELD].setBits(filledOutputstring, 0);
     }
 
-    if (enableForwarding) {
-      doWB();
-    }
+    forwardFromEX();
   }
 
 }
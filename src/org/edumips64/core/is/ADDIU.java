@@ -64,8 +64,6 @@ class ADDIU extends ALU_IType {
 
     TR[RT_FIELD].setBits(filledOutputstring, 0);
 
-    if (enableForwarding) {
-      doWB();
-    }
+    forwardFromEX();
   }
 }
@@ -66,8 +66,6 @@ public class ADDU extends ALU_RType {
 
     TR[RD_FIELD].setBits(filledOutputstring, 0);
 
-    if (enableForwarding) {
-      doWB();
-    }
+    forwardFromEX();
   }
 }
@@ -53,18 +53,18 @@ public class ALU_IType extends ComputationalInstructions {
 
   public void ID() throws RAWException, IrregularWriteOperationException, IrregularStringOfBitsException {
     //if the source register is valid passing its own values into a temporary register
-    Register rs = cpu.getRegister(params.get(RS_FIELD));
+    Register rs = regs[RS_FIELD];
 
-    if (rs.getWriteSemaphore() > 0) {
+    if (isWaiting(rs)) {
       throw new RAWException();
     }
 
     TR[RS_FIELD].setBits(rs.getBinString(), 0);
     //locking the target register
-    Register rt = cpu.getRegister(params.get(RT_FIELD));
+    Register rt = regs[RT_FIELD];
     rt.incrWriteSemaphore();
     //writing the immediate value of "params" on a temporary register
-    TR[IMM_FIELD].writeHalf(params.get(IMM_FIELD));
+    TR[IMM_FIELD].writeHalf(fields[IMM_FIELD]);
 
   }
 
@@ -72,20 +72,19 @@ public class ALU_IType extends ComputationalInstructions {
   }
 
   public void MEM() throws IrregularStringOfBitsException, MemoryElementNotFoundException {
+    forwardFromMEM();
   }
 
 
   public void WB() throws IrregularStringOfBitsException {
-    if (!enableForwarding) {
-      doWB();
-    }
+    writeBack();
   }
 
   public void doWB() throws IrregularStringOfBitsException {
     //passing result from temporary register to destination register and unlocking it
-    logger.info("WB of the ALU I-Type instruction. Writing " + TR[RT_FIELD].getValue() + " to R" + params.get(RT_FIELD));
-    cpu.getRegister(params.get(RT_FIELD)).setBits(TR[RT_FIELD].getBinString(), 0);
-    cpu.getRegister(params.get(RT_FIELD)).decrWriteSemaphore();
+    logger.info("WB of the ALU I-Type instruction. Writing " + TR[RT_FIELD].getValue() + " to R" + fields[RT_FIELD]);
+    regs[RT_FIELD].setBits(TR[RT_FIELD].getBinString(), 0);
+    regs[RT_FIELD].decrWriteSemaphore();
   }
 
   public void pack() throws IrregularStringOfBitsException {
@@ -56,18 +56,18 @@ public abstract class ALU_RType extends ComputationalInstructions {
   public void ID() throws RAWException, IrregularWriteOperationException, IrregularStringOfBitsException {
     //if source registers are valid passing their own values into temporary registers
     logger.info("Executing step ID of " + fullname);
-    logger.info("RD is R" + params.get(RD_FIELD) + "; RS is R" + params.get(RS_FIELD) + "; RT is R" + params.get(RT_FIELD) + ";");
-    Register rs = cpu.getRegister(params.get(RS_FIELD));
-    Register rt = cpu.getRegister(params.get(RT_FIELD));
+    logger.info("RD is R" + fields[RD_FIELD] + "; RS is R" + fields[RS_FIELD] + "; RT is R" + fields[RT_FIELD] + ";");
+    Register rs = regs[RS_FIELD];
+    Register rt = regs[RT_FIELD];
 
     //if(rs.getWriteSemaphore()>0 || rt.getWriteSemaphore()>0)
     //    throw new RAWException();
-    if (rs.getWriteSemaphore() > 0) {
+    if (isWaiting(rs)) {
       logger.info("RAW on RS");
       throw new RAWException();
     }
 
-    if (rt.getWriteSemaphore() > 0) {
+    if (isWaiting(rt)) {
       logger.info("RAW on RT");
       throw new RAWException();
     }
@@ -80,7 +80,7 @@ public abstract class ALU_RType extends ComputationalInstructions {
     // if the condition is false), and someone changes the value of RD
     // between the ID and the WB stage of the current instruction, the old
     // value of RD, read during ID, will be written to RD during WB.
-    Register rd = cpu.getRegister(params.get(RD_FIELD));
+    Register rd = regs[RD_FIELD];
     TR[RD_FIELD].setBits(rd.getBinString(), 0);
 
     // Lock RD
@@ -92,18 +92,17 @@ public abstract class ALU_RType extends ComputationalInstructions {
   }
 
   public void MEM() throws IrregularStringOfBitsException, MemoryElementNotFoundException {
+    forwardFromMEM();
   }
 
   public void WB() throws IrregularStringOfBitsException {
-    if (!enableForwarding) {
-      doWB();
-    }
+    writeBack();
   }
 
   public void doWB() throws IrregularStringOfBitsException {
     //passing result from temporary register to destination register and unlocking it
-    cpu.getRegister(params.get(RD_FIELD)).setBits(TR[RD_FIELD].getBinString(), 0);
-    cpu.getRegister(params.get(RD_FIELD)).decrWriteSemaphore();
+    regs[RD_FIELD].setBits(TR[RD_FIELD].getBinString(), 0);
+    regs[RD_FIELD].decrWriteSemaphore();
 
   }
 
@@ -48,18 +48,18 @@ class ANDI extends ALU_IType {
   //of all others instructions in the same category, is necessary the overriding of ID method
   public void ID() throws RAWException, IrregularWriteOperationException, IrregularStringOfBitsException {
     //if the source register is valid passing its own values into a temporary register
-    Register rs = cpu.getRegister(params.get(RS_FIELD));
+    Register rs = regs[RS_FIELD];
 
-    if (rs.getWriteSemaphore() > 0) {
+    if (isWaiting(rs)) {
       throw new RAWException();
     }
 
     TR[RS_FIELD] = rs;
     //locking the target register
-    Register rt = cpu.getRegister(params.get(RT_FIELD));
+    Register rt = regs[RT_FIELD];
     rt.incrWriteSemaphore();
     //writing the immediate value of "params" on a temporary register
-    TR[IMM_FIELD].writeHalf(params.get(IMM_FIELD));
+    TR[IMM_FIELD].writeHalf(fields[IMM_FIELD]);
     //forcing zero-padding in the same temporary register
     StringBuffer sb = new StringBuffer();
 
@@ -88,9 +88,7 @@ class ANDI extends ALU_IType {
 
     TR[RT_FIELD].setBits(sb.substring(0), 0);
 
-    if (enableForwarding) {
-      doWB();
-    }
+    forwardFromEX();
 
   }
 
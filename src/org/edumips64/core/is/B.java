@@ -49,7 +49,7 @@ public class B extends FlowControl_IType {
     //getting registers rs and rt
     //converting offset into a signed binary value of 64 bits in length
     BitSet64 bs = new BitSet64();
-    bs.writeHalf(params.get(OFFSET_FIELD));
+    bs.writeHalf(fields[OFFSET_FIELD]);
     String offset = bs.getBinString();
 
     String pc_new = "";
@@ -64,6 +64,7 @@ public class B extends FlowControl_IType {
     //updating program counter
     pc_new = InstructionsUtils.twosComplementSum(pc_old, offset);
     pc.setBits(pc_new, 0);
+    cpu.branchResolved(this, true);
 
     throw new JumpException();
   }
@@ -46,11 +46,16 @@ public class BC1F extends FPConditionalBranchesInstructions {
   }
 
   public void ID() throws RAWException, IrregularWriteOperationException, IrregularStringOfBitsException, TwosComplementSumException, JumpException {
-    boolean condition = (cpu.getFCSRConditionCode(params.get(CC_FIELD)) == 0) ? true : false;
+    if (isWaitingFCC(fields[CC_FIELD])) {
+      throw new RAWException();
+    }
+
+    boolean condition = (cpu.getFCSRConditionCode(fields[CC_FIELD]) == 0) ? true : false;
+    cpu.branchResolved(this, condition);
 
     //converting offset into a signed binary value of 64 bits in length
     BitSet64 bs = new BitSet64();
-    bs.writeHalf(params.get(OFFSET_FIELD));
+    bs.writeHalf(fields[OFFSET_FIELD]);
     String offset = bs.getBinString();
 
     if (condition) {
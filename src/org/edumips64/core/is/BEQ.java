@@ -65,7 +65,7 @@ public class BEQ extends FlowControl_IType {
     if(PREDICTION == true) {
       //converting offset into a signed binary value of 64 bits in length
       BitSet64 bs = new BitSet64();
-      bs.writeHalf(params.get(OFFSET_FIELD));
+      bs.writeHalf(fields[OFFSET_FIELD]);
       String offset = bs.getBinString();
     
       String pc_new = "";
@@ -79,10 +79,10 @@ public class BEQ extends FlowControl_IType {
 
   public void ID() throws RAWException, IrregularWriteOperationException, IrregularStringOfBitsException, JumpException, TwosComplementSumException {
     //getting registers rs and rt
-    if (cpu.getRegister(params.get(RS_FIELD)).getWriteSemaphore() > 0) {
+    if (isWaiting(regs[RS_FIELD])) {
       throw new RAWException();
     }
-    if (cpu.getRegister(params.get(RT_FIELD)).getWriteSemaphore() > 0) {
+    if (isWaiting(regs[RT_FIELD])) {
       throw new RAWException();
     }
   }
@@ -90,17 +90,18 @@ public class BEQ extends FlowControl_IType {
   public void EX()
   throws IrregularStringOfBitsException, IntegerOverflowException, IrregularWriteOperationException, JumpException, TwosComplementSumException, BranchMispredictionException {
     //getting registers rs and rt
-    //if (cpu.getRegister(params.get(RS_FIELD)).getWriteSemaphore() > 0) {
+    //if (regs[RS_FIELD].getWriteSemaphore() > 0) {
       //throw new RAWException();
     //}
 
-    String rs = cpu.getRegister(params.get(RS_FIELD)).getBinString();
-    String rt = cpu.getRegister(params.get(RT_FIELD)).getBinString();
+    String rs = regs[RS_FIELD].getBinString();
+    String rt = regs[RT_FIELD].getBinString();
     //converting offset into a signed binary value of 64 bits in length
     BitSet64 bs = new BitSet64();
-    bs.writeHalf(params.get(OFFSET_FIELD));
+    bs.writeHalf(fields[OFFSET_FIELD]);
     String offset = bs.getBinString();
     boolean condition = rs.equals(rt);
+    cpu.branchResolved(this, condition);
 
     if(cpu.getPredictingBranches())
       cpu.updateSaturatingBranchPredictor(IF_PC_VALUE, condition);
@@ -66,7 +66,7 @@ public class BGEZ extends FlowControl_IType {
     if(PREDICTION == true) {
       //converting offset into a signed binary value of 64 bits in length
       BitSet64 bs = new BitSet64();
-      bs.writeHalf(params.get(OFFSET_FIELD));
+      bs.writeHalf(fields[OFFSET_FIELD]);
       String offset = bs.getBinString();
     
       String pc_new = "";
@@ -80,7 +80,7 @@ public class BGEZ extends FlowControl_IType {
 
   public void ID() throws RAWException, IrregularWriteOperationException, IrregularStringOfBitsException, JumpException, TwosComplementSumException {
     //getting registers rs and rt
-    if (cpu.getRegister(params.get(RS_FIELD)).getWriteSemaphore() > 0) {
+    if (isWaiting(regs[RS_FIELD])) {
       throw new RAWException();
     }
   }
@@ -88,16 +88,17 @@ public class BGEZ extends FlowControl_IType {
   public void EX()
   throws IrregularStringOfBitsException, IntegerOverflowException, IrregularWriteOperationException, JumpException, TwosComplementSumException, BranchMispredictionException {
     //getting registers rs and rt
-    //if (cpu.getRegister(params.get(RS_FIELD)).getWriteSemaphore() > 0) {
+    //if (regs[RS_FIELD].getWriteSemaphore() > 0) {
       //throw new RAWException();
     //}
 
-    String rs = cpu.getRegister(params.get(RS_FIELD)).getBinString();
+    String rs = regs[RS_FIELD].getBinString();
     //converting offset into a signed binary value of 64 bits in length
     BitSet64 bs = new BitSet64();
-    bs.writeHalf(params.get(OFFSET_FIELD));
+    bs.writeHalf(fields[OFFSET_FIELD]);
     String offset = bs.getBinString();
     boolean condition = rs.charAt(0) == '0';
+    cpu.branchResolved(this, condition);
 
     if(cpu.getPredictingBranches())
       cpu.updateSaturatingBranchPredictor(IF_PC_VALUE, condition);
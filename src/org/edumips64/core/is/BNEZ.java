@@ -65,7 +65,7 @@ public class BNEZ extends FlowControl_IType {
     if(PREDICTION == true) {
       //converting offset into a signed binary value of 64 bits in length
       BitSet64 bs = new BitSet64();
-      bs.writeHalf(params.get(OFFSET_FIELD));
+      bs.writeHalf(fields[OFFSET_FIELD]);
       String offset = bs.getBinString();
     
       String pc_new = "";
@@ -79,7 +79,7 @@ public class BNEZ extends FlowControl_IType {
 
   public void ID() throws RAWException, IrregularWriteOperationException, IrregularStringOfBitsException, JumpException, TwosComplementSumException {
     //getting registers rs and rt
-    if (cpu.getRegister(params.get(RS_FIELD)).getWriteSemaphore() > 0) {
+    if (isWaiting(regs[RS_FIELD])) {
       throw new RAWException();
     }
   }
@@ -87,17 +87,18 @@ public class BNEZ extends FlowControl_IType {
   public void EX()
   throws IrregularStringOfBitsException, IntegerOverflowException, IrregularWriteOperationException, JumpException, TwosComplementSumException, BranchMispredictionException {
     //getting registers rs and rt
-    //if (cpu.getRegister(params.get(RS_FIELD)).getWriteSemaphore() > 0) {
+    //if (regs[RS_FIELD].getWriteSemaphore() > 0) {
       //throw new RAWException();
     //}
 
-    String rs = cpu.getRegister(params.get(RS_FIELD)).getBinString();
+    String rs = regs[RS_FIELD].getBinString();
     String zero = Converter.positiveIntToBin(64, 0);
     //converting offset into a signed binary value of 64 bits in length
     BitSet64 bs = new BitSet64();
-    bs.writeHalf(params.get(OFFSET_FIELD));
+    bs.writeHalf(fields[OFFSET_FIELD]);
     String offset = bs.getBinString();
     boolean condition = ! rs.equals(zero);
+    cpu.branchResolved(this, condition);
 
     if(cpu.getPredictingBranches())
       cpu.updateSaturatingBranchPredictor(IF_PC_VALUE, condition);
@@ -37,7 +37,7 @@ import java.math.*;
  *</pre>
  */
 class CVT_D_L extends FPConversionFCSRInstructions {
-  static String OPCODE_VALUE = "100101";
+  static String OPCODE_VALUE = "100001";
   static String FMT_FIELD = "10101"; //LONG IS 21
   static String NAME = "CVT.D.L";
 
@@ -54,20 +54,15 @@ class CVT_D_L extends FPConversionFCSRInstructions {
 
     if ((bd = FPInstructionUtils.longToDouble(fs)) == null) {
       //before raising the trap or return the special value we modify the cause bit
-      cpu.setFCSRCause("V", 1);
-
-      if (cpu.getFPExceptions(CPU.FPExceptions.INVALID_OPERATION)) {
+      if (cpu.signalFPException(FCSRRegister.Flag.V)) {
         throw new FPInvalidOperationException();
       } else {
-        cpu.setFCSRFlags("V", 1);
         TRfp[FD_FIELD].setBits("0000000000000000000000000000000000000000000000000000000000000000", 0);
       }
     } else {
       TRfp[FD_FIELD].writeDouble(bd.doubleValue());
     }
 
-    if (enableForwarding) {
-      doWB();
-    }
+    forwardFromEX();
   }
 }
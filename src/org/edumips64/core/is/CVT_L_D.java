@@ -57,12 +57,9 @@ class CVT_L_D extends FPConversionFCSRInstructions {
     //if the value is larger than a long an exception may occur
     if (bi == null || bi.compareTo(biggest) == 1 || bi.compareTo(smallest) == -1) {
       //before raising the trap or return the special value we modify the cause bit
-      cpu.setFCSRCause("V", 1);
-
-      if (cpu.getFPExceptions(CPU.FPExceptions.INVALID_OPERATION)) {
+      if (cpu.signalFPException(FCSRRegister.Flag.V)) {
         throw new FPInvalidOperationException();
       } else {
-        cpu.setFCSRFlags("V", 1);
         //if an exception occured without a trap the biggest value is returned
         bi = new BigInteger("9223372036854775807");  //2^63-1
       }
@@ -73,8 +70,6 @@ class CVT_L_D extends FPConversionFCSRInstructions {
     tmp.writeDoubleWord(bi.longValue());
     TRfp[FD_FIELD].setBits(tmp.getBinString(), 0);
 
-    if (enableForwarding) {
-      doWB();
-    }
+    forwardFromEX();
   }
 }
@@ -60,9 +60,7 @@ class DADD extends ALU_RType {
       //if the enable forwarding is turned on we have to ensure that registers
       //should be unlocked also if a synchronous exception occurs. This is performed
       //by executing the WB method before raising the trap
-      if (enableForwarding) {
-        doWB();
-      }
+      forwardFromEX();
 
       throw new IntegerOverflowException();
     } else {
@@ -71,9 +69,7 @@ class DADD extends ALU_RType {
 
     TR[RD_FIELD].setBits(outputstring, 0);
 
-    if (enableForwarding) {
-      doWB();
-    }
+    forwardFromEX();
   }
 
 }
@@ -58,9 +58,7 @@ class DADDI extends ALU_IType {
       //if the enable forwarding is turned on we have to ensure that registers
       //should be unlocked also if a synchronous exception occurs. This is performed
       //by executing the WB method before raising the trap
-      if (enableForwarding) {
-        doWB();
-      }
+      forwardFromEX();
 
       throw new IntegerOverflowException();
     } else {
@@ -69,8 +67,6 @@ class DADDI extends ALU_IType {
 
     TR[RT_FIELD].setBits(outputstring, 0);
 
-    if (enableForwarding) {
-      doWB();
-    }
+    forwardFromEX();
   }
 }
@@ -54,8 +54,6 @@ class DADDIU extends ALU_IType {
     long result = imm + rs;
     TR[RT_FIELD].writeDoubleWord(result);
 
-    if (enableForwarding) {
-      doWB();
-    }
+    forwardFromEX();
   }
 }
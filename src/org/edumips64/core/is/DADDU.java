@@ -56,8 +56,6 @@ public class DADDU extends ALU_RType {
     //There isn't IntegerOverflow cases
     TR[RD_FIELD].setBits(outputstring, 0);
 
-    if (enableForwarding) {
-      doWB();
-    }
+    forwardFromEX();
   }
 }
@@ -57,10 +57,10 @@ class DDIV extends ALU_RType {
   }
   public void ID() throws RAWException, IrregularWriteOperationException, IrregularStringOfBitsException {
     //if source registers are valid passing their own values into temporary registers
-    Register rs = cpu.getRegister(params.get(RS_FIELD));
-    Register rt = cpu.getRegister(params.get(RT_FIELD));
+    Register rs = regs[RS_FIELD];
+    Register rt = regs[RT_FIELD];
 
-    if (rs.getWriteSemaphore() > 0 || rt.getWriteSemaphore() > 0) {
+    if (isWaiting(rs) || isWaiting(rt)) {
       throw new RAWException();
     }
 
@@ -84,7 +84,7 @@ class DDIV extends ALU_RType {
     try {
       quozient = rs / rt;
     } catch (ArithmeticException e) {
-      if (enableForwarding) {
+      if (forwarding.isEnabled(ForwardingNetwork.Path.EX_EX)) {
         cpu.getLO().decrWriteSemaphore();
         cpu.getHI().decrWriteSemaphore();
       }
@@ -102,15 +102,11 @@ class DDIV extends ALU_RType {
       e.printStackTrace();
     }
 
-    if (enableForwarding) {
-      doWB();
-    }
+    forwardFromEX();
   }
 
   public void WB() throws IrregularStringOfBitsException {
-    if (!enableForwarding) {
-      doWB();
-    }
+    writeBack();
   }
   public void doWB() throws IrregularStringOfBitsException {
     //passing results from temporary registers to destination registers and unlocking them
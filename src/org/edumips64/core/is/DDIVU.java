@@ -48,7 +48,7 @@ class DDIVU extends ALU_RType {
   final static int RT_FIELD = 1;
   final static int LO_REG = 2;
   final static int HI_REG = 3;
-  final String OPCODE_VALUE = "011110";
+  final String OPCODE_VALUE = "011111";
 
   public DDIVU() {
     super.OPCODE_VALUE = OPCODE_VALUE;
@@ -57,10 +57,10 @@ class DDIVU extends ALU_RType {
   }
   public void ID() throws RAWException, IrregularWriteOperationException, IrregularStringOfBitsException {
     //if source registers are valid passing their own values into temporary registers
-    Register rs = cpu.getRegister(params.get(RS_FIELD));
-    Register rt = cpu.getRegister(params.get(RT_FIELD));
+    Register rs = regs[RS_FIELD];
+    Register rt = regs[RT_FIELD];
 
-    if (rs.getWriteSemaphore() > 0 || rt.getWriteSemaphore() > 0) {
+    if (isWaiting(rs) || isWaiting(rt)) {
       throw new RAWException();
     }
 
@@ -83,7 +83,7 @@ class DDIVU extends ALU_RType {
     try {
       result = rs.divideAndRemainder(rt);
     } catch (ArithmeticException e) {
-      if (enableForwarding) {
+      if (forwarding.isEnabled(ForwardingNetwork.Path.EX_EX)) {
         cpu.getLO().decrWriteSemaphore();
         cpu.getHI().decrWriteSemaphore();
       }
@@ -108,15 +108,11 @@ class DDIVU extends ALU_RType {
 
     TR[HI_REG].setBits(tmp, 0);
 
-    if (enableForwarding) {
-      doWB();
-    }
+    forwardFromEX();
   }
 
   public void WB() throws IrregularStringOfBitsException {
-    if (!enableForwarding) {
-      doWB();
-    }
+    writeBack();
   }
   public void doWB() throws IrregularStringOfBitsException {
     //passing results from temporary registers to destination registers and unlocking them
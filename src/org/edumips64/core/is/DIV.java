@@ -59,10 +59,10 @@ class DIV extends ALU_RType {
   }
   public void ID() throws RAWException, IrregularWriteOperationException, IrregularStringOfBitsException {
     //if source registers are valid passing their own values into temporary registers
-    Register rs = cpu.getRegister(params.get(RS_FIELD));
-    Register rt = cpu.getRegister(params.get(RT_FIELD));
+    Register rs = regs[RS_FIELD];
+    Register rt = regs[RT_FIELD];
 
-    if (rs.getWriteSemaphore() > 0 || rt.getWriteSemaphore() > 0) {
+    if (isWaiting(rs) || isWaiting(rt)) {
       throw new RAWException();
     }
 
@@ -88,7 +88,7 @@ class DIV extends ALU_RType {
     try {
       quotient = l_rs / l_rt;
     } catch (ArithmeticException e) {
-      if (enableForwarding) {
+      if (forwarding.isEnabled(ForwardingNetwork.Path.EX_EX)) {
         cpu.getLO().decrWriteSemaphore();
         cpu.getHI().decrWriteSemaphore();
       }
@@ -139,15 +139,11 @@ class DIV extends ALU_RType {
     TR[LO_REG].setBits(str_quotient, 0);
     TR[HI_REG].setBits(str_remainder, 0);
 
-    if (enableForwarding) {
-      doWB();
-    }
+    forwardFromEX();
   }
 
   public void WB() throws IrregularStringOfBitsException {
-    if (!enableForwarding) {
-      doWB();
-    }
+    writeBack();
   }
   public void doWB() throws IrregularStringOfBitsException {
     //passing results from temporary registers to destination registers and unlocking them
@@ -51,9 +51,7 @@ class DMFC1 extends FPMoveFromInstructions {
     String value = TRfp[FS_FIELD].getBinString();
     TR[RT_FIELD].setBits(value, 0);
 
-    if (enableForwarding) {
-      doWB();
-    }
+    forwardFromEX();
   }
 
 
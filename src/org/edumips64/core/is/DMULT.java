@@ -58,10 +58,10 @@ class DMULT extends ALU_RType {
   }
   public void ID() throws RAWException, IrregularWriteOperationException, IrregularStringOfBitsException {
     //if source registers are valid passing their own values into temporary registers
-    Register rs = cpu.getRegister(params.get(RS_FIELD));
-    Register rt = cpu.getRegister(params.get(RT_FIELD));
+    Register rs = regs[RS_FIELD];
+    Register rt = regs[RT_FIELD];
 
-    if (rs.getWriteSemaphore() > 0 || rt.getWriteSemaphore() > 0) {
+    if (isWaiting(rs) || isWaiting(rt)) {
       throw new RAWException();
     }
 
@@ -98,14 +98,10 @@ class DMULT extends ALU_RType {
     hi = tmp.substring(0, 64);
     lo = tmp.substring(64);
 
-    if (enableForwarding) {
-      doWB();
-    }
+    forwardFromEX();
   }
   public void WB() throws IrregularStringOfBitsException {
-    if (!enableForwarding) {
-      doWB();
-    }
+    writeBack();
   }
   public void doWB() throws IrregularStringOfBitsException {
     //passing results from temporary registers to destination registers and unlocking them
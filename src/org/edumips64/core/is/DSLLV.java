@@ -73,9 +73,7 @@ public class DSLLV extends ALU_RType {
 
     TR[RD_FIELD].setBits(target, 0);
 
-    if (enableForwarding) {
-      doWB();
-    }
+    forwardFromEX();
   }
 
 }
@@ -75,8 +75,6 @@ public class DSRAV extends ALU_RType {
     sb.append(rt.substring(0, 64 - shift_value));
     TR[RD_FIELD].setBits(sb.substring(0), 0);
 
-    if (enableForwarding) {
-      doWB();
-    }
+    forwardFromEX();
   }
 }
@@ -71,8 +71,6 @@ public class DSRLV extends ALU_RType {
     sb.append(rt.substring(0, 64 - shift_value));
     TR[RD_FIELD].setBits(sb.substring(0), 0);
 
-    if (enableForwarding) {
-      doWB();
-    }
+    forwardFromEX();
   }
 }
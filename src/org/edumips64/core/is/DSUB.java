@@ -56,9 +56,7 @@ public class DSUB extends ALU_RType {
       //if the enable forwarding is turned on we have to ensure that registers
       //should be unlocked also if a synchronous exception occurs. This is performed
       //by executing the WB method before raising the trap
-      if (enableForwarding) {
-        doWB();
-      }
+      forwardFromEX();
 
       throw new IntegerOverflowException();
     } else {
@@ -67,9 +65,7 @@ public class DSUB extends ALU_RType {
 
     TR[RD_FIELD].setBits(outputstring, 0);
 
-    if (enableForwarding) {
-      doWB();
-    }
+    forwardFromEX();
 
   }
 
@@ -59,19 +59,19 @@ public abstract class FPArithmeticInstructions extends ComputationalInstructions
 
   public void ID() throws RAWException, IrregularWriteOperationException, IrregularStringOfBitsException, WAWException {
     //if source registers are valid passing their own values into temporary registers
-    RegisterFP fs = cpu.getRegisterFP(params.get(FS_FIELD));
-    RegisterFP ft = cpu.getRegisterFP(params.get(FT_FIELD));
+    RegisterFP fs = fpRegs[FS_FIELD];
+    RegisterFP ft = fpRegs[FT_FIELD];
 
-    if (fs.getWriteSemaphore() > 0 || ft.getWriteSemaphore() > 0) {
+    if (isWaiting(fs) || isWaiting(ft)) {
       throw new RAWException();
     }
 
     TRfp[FS_FIELD].setBits(fs.getBinString(), 0);
     TRfp[FT_FIELD].setBits(ft.getBinString(), 0);
     //locking the destination register
-    RegisterFP fd = cpu.getRegisterFP(params.get(FD_FIELD));
+    RegisterFP fd = fpRegs[FD_FIELD];
 
-    if (fd.getWAWSemaphore() > 0) {
+    if (fd.isWAWWaiting()) {
       throw new WAWException();
     }
 
@@ -92,9 +92,7 @@ public abstract class FPArithmeticInstructions extends ComputationalInstructions
       //if the enable forwarding is turned on we have to ensure that registers
       //should be unlocked also if a synchronous exception occurs. This is performed
       //by executing the WB method before raising the trap
-      if (enableForwarding) {
-        doWB();
-      }
+      forwardFromEX();
 
       if (ex instanceof FPInvalidOperationException) {
         throw new FPInvalidOperationException();
@@ -109,27 +107,24 @@ public abstract class FPArithmeticInstructions extends ComputationalInstructions
       }
     }
 
-    if (enableForwarding) {
-      doWB();
-    }
+    forwardFromEX();
   }
 
   protected abstract String doFPArith(String operand1, String operand2) throws FPInvalidOperationException, FPUnderflowException, FPOverflowException, FPDivideByZeroException, IrregularStringOfBitsException;
 
   public void MEM() throws IrregularStringOfBitsException, MemoryElementNotFoundException {
-    cpu.getRegisterFP(params.get(FD_FIELD)).decrWAWSemaphore();
+    fpRegs[FD_FIELD].decrWAWSemaphore();
+    forwardFromMEM();
   }
 
   public void WB() throws IrregularStringOfBitsException {
-    if (!enableForwarding) {
-      doWB();
-    }
+    writeBack();
   }
 
   public void doWB() throws IrregularStringOfBitsException {
     //passing result from temporary register to destination register and unlocking it
-    cpu.getRegisterFP(params.get(FD_FIELD)).setBits(TRfp[FD_FIELD].getBinString(), 0);
-    cpu.getRegisterFP(params.get(FD_FIELD)).decrWriteSemaphore();
+    fpRegs[FD_FIELD].setBits(TRfp[FD_FIELD].getBinString(), 0);
+    fpRegs[FD_FIELD].decrWriteSemaphore();
 
   }
 
@@ -63,18 +63,29 @@ public abstract class FPC_cond_DInstructions extends ComputationalInstructions {
 
   public void ID() throws IrregularStringOfBitsException, RAWException {
     //if source registers are valid passing their own values into temporary registers
-    RegisterFP fs = cpu.getRegisterFP(params.get(FS_FIELD));
-    RegisterFP ft = cpu.getRegisterFP(params.get(FT_FIELD));
+    RegisterFP fs = fpRegs[FS_FIELD];
+    RegisterFP ft = fpRegs[FT_FIELD];
 
-    if (fs.getWriteSemaphore() > 0 || ft.getWriteSemaphore() > 0) {
+    if (isWaiting(fs) || isWaiting(ft)) {
       throw new RAWException();
     }
 
     TRfp[FS_FIELD].setBits(fs.getBinString(), 0);
     TRfp[FT_FIELD].setBits(ft.getBinString(), 0);
+
+    //locking the condition code
+    scoreboard.lock(Scoreboard.Bank.FCC, fields[CC_FIELD]);
   }
 
   public void EX() throws IrregularStringOfBitsException, FPInvalidOperationException {
+    try {
+      compare();
+    } finally {
+      scoreboard.unlock(Scoreboard.Bank.FCC, fields[CC_FIELD]);
+    }
+  }
+
+  private void compare() throws IrregularStringOfBitsException, FPInvalidOperationException {
     RegisterFP fs = TRfp[FS_FIELD];
     RegisterFP ft = TRfp[FT_FIELD];
     boolean less;
@@ -100,7 +111,7 @@ public abstract class FPC_cond_DInstructions extends ComputationalInstructions {
       if (FPInstructionUtils.isSNaN(fs.getBinString()) || FPInstructionUtils.isSNaN(ft.getBinString())
           || (cpu.getFPExceptions(CPU.FPExceptions.INVALID_OPERATION) && (FPInstructionUtils.isQNaN(fs.getBinString()) || FPInstructionUtils.isQNaN(ft.getBinString())))) {
         //before raising the trap or return the special value we modify the cause bit
-        cpu.setFCSRCause("V", 1);
+        cpu.setFCSRCause(FCSRRegister.Flag.V, 1);
         throw new FPInvalidOperationException();
       }
     } else {
@@ -115,7 +126,7 @@ public abstract class FPC_cond_DInstructions extends ComputationalInstructions {
     //now we make the and operation between the truth mask and the comparison of the registers
     condition = (cond2 && less) || (cond1 && equal) || (cond0 && unordered);
     condition_int = (condition == true) ? 1 : 0;
-    cpu.setFCSRConditionCode(params.get(CC_FIELD).intValue(), condition_int);
+    cpu.setFCSRConditionCode(fields[CC_FIELD], condition_int);
   }
   public void MEM() {}
   public void WB() {};
@@ -60,10 +60,10 @@ public abstract class FPConditionalCC_DMoveInstructions extends ComputationalIns
   }
   public void ID() throws RAWException, WAWException, IrregularStringOfBitsException {
     //if the source register is valid we pass its own value into a temporary register
-    RegisterFP fd = cpu.getRegisterFP(params.get(FD_FIELD));
-    RegisterFP fs = cpu.getRegisterFP(params.get(FS_FIELD));
+    RegisterFP fd = fpRegs[FD_FIELD];
+    RegisterFP fs = fpRegs[FS_FIELD];
 
-    if (fs.getWriteSemaphore() > 0) {
+    if (isWaiting(fs)) {
       throw new RAWException();
     }
 
@@ -71,7 +71,7 @@ public abstract class FPConditionalCC_DMoveInstructions extends ComputationalIns
     TRfp[FD_FIELD].setBits(fd.getBinString(), 0);
 
     //locking the destination register
-    if (fd.getWAWSemaphore() > 0) {
+    if (fd.isWAWWaiting()) {
       throw new WAWException();
     }
 
@@ -81,23 +81,28 @@ public abstract class FPConditionalCC_DMoveInstructions extends ComputationalIns
   public void EX() throws IrregularStringOfBitsException {
     String fs = TRfp[FS_FIELD].getBinString();
 
-    if (cpu.getFCSRConditionCode(params.get(CC_FIELD).intValue()) == TF_FIELD_VALUE) {
+    if (cpu.getFCSRConditionCode(fields[CC_FIELD]) == TF_FIELD_VALUE) {
       TRfp[FD_FIELD].setBits(fs, 0);
     }
+
+    forwardFromEX();
   }
-  public void MEM() throws MemoryElementNotFoundException {
-    cpu.getRegisterFP(params.get(FD_FIELD)).decrWAWSemaphore();
+  public void MEM() throws IrregularStringOfBitsException, MemoryElementNotFoundException {
+    fpRegs[FD_FIELD].decrWAWSemaphore();
+    forwardFromMEM();
   }
   public void WB() throws IrregularStringOfBitsException {
-    if (!enableForwarding) {
-      doWB();
-    }
+    writeBack();
+  }
+
+  public boolean readsDestination() {
+    return true;
   }
 
   public void doWB() throws IrregularStringOfBitsException {
     //passing result from temporary register to destination register and unlocking it
-    cpu.getRegisterFP(params.get(FD_FIELD)).setBits(TRfp[FD_FIELD].getBinString(), 0);
-    cpu.getRegisterFP(params.get(FD_FIELD)).decrWriteSemaphore();
+    fpRegs[FD_FIELD].setBits(TRfp[FD_FIELD].getBinString(), 0);
+    fpRegs[FD_FIELD].decrWriteSemaphore();
   }
 
   public void pack() throws IrregularStringOfBitsException {
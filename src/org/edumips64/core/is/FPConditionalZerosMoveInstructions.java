@@ -55,11 +55,11 @@ public abstract class FPConditionalZerosMoveInstructions extends ComputationalIn
   }
   public void ID() throws RAWException, WAWException, IrregularStringOfBitsException {
     //if the source register is valid we pass its own value into a temporary register
-    RegisterFP fd = cpu.getRegisterFP(params.get(FD_FIELD));
-    RegisterFP fs = cpu.getRegisterFP(params.get(FS_FIELD));
-    Register rt = cpu.getRegister(params.get(RT_FIELD));
+    RegisterFP fd = fpRegs[FD_FIELD];
+    RegisterFP fs = fpRegs[FS_FIELD];
+    Register rt = regs[RT_FIELD];
 
-    if (fs.getWriteSemaphore() > 0 || rt.getWriteSemaphore() > 0) {
+    if (isWaiting(fs) || isWaiting(rt)) {
       throw new RAWException();
     }
 
@@ -68,7 +68,7 @@ public abstract class FPConditionalZerosMoveInstructions extends ComputationalIn
     TR[RT_FIELD].setBits(rt.getBinString(), 0);
 
     //locking the destination register
-    if (fd.getWAWSemaphore() > 0) {
+    if (fd.isWAWWaiting()) {
       throw new WAWException();
     }
 
@@ -76,19 +76,22 @@ public abstract class FPConditionalZerosMoveInstructions extends ComputationalIn
     fd.incrWAWSemaphore();
   }
   public abstract void EX() throws IrregularStringOfBitsException;
-  public void MEM() throws MemoryElementNotFoundException {
-    cpu.getRegisterFP(params.get(FD_FIELD)).decrWAWSemaphore();
+  public void MEM() throws IrregularStringOfBitsException, MemoryElementNotFoundException {
+    fpRegs[FD_FIELD].decrWAWSemaphore();
+    forwardFromMEM();
   };
   public void WB() throws IrregularStringOfBitsException {
-    if (!enableForwarding) {
-      doWB();
-    }
+    writeBack();
+  }
+
+  public boolean readsDestination() {
+    return true;
   }
 
   public void doWB() throws IrregularStringOfBitsException {
     //passing result from temporary register to destination register and unlocking it
-    cpu.getRegisterFP(params.get(FD_FIELD)).setBits(TRfp[FD_FIELD].getBinString(), 0);
-    cpu.getRegisterFP(params.get(FD_FIELD)).decrWriteSemaphore();
+    fpRegs[FD_FIELD].setBits(TRfp[FD_FIELD].getBinString(), 0);
+    fpRegs[FD_FIELD].decrWriteSemaphore();
   }
 
   public void pack() throws IrregularStringOfBitsException {
@@ -33,8 +33,6 @@ import org.edumips64.core.fpu.*;
  */
 
 public abstract class FPConversionFCSRInstructions extends FPFormattedOperandMoveInstructions {
-  String OPCODE_VALUE = "";
-  String FMT_FIELD = "";
   public FPConversionFCSRInstructions() {
     this.syntax = "%F,%F";
     this.paramCount = 2;
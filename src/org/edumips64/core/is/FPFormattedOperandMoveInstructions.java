@@ -55,10 +55,10 @@ public abstract class FPFormattedOperandMoveInstructions extends ComputationalIn
   }
   public void ID() throws RAWException, WAWException, IrregularStringOfBitsException {
     //if the source register is valid we pass its own value into a temporary register
-    RegisterFP fd = cpu.getRegisterFP(params.get(FD_FIELD));
-    RegisterFP fs = cpu.getRegisterFP(params.get(FS_FIELD));
+    RegisterFP fd = fpRegs[FD_FIELD];
+    RegisterFP fs = fpRegs[FS_FIELD];
 
-    if (fs.getWriteSemaphore() > 0) {
+    if (isWaiting(fs)) {
       throw new RAWException();
     }
 
@@ -66,7 +66,7 @@ public abstract class FPFormattedOperandMoveInstructions extends ComputationalIn
     TRfp[FD_FIELD].setBits(fd.getBinString(), 0);
 
     //locking the destination register
-    if (fd.getWAWSemaphore() > 0) {
+    if (fd.isWAWWaiting()) {
       throw new WAWException();
     }
 
@@ -74,19 +74,18 @@ public abstract class FPFormattedOperandMoveInstructions extends ComputationalIn
     fd.incrWAWSemaphore();
   }
   public abstract void EX() throws IrregularStringOfBitsException, FPInvalidOperationException, IrregularWriteOperationException, FPUnderflowException, FPOverflowException;
-  public void MEM() throws MemoryElementNotFoundException {
-    cpu.getRegisterFP(params.get(FD_FIELD)).decrWAWSemaphore();
+  public void MEM() throws IrregularStringOfBitsException, MemoryElementNotFoundException {
+    fpRegs[FD_FIELD].decrWAWSemaphore();
+    forwardFromMEM();
   };
   public void WB() throws IrregularStringOfBitsException {
-    if (!enableForwarding) {
-      doWB();
-    }
+    writeBack();
   }
 
   public void doWB() throws IrregularStringOfBitsException {
     //passing result from temporary register to destination register and unlocking it
-    cpu.getRegisterFP(params.get(FD_FIELD)).setBits(TRfp[FD_FIELD].getBinString(), 0);
-    cpu.getRegisterFP(params.get(FD_FIELD)).decrWriteSemaphore();
+    fpRegs[FD_FIELD].setBits(TRfp[FD_FIELD].getBinString(), 0);
+    fpRegs[FD_FIELD].decrWriteSemaphore();
   }
 
   public void pack() throws IrregularStringOfBitsException {
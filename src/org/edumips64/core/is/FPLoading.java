@@ -39,20 +39,20 @@ public abstract class FPLoading extends FPLDSTInstructions {
 
   public void ID() throws RAWException, IrregularWriteOperationException, IrregularStringOfBitsException, TwosComplementSumException, WAWException {
     //if the base register is valid ...
-    Register base = cpu.getRegister(params.get(BASE_FIELD));
+    Register base = regs[BASE_FIELD];
 
-    if (base.getWriteSemaphore() > 0) {
+    if (isWaiting(base)) {
       throw new RAWException();
     }
 
     //calculating  address (base+offset)
-    long address = base.getValue() + params.get(OFFSET_FIELD);
+    long address = base.getValue() + fields[OFFSET_FIELD];
     //saving address into a temporary register
     TR[OFFSET_PLUS_BASE].writeDoubleWord(address);
     //locking ft register either in write mode or in read mode
-    RegisterFP ft = cpu.getRegisterFP(params.get(FT_FIELD));
+    RegisterFP ft = fpRegs[FT_FIELD];
 
-    if (ft.getWAWSemaphore() > 0) {
+    if (ft.isWAWWaiting()) {
       throw new WAWException();
     }
 
@@ -65,19 +65,17 @@ public abstract class FPLoading extends FPLDSTInstructions {
 
   public void MEM() throws IrregularStringOfBitsException, NotAlignException, MemoryElementNotFoundException, AddressErrorException, IrregularWriteOperationException {
     //since the load instruction reaches the MEM() stage, the (read) lock can be removed because WB() is reached first by the load instruction
-    cpu.getRegisterFP(params.get(FT_FIELD)).decrWAWSemaphore();
+    fpRegs[FT_FIELD].decrWAWSemaphore();
   }
 
   public void WB() throws IrregularStringOfBitsException {
-    if (!enableForwarding) {
-      doWB();
-    }
+    writeBackLoad();
   }
 
   public void doWB() throws IrregularStringOfBitsException {
     //passing memory value from temporary LMD register to the destination register and unlocking it
-    cpu.getRegisterFP(params.get(FT_FIELD)).setBits(TR[LMD_REGISTER].getBinString(), 0);
-    cpu.getRegisterFP(params.get(FT_FIELD)).decrWriteSemaphore();
+    fpRegs[FT_FIELD].setBits(TR[LMD_REGISTER].getBinString(), 0);
+    fpRegs[FT_FIELD].decrWriteSemaphore();
   }
 }
 
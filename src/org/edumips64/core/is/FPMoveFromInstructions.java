@@ -37,10 +37,10 @@ public abstract class FPMoveFromInstructions extends FPMoveToAndFromInstructions
   }
   public void ID() throws RAWException, WAWException, IrregularStringOfBitsException {
     //if the source register is valid we pass its own value into a temporary register
-    RegisterFP fs = cpu.getRegisterFP(params.get(FS_FIELD));
-    Register rt = cpu.getRegister(params.get(RT_FIELD));
+    RegisterFP fs = fpRegs[FS_FIELD];
+    Register rt = regs[RT_FIELD];
 
-    if (fs.getWriteSemaphore() > 0) {
+    if (isWaiting(fs)) {
       throw new RAWException();
     }
 
@@ -54,17 +54,17 @@ public abstract class FPMoveFromInstructions extends FPMoveToAndFromInstructions
     rt.incrWriteSemaphore();
   }
   public abstract void EX() throws IrregularStringOfBitsException, IrregularWriteOperationException;
-  public void MEM() throws IrregularStringOfBitsException, MemoryElementNotFoundException {};
+  public void MEM() throws IrregularStringOfBitsException, MemoryElementNotFoundException {
+    forwardFromMEM();
+  }
   public void WB() throws IrregularStringOfBitsException {
-    if (!enableForwarding) {
-      doWB();
-    }
+    writeBack();
   }
 
   public void doWB() throws IrregularStringOfBitsException {
     //passing result from temporary register to destination register and unlocking it
-    cpu.getRegister(params.get(RT_FIELD)).setBits(TR[RT_FIELD].getBinString(), 0);
-    cpu.getRegister(params.get(RT_FIELD)).decrWriteSemaphore();
+    regs[RT_FIELD].setBits(TR[RT_FIELD].getBinString(), 0);
+    regs[RT_FIELD].decrWriteSemaphore();
   }
 }
 
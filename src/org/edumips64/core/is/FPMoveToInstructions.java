@@ -38,10 +38,10 @@ public abstract class FPMoveToInstructions extends FPMoveToAndFromInstructions {
 
   public void ID() throws RAWException, WAWException, IrregularStringOfBitsException {
     //if source registers are valid we pass their own values into temporary registers
-    RegisterFP fs = cpu.getRegisterFP(params.get(FS_FIELD));
-    Register rt = cpu.getRegister(params.get(RT_FIELD));
+    RegisterFP fs = fpRegs[FS_FIELD];
+    Register rt = regs[RT_FIELD];
 
-    if (rt.getWriteSemaphore() > 0) {
+    if (isWaiting(rt)) {
       throw new RAWException();
     }
 
@@ -49,7 +49,7 @@ public abstract class FPMoveToInstructions extends FPMoveToAndFromInstructions {
     TR[RT_FIELD].setBits(rt.getBinString(), 0);
 
     //locking the destination register
-    if (fs.getWAWSemaphore() > 0) {
+    if (fs.isWAWWaiting()) {
       throw new WAWException();
     }
 
@@ -58,19 +58,18 @@ public abstract class FPMoveToInstructions extends FPMoveToAndFromInstructions {
   }
   public abstract void EX() throws IrregularStringOfBitsException;
   public void MEM() throws IrregularStringOfBitsException, MemoryElementNotFoundException {
-    cpu.getRegisterFP(params.get(FS_FIELD)).decrWAWSemaphore();
+    fpRegs[FS_FIELD].decrWAWSemaphore();
+    forwardFromMEM();
   }
 
   public void WB() throws IrregularStringOfBitsException {
-    if (!enableForwarding) {
-      doWB();
-    }
+    writeBack();
   }
 
   public void doWB() throws IrregularStringOfBitsException {
     //passing result from temporary register to destination register and unlocking it
-    cpu.getRegisterFP(params.get(FS_FIELD)).setBits(TRfp[FS_FIELD].getBinString(), 0);
-    cpu.getRegisterFP(params.get(FS_FIELD)).decrWriteSemaphore();
+    fpRegs[FS_FIELD].setBits(TRfp[FS_FIELD].getBinString(), 0);
+    fpRegs[FS_FIELD].decrWriteSemaphore();
 
   }
 }
@@ -33,16 +33,16 @@ import org.edumips64.utils.*;
 public abstract class FPStoring extends FPLDSTInstructions {
   public void ID() throws RAWException, IrregularWriteOperationException, IrregularStringOfBitsException, TwosComplementSumException {
     //if the base register and the ft register are valid passing value of ft register into a temporary floating point register
-    Register base = cpu.getRegister(params.get(BASE_FIELD));
-    RegisterFP ft = cpu.getRegisterFP(params.get(FT_FIELD));
+    Register base = regs[BASE_FIELD];
+    RegisterFP ft = fpRegs[FT_FIELD];
 
-    if (base.getWriteSemaphore() > 0 || ft.getWriteSemaphore() > 0) {
+    if (isWaiting(base) || isWaiting(ft)) {
       throw new RAWException();
     }
 
     TR[FT_FIELD].setBits(ft.getBinString(), 0);
     //calculating  address (base+offset)
-    long address = base.getValue() + params.get(OFFSET_FIELD);
+    long address = base.getValue() + fields[OFFSET_FIELD];
     //saving address into a temporary register
     TR[OFFSET_PLUS_BASE].writeDoubleWord(address);
   }
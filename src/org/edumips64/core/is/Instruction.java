@@ -25,6 +25,7 @@ import org.edumips64.core.*;
 import org.edumips64.core.fpu.*;
 import org.edumips64.utils.*;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 /**Abstract class: it provides all methods and attributes for each instruction type
@@ -32,6 +33,15 @@ import java.util.logging.Logger;
  * @author Trubia Massimo, Russo Daniele
  */
 public abstract class Instruction {
+  // Must be initialized before memory, whose constructor builds instructions.
+  private static final Map<String, InstructionEnumerator> opcodes = new HashMap<String, InstructionEnumerator>();
+  static {
+    for (InstructionEnumerator op : InstructionEnumerator.values()) {
+      opcodes.put(op.name(), op);
+    }
+  }
+  // Source of the serial numbers, shared by the threads that assemble programs.
+  private static final AtomicInteger serials = new AtomicInteger();
 
   protected BitSet32 repr;
   protected List<Integer> params;
@@ -44,23 +54,34 @@ public abstract class Instruction {
   protected Register[] TR; //is not static because each instruction has got its own registers
   protected RegisterFP[] TRfp;
   protected String fullname;
-  protected static boolean enableForwarding = ConfigManager.getConfig().getBoolean("forwarding");
+  protected static ForwardingNetwork forwarding = ForwardingNetwork.getInstance();
+  protected static Scoreboard scoreboard = Scoreboard.getInstance();
   protected String label;
   protected static final Logger logger = Logger.getLogger(Instruction.class.getName());
   protected Integer serialNumber;
+  // Address of the instruction in the code memory, or -1 if it is not in
+  // the memory, like the bubbles inserted by the pipeline.
+  private int address = -1;
+
+  // Operands decoded at load time by decode(): the values of params, and the
+  // registers they refer to (null if the value is not a register index).
+  protected int[] fields;
+  protected Register[] regs;
+  protected RegisterFP[] fpRegs;
+  private InstructionEnumerator opcode;
+  private int encoding;
 
 
   /** Creates a new instance of Instruction */
   public Instruction() {
-    params = new LinkedList<Integer>();
+    params = new ArrayList<Integer>(4);
     TR = new Register[5];
     TRfp = new RegisterFP[5];
     repr = new BitSet32();
     syntax = "";
     repr.reset(false);
     //generating a serial number for the current instruction
-    serialNumber = ConfigManager.getConfig().getInt("serialNumber");
-    ConfigManager.getConfig().putInt("serialNumber", serialNumber + 1);
+    serialNumber = serials.getAndIncrement();
 
     //initialization of temporary registers
     for (int i = 0; i < TR.length; i++) {
@@ -87,18 +108,16 @@ public abstract class Instruction {
    *
    */
   public static Instruction buildInstruction(String name) {
-    Instruction returnedObject = null;
     //If the name of the requested instruction has got a dot, the instruction is FP and an
     //underscore takes the place of the dot because classes names cannot contain dots
-    name = name.replaceAll("\\.", "_");
+    InstructionEnumerator op = opcodes.get(name.replace('.', '_'));
 
-    for (InstructionEnumerator op : InstructionEnumerator.values()) {
-      if (op.name().equals(name)) {
-        returnedObject = op.getObject();
-        break;
-      }
+    if (op == null) {
+      return null;
     }
 
+    Instruction returnedObject = op.getObject();
+    returnedObject.opcode = op;
     return returnedObject;
   }
 
@@ -683,6 +702,91 @@ public abstract class Instruction {
    **/
   public abstract void WB() throws HaltException, IrregularStringOfBitsException;
 
+  /**
+   * <pre>
+   * Writes the results of the instruction to the destination registers and unlocks them.
+   * It is called in WB, or earlier if the results are carried by a forwarding path
+   * </pre>
+   **/
+  protected void doWB() throws IrregularStringOfBitsException {}
+
+  /** Writes the results computed in EX through the EX->EX forwarding path,
+   * if it is enabled. Called at the end of EX. */
+  protected void forwardFromEX() throws IrregularStringOfBitsException {
+    if (forwarding.isEnabled(ForwardingNetwork.Path.EX_EX)) {
+      release(ForwardingNetwork.Path.EX_EX);
+    }
+  }
+
+  /** Writes the results computed in EX through the MEM->EX forwarding path,
+   * if it is enabled and they were not already written from EX. Called at
+   * the end of MEM. */
+  protected void forwardFromMEM() throws IrregularStringOfBitsException {
+    if (!forwarding.isEnabled(ForwardingNetwork.Path.EX_EX) && forwarding.isEnabled(ForwardingNetwork.Path.MEM_EX)) {
+      release(ForwardingNetwork.Path.MEM_EX);
+    }
+  }
+
+  /** Writes the value read from the memory through the MEM->EX forwarding
+   * path, if it is enabled. Called by loads at the end of MEM. */
+  protected void forwardLoad() throws IrregularStringOfBitsException {
+    if (forwarding.isEnabled(ForwardingNetwork.Path.MEM_EX)) {
+      release(ForwardingNetwork.Path.MEM_EX);
+    }
+  }
+
+  /** Writes the results computed in EX, if no forwarding path did it. */
+  protected void writeBack() throws IrregularStringOfBitsException {
+    if (!forwarding.isEnabled(ForwardingNetwork.Path.EX_EX) && !forwarding.isEnabled(ForwardingNetwork.Path.MEM_EX)) {
+      doWB();
+    }
+  }
+
+  /** Writes the value read from the memory, if no forwarding path did it. */
+  protected void writeBackLoad() throws IrregularStringOfBitsException {
+    if (!forwarding.isEnabled(ForwardingNetwork.Path.MEM_EX)) {
+      doWB();
+    }
+  }
+
+  private void release(ForwardingNetwork.Path path) throws IrregularStringOfBitsException {
+    forwarding.beginRelease(path, this);
+
+    try {
+      doWB();
+    } finally {
+      forwarding.endRelease();
+    }
+  }
+
+  /** Returns true if the given register still has to be written by a
+   * previous instruction, otherwise tells the forwarding network that this
+   * instruction reads it. Used for the detection of RAW hazards. */
+  protected boolean isWaiting(Register r) {
+    if (r.isWaiting()) {
+      return true;
+    }
+
+    forwarding.read(r, this);
+    return false;
+  }
+
+  /** Returns true if the given condition code of the FCSR still has to be
+   * written by a previous instruction. */
+  protected boolean isWaitingFCC(int cc) {
+    return scoreboard.isPending(Scoreboard.Bank.FCC, cc);
+  }
+
+  /** Floating point version of isWaiting(Register). */
+  protected boolean isWaiting(RegisterFP r) {
+    if (r.isWaiting()) {
+      return true;
+    }
+
+    forwarding.read(r, this);
+    return false;
+  }
+
   /**
    * <pre>
    * Builds the binary encoding of instructions.
@@ -743,12 +847,69 @@ public abstract class Instruction {
    *          Passed list                                      | Instruction to set
    * e.g. list= { 1, 2, 3}                                     |   DADD R1,R2,R3
    *      list= { 1, address memory corresponding with var, 0} |   LD R1, var(R0)
+   * The instruction is not decoded here: decode() must be called once the
+   * binary encoding has been set as well, e.g. after pack().
    *@param params The list of parameters
    **/
   public void setParams(List<Integer> params) {
     this.params = params;
   }
 
+  /**<pre>
+   * Pre-decodes the instruction: the parameters are copied in the fields
+   * array, and the registers they refer to are resolved once, so that the
+   * stages of the pipeline don't have to go through the list of parameters
+   * and the register file. Must be called after the parameters and the
+   * binary encoding have been set, and before the execution.
+   * </pre>
+   */
+  public void decode() {
+    CPU cpu = CPU.getInstance();
+    int n = params.size();
+    fields = new int[n];
+    regs = new Register[n];
+    fpRegs = new RegisterFP[n];
+
+    for (int i = 0; i < n; ++i) {
+      fields[i] = params.get(i);
+
+      if (fields[i] >= 0 && fields[i] < 32) {
+        regs[i] = cpu.getRegister(fields[i]);
+        fpRegs[i] = cpu.getRegisterFP(fields[i]);
+      }
+    }
+
+    encoding = (int) Long.parseLong(repr.getBinString(), 2);
+  }
+
+  /** Gets the operands decoded by decode(), or null if the instruction has
+   *  not been decoded yet.
+   */
+  public int[] getFields() {
+    return fields;
+  }
+
+  /** Gets the registers the decoded operands refer to; the elements are null
+   *  for the operands that are not register indexes.
+   */
+  public Register[] getRegisters() {
+    return regs;
+  }
+
+  /** Gets the opcode of the instruction, used to dispatch on the instruction
+   *  type without comparing names.
+   */
+  public InstructionEnumerator getOpcode() {
+    return opcode;
+  }
+
+  /** Gets the 32-bit binary encoding of the instruction, as computed by
+   *  decode().
+   */
+  public int getEncoding() {
+    return encoding;
+  }
+
   /**
    * Sets the full name of the instruction as string
    *@param value full name of the instruction (e.g. "DADD R1,R2,R3")
@@ -799,7 +960,7 @@ public abstract class Instruction {
    * @param value This variable enable the forwarding modality if it is true
    * */
   public static void setEnableForwarding(boolean value) {
-    enableForwarding = value;
+    forwarding.setForwarding(value);
   }
 
   /** Gets the state of EnableForwarding. This modality anticipates writing on registers
@@ -807,7 +968,7 @@ public abstract class Instruction {
    * @return The forwarding state
    * */
   public static boolean getEnableForwarding() {
-    return enableForwarding;
+    return forwarding.isForwarding();
   }
 
   /**<pre>
@@ -830,6 +991,20 @@ public abstract class Instruction {
     label = value;
   }
 
+  /** Returns the address of the instruction in the code memory, or -1 if
+   * the instruction is not in the memory.
+   */
+  public int getAddress() {
+    return address;
+  }
+
+  /** Sets the address of the instruction; called by the memory when the
+   * instruction is stored.
+   */
+  public void setAddress(int address) {
+    this.address = address;
+  }
+
   /**<pre>
    * The repr field of the passed instruction is compared with the repr field
    * of this instruction. If they are identical then true is returned else false is returned
@@ -865,4 +1040,12 @@ public abstract class Instruction {
   public boolean isBubble() {
     return name == " ";
   }
+
+  /** Returns true if the old value of the destination register is an
+   * operand of the instruction, as in the conditional moves, which leave it
+   * unchanged when their condition is false.
+   */
+  public boolean readsDestination() {
+    return false;
+  }
 }
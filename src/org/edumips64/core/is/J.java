@@ -47,7 +47,7 @@ public class J extends FlowControl_JType {
 
   public void ID() throws RAWException, IrregularWriteOperationException, IrregularStringOfBitsException, JumpException {
     //converting INSTR_INDEX into a bynary value of 26 bits in length
-    String instr_index = Converter.positiveIntToBin(28, params.get(INSTR_INDEX));
+    String instr_index = Converter.positiveIntToBin(28, fields[INSTR_INDEX]);
     //appending the 35 most significant bits of the program counter on the left of "instr_index"
     Register pc = cpu.getPC();
     String pc_all = pc.getBinString();
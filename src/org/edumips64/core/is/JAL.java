@@ -51,7 +51,7 @@ public class JAL extends FlowControl_JType {
     cpu.getRegister(31).incrWriteSemaphore();  //deadlock !!!
     TR[PC_VALUE].writeDoubleWord(cpu.getPC().getValue() - 4);
     //converting INSTR_INDEX into a bynary value of 26 bits in length
-    String instr_index = Converter.positiveIntToBin(28, params.get(INSTR_INDEX));
+    String instr_index = Converter.positiveIntToBin(28, fields[INSTR_INDEX]);
     //appending the 35 most significant bits of the program counter on the left of "instr_index"
     Register pc = cpu.getPC();
     String pc_all = pc.getBinString();
@@ -59,9 +59,7 @@ public class JAL extends FlowControl_JType {
     String pc_new = pc_significant + instr_index;
     pc.setBits(pc_new, 0);
 
-    if (enableForwarding) {
-      doWB();
-    }
+    forwardFromEX();
 
     throw new JumpException();
   }
@@ -70,13 +68,12 @@ public class JAL extends FlowControl_JType {
   }
 
   public void MEM() throws IrregularStringOfBitsException, MemoryElementNotFoundException {
+    forwardFromMEM();
   }
 
 
   public void WB() throws IrregularStringOfBitsException {
-    if (!enableForwarding) {
-      doWB();
-    }
+    writeBack();
   }
   public void doWB() throws IrregularStringOfBitsException {
     cpu.getRegister(31).setBits(TR[PC_VALUE].getBinString(), 0);
@@ -47,11 +47,9 @@ public class JALR extends FlowControl_RType {
     //saving PC value into a temporary register
     cpu.getRegister(31).incrWriteSemaphore();  //deadlock !!!
     TR[PC_VALUE].writeDoubleWord(cpu.getPC().getValue() - 4);
-    cpu.getPC().setBits(cpu.getRegister(params.get(RS_FIELD)).getBinString(), 0);
+    cpu.getPC().setBits(regs[RS_FIELD].getBinString(), 0);
 
-    if (enableForwarding) {
-      doWB();
-    }
+    forwardFromEX();
 
     throw new JumpException();
   }
@@ -60,13 +58,12 @@ public class JALR extends FlowControl_RType {
   }
 
   public void MEM() throws IrregularStringOfBitsException, MemoryElementNotFoundException {
+    forwardFromMEM();
   }
 
 
   public void WB() throws IrregularStringOfBitsException {
-    if (!enableForwarding) {
-      doWB();
-    }
+    writeBack();
   }
   public void doWB() throws IrregularStringOfBitsException {
     cpu.getRegister(31).setBits(TR[PC_VALUE].getBinString(), 0);
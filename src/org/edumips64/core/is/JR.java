@@ -43,7 +43,7 @@ public class JR extends FlowControl_RType {
   }
 
   public void ID() throws RAWException, IrregularWriteOperationException, IrregularStringOfBitsException, JumpException {
-    cpu.getPC().setBits(cpu.getRegister(params.get(RS_FIELD)).getBinString(), 0);
+    cpu.getPC().setBits(regs[RS_FIELD].getBinString(), 0);
     throw new JumpException();
   }
 
@@ -44,6 +44,6 @@ class LB extends Loading {
   }
 
   public void doMEM() throws IrregularStringOfBitsException, MemoryElementNotFoundException, AddressErrorException, IrregularWriteOperationException {
-    TR[LMD_REGISTER].writeByte(memEl.readByte((int)(address % 8)));
+    TR[LMD_REGISTER].writeByte(memEl.readByte(offset()));
   }
 }
@@ -45,6 +45,6 @@ class LBU extends Loading {
 
   public void doMEM() throws IrregularStringOfBitsException, MemoryElementNotFoundException, AddressErrorException, IrregularWriteOperationException {
     //reading first 8 low bits from the memory element and saving values on LMD register with zero padding
-    TR[LMD_REGISTER].writeByteUnsigned(memEl.readByteUnsigned((int)(address % 8)));
+    TR[LMD_REGISTER].writeByteUnsigned(memEl.readByteUnsigned(offset()));
   }
 }
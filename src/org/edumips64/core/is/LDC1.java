@@ -36,7 +36,7 @@ import org.edumips64.utils.*;
 
  */
 class LDC1 extends FPLoading {
-  String OPCODE_VALUE = "110111";
+  String OPCODE_VALUE = "110101";
   public LDC1() {
     super.OPCODE_VALUE = OPCODE_VALUE;
     this.name = "LDC1";
@@ -53,8 +53,6 @@ class LDC1 extends FPLoading {
     //reading from the memory element and saving values on LMD register
     TR[LMD_REGISTER].setBits(memEl.getBinString(), 0);
 
-    if (enableForwarding) {
-      doWB();
-    }
+    forwardLoad();
   }
 }
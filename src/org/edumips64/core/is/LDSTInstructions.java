@@ -101,6 +101,12 @@ public abstract class LDSTInstructions extends Instruction {
 
   };
 
+  /** Returns the offset of the accessed value within its memory element,
+   * that depends on the byte order of the memory. */
+  protected int offset() {
+    return memory.byteOffset(address, memoryOpSize);
+  }
+
   // This is the method that actually stores/loads data to/from memory, and
   // that is different for each concrete sub-class
   public abstract void doMEM() throws IrregularStringOfBitsException, NotAlignException, MemoryElementNotFoundException, AddressErrorException, IrregularWriteOperationException;
@@ -44,6 +44,6 @@ class LH extends Loading {
   }
 
   public void doMEM() throws IrregularStringOfBitsException, NotAlignException, MemoryElementNotFoundException, AddressErrorException, IrregularWriteOperationException {
-    TR[LMD_REGISTER].writeHalf(memEl.readHalf((int)(address % 8)));
+    TR[LMD_REGISTER].writeHalf(memEl.readHalf(offset()));
   }
 }
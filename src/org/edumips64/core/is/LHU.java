@@ -45,6 +45,6 @@ class LHU extends Loading {
 
   public void doMEM() throws IrregularStringOfBitsException, NotAlignException, MemoryElementNotFoundException, AddressErrorException, IrregularWriteOperationException {
     //reading from the memory element and saving values on LMD register
-    TR[LMD_REGISTER].writeHalfUnsigned(memEl.readHalfUnsigned((int)(address % 8)));
+    TR[LMD_REGISTER].writeHalfUnsigned(memEl.readHalfUnsigned(offset()));
   }
 }
@@ -54,10 +54,10 @@ class LUI extends ALU_IType {
   public void ID() throws RAWException, IrregularWriteOperationException, IrregularStringOfBitsException {
     //if the source register is valid passing its own values into a temporary register
     //locking the target register
-    Register rt = cpu.getRegister(params.get(RT_FIELD));
+    Register rt = regs[RT_FIELD];
     rt.incrWriteSemaphore();
     //writing the immediate value of "params" on a temporary register
-    TR[IMM_FIELD].writeHalf(params.get(IMM_FIELD));
+    TR[IMM_FIELD].writeHalf(fields[IMM_FIELD]);
 
   }
   public void EX() throws IrregularStringOfBitsException, IrregularWriteOperationException {
@@ -67,9 +67,7 @@ class LUI extends ALU_IType {
     long imm_shift_lng = Converter.binToLong(imm_shift, false);
     TR[RT_FIELD].writeDoubleWord(imm_shift_lng);
 
-    if (enableForwarding) {
-      doWB();
-    }
+    forwardFromEX();
   }
   public void pack() throws IrregularStringOfBitsException {
     repr.setBits(OPCODE_VALUE, 0);
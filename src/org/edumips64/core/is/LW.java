@@ -44,6 +44,6 @@ class LW extends Loading {
   }
 
   public void doMEM() throws IrregularStringOfBitsException, NotAlignException, MemoryElementNotFoundException, AddressErrorException, IrregularWriteOperationException {
-    TR[LMD_REGISTER].writeWord(memEl.readWord((int)(address % 8)));
+    TR[LMD_REGISTER].writeWord(memEl.readWord(offset()));
   }
 }
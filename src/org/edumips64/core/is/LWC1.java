@@ -53,10 +53,8 @@ class LWC1 extends FPLoading {
     din.Load(Converter.binToHex(Converter.positiveIntToBin(64, address)), 4);
     MemoryElement memEl = memory.getCellByAddress(address);
     //reading from the memory element and saving values on LMD register
-    TR[LMD_REGISTER].writeWord(memEl.readWord((int)(address % 8)));
+    TR[LMD_REGISTER].writeWord(memEl.readWord(memory.byteOffset(address, 4)));
 
-    if (enableForwarding) {
-      doWB();
-    }
+    forwardLoad();
   }
 }
@@ -44,6 +44,6 @@ class LWU extends Loading {
   }
 
   public void doMEM() throws IrregularStringOfBitsException, NotAlignException, MemoryElementNotFoundException, AddressErrorException, IrregularWriteOperationException {
-    TR[LMD_REGISTER].writeWordUnsigned(memEl.readWordUnsigned((int)(address % 8)));
+    TR[LMD_REGISTER].writeWordUnsigned(memEl.readWordUnsigned(offset()));
   }
 }
@@ -37,7 +37,7 @@ import org.edumips64.utils.*;
 
  */
 class L_D extends LDC1 {
-  final String OPCODE_VALUE = "110111";
+  final String OPCODE_VALUE = "110101";
   public L_D() {
     super.OPCODE_VALUE = OPCODE_VALUE;
     this.name = "L.D";
@@ -39,19 +39,19 @@ public abstract class Loading extends LDSTInstructions {
 
   public void ID() throws RAWException, IrregularWriteOperationException, IrregularStringOfBitsException, TwosComplementSumException {
     //if the base register is valid ...
-    Register base = cpu.getRegister(params.get(BASE_FIELD));
+    Register base = regs[BASE_FIELD];
 
-    if (base.getWriteSemaphore() > 0) {
+    if (isWaiting(base)) {
       logger.info("RAW in " + fullname + ": base register still needs to be written to.");
       throw new RAWException();
     }
 
     //calculating  address (base+offset)
-    long address = base.getValue() + params.get(OFFSET_FIELD);
+    long address = base.getValue() + fields[OFFSET_FIELD];
     //saving address into a temporary register
     TR[OFFSET_PLUS_BASE].writeDoubleWord(address);
     //locking rt register
-    Register rt = cpu.getRegister(params.get(RT_FIELD));
+    Register rt = regs[RT_FIELD];
     rt.incrWriteSemaphore();
   }
 
@@ -64,24 +64,20 @@ public abstract class Loading extends LDSTInstructions {
   }
 
   public void WB() throws IrregularStringOfBitsException {
-    if (!enableForwarding) {
-      doWB();
-    }
+    writeBackLoad();
   }
 
   public void MEM() throws IrregularStringOfBitsException, NotAlignException, MemoryElementNotFoundException, AddressErrorException, IrregularWriteOperationException {
     memEl = memory.getCellByAddress(address);
     doMEM();
 
-    if (enableForwarding) {
-      doWB();
-    }
+    forwardLoad();
   }
 
   public void doWB() throws IrregularStringOfBitsException {
     //passing memory value from temporary LMD register to the destination register and unlocking it
-    cpu.getRegister(params.get(RT_FIELD)).setBits(TR[LMD_REGISTER].getBinString(), 0);
-    cpu.getRegister(params.get(RT_FIELD)).decrWriteSemaphore();
+    regs[RT_FIELD].setBits(TR[LMD_REGISTER].getBinString(), 0);
+    regs[RT_FIELD].decrWriteSemaphore();
   }
 }
 
@@ -51,9 +51,7 @@ class MFC1 extends FPMoveFromInstructions {
     String value = TRfp[FS_FIELD].getBinString();
     TR[RT_FIELD].writeWord(Converter.binToInt(value.substring(32, 64), false));
 
-    if (enableForwarding) {
-      doWB();
-    }
+    forwardFromEX();
   }
 
 
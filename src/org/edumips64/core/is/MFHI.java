@@ -55,30 +55,26 @@ class MFHI extends ALU_RType {
     //if the HI register is valid passing his own value into temporary register
     Register hi_reg = cpu.getHI();
 
-    if (hi_reg.getWriteSemaphore() > 0) {
+    if (isWaiting(hi_reg)) {
       throw new RAWException();
     }
 
     TR[HI_REG] = hi_reg;
     //locking the destination register
-    Register rd = cpu.getRegister(params.get(RD_FIELD));
+    Register rd = regs[RD_FIELD];
     rd.incrWriteSemaphore();
   }
   public void EX() throws IrregularStringOfBitsException, IntegerOverflowException, TwosComplementSumException {
-    if (enableForwarding) {
-      doWB();
-    }
+    forwardFromEX();
   }
 
   public void WB() throws IrregularStringOfBitsException {
-    if (!enableForwarding) {
-      doWB();
-    }
+    writeBack();
   }
 
   public void doWB() throws IrregularStringOfBitsException {
-    cpu.getRegister(params.get(RD_FIELD)).setBits(TR[HI_REG].getBinString(), 0);
-    cpu.getRegister(params.get(RD_FIELD)).decrWriteSemaphore();
+    regs[RD_FIELD].setBits(TR[HI_REG].getBinString(), 0);
+    regs[RD_FIELD].decrWriteSemaphore();
   }
   public void pack() throws IrregularStringOfBitsException {
     //conversion of instruction parameters of "params" list to the "repr" form (32 binary value)
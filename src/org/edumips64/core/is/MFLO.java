@@ -54,28 +54,24 @@ class MFLO extends ALU_RType {
     //if the LO register is valid passing his own value into temporary register
     Register lo_reg = cpu.getLO();
 
-    if (lo_reg.getWriteSemaphore() > 0) {
+    if (isWaiting(lo_reg)) {
       throw new RAWException();
     }
 
     TR[LO_REG] = lo_reg;
     //locking the destination register
-    Register rd = cpu.getRegister(params.get(RD_FIELD));
+    Register rd = regs[RD_FIELD];
     rd.incrWriteSemaphore();
   }
   public void EX() throws IrregularStringOfBitsException, IntegerOverflowException, TwosComplementSumException {
-    if (enableForwarding) {
-      doWB();
-    }
+    forwardFromEX();
   }
   public void WB() throws IrregularStringOfBitsException {
-    if (!enableForwarding) {
-      doWB();
-    }
+    writeBack();
   }
   public void doWB() throws IrregularStringOfBitsException {
-    cpu.getRegister(params.get(RD_FIELD)).setBits(TR[LO_REG].getBinString(), 0);
-    cpu.getRegister(params.get(RD_FIELD)).decrWriteSemaphore();
+    regs[RD_FIELD].setBits(TR[LO_REG].getBinString(), 0);
+    regs[RD_FIELD].decrWriteSemaphore();
   }
   public void pack() throws IrregularStringOfBitsException {
     //conversion of instruction parameters of "params" list to the "repr" form (32 binary value)
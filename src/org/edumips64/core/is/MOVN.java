@@ -60,9 +60,11 @@ class MOVN extends ALU_RType {
       skipWB = true;
     }
 
-    if (enableForwarding) {
-      doWB();
-    }
+    forwardFromEX();
+  }
+
+  public boolean readsDestination() {
+    return true;
   }
 
   public void doWB() throws IrregularStringOfBitsException {
@@ -70,10 +72,10 @@ class MOVN extends ALU_RType {
     // on the registers must be done, checking the skipWB variable.
     if (!skipWB) {
       logger.info("Skipping WB as the predicate is false");
-      cpu.getRegister(params.get(RD_FIELD)).setBits(TR[RD_FIELD].getBinString(), 0);
+      regs[RD_FIELD].setBits(TR[RD_FIELD].getBinString(), 0);
     }
 
     // We must unlock the register in both cases.
-    cpu.getRegister(params.get(RD_FIELD)).decrWriteSemaphore();
+    regs[RD_FIELD].decrWriteSemaphore();
   }
 }
@@ -56,8 +56,6 @@ class MOVN_D extends FPConditionalZerosMoveInstructions {
       TRfp[FD_FIELD].setBits(fs, 0);
     }
 
-    if (enableForwarding) {
-      doWB();
-    }
+    forwardFromEX();
   }
 }
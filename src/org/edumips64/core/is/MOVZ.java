@@ -55,20 +55,22 @@ class MOVZ extends ALU_RType {
       skipWB = true;
     }
 
-    if (enableForwarding) {
-      doWB();
-    }
+    forwardFromEX();
 
   }
+  public boolean readsDestination() {
+    return true;
+  }
+
   public void doWB() throws IrregularStringOfBitsException {
     // The doWB() method is overridden because it must check if the write
     // on the registers must be done, checking the skipWB variable.
     if (!skipWB) {
       logger.info("Skipping WB as the predicate is false");
-      cpu.getRegister(params.get(RD_FIELD)).setBits(TR[RD_FIELD].getBinString(), 0);
+      regs[RD_FIELD].setBits(TR[RD_FIELD].getBinString(), 0);
     }
 
     // We must unlock the register in both cases.
-    cpu.getRegister(params.get(RD_FIELD)).decrWriteSemaphore();
+    regs[RD_FIELD].decrWriteSemaphore();
   }
 }
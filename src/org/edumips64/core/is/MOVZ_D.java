@@ -56,8 +56,6 @@ class MOVZ_D extends FPConditionalZerosMoveInstructions {
       TRfp[FD_FIELD].setBits(fs, 0);
     }
 
-    if (enableForwarding) {
-      doWB();
-    }
+    forwardFromEX();
   }
 }
@@ -70,9 +70,7 @@ public class OR extends ALU_RType {
     //saving bitwise AND result into a temporary register
     TR[RD_FIELD].setBits(outputstring, 0);
 
-    if (enableForwarding) {
-      doWB();
-    }
+    forwardFromEX();
 
   }
 }
@@ -0,0 +1,308 @@
+/* PrintfEngine.java
+ *
+ * Formatting engine of the printf() system call.
+ * (c) 2016 EduMIPS64 project
+ *
+ * This file is part of the EduMIPS64 project, and is released under the GNU
+ * General Public License.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.edumips64.core.is;
+
+import org.edumips64.core.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/** Formats the output of SYSCALL 5 into a reusable buffer.
+ *
+ * A format string is decoded once into a plan, made of literal segments and
+ * placeholders, that is cached by the address of the string; the plan keeps
+ * the doublewords of the string, and is used again only if they didn't
+ * change. Parameters are read as 64-bit values from the memory, and the
+ * output is written in a buffer that grows as needed, so that a printf in a
+ * loop doesn't allocate.
+ */
+class PrintfEngine {
+  // Kinds of the segments of a plan.
+  private static final int LITERAL = 0, STRING = 1, INTEGER = 2, PERCENT = 3;
+
+  // Maximum number of cached plans.
+  private static final int MAX_PLANS = 256;
+
+  /** A decoded format string. */
+  private static class Plan {
+    long[] words;
+    char[] text;
+    int[] kinds, starts, lengths;
+    int segments;
+  }
+
+  private Map<Long, Plan> plans = new HashMap<Long, Plan>();
+  private char[] buffer = new char[256];
+  private int length;
+  private long[] words = new long[16];
+
+  /** Returns the buffer holding the output of the last format(). */
+  char[] getBuffer() {
+    return buffer;
+  }
+
+  /** Formats the output of a printf.
+   * @param address address of the doubleword holding the address of the
+   * format string, followed by the parameters
+   * @return the length of the output, stored at the beginning of the buffer
+   */
+  int format(long address) throws MemoryElementNotFoundException {
+    Memory memory = Memory.getInstance();
+    Dinero din = Dinero.getInstance();
+    length = 0;
+
+    long formatAddress = (int) memory.getCellByAddress(address).getValue();
+    din.Load(address, 8);
+
+    Plan plan = getPlan(memory, formatAddress);
+    traceString(din, formatAddress, plan.text.length);
+
+    long nextParam = address + 8;
+
+    for (int i = 0; i < plan.segments; ++i) {
+      switch (plan.kinds[i]) {
+      case LITERAL:
+        append(plan.text, plan.starts[i], plan.lengths[i]);
+        break;
+      case PERCENT:
+        append('%');
+        break;
+      case STRING:
+        long stringAddress = (int) memory.getCellByAddress(nextParam).getValue();
+        nextParam += 8;
+        int start = length;
+        appendString(memory, stringAddress);
+        traceString(din, stringAddress, length - start);
+        break;
+      case INTEGER:
+        long value = memory.getCellByAddress(nextParam).getValue();
+        din.Load(nextParam, 8);
+        nextParam += 8;
+        appendLong(value);
+        break;
+      }
+    }
+
+    return length;
+  }
+
+  /** Records the loads of the doublewords read for a string of the given
+   * length, as done by the memory accesses of the original implementation. */
+  private static void traceString(Dinero din, long address, int stringLength) {
+    long end = address + stringLength;
+    end += 8 - (end % 8);
+
+    for (long i = address; i < end; i += 8) {
+      din.Load(i, 8);
+    }
+  }
+
+  /** Returns the plan of the format string at the given address, decoding
+   * it if it is not cached or if the string changed. */
+  private Plan getPlan(Memory memory, long address) throws MemoryElementNotFoundException {
+    int count = 0;
+
+    // Strings are read from the beginning of the doubleword that contains
+    // their address.
+    for (long a = address; ; a += 8) {
+      long word = memory.getCellByAddress(a).getValue();
+
+      if (count == words.length) {
+        long[] larger = new long[count * 2];
+        System.arraycopy(words, 0, larger, 0, count);
+        words = larger;
+      }
+
+      words[count++] = word;
+
+      if (hasZeroByte(word)) {
+        break;
+      }
+    }
+
+    Plan plan = plans.get(address);
+
+    if (plan != null && plan.words.length == count) {
+      boolean same = true;
+
+      for (int i = 0; i < count && same; ++i) {
+        same = plan.words[i] == words[i];
+      }
+
+      if (same) {
+        return plan;
+      }
+    }
+
+    if (plans.size() >= MAX_PLANS) {
+      plans.clear();
+    }
+
+    plan = decode(words, count);
+    plans.put(address, plan);
+    return plan;
+  }
+
+  private static boolean hasZeroByte(long word) {
+    for (int b = 0; b < 8; ++b) {
+      if (((word >>> (8 * b)) & 0xff) == 0) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /** Decodes the format string held in the given doublewords. */
+  private static Plan decode(long[] words, int count) {
+    StringBuilder sb = new StringBuilder(count * 8);
+
+    for (int i = 0; i < count; ++i) {
+      for (int b = 0; b < 8; ++b) {
+        byte c = (byte)(words[i] >>> (8 * b));
+
+        if (c == 0) {
+          i = count;
+          break;
+        }
+
+        sb.append((char) c);
+      }
+    }
+
+    Plan plan = new Plan();
+    plan.words = new long[count];
+    System.arraycopy(words, 0, plan.words, 0, count);
+    plan.text = sb.toString().toCharArray();
+
+    int n = plan.text.length;
+    plan.kinds = new int[n + 1];
+    plan.starts = new int[n + 1];
+    plan.lengths = new int[n + 1];
+
+    int start = 0;
+    int i;
+
+    while ((i = sb.indexOf("%", start)) >= 0) {
+      addSegment(plan, LITERAL, start, i - start);
+      char type = (i + 1 < n) ? plan.text[i + 1] : 0;
+
+      switch (type) {
+      case 's':
+        addSegment(plan, STRING, 0, 0);
+        break;
+      case 'i':
+      case 'd':
+        addSegment(plan, INTEGER, 0, 0);
+        break;
+      case '%':
+        addSegment(plan, PERCENT, 0, 0);
+        break;
+      default:
+        // Unknown placeholders are skipped.
+        break;
+      }
+
+      start = Math.min(i + 2, n);
+    }
+
+    addSegment(plan, LITERAL, start, n - start);
+    return plan;
+  }
+
+  private static void addSegment(Plan plan, int kind, int start, int length) {
+    if (kind == LITERAL && length == 0) {
+      return;
+    }
+
+    plan.kinds[plan.segments] = kind;
+    plan.starts[plan.segments] = start;
+    plan.lengths[plan.segments] = length;
+    plan.segments++;
+  }
+
+  private void ensureCapacity(int needed) {
+    if (length + needed > buffer.length) {
+      char[] larger = new char[Math.max(buffer.length * 2, length + needed)];
+      System.arraycopy(buffer, 0, larger, 0, length);
+      buffer = larger;
+    }
+  }
+
+  private void append(char c) {
+    ensureCapacity(1);
+    buffer[length++] = c;
+  }
+
+  private void append(char[] text, int start, int count) {
+    ensureCapacity(count);
+    System.arraycopy(text, start, buffer, length, count);
+    length += count;
+  }
+
+  /** Appends the NUL-terminated string at the given address. */
+  private void appendString(Memory memory, long address) throws MemoryElementNotFoundException {
+    for (long a = address; ; a += 8) {
+      long word = memory.getCellByAddress(a).getValue();
+
+      for (int b = 0; b < 8; ++b) {
+        byte c = (byte)(word >>> (8 * b));
+
+        if (c == 0) {
+          return;
+        }
+
+        append((char) c);
+      }
+    }
+  }
+
+  /** Appends the decimal representation of a value. */
+  private void appendLong(long value) {
+    if (value == Long.MIN_VALUE) {
+      String s = Long.toString(value);
+      append(s.toCharArray(), 0, s.length());
+      return;
+    }
+
+    if (value < 0) {
+      append('-');
+      value = -value;
+    }
+
+    int digits = 1;
+
+    for (long v = value; v >= 10; v /= 10) {
+      digits++;
+    }
+
+    ensureCapacity(digits);
+
+    for (int i = length + digits - 1; i >= length; --i) {
+      buffer[i] = (char)('0' + value % 10);
+      value /= 10;
+    }
+
+    length += digits;
+  }
+}
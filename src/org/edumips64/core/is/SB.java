@@ -43,6 +43,6 @@ class SB extends Storing {
   }
 
   public void doMEM() throws IrregularStringOfBitsException, MemoryElementNotFoundException, AddressErrorException, IrregularWriteOperationException {
-    memEl.writeByte(TR[RT_FIELD].readByte(0), (int)(address % 8));
+    memEl.writeByte(TR[RT_FIELD].readByte(0), offset());
   }
 }
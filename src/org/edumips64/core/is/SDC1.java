@@ -40,22 +40,14 @@ public class SDC1 extends FPStoring {
   }
 
   public void MEM() throws IrregularStringOfBitsException, MemoryElementNotFoundException, AddressErrorException {
-    try {
-      //restoring the address from the temporary register
-      long address = TR[OFFSET_PLUS_BASE].getValue();
-      //For the trace file
-      Dinero din = Dinero.getInstance();
-      din.Store(Converter.binToHex(Converter.positiveIntToBin(64, address)), 8);
-      MemoryElement memEl = memory.getCellByAddress(address);
-      //writing on the memory element the RT register
-      memEl.setBits(TR[RT_FIELD].getBinString(), 0);
-
-      if (enableForwarding) {
-        WB();
-      }
-    } catch (Exception e) {
-      e.printStackTrace();
-    }
+    //restoring the address from the temporary register
+    long address = TR[OFFSET_PLUS_BASE].getValue();
+    //For the trace file
+    Dinero din = Dinero.getInstance();
+    din.Store(Converter.binToHex(Converter.positiveIntToBin(64, address)), 8);
+    MemoryElement memEl = memory.getCellForStore(address, fullname);
+    //writing on the memory element the RT register
+    memEl.setBits(TR[RT_FIELD].getBinString(), 0);
   }
 
 }
@@ -46,6 +46,6 @@ class SH extends Storing {
   }
 
   public void doMEM() throws IrregularStringOfBitsException, MemoryElementNotFoundException, NotAlignException, AddressErrorException, IrregularWriteOperationException {
-    memEl.writeHalf(TR[RT_FIELD].readHalf(0), (int)(address % 8));
+    memEl.writeHalf(TR[RT_FIELD].readHalf(0), offset());
   }
 }
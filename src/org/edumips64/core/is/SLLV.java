@@ -82,8 +82,6 @@ public class SLLV extends ALU_RType {
 
     TR[RD_FIELD].setBits(target, 0);
 
-    if (enableForwarding) {
-      doWB();
-    }
+    forwardFromEX();
   }
 }
@@ -76,9 +76,7 @@ class SLTIU extends ALU_IType {
       TR[RT_FIELD].writeDoubleWord(0);
     }
 
-    if (enableForwarding) {
-      doWB();
-    }
+    forwardFromEX();
   }
 
 }
@@ -77,9 +77,7 @@ class SLTU extends ALU_RType {
       TR[RD_FIELD].writeDoubleWord(0);
     }
 
-    if (enableForwarding) {
-      doWB();
-    }
+    forwardFromEX();
   }
 
 
@@ -57,17 +57,17 @@ public class SRA extends ALU_RType {
   //the overriding of ID method
   public void ID() throws RAWException, IrregularWriteOperationException {
     //if the source register is valid passing his own value into a temporary register
-    Register rt = cpu.getRegister(params.get(RT_FIELD));
+    Register rt = regs[RT_FIELD];
 
-    if (rt.getWriteSemaphore() > 0) {
+    if (isWaiting(rt)) {
       throw new RAWException();
     }
 
     TR[RT_FIELD] = rt;
     //writing on a temporary register the sa field as unsigned value
-    TR[SA_FIELD].writeDoubleWord(params.get(SA_FIELD));
+    TR[SA_FIELD].writeDoubleWord(fields[SA_FIELD]);
     //increment the semaphore of the destination register
-    Register rd = cpu.getRegister(params.get(RD_FIELD));
+    Register rd = regs[RD_FIELD];
     rd.incrWriteSemaphore();
   }
 
@@ -87,9 +87,7 @@ public class SRA extends ALU_RType {
     sb.append(rt.substring(0, 32 - sa));
     TR[RD_FIELD].setBits(sb.substring(0), 0);
 
-    if (enableForwarding) {
-      doWB();
-    }
+    forwardFromEX();
   }
   public void pack() throws IrregularStringOfBitsException {
     //conversion of instruction parameters of "params" list to the "repr" form (32 binary value)
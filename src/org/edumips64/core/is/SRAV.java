@@ -71,9 +71,7 @@ public class SRAV extends ALU_RType {
     sb.append(rt.substring(0, 32 - rs));
     TR[RD_FIELD].setBits(sb.substring(0), 0);
 
-    if (enableForwarding) {
-      doWB();
-    }
+    forwardFromEX();
   }
 
 }
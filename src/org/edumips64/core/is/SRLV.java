@@ -73,8 +73,6 @@ public class SRLV extends ALU_RType {
     sb.append(rt.substring(0, 32 - shift_value));
     TR[RD_FIELD].setBits(sb.substring(0), 0);
 
-    if (enableForwarding) {
-      doWB();
-    }
+    forwardFromEX();
   }
 }
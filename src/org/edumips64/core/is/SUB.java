@@ -62,9 +62,7 @@ public class SUB extends ALU_RType {
       //if the enable forwarding is turned on we have to ensure that registers
       //should be unlocked also if a synchronous exception occurs. This is performed
       //by executing the WB method before raising the trap
-      if (enableForwarding) {
-        doWB();
-      }
+      forwardFromEX();
 
       throw new IntegerOverflowException();
     } else {
@@ -79,8 +77,6 @@ public class SUB extends ALU_RType {
       TR[RD_FIELD].setBits(filledOutputstring, 0);
     }
 
-    if (enableForwarding) {
-      doWB();
-    }
+    forwardFromEX();
   }
 }
@@ -61,9 +61,7 @@ public class SUBU extends ALU_RType {
 
     TR[RD_FIELD].setBits(filledOutputstring, 0);
 
-    if (enableForwarding) {
-      doWB();
-    }
+    forwardFromEX();
 
   }
 
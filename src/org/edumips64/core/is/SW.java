@@ -45,6 +45,6 @@ class SW extends Storing {
 
 
   public void doMEM() throws IrregularStringOfBitsException, MemoryElementNotFoundException, NotAlignException, AddressErrorException, IrregularWriteOperationException {
-    memEl.writeWord(TR[RT_FIELD].readWord(0), (int)(address % 8));
+    memEl.writeWord(TR[RT_FIELD].readWord(0), offset());
   }
 }
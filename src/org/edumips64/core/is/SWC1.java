@@ -48,9 +48,9 @@ class SWC1 extends FPStoring {
     //For the trace file
     Dinero din = Dinero.getInstance();
     din.Store(Converter.binToHex(Converter.positiveIntToBin(64, address)), 4);
-    MemoryElement memEl = memory.getCellByAddress(address);
+    MemoryElement memEl = memory.getCellForStore(address, fullname);
     //writing on the memory element the RT register
-    memEl.writeWord(TR[RT_FIELD].readWord(0), (int)(address % 8));
+    memEl.writeWord(TR[RT_FIELD].readWord(0), memory.byteOffset(address, 4));
 
   }
 
@@ -40,6 +40,7 @@ public class SYSCALL extends Instruction {
 
   private Dinero din;
   private IOManager iom;
+  private static PrintfEngine printf = new PrintfEngine();
 
     public SYSCALL() {
       this.syntax = "%U";
@@ -50,7 +51,7 @@ public class SYSCALL extends Instruction {
     }
 
   public void IF() {
-    syscall_n = params.get(0);
+    syscall_n = fields[0];
     logger.info("SYSCALL (" + this.hashCode() + ") -> IF");
 
     try {
@@ -71,7 +72,7 @@ public class SYSCALL extends Instruction {
       CPU cpu = CPU.getInstance();
       Register r14 = cpu.getRegister(14);
 
-      if (r14.getWriteSemaphore() > 0) {
+      if (isWaiting(r14)) {
         throw new RAWException();
       }
 
@@ -164,104 +165,17 @@ public class SYSCALL extends Instruction {
         logger.info(e.toString());
       }
     } else if (syscall_n == 5) {
-      StringBuilder temp = new StringBuilder();
-
-      // In the address variable (content of R14) we have the address of
-      // the format string, that we get and put in the format_string_address variable
-      logger.info("Reading memory cell at address " + address + ", searching for the address of the format string");
-      MemoryElement tempMemCell = memory.getCellByAddress(address);
-      int format_string_address = (int) tempMemCell.getValue();
-
-      // Recording in the tracefile the last memory access
-      din.Load(Converter.binToHex(Converter.positiveIntToBin(64, address)), 8);
-
-      // Fetching the format string
-      String format_string = fetchString(format_string_address);
-      logger.info("Read " + format_string);
-
-      // Going to the next memory cell to start fetching parameters.
-      int next_param_address = (int) address + 8;
-
-      // Let's record in the tracefile the format string's memory access
-      // t1 will hold the address of the last memory cell accessed
-      // while we were reading format_string.
-      int t1 = format_string_address + format_string.length();
-      t1 += 8 - (t1 % 8);
-
-      for (int i = format_string_address; i < t1; i += 8) {
-        din.Load(Converter.binToHex(Converter.positiveIntToBin(64, i)), 8);
-      }
-
-      int oldIndex = 0;
-      int newIndex = 0;
-
-      while ((newIndex = format_string.indexOf('%', oldIndex)) >= 0) {
-        char type = format_string.charAt(newIndex + 1);
-        logger.info("Found a placeholder... type " + type);
-        temp.append(format_string.substring(oldIndex, newIndex));
-
-        switch (type) {
-        case 's':   // %s
-          tempMemCell = memory.getCellByAddress(next_param_address);
-          int str_address = (int) tempMemCell.getValue();
-          logger.info("Retrieving the string @ " + str_address + "...");
-          String param = fetchString(str_address);
-
-          next_param_address += 8;
-          /* Old, buggy behavior
-          int old_param_address = next_param_address;
-          next_param_address += param.length();
-          next_param_address += 8 - (next_param_address % 8);
-          */
-
-          // Tracefile entry for this string
-          int t2 = str_address + param.length();
-          t2 += 8 - (t2 % 8);
-
-          for (int i = str_address; i < t2; i += 8) {
-            din.Load(Converter.binToHex(Converter.positiveIntToBin(64, i)), 8);
-          }
-
-          logger.info("Got " + param);
-          temp.append(param);
-          break;
-        case 'i':   // %i
-        case 'd':   // %d
-          logger.info("Retrieving the integer @ " + next_param_address + "...");
-          MemoryElement memCell = memory.getCellByAddress(next_param_address);
-
-          // Tracefile entry for this memory access
-          din.Load(Converter.binToHex(Converter.positiveIntToBin(64, next_param_address)), 8);
-
-          Long val = memCell.getValue();
-          next_param_address += 8;
-          temp.append(val.toString());
-          logger.info("Got " + val);
-          break;
-        case '%':   // %%
-          logger.info("Literal %...");
-          temp.append('%');
-          break;
-        default:
-          logger.info("Unknown placeholder");
-          break;
-        }
-
-        oldIndex = newIndex + 2;
-      }
-
-      temp.append(format_string.substring(oldIndex));
-      logger.info("That became " + temp.toString());
+      int length = printf.format(address);
 
       //This prints to StdOutput.
       try {
-        iom.write(1, temp.toString());
+        iom.write(1, printf.getBuffer(), 0, length);
       } catch (IOException e) {
         logger.info("Error in executing the printf(), the syscall will fail.");
         logger.info(e.toString());
       }
 
-      return_value = temp.length();
+      return_value = length;
     }
   }
 
@@ -270,10 +184,10 @@ public class SYSCALL extends Instruction {
     boolean end_of_string = false;
 
     while (!end_of_string) {
-      MemoryElement memEl = memory.getCellByAddress(address);
+      long value = memory.getCellByAddress(address).getValue();
 
       for (int i = 0; i < 8; ++i) {
-        int tempInt = memEl.readByte(i);
+        int tempInt = (byte)(value >>> (8 * i));
 
         if (tempInt == 0) {
           end_of_string = true;
@@ -39,25 +39,30 @@ public abstract class Storing extends LDSTInstructions {
 
   public void ID() throws RAWException, IrregularWriteOperationException, IrregularStringOfBitsException, TwosComplementSumException {
     //if the base register and the rt register are valid passing value of rt register into a temporary register
-    Register base = cpu.getRegister(params.get(BASE_FIELD));
-    rt = cpu.getRegister(params.get(RT_FIELD));
+    Register base = regs[BASE_FIELD];
+    rt = regs[RT_FIELD];
 
-    if (base.getWriteSemaphore() > 0) {
+    if (isWaiting(base)) {
       logger.info("RAW in " + fullname + ": base register still needs to be written to.");
       throw new RAWException();
     }
 
-    if (!enableForwarding) {
-      if (rt.getWriteSemaphore() > 0) {
+    if (!forwarding.isEnabled(ForwardingNetwork.Path.MEM_MEM)) {
+      if (isWaiting(rt)) {
         logger.info("RAW in " + fullname + ": rt register still needs to be written to.");
         throw new RAWException();
       }
 
       TR[RT_FIELD].setBits(rt.getBinString(), 0);
+    } else if (rt.getWriteSemaphore() > 0) {
+      // rt will be read in MEM, after it is written by the previous instruction.
+      forwarding.storeForwarded();
+    } else {
+      forwarding.read(rt, this);
     }
 
     //calculating  address (base+offset)
-    long address = base.getValue() + params.get(OFFSET_FIELD);
+    long address = base.getValue() + fields[OFFSET_FIELD];
     //saving address into a temporary register
     TR[OFFSET_PLUS_BASE].writeDoubleWord(address);
   }
@@ -71,17 +76,13 @@ public abstract class Storing extends LDSTInstructions {
   }
 
   public void MEM() throws IrregularStringOfBitsException, MemoryElementNotFoundException, NotAlignException, AddressErrorException, IrregularWriteOperationException {
-    memEl = memory.getCellByAddress(address);
+    memEl = memory.getCellForStore(address, fullname);
 
-    if (enableForwarding) {
+    if (forwarding.isEnabled(ForwardingNetwork.Path.MEM_MEM)) {
       TR[RT_FIELD].setBits(rt.getBinString(), 0);
     }
 
     doMEM();
-
-    if (enableForwarding) {
-      WB();
-    }
   }
 
   public static void main(String args[]) {
@@ -97,6 +98,7 @@ public abstract class Storing extends LDSTInstructions {
       //R1=43524464456523452L
       cpu.getRegister(inst.params.get(RT_FIELD)).writeDoubleWord(9223372036854775807L);
       inst.pack();
+      inst.decode();
       inst.ID();
       inst.MEM();
       System.out.println(memory);
@@ -55,9 +55,7 @@ public class XOR extends ALU_RType {
     rd = InstructionsUtils.xorOperation(rs, rt);
     TR[RD_FIELD].setBits(rd, 0);
 
-    if (enableForwarding) {
-      doWB();
-    }
+    forwardFromEX();
 
   }
 }
@@ -28,15 +28,43 @@ package org.edumips64.tests;
 import org.edumips64.core.*;
 import org.edumips64.core.is.*;
 import org.edumips64.ui.CycleBuilder;
+import org.edumips64.ui.CycleElement;
+import org.edumips64.ui.CycleExporter;
+import org.edumips64.ui.CycleState;
 import org.edumips64.utils.ConfigStore;
 import org.edumips64.utils.ConfigManager;
+import org.edumips64.utils.Metrics;
+import org.edumips64.utils.StripedCounter;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 import java.util.logging.Handler;
 import java.util.logging.Logger;
 import java.util.Map;
 import java.util.Scanner;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.management.AttributeNotFoundException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 import org.junit.*;
 import org.junit.rules.ErrorCollector;
@@ -63,7 +91,16 @@ public class CpuTests {
     int cycles;
     int instructions;
     int rawStalls, wawStalls, memStalls;
+    int functionalInstructions;
+    int issueStalls, groupDependencyStalls, dispatchStalls;
+    int[] slotIssues;
+    int[] avoidedStalls = new int[ForwardingNetwork.Path.values().length];
+    Map<String, Integer> rawStallCauses;
+    // Totals of the profile, per instruction, basic block and label.
+    int profiledCycles, profiledInstructions, profiledRawStalls, blockCycles, labelCycles;
     String traceFile;
+    // Architectural state (registers and memory) at the end of the execution.
+    String state;
 
     public CpuTestStatus(CPU cpu, String dineroTrace) {
       cycles = cpu.getCycles();
@@ -71,7 +108,40 @@ public class CpuTests {
       wawStalls = cpu.getWAWStalls();
       rawStalls = cpu.getRAWStalls();
       memStalls = cpu.getStructuralStallsMemory();
+      functionalInstructions = cpu.getFunctionalInstructions();
+      issueStalls = cpu.getIssueStalls();
+      groupDependencyStalls = cpu.getGroupDependencyStalls();
+      dispatchStalls = cpu.getDispatchStalls();
+      slotIssues = new int[cpu.getIssueWidth()];
+
+      for (int i = 0; i < slotIssues.length; ++i) {
+        slotIssues[i] = cpu.getSlotIssues(i);
+      }
+
+      for (ForwardingNetwork.Path p : ForwardingNetwork.Path.values()) {
+        avoidedStalls[p.ordinal()] = cpu.getAvoidedStalls(p);
+      }
+
+      rawStallCauses = new HashMap<String, Integer>(cpu.getRAWStallCauses());
+
+      Profiler profiler = cpu.getProfiler();
+      profiledCycles = profiler.getTotalCycles();
+
+      for (Profiler.Region r : profiler.getHotSpots(Integer.MAX_VALUE)) {
+        profiledInstructions += r.getExecutions();
+        profiledRawStalls += r.getStalls(Profiler.Stall.RAW);
+      }
+
+      for (Profiler.Region r : profiler.getBasicBlocks()) {
+        blockCycles += r.getCycles();
+      }
+
+      for (Profiler.Region r : profiler.getLabels()) {
+        labelCycles += r.getCycles();
+      }
+
       traceFile = dineroTrace;
+      state = cpu.gprString() + cpu.fprString() + cpu.getMemory().toString();
 
       log.warning("Got " + cycles + " cycles, " + instructions + " instructions, " + rawStalls + " RAW Stalls and " + wawStalls + " WAW stalls.");
     }
@@ -126,29 +196,38 @@ public class CpuTests {
     fec.restore();
   }
 
+  /** Parses the given file and sets the CPU in the RUNNING state. */
+  private void loadProgram(String testPath) throws Exception {
+    try {
+      parser.parse(testPath);
+    } catch (ParserMultiWarningException e) {
+      // This exception is raised even if there are only warnings.
+      // We must raise it only if there are actual errors.
+      if (e.hasErrors()) {
+        throw e;
+      }
+    }
+
+    cpu.setStatus(CPU.CPUStatus.RUNNING);
+  }
+
   /** Executes a MIPS64 program, raising an exception if it does not
    * succeed.
    *
-   * @param testPath path of the test code.
+   * @param testPath path of the test code, relative to testsLocation.
    */
   protected CpuTestStatus runMipsTest(String testPath) throws Exception {
+    return runProgram(testsLocation + testPath);
+  }
+
+  /** Executes the MIPS64 program at the given path. */
+  private CpuTestStatus runProgram(String testPath) throws Exception {
     log.warning("================================= Starting test " + testPath);
     cpu.reset();
-    testPath = testsLocation + testPath;
     CycleBuilder builder = new CycleBuilder();
 
     try {
-      try {
-        parser.parse(testPath);
-      } catch (ParserMultiWarningException e) {
-        // This exception is raised even if there are only warnings.
-        // We must raise it only if there are actual errors.
-        if (e.hasErrors()) {
-          throw e;
-        }
-      }
-
-      cpu.setStatus(CPU.CPUStatus.RUNNING);
+      loadProgram(testPath);
 
       while (true) {
         cpu.step();
@@ -297,6 +376,59 @@ public class CpuTests {
     runForwardingTest("forwarding-hp-pA18.s", 9, 13, 4);
   }
 
+  /* Runs a test with forwarding enabled and the given path disabled. */
+  private CpuTestStatus runWithoutPath(String path, ForwardingNetwork.Path disabled) throws Exception {
+    try {
+      config.putBoolean(disabled.getConfigKey(), false);
+      Instruction.setEnableForwarding(true);
+      return runMipsTest(path);
+    } finally {
+      config.putBoolean(disabled.getConfigKey(), true);
+      Instruction.setEnableForwarding(true);
+    }
+  }
+
+  @Test
+  public void testForwardingPaths() throws Exception {
+    int exEx = ForwardingNetwork.Path.EX_EX.ordinal();
+    int memEx = ForwardingNetwork.Path.MEM_EX.ordinal();
+    int memMem = ForwardingNetwork.Path.MEM_MEM.ordinal();
+
+    // DSUB and AND read R1 from the EX->EX path.
+    CpuTestStatus s = runMipsTest("forwarding-hp-pA16.s");
+    collector.checkThat("EX->EX (pA16)", s.avoidedStalls[exEx], equalTo(2));
+    collector.checkThat("MEM->EX (pA16)", s.avoidedStalls[memEx], equalTo(0));
+
+    // Without EX->EX, DSUB waits for DADD to reach MEM.
+    s = runWithoutPath("forwarding-hp-pA16.s", ForwardingNetwork.Path.EX_EX);
+    collector.checkThat("Cycles without EX->EX (pA16)", s.cycles, equalTo(12));
+    collector.checkThat("EX->EX without EX->EX (pA16)", s.avoidedStalls[exEx], equalTo(0));
+    collector.checkThat("MEM->EX without EX->EX (pA16)", s.avoidedStalls[memEx], equalTo(1));
+
+    // LD and SD read R1 from the EX->EX path, SD gets R4 in MEM.
+    s = runMipsTest("forwarding-hp-pA18.s");
+    collector.checkThat("EX->EX (pA18)", s.avoidedStalls[exEx], equalTo(2));
+    collector.checkThat("MEM->MEM (pA18)", s.avoidedStalls[memMem], equalTo(1));
+
+    // Without MEM->MEM, SD waits in ID for the value loaded by LD.
+    s = runWithoutPath("forwarding-hp-pA18.s", ForwardingNetwork.Path.MEM_MEM);
+    collector.checkThat("Cycles without MEM->MEM (pA18)", s.cycles, equalTo(10));
+    collector.checkThat("MEM->EX without MEM->MEM (pA18)", s.avoidedStalls[memEx], equalTo(1));
+    collector.checkThat("MEM->MEM without MEM->MEM (pA18)", s.avoidedStalls[memMem], equalTo(0));
+  }
+
+  @Test
+  public void testStallCauses() throws Exception {
+    Map<ForwardingStatus, CpuTestStatus> statuses = runMipsTestWithAndWithoutForwarding("forwarding-hp-pA18.s");
+    CpuTestStatus s = statuses.get(ForwardingStatus.DISABLED);
+
+    // LD waits for R1 (DADD), SD waits for R4 (LD).
+    collector.checkThat("RAW stalls", s.rawStalls, equalTo(4));
+    collector.checkThat("RAW stalls caused by DADD", s.rawStallCauses.get("DADD"), equalTo(2));
+    collector.checkThat("RAW stalls caused by LD", s.rawStallCauses.get("LD"), equalTo(2));
+    collector.checkThat("RAW stalls with forwarding", statuses.get(ForwardingStatus.ENABLED).rawStallCauses.isEmpty(), is(true));
+  }
+
   @Test
   public void storeAfterLoad() throws Exception {
     runMipsTest("store-after-load.s");
@@ -340,6 +472,98 @@ public class CpuTests {
     collector.checkThat(statuses.get(ForwardingStatus.DISABLED).memStalls, equalTo(expected_mem_stalls));
   }
 
+  /* Write semaphores: the writes of the registers of the CPU are tracked by
+   * the scoreboard, the ones of the temporary registers are not. */
+  @Test
+  public void testWriteSemaphores() throws Exception {
+    Register tr = new Register("TR");
+    tr.incrWriteSemaphore();
+    collector.checkThat("Writers of a temporary register", tr.getWriteSemaphore(), equalTo(0));
+    collector.checkThat("Temporary register waiting", tr.isWaiting(), equalTo(false));
+    tr.decrWriteSemaphore();
+
+    Register r1 = cpu.getRegister(1);
+    r1.incrWriteSemaphore();
+    collector.checkThat("Writers of R1", r1.getWriteSemaphore(), equalTo(1));
+    collector.checkThat("R1 waiting", r1.isWaiting(), equalTo(true));
+    r1.decrWriteSemaphore();
+    collector.checkThat("Writers of R1 after the write", r1.getWriteSemaphore(), equalTo(0));
+    collector.checkThat("R1 waiting after the write", r1.isWaiting(), equalTo(false));
+  }
+
+  /* FCSR: the bits must be where the old bit-string implementation put
+   * them. The indexes are positions in getBinString(), i.e. 31 - bit. */
+  @Test
+  public void testFCSR() throws Exception {
+    FCSRRegister.Flag[] flags = {FCSRRegister.Flag.V, FCSRRegister.Flag.Z, FCSRRegister.Flag.O, FCSRRegister.Flag.U, FCSRRegister.Flag.I};
+    int[] causeIndexes = {15, 16, 17, 18, 19};
+    int[] enableIndexes = {20, 21, 22, 23, 24};
+    int[] flagIndexes = {25, 26, 27, 28, 29};
+
+    for (int i = 0; i < flags.length; ++i) {
+      FCSRRegister fcsr = new FCSRRegister();
+      fcsr.setFCSRCause(flags[i], 1);
+      collector.checkThat("Cause bit of " + flags[i], fcsr.getBinString(), equalTo(onlyBits(causeIndexes[i])));
+
+      fcsr = new FCSRRegister();
+      fcsr.setFCSREnables(flags[i], 1);
+      collector.checkThat("Enable bit of " + flags[i], fcsr.getBinString(), equalTo(onlyBits(enableIndexes[i])));
+      collector.checkThat("Enable of " + flags[i], fcsr.getFCSREnables(flags[i]), equalTo(true));
+
+      fcsr = new FCSRRegister();
+      fcsr.setFCSRFlags(flags[i], 1);
+      collector.checkThat("Flag bit of " + flags[i], fcsr.getBinString(), equalTo(onlyBits(flagIndexes[i])));
+      collector.checkThat("Flag of " + flags[i], fcsr.getFCSRFlags(flags[i]), equalTo(true));
+
+      // A disabled exception sets the cause and the flag, and does not trap.
+      fcsr = new FCSRRegister();
+      collector.checkThat("Trap of disabled " + flags[i], fcsr.signal(flags[i]), equalTo(false));
+      collector.checkThat("Signal of disabled " + flags[i], fcsr.getBinString(), equalTo(onlyBits(causeIndexes[i], flagIndexes[i])));
+
+      // An enabled exception sets only the cause, and traps.
+      fcsr = new FCSRRegister();
+      fcsr.setFCSREnables(flags[i], 1);
+      collector.checkThat("Trap of enabled " + flags[i], fcsr.signal(flags[i]), equalTo(true));
+      collector.checkThat("Signal of enabled " + flags[i], fcsr.getBinString(), equalTo(onlyBits(causeIndexes[i], enableIndexes[i])));
+
+      // resetStatus() keeps only the enables.
+      fcsr.setFCSRFlags(flags[i], 1);
+      fcsr.resetStatus();
+      collector.checkThat("Reset of " + flags[i], fcsr.getBinString(), equalTo(onlyBits(enableIndexes[i])));
+    }
+
+    // FCC0 is bit 23, FCC1-7 are bits 25-31.
+    for (int cc = 0; cc < 8; ++cc) {
+      FCSRRegister fcsr = new FCSRRegister();
+      fcsr.setFCSRConditionCode(cc, 1);
+      collector.checkThat("Bit of FCC" + cc, fcsr.getBinString(), equalTo(onlyBits(cc == 0 ? 8 : 7 - cc)));
+      collector.checkThat("Value of FCC" + cc, fcsr.getFCSRConditionCode(cc), equalTo(1));
+      fcsr.setFCSRConditionCode(cc, 0);
+      collector.checkThat("Cleared FCC" + cc, fcsr.getValue(), equalTo(0));
+    }
+
+    String[] rmBits = {"00", "01", "10", "11"};
+
+    for (CPU.FPRoundingMode rm : CPU.FPRoundingMode.values()) {
+      FCSRRegister fcsr = new FCSRRegister();
+      fcsr.setFCSRRoundingMode(rm);
+      collector.checkThat("Bits of " + rm, fcsr.getBinString().substring(30), equalTo(rmBits[rm.ordinal()]));
+      collector.checkThat("Rounding mode " + rm, fcsr.getFCSRRoundingMode(), equalTo(rm));
+    }
+  }
+
+  /* Returns a 32-character bit string with a 1 only at the given indexes. */
+  private static String onlyBits(int... indexes) {
+    char[] bits = new char[32];
+    Arrays.fill(bits, '0');
+
+    for (int i : indexes) {
+      bits[i] = '1';
+    }
+
+    return new String(bits);
+  }
+
   /* ------- REGRESSION TESTS -------- */
   /* Issue #7 */
   @Test
@@ -408,12 +632,1077 @@ public class CpuTests {
     runTestAndCompareTracefileWithGolden("tracefile-st.s");
   }
 
+  /* The temporal diagram exported as CSV must expand to the same states,
+   * cycle by cycle, as the run-length encoded history it was written from. */
+  @Test
+  public void testCycleExporter() throws Exception {
+    cpu.reset();
+    CycleBuilder builder = new CycleBuilder();
+
+    try {
+      loadProgram(testsLocation + "fpu-waw.s");
+
+      while (true) {
+        cpu.step();
+        builder.step();
+      }
+    } catch (HaltException e) {
+      // The program ended.
+    } finally {
+      cpu.reset();
+    }
+
+    List<CycleElement> rendered = new ArrayList<CycleElement>();
+
+    for (CycleElement el : builder.getElements()) {
+      if (el.shouldRender()) {
+        rendered.add(el);
+      }
+    }
+
+    StringWriter csv = new StringWriter();
+    CycleExporter.export(builder, CycleExporter.Format.CSV, csv);
+    String[] lines = csv.toString().split("\n");
+    collector.checkThat("CSV header", lines[0], equalTo("serial,instruction,start,end,stages"));
+    collector.checkThat("CSV rows", lines.length - 1, equalTo(rendered.size()));
+
+    for (int i = 1; i < lines.length && i <= rendered.size(); ++i) {
+      CycleElement el = rendered.get(i - 1);
+      // The instruction may be quoted and contain commas: the other fields
+      // are read from the two ends of the row.
+      String line = lines[i];
+      int stagesStart = line.lastIndexOf(',');
+      int endStart = line.lastIndexOf(',', stagesStart - 1);
+      int startStart = line.lastIndexOf(',', endStart - 1);
+      List<String> states = new ArrayList<String>();
+
+      for (String run : line.substring(stagesStart + 1).split(" ")) {
+        int star = run.indexOf('*');
+        String label = (star < 0) ? run : run.substring(0, star);
+        int length = (star < 0) ? 1 : Integer.parseInt(run.substring(star + 1));
+
+        for (int j = 0; j < length; ++j) {
+          states.add(label.equals("-") ? CycleState.EMPTY.getLabel() : label);
+        }
+      }
+
+      List<String> expected = new ArrayList<String>();
+
+      for (CycleState st : el.getStates()) {
+        expected.add(st.getLabel());
+      }
+
+      collector.checkThat("Serial of row " + i, Long.parseLong(line.substring(0, line.indexOf(','))), equalTo(el.getSerialNumber()));
+      collector.checkThat("Start of row " + i, Integer.parseInt(line.substring(startStart + 1, endStart)), equalTo(el.getTime()));
+      collector.checkThat("States of row " + i, states, equalTo(expected));
+    }
+
+    StringWriter json = new StringWriter();
+    CycleExporter.export(builder, CycleExporter.Format.JSON, json);
+    int objects = json.toString().split("\\{\"serial\":", -1).length - 1;
+    collector.checkThat("JSON objects", objects, equalTo(rendered.size()));
+  }
+
+  /* The temporal diagram keeps in objects only the rows of the instructions
+   * in the pipeline, and packs the other ones: the whole diagram of
+   * cycles-loop.s must take less than 8 bytes per cycle, i.e. less than 8 MB
+   * for a million cycles, and unpack to consistent rows. */
+  @Test
+  public void testCycleHistoryHeap() throws Exception {
+    cpu.reset();
+    CycleBuilder builder = new CycleBuilder();
+    int cycles = 0;
+
+    try {
+      loadProgram(testsLocation + "cycles-loop.s");
+
+      while (true) {
+        cpu.step();
+        builder.step();
+      }
+    } catch (HaltException e) {
+      cycles = cpu.getCycles();
+    } finally {
+      cpu.reset();
+    }
+
+    collector.checkThat("Bytes per cycle " + builder.getHeapSize() + "/" + cycles, builder.getHeapSize() < 8L * cycles, equalTo(true));
+
+    int rows = 0, start = 0, divisions = 0;
+
+    for (CycleElement el : builder.getElements()) {
+      rows++;
+      collector.checkThat("Start of row " + rows, el.getTime() >= start, equalTo(true));
+      collector.checkThat("Length of row " + rows, el.getStates().size(), equalTo(el.getUpdateTime() - el.getTime() + 1));
+      collector.checkThat("First state of row " + rows, el.getStates().get(0), equalTo(CycleState.IF));
+      start = el.getTime();
+
+      // The DIV.Ds fetched after the taken branches are discarded in IF.
+      if (el.getStates().contains(CycleState.DIV)) {
+        divisions++;
+        collector.checkThat("Last state of DIV.D", el.getLastState(), equalTo(CycleState.WB));
+      }
+    }
+
+    collector.checkThat("Rows", rows, equalTo(builder.getInstructionsCount()));
+    collector.checkThat("DIV.D rows", divisions, equalTo(500));
+  }
+
+  /* Pipeline tracer: the binary stream has one record per cycle, with the
+   * RAW stalls of the run, and the Chrome trace events cover the same
+   * occupancy of each slot. */
+  @Test
+  public void testPipelineTracer() throws Exception {
+    ByteArrayOutputStream bin = new ByteArrayOutputStream();
+    ByteArrayOutputStream json = new ByteArrayOutputStream();
+    int cycles, rawStalls;
+    cpu.reset();
+
+    try {
+      loadProgram(testsLocation + "forwarding.s");
+      PipelineTracer binTracer = new BinaryPipelineTracer(bin);
+      PipelineTracer jsonTracer = new ChromePipelineTracer(json);
+
+      try {
+        while (true) {
+          try {
+            cpu.step();
+          } finally {
+            binTracer.step();
+            jsonTracer.step();
+          }
+        }
+      } catch (HaltException e) {
+        // The program ended.
+      }
+
+      binTracer.close();
+      jsonTracer.close();
+      cycles = cpu.getCycles();
+      rawStalls = cpu.getRAWStalls();
+    } finally {
+      cpu.reset();
+    }
+
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(bin.toByteArray()));
+    byte[] magic = new byte[4];
+    in.readFully(magic);
+    collector.checkThat("Magic", new String(magic, "US-ASCII"), equalTo("EMPT"));
+    collector.checkThat("Version", in.readByte() & 0xFF, equalTo(BinaryPipelineTracer.VERSION));
+    int slots = in.readByte();
+    collector.checkThat("Slots", slots, equalTo(PipelineTracer.SLOTS));
+
+    for (int i = 0; i < slots; ++i) {
+      collector.checkThat("Name of slot " + i, in.readUTF(), equalTo(PipelineTracer.SLOT_NAMES[i]));
+    }
+
+    Set<Long> defined = new HashSet<Long>();
+    int[] occupied = new int[slots];
+    int records = 0, rawCycles = 0, lastCycle = 0, tag;
+
+    while ((tag = in.readByte()) != 'E') {
+      if (tag == 'I') {
+        defined.add(readVarLong(in));
+        in.readUTF();
+        continue;
+      }
+
+      collector.checkThat("Tag", tag, equalTo((int) 'C'));
+      int cycle = (int) readVarLong(in);
+      collector.checkThat("Cycle after " + lastCycle, cycle, equalTo(lastCycle + 1));
+      lastCycle = cycle;
+      records++;
+
+      if ((in.readByte() & PipelineTracer.STALL_RAW) != 0) {
+        rawCycles++;
+      }
+
+      long occupancy = readVarLong(in);
+
+      for (int i = 0; i < slots; ++i) {
+        if ((occupancy & (1 << i)) != 0) {
+          occupied[i]++;
+          collector.checkThat("Instruction defined before cycle " + cycle, defined.contains(readVarLong(in)), equalTo(true));
+        }
+      }
+    }
+
+    collector.checkThat("Cycle records", records, equalTo(cycles));
+    collector.checkThat("Cycles with RAW stalls", rawCycles, equalTo(rawStalls));
+
+    // Sums the durations of the events of each slot of the Chrome trace.
+    String trace = json.toString("UTF-8");
+    collector.checkThat("JSON array", trace.startsWith("[") && trace.endsWith("]\n"), equalTo(true));
+    int[] durations = new int[slots];
+    Matcher m = Pattern.compile("\"ph\":\"X\",\"pid\":1,\"tid\":(\\d+),\"ts\":\\d+,\"dur\":(\\d+)").matcher(trace);
+
+    while (m.find()) {
+      int tid = Integer.parseInt(m.group(1));
+
+      if (tid <= slots) {
+        durations[tid - 1] += Integer.parseInt(m.group(2));
+      }
+    }
+
+    for (int i = 0; i < slots; ++i) {
+      collector.checkThat("Cycles of slot " + PipelineTracer.SLOT_NAMES[i], durations[i], equalTo(occupied[i]));
+    }
+
+    collector.checkThat("Cycles in IF", occupied[0] > 0, equalTo(true));
+  }
+
+  private static long readVarLong(DataInputStream in) throws IOException {
+    long value = 0;
+    int shift = 0;
+    int b;
+
+    do {
+      b = in.readByte() & 0xFF;
+      value |= (long)(b & 0x7F) << shift;
+      shift += 7;
+    } while ((b & 0x80) != 0);
+
+    return value;
+  }
+
   /* Issue #36: StringIndexOutOfBoundsException raised at run-time. */
   @Test(expected = AddressErrorException.class)
   public void testNegativeAddress() throws Exception {
     runMipsTest("negative-address-issue-36.s");
   }
 
+  /* A file that includes itself, directly or not, must be reported as an
+   * error instead of being expanded forever. */
+  @Test(expected = ParserMultiException.class)
+  public void testIncludeLoop() throws Exception {
+    runMipsTest("include-loop.s");
+  }
+
+  /* The functional mode must give the same architectural results as the
+   * pipeline, both when used for the whole run and when switching to the
+   * pipeline after some instructions. */
+  @Test
+  public void testFunctionalMode() throws Exception {
+    String[] programs = {"forwarding.s", "forwarding-hp-pA18.s", "fpu-waw.s", "jal.s", "movn-issue-7.s", "memtest.s", "test-strlen.s", "issue51-halt.s"};
+
+    try {
+      for (String path : programs) {
+        CpuTestStatus pipelined = runMipsTest(path);
+
+        config.putBoolean("functional_mode", true);
+        CpuTestStatus functional = runMipsTest(path);
+        collector.checkThat("Functional state (" + path + ")", functional.state, equalTo(pipelined.state));
+        collector.checkThat("Functional instructions (" + path + ")", functional.functionalInstructions, equalTo(pipelined.instructions));
+        collector.checkThat("Cycles in functional mode (" + path + ")", functional.cycles, equalTo(0));
+
+        config.putInt("functional_switch_count", 2);
+        CpuTestStatus switched = runMipsTest(path);
+        collector.checkThat("Switched state (" + path + ")", switched.state, equalTo(pipelined.state));
+        collector.checkThat("Switched instructions (" + path + ")", switched.functionalInstructions + switched.instructions, equalTo(pipelined.instructions));
+        config.putInt("functional_switch_count", 0);
+        config.putBoolean("functional_mode", false);
+      }
+    } finally {
+      config.putInt("functional_switch_count", 0);
+      config.putBoolean("functional_mode", false);
+    }
+  }
+
+  /* The out-of-order mode must give the same architectural results as the
+   * pipeline. In fpu-waw.s the WAW hazard disappears with the renaming, and
+   * the ADD.D completes before the MUL.D it follows (20 cycles in the
+   * pipeline with forwarding). In ooo-fcc.s the MOVT.D, which reads the FCC
+   * without checking the scoreboard, must wait for the C.LT.D and the DIV.D
+   * before it; the MUL.D that uses its result ends the program at cycle 44
+   * instead of 36. */
+  @Test
+  public void testOutOfOrderMode() throws Exception {
+    String[] programs = {"forwarding.s", "forwarding-hp-pA18.s", "fpu-waw.s", "jal.s", "movn-issue-7.s", "memtest.s", "test-strlen.s", "issue51-halt.s", "ooo-fcc.s"};
+
+    try {
+      for (String path : programs) {
+        CpuTestStatus pipelined = runMipsTest(path);
+
+        config.putBoolean("out_of_order", true);
+        CpuTestStatus ooo = runMipsTest(path);
+        config.putBoolean("out_of_order", false);
+        collector.checkThat("Out-of-order state (" + path + ")", ooo.state, equalTo(pipelined.state));
+        collector.checkThat("Out-of-order instructions (" + path + ")", ooo.instructions, equalTo(pipelined.instructions));
+      }
+
+      config.putBoolean("out_of_order", true);
+      CpuTestStatus waw = runMipsTest("fpu-waw.s");
+      collector.checkThat("Out-of-order cycles (fpu-waw.s)", waw.cycles, equalTo(16));
+      collector.checkThat("Out-of-order WAW stalls (fpu-waw.s)", waw.wawStalls, equalTo(0));
+      collector.checkThat("Issue stalls (fpu-waw.s)", waw.issueStalls, equalTo(0));
+
+      CpuTestStatus fcc = runMipsTest("ooo-fcc.s");
+      collector.checkThat("Out-of-order cycles (ooo-fcc.s)", fcc.cycles, equalTo(44));
+      collector.checkThat("Dispatch stalls (ooo-fcc.s)", fcc.dispatchStalls, equalTo(83));
+    } finally {
+      config.putBoolean("out_of_order", false);
+    }
+  }
+
+  /* The superscalar mode must give the same architectural results as the
+   * pipeline. With an issue width of 1 and forwarding, superscalar.s takes
+   * a cycle per instruction plus the four cycles needed to fill the
+   * pipeline; with an issue width of 2 the dependency between the two DADDs
+   * of the third group delays the second one by a cycle. */
+  @Test
+  public void testSuperscalarMode() throws Exception {
+    String[] programs = {"forwarding.s", "forwarding-hp-pA18.s", "fpu-waw.s", "jal.s", "movn-issue-7.s", "memtest.s", "test-strlen.s", "superscalar.s"};
+    boolean forwardingStatus = Instruction.getEnableForwarding();
+
+    try {
+      for (String path : programs) {
+        CpuTestStatus pipelined = runMipsTest(path);
+
+        config.putBoolean("superscalar", true);
+        CpuTestStatus superscalar = runMipsTest(path);
+        config.putBoolean("superscalar", false);
+        collector.checkThat("Superscalar state (" + path + ")", superscalar.state, equalTo(pipelined.state));
+        collector.checkThat("Superscalar instructions (" + path + ")", superscalar.instructions, equalTo(pipelined.instructions));
+      }
+
+      Instruction.setEnableForwarding(true);
+      config.putBoolean("superscalar", true);
+      config.putInt("issue_width", 1);
+      CpuTestStatus scalar = runMipsTest("superscalar.s");
+      collector.checkThat("Cycles with issue width 1", scalar.cycles, equalTo(12));
+
+      config.putInt("issue_width", 2);
+      CpuTestStatus dual = runMipsTest("superscalar.s");
+      collector.checkThat("Cycles with issue width 2", dual.cycles, equalTo(9));
+      collector.checkThat("Dependency stalls in the group", dual.groupDependencyStalls, equalTo(1));
+      collector.checkThat("Cycles using the first slot", dual.slotIssues[0], equalTo(5));
+      collector.checkThat("Cycles using the second slot", dual.slotIssues[1], equalTo(3));
+    } finally {
+      Instruction.setEnableForwarding(forwardingStatus);
+      config.putBoolean("superscalar", false);
+      config.putInt("issue_width", 2);
+    }
+  }
+
+  /* A program parsed again must be loaded from its image, with the same
+   * state and warnings (here, the missing HALT). The image is also written
+   * to the configured directory. */
+  @Test
+  public void testProgramImage() throws Exception {
+    File dir = File.createTempFile("edumips64", "images");
+    dir.delete();
+    File program = File.createTempFile("edumips64", ".s");
+    program.deleteOnExit();
+
+    try (PrintWriter out = new PrintWriter(program, "ISO-8859-1")) {
+      out.println(".data");
+      out.println("values: .word 1, 2, 3");
+      out.println("msg: .asciiz \"image\"");
+      out.println(".code");
+      out.println("loop: ld r1, values(r0) ; " + System.nanoTime());
+      out.println("daddi r2, r1, 1");
+      out.println("bnez r0, loop");
+    }
+
+    Metrics metrics = Metrics.getInstance();
+
+    try {
+      config.putString("image_cache_dir", dir.getAbsolutePath());
+      long loads = metrics.get("program_images_loaded");
+      long reads = metrics.get("program_images_read");
+      CpuTestStatus parsed = runProgram(program.getAbsolutePath());
+      collector.checkThat("Images loaded by the first parsing", metrics.get("program_images_loaded"), equalTo(loads));
+
+      CpuTestStatus loaded = runProgram(program.getAbsolutePath());
+      collector.checkThat("Images loaded from memory", metrics.get("program_images_loaded"), equalTo(loads + 1));
+      collector.checkThat("Images read from disk", metrics.get("program_images_read"), equalTo(reads));
+      collector.checkThat("State loaded from the image", loaded.state, equalTo(parsed.state));
+      collector.checkThat("Cycles of the program loaded from the image", loaded.cycles, equalTo(parsed.cycles));
+      collector.checkThat("Images written", dir.list().length, equalTo(1));
+
+      parser.clearImages();
+      loaded = runProgram(program.getAbsolutePath());
+      collector.checkThat("Images loaded from disk", metrics.get("program_images_loaded"), equalTo(loads + 2));
+      collector.checkThat("Images read from disk", metrics.get("program_images_read"), equalTo(reads + 1));
+      collector.checkThat("State loaded from the disk", loaded.state, equalTo(parsed.state));
+
+      // A file that is not an image is ignored, and the program parsed.
+      try (FileOutputStream out = new FileOutputStream(dir.listFiles()[0])) {
+        out.write(new byte[] {(byte) 0xac, (byte) 0xed, 0, 5});
+      }
+
+      parser.clearImages();
+      loaded = runProgram(program.getAbsolutePath());
+      collector.checkThat("Images loaded from a bad file", metrics.get("program_images_loaded"), equalTo(loads + 2));
+      collector.checkThat("State parsed again", loaded.state, equalTo(parsed.state));
+
+      // Without the cache, the image kept in memory is not used.
+      config.putBoolean("image_cache", false);
+      loaded = runProgram(program.getAbsolutePath());
+      collector.checkThat("Images loaded without the cache", metrics.get("program_images_loaded"), equalTo(loads + 2));
+      collector.checkThat("State parsed without the cache", loaded.state, equalTo(parsed.state));
+    } finally {
+      config.putBoolean("image_cache", true);
+      config.putString("image_cache_dir", "");
+      parser.clearImages();
+
+      for (File f : dir.listFiles()) {
+        f.delete();
+      }
+
+      dir.delete();
+    }
+  }
+
+  /* Binary loader: decoding the encodings of the instructions of a program
+   * must give back the instructions, and the program loaded from a flat
+   * binary must run as the assembled one. */
+  @Test
+  public void testBinaryLoader() throws Exception {
+    String[] programs = {"forwarding.s", "jal.s", "superscalar.s"};
+
+    for (String path : programs) {
+      CpuTestStatus assembled = runMipsTest(path);
+      cpu.reset();
+      loadProgram(testsLocation + path);
+      File binary = File.createTempFile("edumips64", ".bin");
+      binary.deleteOnExit();
+
+      try (DataOutputStream out = new DataOutputStream(new FileOutputStream(binary))) {
+        for (Instruction instr : cpu.getMemory().getInstructions()) {
+          Instruction decoded = BinaryLoader.decode(instr.getEncoding());
+          collector.checkThat("Decoded " + instr.getFullName(), decoded.getName(), equalTo(instr.getName()));
+          collector.checkThat("Parameters of " + instr.getFullName(), decoded.getParams(), equalTo(instr.getParams()));
+          out.writeInt(instr.getEncoding());
+        }
+      }
+
+      CpuTestStatus loaded = runProgram(binary.getAbsolutePath());
+      collector.checkThat("State of the binary of " + path, loaded.state, equalTo(assembled.state));
+      collector.checkThat("Cycles of the binary of " + path, loaded.cycles, equalTo(assembled.cycles));
+    }
+  }
+
+  /* ELF loader: ELF64 files with a data section run with their data at
+   * their addresses, and the loads and stores of bytes, halfwords and
+   * doublewords follow the byte order of the file. */
+  @Test
+  public void testElfLoader() throws Exception {
+    File source = File.createTempFile("edumips64", ".s");
+    source.deleteOnExit();
+
+    try (PrintWriter out = new PrintWriter(source, "ISO-8859-1")) {
+      out.println(".code");
+      out.println("ld r1, 0(r0)");
+      out.println("lb r3, 7(r0)");
+      out.println("lb r4, 8(r0)");
+      out.println("lh r5, 8(r0)");
+      out.println("daddi r2, r1, 1");
+      out.println("sd r2, 16(r0)");
+      out.println("sb r4, 16(r0)");
+    }
+
+    cpu.reset();
+    loadProgram(source.getAbsolutePath());
+    List<Instruction> program = cpu.getMemory().getInstructions();
+    int[] code = new int[program.size()];
+
+    for (int i = 0; i < code.length; ++i) {
+      code[i] = program.get(i).getEncoding();
+    }
+
+    cpu.reset();
+    File elf = File.createTempFile("edumips64", ".elf");
+    elf.deleteOnExit();
+    writeElf(elf, ByteOrder.LITTLE_ENDIAN, code, new byte[] {41, 0, 0, 0, 0, 0, 0, 0, 'a', 'b', 0, 0, 0, 0, 0, 0});
+    runElf(elf);
+    collector.checkThat("LE doubleword loaded from the data section", cpu.getRegister(1).getValue(), equalTo(41L));
+    collector.checkThat("LE byte at the end of the doubleword", cpu.getRegister(3).getValue(), equalTo(0L));
+    collector.checkThat("LE byte of the second doubleword", cpu.getRegister(4).getValue(), equalTo((long) 'a'));
+    collector.checkThat("LE halfword of the second doubleword", cpu.getRegister(5).getValue(), equalTo(0x6261L));
+    collector.checkThat("LE doubleword stored after them", cpu.getMemory().getCellByAddress(16).getValue(), equalTo(0x61L));
+    cpu.reset();
+
+    writeElf(elf, ByteOrder.BIG_ENDIAN, code, new byte[] {0, 0, 0, 0, 0, 0, 0, 41, 'a', 'b', 0, 0, 0, 0, 0, 0});
+    runElf(elf);
+    collector.checkThat("BE doubleword loaded from the data section", cpu.getRegister(1).getValue(), equalTo(41L));
+    collector.checkThat("BE byte at the end of the doubleword", cpu.getRegister(3).getValue(), equalTo(41L));
+    collector.checkThat("BE byte of the second doubleword", cpu.getRegister(4).getValue(), equalTo((long) 'a'));
+    collector.checkThat("BE halfword of the second doubleword", cpu.getRegister(5).getValue(), equalTo(0x6162L));
+    collector.checkThat("BE doubleword stored after them", cpu.getMemory().getCellByAddress(16).getValue(), equalTo(0x610000000000002aL));
+
+    ByteBuffer stored = ByteBuffer.allocate(8);
+    cpu.getMemory().readBytes(16, stored);
+    collector.checkThat("BE bytes stored after them", Arrays.toString(stored.array()), equalTo(Arrays.toString(new byte[] {'a', 0, 0, 0, 0, 0, 0, 42})));
+    cpu.reset();
+    collector.checkThat("Byte order after a reset", cpu.getMemory().isBigEndian(), equalTo(false));
+  }
+
+  /* Loads an ELF file and executes it until it ends, without resetting the
+   * CPU afterwards. */
+  private void runElf(File elf) throws Exception {
+    try {
+      loadProgram(elf.getAbsolutePath());
+
+      while (true) {
+        cpu.step();
+      }
+    } catch (HaltException e) {
+      // The program ended.
+    }
+  }
+
+  /* Writes an ELF64 MIPS file with a code section and a data section, both
+   * at address 0, whose entry point is 0. */
+  private static void writeElf(File file, ByteOrder order, int[] code, byte[] data) throws IOException {
+    int codeOffset = 64;
+    int dataOffset = codeOffset + code.length * 4;
+    int shoff = (dataOffset + data.length + 7) / 8 * 8;
+    ByteBuffer buf = ByteBuffer.allocate(shoff + 3 * 64).order(order);
+
+    buf.put(new byte[] {0x7f, 'E', 'L', 'F', 2});           // ELFCLASS64
+    buf.put(5, (byte)(order == ByteOrder.LITTLE_ENDIAN ? 1 : 2));
+    buf.put(6, (byte) 1);                                   // EV_CURRENT
+    buf.putShort(0x10, (short) 2);                          // ET_EXEC
+    buf.putShort(0x12, (short) 8);                          // EM_MIPS
+    buf.putLong(0x18, 0);                                   // e_entry
+    buf.putLong(0x28, shoff);
+    buf.putShort(0x34, (short) 64);                         // e_ehsize
+    buf.putShort(0x3a, (short) 64);                         // e_shentsize
+    buf.putShort(0x3c, (short) 3);                          // e_shnum
+
+    for (int i = 0; i < code.length; ++i) {
+      buf.putInt(codeOffset + i * 4, code[i]);
+    }
+
+    for (int i = 0; i < data.length; ++i) {
+      buf.put(dataOffset + i, data[i]);
+    }
+
+    // Section 0 is the null section; 1 is .text, 2 is .data.
+    writeSection(buf, shoff + 64, 0x6, codeOffset, code.length * 4);
+    writeSection(buf, shoff + 128, 0x3, dataOffset, data.length);
+
+    try (FileOutputStream out = new FileOutputStream(file)) {
+      out.write(buf.array());
+    }
+  }
+
+  /* Writes a SHT_PROGBITS section header at address 0. */
+  private static void writeSection(ByteBuffer buf, int sh, long flags, int offset, int size) {
+    buf.putInt(sh + 0x04, 1);
+    buf.putLong(sh + 0x08, flags);
+    buf.putLong(sh + 0x10, 0);
+    buf.putLong(sh + 0x18, offset);
+    buf.putLong(sh + 0x20, size);
+  }
+
+  /* Pre-decoding: setting the parameters must not decode the instruction,
+   * which is decoded once its binary encoding is known. */
+  @Test
+  public void testDecode() throws Exception {
+    Instruction dadd = Instruction.buildInstruction("DADD");
+    dadd.setParams(new ArrayList<Integer>(Arrays.asList(1, 2, 3)));
+    collector.checkThat("Fields before decode()", dadd.getFields() == null, equalTo(true));
+
+    dadd.pack();
+    dadd.decode();
+    int packed = (int) Long.parseLong(dadd.getRepr().getBinString(), 2);
+    collector.checkThat("Encoding of DADD R1, R2, R3", dadd.getEncoding(), equalTo(packed));
+    collector.checkThat("Encoding of DADD R1, R2, R3", dadd.getEncoding(), equalTo(0x0043082C));
+    collector.checkThat("Fields of DADD R1, R2, R3", Arrays.toString(dadd.getFields()), equalTo("[1, 2, 3]"));
+
+    for (int i = 0; i < 3; ++i) {
+      collector.checkThat("Register " + i + " of DADD R1, R2, R3", dadd.getRegisters()[i] == cpu.getRegister(i + 1), equalTo(true));
+    }
+
+    // The instructions of a parsed program are decoded after pack().
+    loadProgram(testsLocation + "forwarding.s");
+
+    for (Instruction instr : cpu.getMemory().getInstructions()) {
+      int bits = (int) Long.parseLong(instr.getRepr().getBinString(), 2);
+      collector.checkThat("Encoding of " + instr.getFullName(), instr.getEncoding(), equalTo(bits));
+      collector.checkThat("Fields of " + instr.getFullName(), instr.getFields().length, equalTo(instr.getParams().size()));
+    }
+  }
+
+  /* The index of an instruction comes from the address it was stored at. */
+  @Test
+  public void testInstructionIndex() throws Exception {
+    cpu.reset();
+    loadProgram(testsLocation + "jal.s");
+    Memory memory = cpu.getMemory();
+    List<Instruction> instructions = memory.getInstructions();
+
+    for (int i = 0; i < instructions.size(); ++i) {
+      collector.checkThat("Index of " + instructions.get(i).getFullName(), memory.getInstructionIndex(instructions.get(i)), equalTo(i));
+    }
+
+    collector.checkThat("Index of a bubble of the pipeline", memory.getInstructionIndex(Instruction.buildInstruction("BUBBLE")), equalTo(-1));
+    cpu.reset();
+    collector.checkThat("Index after the reset", memory.getInstructionIndex(instructions.get(0)), equalTo(-1));
+  }
+
+  /** Runs a test program, leaving the CPU halted so that its statistics
+   * can be inspected. */
+  private void runUntilHalt(String path) throws Exception {
+    cpu.reset();
+    loadProgram(testsLocation + path);
+
+    try {
+      while (true) {
+        cpu.step();
+      }
+    } catch (HaltException e) {
+      // The program ended.
+    }
+  }
+
+  /* Profiler: every cycle, instruction and stall of the pipeline is charged
+   * to exactly one address. */
+  @Test
+  public void testProfiler() throws Exception {
+    String[] programs = {"forwarding.s", "fpu-waw.s", "test-strlen.s", "jal.s"};
+
+    for (String path : programs) {
+      CpuTestStatus s = runMipsTest(path);
+      collector.checkThat("Profiled cycles of " + path, s.profiledCycles, equalTo(s.cycles));
+      collector.checkThat("Profiled instructions of " + path, s.profiledInstructions, equalTo(s.instructions));
+      collector.checkThat("Profiled RAW stalls of " + path, s.profiledRawStalls, equalTo(s.rawStalls));
+      collector.checkThat("Cycles of the basic blocks of " + path, s.blockCycles, equalTo(s.cycles));
+      collector.checkThat("Cycles of the labels of " + path, s.labelCycles, equalTo(s.cycles));
+    }
+
+    // In test-strlen.s the loop of strlen is the hot spot (labels are
+    // stored in upper case).
+    try {
+      runUntilHalt("test-strlen.s");
+      Profiler profiler = cpu.getProfiler();
+      List<Profiler.Region> labels = profiler.getLabels();
+      collector.checkThat("Hottest label", labels.get(0).getName(), equalTo("_LOOP"));
+      collector.checkThat("Hot spots", profiler.getHotSpots(3).size(), equalTo(3));
+      collector.checkThat("Heat of the hottest instruction", profiler.getCycles(profiler.getHotSpots(1).get(0).getStart()), equalTo(profiler.getMaxCycles()));
+
+      StringWriter csv = new StringWriter();
+      profiler.writeCsv(csv);
+      collector.checkThat("CSV header", csv.toString().startsWith("kind,start,end,name,executions,cycles,raw,"), equalTo(true));
+    } finally {
+      cpu.reset();
+    }
+  }
+
+  /* Instruction mix: in test-strlen.s the loop of strlen is entered 11
+   * times, and its branch is taken 9 times; fpu-waw.s uses the FP adder and
+   * multiplier. */
+  @Test
+  public void testInstructionMix() throws Exception {
+    try {
+      runUntilHalt("test-strlen.s");
+      InstructionMix mix = cpu.getInstructionMix();
+      int total = 0;
+
+      for (InstructionMix.Kind kind : InstructionMix.Kind.values()) {
+        total += mix.getCount(kind);
+      }
+
+      collector.checkThat("Instructions of test-strlen.s", total, equalTo(cpu.getInstructions()));
+      collector.checkThat("LB", mix.getCount(Instruction.InstructionEnumerator.LB), equalTo(11));
+      collector.checkThat("Loads", mix.getCount(InstructionMix.Kind.LOAD), equalTo(17));
+      collector.checkThat("Jumps", mix.getCount(InstructionMix.Kind.JUMP), equalTo(4));
+
+      int loop = cpu.getSymbolTable().getInstructionAddress("_LOOP");
+      int branch = loop + 8;
+      collector.checkThat("Taken branches of the loop", mix.getTaken(branch), equalTo(9));
+      collector.checkThat("Not taken branches of the loop", mix.getNotTaken(branch), equalTo(2));
+      collector.checkThat("Entries in the loop", mix.getBlockCount(loop), equalTo(11));
+
+      runUntilHalt("fpu-waw.s");
+      mix = cpu.getInstructionMix();
+      collector.checkThat("FP multiplier", mix.getCount(InstructionMix.Kind.FP_MULTIPLIER), equalTo(1));
+      collector.checkThat("FP adder", mix.getCount(InstructionMix.Kind.FP_ADDER), equalTo(1));
+
+      // The multiplications leave the CPU after the branches that follow them.
+      runUntilHalt("mix-fp-branch.s");
+      mix = cpu.getInstructionMix();
+      loop = cpu.getSymbolTable().getInstructionAddress("LOOP");
+      collector.checkThat("Taken first branch", mix.getTaken(loop + 4), equalTo(0));
+      collector.checkThat("Not taken first branch", mix.getNotTaken(loop + 4), equalTo(3));
+      collector.checkThat("Taken second branch", mix.getTaken(loop + 12), equalTo(2));
+      collector.checkThat("Not taken second branch", mix.getNotTaken(loop + 12), equalTo(1));
+      collector.checkThat("Taken branches", mix.getCount(InstructionMix.Kind.BRANCH_TAKEN), equalTo(2));
+      collector.checkThat("Not taken branches", mix.getCount(InstructionMix.Kind.BRANCH_NOT_TAKEN), equalTo(4));
+      collector.checkThat("FP multiplications", mix.getCount(InstructionMix.Kind.FP_MULTIPLIER), equalTo(3));
+    } finally {
+      cpu.reset();
+    }
+  }
+
+  /* Metrics: the gauges read the counters of the CPU, and the striped
+   * counters don't lose the increments of concurrent threads. */
+  @Test
+  public void testMetrics() throws Exception {
+    try {
+      runUntilHalt("test-strlen.s");
+      Metrics metrics = Metrics.getInstance();
+      collector.checkThat("Cycles", metrics.get("cycles"), equalTo((long) cpu.getCycles()));
+      collector.checkThat("Instructions", metrics.get("instructions"), equalTo((long) cpu.getInstructions()));
+      collector.checkThat("RAW stalls", metrics.get("raw_stalls"), equalTo((long) cpu.getRAWStalls()));
+      collector.checkThat("Unknown metric", metrics.get("no_such_metric"), equalTo(0L));
+    } finally {
+      cpu.reset();
+    }
+
+    final StripedCounter counter = new StripedCounter();
+    Thread[] threads = new Thread[4];
+
+    for (int i = 0; i < threads.length; ++i) {
+      threads[i] = new Thread(new Runnable() {
+        public void run() {
+          for (int j = 0; j < 10000; ++j) {
+            counter.increment();
+          }
+        }
+      });
+      threads[i].start();
+    }
+
+    for (Thread t : threads) {
+      t.join();
+    }
+
+    collector.checkThat("Striped counter", counter.sum(), equalTo(40000L));
+
+    // The MBean exports the same values, and registering it twice is harmless.
+    Metrics.getInstance().registerMBean();
+    Metrics.getInstance().registerMBean();
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    ObjectName name = new ObjectName(Metrics.OBJECT_NAME);
+    collector.checkThat("MBean registered", server.isRegistered(name), equalTo(true));
+    collector.checkThat("MBean cycles", (Long) server.getAttribute(name, "cycles"), equalTo(Metrics.getInstance().get("cycles")));
+
+    try {
+      server.getAttribute(name, "no_such_metric");
+      collector.addError(new AssertionError("Unknown MBean attribute read"));
+    } catch (AttributeNotFoundException e) {
+      // Expected.
+    }
+  }
+
+  /* Regression corpus: every program must execute exactly as recorded in
+   * the baseline of RegressionHarness, cycle by cycle. The speed is only
+   * checked by the harness itself, against the speeds recorded locally. */
+  @Test
+  public void testRegressionBaseline() throws Exception {
+    try {
+      List<RegressionHarness.Result> results = RegressionHarness.runCorpus(1);
+
+      for (String problem : RegressionHarness.compare(RegressionHarness.readBaseline(RegressionHarness.BASELINE), null, results, 0, null)) {
+        collector.addError(new AssertionError(problem));
+      }
+    } finally {
+      cpu.reset();
+    }
+  }
+
+  /* Batch assembler: the programs assembled in parallel must be the same as
+   * the ones assembled by the parser of the CPU, which must not be touched. */
+  @Test
+  public void testBatchAssembler() throws Exception {
+    List<Assembler.Result> results = new BatchAssembler(new ForkJoinPool(4)).assembleAll(new File(testsLocation));
+    collector.checkThat("Instructions in the memory of the CPU", cpu.getMemory().getInstructions().size(), equalTo(0));
+
+    for (Assembler.Result r : results) {
+      cpu.reset();
+      boolean errors = false;
+
+      try {
+        parser.parse(r.getFilename());
+      } catch (ParserMultiException e) {
+        errors = e.hasErrors();
+      }
+
+      collector.checkThat("Errors in " + r.getFilename(), r.hasErrors(), equalTo(errors));
+
+      if (!errors) {
+        collector.checkThat("Instructions of " + r.getFilename(), r.getImage().getInstructionCount(), equalTo(cpu.getMemory().getInstructions().size()));
+      }
+    }
+
+    collector.checkThat("Assembled files", results.size() > 40, equalTo(true));
+  }
+
+  /* Assembler: the FP exceptions of the .double values are reported in the
+   * diagnostics, as errors if they are enabled and as warnings otherwise,
+   * without touching the FCSR of the CPU. */
+  @Test
+  public void testAssemblerFPExceptions() throws Exception {
+    File source = File.createTempFile("edumips64", ".s");
+    source.deleteOnExit();
+
+    try (PrintWriter out = new PrintWriter(source, "ISO-8859-1")) {
+      out.println(".data");
+      out.println("big: .double 1.0E400");
+      out.println("small: .double 1.0E-400");
+      out.println(".code");
+      out.println("syscall 0");
+    }
+
+    int fcsr = cpu.getFCSRRegister().getValue();
+
+    try {
+      config.putBoolean("OVERFLOW", false);
+      config.putBoolean("UNDERFLOW", false);
+      Assembler.Result r = Assembler.assemble(source.getAbsolutePath());
+      collector.checkThat("Errors of disabled exceptions", r.hasErrors(), equalTo(false));
+      collector.checkThat("Warnings of disabled exceptions", r.getDiagnostics().getNumError(), equalTo(2));
+      collector.checkThat("Overflow warning", r.getDiagnostics().getError(0).getKey(), equalTo("FP_OVERFLOW"));
+      collector.checkThat("Underflow warning", r.getDiagnostics().getError(1).getKey(), equalTo("FP_UNDERFLOW"));
+      collector.checkThat("FCSR after disabled exceptions", cpu.getFCSRRegister().getValue(), equalTo(fcsr));
+
+      config.putBoolean("OVERFLOW", true);
+      config.putBoolean("UNDERFLOW", true);
+      r = Assembler.assemble(source.getAbsolutePath());
+      collector.checkThat("Errors of enabled exceptions", r.hasErrors(), equalTo(true));
+      collector.checkThat("FCSR after enabled exceptions", cpu.getFCSRRegister().getValue(), equalTo(fcsr));
+    } finally {
+      config.putBoolean("OVERFLOW", true);
+      config.putBoolean("UNDERFLOW", true);
+    }
+  }
+
+  /* Sampled simulation: alternating functional and pipelined windows must not
+   * change the results of the program. */
+  @Test
+  public void testSampledSimulation() throws Exception {
+    String[] programs = {"forwarding.s", "fpu-waw.s", "jal.s", "memtest.s", "test-strlen.s"};
+
+    for (String path : programs) {
+      CpuTestStatus pipelined = runMipsTest(path);
+
+      cpu.reset();
+
+      try {
+        loadProgram(testsLocation + path);
+        SampledSimulator sampler = new SampledSimulator(3, 2, 3);
+        sampler.run();
+        String state = cpu.gprString() + cpu.fprString() + cpu.getMemory().toString();
+        collector.checkThat("Sampled state (" + path + ")", state, equalTo(pipelined.state));
+        collector.checkThat("Sampled instructions (" + path + ")", sampler.getTotalInstructions(), equalTo(pipelined.instructions));
+
+        // Short programs may terminate before the first measurement.
+        if (sampler.getSampleCount() > 0) {
+          collector.checkThat("Sampled CPI (" + path + ")", sampler.getMeanPerInstruction(SampledSimulator.CYCLES) >= 1.0, equalTo(true));
+        }
+      } finally {
+        cpu.reset();
+      }
+    }
+  }
+
+  /* The data memory is allocated in pages on first access, and a reset
+   * releases them. */
+  @Test
+  public void testPagedMemory() throws Exception {
+    Memory mem = cpu.getMemory();
+
+    try {
+      config.putInt("data_memory_size", 64 * 1024);
+      cpu.reset();
+      int last = 64 * 1024 * 1024 / 8 - 1;
+      collector.checkThat("Memory size", mem.getMemorySize(), equalTo(last + 1));
+      collector.checkThat("Untouched memory", mem.toString(), equalTo(""));
+
+      mem.getCellByIndex(last).writeDoubleWord(-42);
+      collector.checkThat("Value in the last cell", mem.getCellByAddress(last * 8L).getValue(), equalTo(-42L));
+      collector.checkThat("Cells of the allocated page", mem.toString().split("\n").length, equalTo(Memory.PAGE_SIZE / 8));
+
+      cpu.reset();
+      collector.checkThat("Memory after the reset", mem.toString(), equalTo(""));
+      collector.checkThat("Value after the reset", mem.getCellByIndex(last).getValue(), equalTo(0L));
+
+      // Reading untouched memory, as the data and code views do, doesn't
+      // allocate pages; the first store through a cell read before does.
+      config.putInt("code_memory_size", 64 * 1024);
+      cpu.reset();
+      MemoryElement first = mem.getCellByIndex(0);
+
+      for (int i = 0; i <= last; i += Memory.PAGE_SIZE / 8) {
+        mem.getCellByIndex(i).getHexString();
+      }
+
+      for (int a = 0; a < mem.getCodeSize() * 4; a += Memory.PAGE_SIZE) {
+        collector.checkThat("Empty instruction at " + a, mem.getInstruction(a).isBubble(), equalTo(true));
+      }
+
+      collector.checkThat("Data pages allocated by the reads", mem.getDataPageCount(), equalTo(0));
+      collector.checkThat("Code pages allocated by the reads", mem.getCodePageCount(), equalTo(0));
+
+      first.writeDoubleWord(7);
+      collector.checkThat("Data pages allocated by a store", mem.getDataPageCount(), equalTo(1));
+      collector.checkThat("Value stored through an untouched cell", mem.getCellByIndex(0).getValue(), equalTo(7L));
+
+      boolean outOfBounds = false;
+
+      try {
+        mem.getCellByIndex(last + 1);
+      } catch (MemoryElementNotFoundException e) {
+        outOfBounds = true;
+      }
+
+      collector.checkThat("Access beyond the end of the memory", outOfBounds, equalTo(true));
+
+      // 2 TB don't fit in the addresses: the size is clamped, not overflowed.
+      config.putInt("data_memory_size", Integer.MAX_VALUE);
+      cpu.reset();
+      collector.checkThat("Clamped memory size", mem.getMemorySize(), equalTo(Integer.MAX_VALUE / Memory.PAGE_SIZE * (Memory.PAGE_SIZE / 8)));
+    } finally {
+      config.putInt("data_memory_size", 4);
+      config.putInt("code_memory_size", 4);
+      cpu.reset();
+    }
+  }
+
+  /* A binary file mapped in the data section with copy-on-write can be read
+   * and written, without changing the file. */
+  @Test
+  public void testMappedFile() throws Exception {
+    File file = new File(testsLocation + "mmap.bin");
+    long modified = file.lastModified();
+
+    try {
+      config.putInt("data_memory_size", 12);
+      runMipsTest("mmap.s");
+    } finally {
+      config.putInt("data_memory_size", 4);
+    }
+
+    collector.checkThat("Size of the mapped file", file.length(), equalTo(1025 * 8L));
+    collector.checkThat("Modification time of the mapped file", file.lastModified(), equalTo(modified));
+  }
+
+  /* Stores to a read-only mapped file raise an address error, whichever
+   * the path of the store; .mmap is not allowed in the code section. */
+  @Test
+  public void testReadOnlyMappedFile() throws Exception {
+    String[] programs = {"mmap-ro.s", "mmap-ro-sdc1.s", "mmap-ro-swc1.s"};
+
+    try {
+      config.putInt("data_memory_size", 12);
+
+      for (String path : programs) {
+        boolean raised = false;
+
+        try {
+          runMipsTest(path);
+        } catch (AddressErrorException e) {
+          raised = true;
+        }
+
+        collector.checkThat("Address error in " + path, raised, equalTo(true));
+      }
+
+      boolean raised = false;
+      loadProgram(testsLocation + "mmap-ro.s");
+
+      try {
+        cpu.getMemory().writeBytes(4096, ByteBuffer.wrap(new byte[] {1, 2, 3}), null);
+      } catch (AddressErrorException e) {
+        raised = true;
+      }
+
+      collector.checkThat("Address error of writeBytes()", raised, equalTo(true));
+
+      String key = null;
+
+      try {
+        loadProgram(testsLocation + "mmap-in-code.s");
+      } catch (ParserMultiException e) {
+        key = e.getError(0).getKey();
+      }
+
+      collector.checkThat("Error of .mmap in the code section", key, equalTo("MMAPINCODE"));
+    } finally {
+      config.putInt("data_memory_size", 4);
+      cpu.reset();
+    }
+  }
+
+  /* Files are written from and read to memory in bulk, at any alignment. */
+  @Test
+  public void testBulkFileIO() throws Exception {
+    Memory mem = cpu.getMemory();
+    IOManager iom = IOManager.getInstance();
+    File tmp = File.createTempFile("edumips64", "io");
+    tmp.deleteOnExit();
+    byte[] data = new byte[20];
+
+    for (int i = 0; i < data.length; ++i) {
+      data[i] = (byte)(i * 13 - 100);
+    }
+
+    try {
+      cpu.reset();
+      mem.writeBytes(3, ByteBuffer.wrap(data), null);
+
+      int fd = iom.open(tmp.getAbsolutePath(), IOManager.O_WRONLY | IOManager.O_CREAT);
+      collector.checkThat("Bytes written", iom.write(fd, 3, data.length), equalTo(data.length));
+      iom.close(fd);
+      collector.checkThat("File size", tmp.length(), equalTo((long) data.length));
+
+      fd = iom.open(tmp.getAbsolutePath(), IOManager.O_RDONLY);
+      collector.checkThat("Bytes read", iom.read(fd, 101, data.length), equalTo(data.length));
+      collector.checkThat("Read at the end of the file", iom.read(fd, 101, data.length), equalTo(-1));
+      iom.close(fd);
+
+      byte[] read = new byte[data.length];
+      mem.readBytes(101, ByteBuffer.wrap(read));
+      collector.checkThat("Bytes in memory", Arrays.equals(read, data), equalTo(true));
+      collector.checkThat("Byte read by the CPU", mem.getCellByAddress(104).readByte(0), equalTo((int) data[3]));
+    } finally {
+      cpu.reset();
+    }
+  }
+
+  /* The output ring buffer must deliver the characters in order, draining
+   * itself when it is full. */
+  @Test
+  public void testOutputRingBuffer() throws Exception {
+    StringWriter sink = new StringWriter();
+    OutputRingBuffer out = new OutputRingBuffer(8, sink);
+    StringBuilder expected = new StringBuilder();
+
+    for (int i = 0; i < 10; ++i) {
+      String s = "line " + i + "\n";
+      out.write(s);
+      expected.append(s);
+
+      if (i % 3 == 0) {
+        out.drain();
+      }
+    }
+
+    collector.checkThat("Pending characters", out.pending() <= 8, equalTo(true));
+    out.flush();
+    collector.checkThat("Drained output", sink.toString(), equalTo(expected.toString()));
+    collector.checkThat("Pending characters after the flush", out.pending(), equalTo(0));
+  }
+
+  /* printf() called twice with the same format string. */
+  @Test
+  public void testPrintf() throws Exception {
+    IOManager iom = IOManager.getInstance();
+    Writer stdout = iom.getStdOutput();
+    StringWriter output = new StringWriter();
+
+    try {
+      iom.setStdOutput(output);
+      runMipsTest("printf.s");
+      collector.checkThat("Output of printf", output.toString(), equalTo("value=-1234/56!value=7/56!"));
+    } finally {
+      iom.setStdOutput(stdout);
+    }
+  }
+
   /* Issue #51: Problem with SYSCALL 0 after branch. */
   @Test
   public void testTerminationInID() throws Exception {
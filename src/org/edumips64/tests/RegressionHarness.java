@@ -0,0 +1,483 @@
+/* RegressionHarness.java
+ *
+ * Cycle-accuracy and speed regression checks over the corpus of programs.
+ * (c) 2016 EduMIPS64 project
+ *
+ * This file is part of the EduMIPS64 project, and is released under the GNU
+ * General Public License.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.edumips64.tests;
+
+import org.edumips64.core.*;
+import org.edumips64.core.is.*;
+import org.edumips64.utils.ConfigManager;
+import org.edumips64.utils.ConfigStore;
+
+import java.io.*;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/** Executes every program of the corpus in the pipelined CPU, with and
+ * without forwarding, and compares the statistics of each execution with
+ * the ones saved in a baseline file.
+ *
+ * The statistics are the outcome of the execution, its cycles,
+ * instructions, stalls and branch predictions, and the checksums of the
+ * Dinero trace, of the final registers and memory and of the output. Any
+ * difference is a semantic drift. The speed, in instructions per second of
+ * the fastest of some executions, is compared too: the corpus is slower if
+ * its total speed drops by more than a threshold.
+ *
+ * The speeds depend on the machine, so they are not in the baseline but in
+ * a local file, that is not committed: record it before a change and check
+ * it after the change on the same machine. If there is no such file, only
+ * the statistics are checked.
+ *
+ * Usage, from the root of the source tree:
+ *   RegressionHarness record [-baseline file]
+ *   RegressionHarness record-speed [-speed file] [-runs n]
+ *   RegressionHarness check [-baseline file] [-speed file] [-runs n] [-threshold percent]
+ */
+public class RegressionHarness {
+  /** Directories of the corpus, searched recursively for .s files. */
+  static final String[] CORPUS = {"src/org/edumips64/tests/data", "misc/old_tests", "testcode"};
+
+  public static final String BASELINE = "src/org/edumips64/tests/data/regression-baseline.csv";
+
+  // Speeds recorded on this machine.
+  static final String SPEED = "regression-speed.csv";
+
+  // Programs that don't end by then are stopped, e.g. the files that are
+  // only meant to be included.
+  static final int MAX_CYCLES = 100000;
+
+  // Size of the data memory, in KB, large enough for the mapped files of
+  // the mmap*.s programs.
+  static final int DATA_MEMORY_SIZE = 16;
+
+  // Executions shorter than this are too noisy to compare their speed.
+  static final long MIN_TIMED_NANOS = 5000000L;
+
+  static final String[] STATISTICS = {"cycles", "instructions", "raw_stalls", "waw_stalls",
+                                      "divider_stalls", "func_unit_stalls", "ex_stalls", "memory_stalls",
+                                      "branch_misprediction_stalls", "correct_branch_predictions",
+                                      "trace_crc", "state_crc", "output_crc"
+                                     };
+
+  // The level of a logger is lost if nothing refers to it.
+  private static final Logger logger = Logger.getLogger("org.edumips64");
+
+  /** Statistics and speed of the execution of a program. */
+  static class Result {
+    String program;
+    boolean forwarding;
+    String outcome;
+    long[] statistics = new long[STATISTICS.length];
+    long nanos;
+
+    String getKey() {
+      return program + (forwarding ? " (forwarding)" : " (no forwarding)");
+    }
+
+    long getInstructionsPerSecond() {
+      return (nanos > 0) ? statistics[1] * 1000000000L / nanos : 0;
+    }
+
+    /** Returns the differences between the statistics of two executions,
+     * or an empty string if they are the same. */
+    String diff(Result other) {
+      StringBuilder sb = new StringBuilder();
+
+      if (!outcome.equals(other.outcome)) {
+        sb.append(", outcome ").append(outcome).append(" -> ").append(other.outcome);
+      }
+
+      for (int i = 0; i < STATISTICS.length; ++i) {
+        if (statistics[i] != other.statistics[i]) {
+          sb.append(", ").append(STATISTICS[i]).append(' ').append(statistics[i]).append(" -> ").append(other.statistics[i]);
+        }
+      }
+
+      return (sb.length() > 0) ? sb.substring(2) : "";
+    }
+
+    String toCsv(boolean speed) {
+      StringBuilder sb = new StringBuilder(program).append(',').append(forwarding).append(',').append(outcome);
+
+      for (long value : statistics) {
+        sb.append(',').append(value);
+      }
+
+      if (speed) {
+        sb.append(',').append(nanos).append(',').append(getInstructionsPerSecond());
+      }
+
+      return sb.toString();
+    }
+
+    /** Reads a line written by toCsv, with or without the speed. */
+    static Result fromCsv(String line) {
+      String[] fields = line.split(",");
+
+      if (fields.length != STATISTICS.length + 3 && fields.length != STATISTICS.length + 5) {
+        throw new IllegalArgumentException("Malformed baseline line: " + line);
+      }
+
+      Result r = new Result();
+      r.program = fields[0];
+      r.forwarding = Boolean.parseBoolean(fields[1]);
+      r.outcome = fields[2];
+
+      for (int i = 0; i < STATISTICS.length; ++i) {
+        r.statistics[i] = Long.parseLong(fields[3 + i]);
+      }
+
+      if (fields.length > STATISTICS.length + 3) {
+        r.nanos = Long.parseLong(fields[3 + STATISTICS.length]);
+      }
+
+      return r;
+    }
+  }
+
+  /** Returns the programs of the corpus, sorted, with paths relative to the
+   * root of the source tree. */
+  static List<String> corpus() {
+    List<String> programs = new ArrayList<String>();
+
+    for (String dir : CORPUS) {
+      collect(new File(dir), dir, programs);
+    }
+
+    Collections.sort(programs);
+    return programs;
+  }
+
+  private static void collect(File dir, String path, List<String> programs) {
+    File[] files = dir.listFiles();
+
+    if (files == null) {
+      return;
+    }
+
+    for (File f : files) {
+      if (f.isDirectory()) {
+        collect(f, path + "/" + f.getName(), programs);
+      } else if (f.getName().endsWith(".s")) {
+        programs.add(path + "/" + f.getName());
+      }
+    }
+  }
+
+  /** Executes a program the given number of times. The statistics are the
+   * ones of the last execution, the time is the one of the fastest. */
+  static Result run(String program, boolean forwarding, int runs) throws IOException {
+    Result result = null;
+    long best = Long.MAX_VALUE;
+
+    for (int i = 0; i < runs; ++i) {
+      result = runOnce(program, forwarding);
+      best = Math.min(best, result.nanos);
+    }
+
+    result.nanos = best;
+    return result;
+  }
+
+  /** Executes a program, timing its parsing and execution. */
+  private static Result runOnce(String program, boolean forwarding) throws IOException {
+    CPU cpu = CPU.getInstance();
+    IOManager iom = IOManager.getInstance();
+    ConfigStore config = ConfigManager.getConfig();
+    boolean savedForwarding = Instruction.getEnableForwarding();
+    int savedMemorySize = config.getInt("data_memory_size");
+    StringWriter output = new StringWriter();
+
+    Result r = new Result();
+    r.program = program;
+    r.forwarding = forwarding;
+    r.outcome = "HALT";
+
+    try {
+      Instruction.setEnableForwarding(forwarding);
+      config.putInt("data_memory_size", DATA_MEMORY_SIZE);
+      // The descriptors of the files opened by the program must not depend
+      // on the programs executed before.
+      iom.reset();
+      iom.setStdOutput(output);
+      iom.setStdError(output);
+      iom.setStdInput(new StringReader(""));
+      cpu.reset();
+      cpu.setSimulationMode(CPU.SimulationMode.PIPELINED);
+      long start = System.nanoTime();
+
+      try {
+        try {
+          Parser.getInstance().parse(program);
+        } catch (ParserMultiWarningException e) {
+          // Warnings alone don't prevent the execution of the program.
+          if (e.hasErrors()) {
+            throw e;
+          }
+        }
+
+        cpu.setStatus(CPU.CPUStatus.RUNNING);
+
+        while (cpu.getCycles() < MAX_CYCLES) {
+          cpu.step();
+        }
+
+        r.outcome = "CYCLE_LIMIT";
+      } catch (HaltException e) {
+        // The program ended.
+      } catch (ParserMultiException e) {
+        r.outcome = "PARSE_ERROR";
+      } catch (Exception e) {
+        r.outcome = e.getClass().getSimpleName();
+      }
+
+      r.nanos = System.nanoTime() - start;
+      iom.flush();
+
+      long[] s = r.statistics;
+      s[0] = cpu.getCycles();
+      s[1] = cpu.getInstructions();
+      s[2] = cpu.getRAWStalls();
+      s[3] = cpu.getWAWStalls();
+      s[4] = cpu.getStructuralStallsDivider();
+      s[5] = cpu.getStructuralStallsFuncUnit();
+      s[6] = cpu.getStructuralStallsEX();
+      s[7] = cpu.getMemoryStalls();
+      s[8] = cpu.getBranchMispredictionStalls();
+      s[9] = cpu.getCorrectBranchPredictions();
+
+      StringWriter trace = new StringWriter();
+      Dinero.getInstance().writeTraceData(trace);
+      s[10] = crc(trace.toString());
+      s[11] = crc(cpu.gprString() + cpu.fprString() + cpu.getMemory().toString());
+      s[12] = crc(output.toString());
+    } finally {
+      config.putInt("data_memory_size", savedMemorySize);
+      cpu.reset();
+      Instruction.setEnableForwarding(savedForwarding);
+    }
+
+    return r;
+  }
+
+  private static long crc(String s) throws UnsupportedEncodingException {
+    CRC32 crc = new CRC32();
+    crc.update(s.getBytes("ISO-8859-1"));
+    return crc.getValue();
+  }
+
+  /** Executes every program of the corpus, with and without forwarding.
+   * If the programs are executed more than once, to time them, the whole
+   * corpus is executed once before, to warm up the JIT compiler. */
+  static List<Result> runCorpus(int runs) throws IOException {
+    List<Result> results = new ArrayList<Result>();
+
+    if (runs > 1) {
+      runCorpus(1);
+    }
+
+    for (String program : corpus()) {
+      results.add(run(program, true, runs));
+      results.add(run(program, false, runs));
+    }
+
+    return results;
+  }
+
+  static Map<String, Result> readBaseline(String path) throws IOException {
+    Map<String, Result> baseline = new LinkedHashMap<String, Result>();
+
+    try (BufferedReader in = new BufferedReader(new FileReader(path))) {
+      // The first line is the header.
+      String line = in.readLine();
+
+      while ((line = in.readLine()) != null) {
+        if (!line.isEmpty()) {
+          Result r = Result.fromCsv(line);
+          baseline.put(r.getKey(), r);
+        }
+      }
+    }
+
+    return baseline;
+  }
+
+  /** Writes the results, with their speed or without it. */
+  static void writeBaseline(String path, List<Result> results, boolean speed) throws IOException {
+    try (Writer out = new BufferedWriter(new FileWriter(path))) {
+      StringBuilder header = new StringBuilder("program,forwarding,outcome");
+
+      for (String name : STATISTICS) {
+        header.append(',').append(name);
+      }
+
+      if (speed) {
+        header.append(",nanos,instructions_per_second");
+      }
+
+      out.write(header.append('\n').toString());
+
+      for (Result r : results) {
+        out.write(r.toCsv(speed) + "\n");
+      }
+    }
+  }
+
+  /** Compares the results with the baseline, and their speed with the
+   * recorded one. The speed of a single program is too noisy to fail the
+   * check: its drops are only warnings, while the speed of the whole corpus
+   * is a regression.
+   * @param speeds the results recorded with their speed on this machine, or
+   *        null to ignore the speed
+   * @param threshold the largest drop of speed allowed, as a fraction
+   * @param warnings the list where the drops of speed of single programs
+   *        are added, or null
+   * @return the regressions, one per line
+   */
+  static List<String> compare(Map<String, Result> baseline, Map<String, Result> speeds, List<Result> results, double threshold, List<String> warnings) {
+    List<String> problems = new ArrayList<String>();
+    Set<String> seen = new HashSet<String>();
+    long baseInstructions = 0, baseNanos = 0, instructions = 0, nanos = 0;
+
+    for (Result r : results) {
+      Result base = baseline.get(r.getKey());
+      seen.add(r.getKey());
+
+      if (base == null) {
+        problems.add("NEW " + r.getKey() + ": not in the baseline");
+        continue;
+      }
+
+      String diff = base.diff(r);
+
+      if (!diff.isEmpty()) {
+        problems.add("DRIFT " + r.getKey() + ": " + diff);
+      }
+
+      Result fast = (speeds != null) ? speeds.get(r.getKey()) : null;
+
+      if (fast != null && fast.nanos >= MIN_TIMED_NANOS) {
+        baseInstructions += fast.statistics[1];
+        baseNanos += fast.nanos;
+        instructions += r.statistics[1];
+        nanos += r.nanos;
+
+        if (warnings != null && r.getInstructionsPerSecond() < fast.getInstructionsPerSecond() * (1 - threshold)) {
+          warnings.add("slower " + r.getKey() + ": " + fast.getInstructionsPerSecond() + " -> " + r.getInstructionsPerSecond() + " instructions/s");
+        }
+      }
+    }
+
+    for (String key : baseline.keySet()) {
+      if (!seen.contains(key)) {
+        problems.add("MISSING " + key + ": in the baseline but not in the corpus");
+      }
+    }
+
+    // The total speed is steadier than the speed of each program.
+    if (baseNanos > 0 && nanos > 0) {
+      long baseSpeed = baseInstructions * 1000000000L / baseNanos;
+      long speed = instructions * 1000000000L / nanos;
+
+      if (speed < baseSpeed * (1 - threshold)) {
+        problems.add("SLOWER corpus: " + baseSpeed + " -> " + speed + " instructions/s");
+      }
+    }
+
+    return problems;
+  }
+
+  /** Silences the logs and uses the default configuration, so that the
+   * results don't depend on the preferences of the user. The programs are
+   * always parsed, so that the timings don't include loads of their images. */
+  static void setup() {
+    logger.setLevel(Level.SEVERE);
+    ConfigStore config = ConfigManager.getTmpConfig();
+    config.putBoolean("image_cache", false);
+    ConfigManager.setConfig(config);
+  }
+
+  public static void main(String[] args) throws Exception {
+    String mode = (args.length > 0) ? args[0] : "check";
+    String baselinePath = BASELINE;
+    String speedPath = SPEED;
+    double threshold = 0.1;
+    int runs = 5;
+
+    for (int i = 1; i + 1 < args.length; i += 2) {
+      if (args[i].equals("-baseline")) {
+        baselinePath = args[i + 1];
+      } else if (args[i].equals("-speed")) {
+        speedPath = args[i + 1];
+      } else if (args[i].equals("-threshold")) {
+        threshold = Double.parseDouble(args[i + 1]) / 100;
+      } else if (args[i].equals("-runs")) {
+        runs = Integer.parseInt(args[i + 1]);
+      } else {
+        System.err.println("Unknown option " + args[i]);
+        System.exit(2);
+      }
+    }
+
+    setup();
+    List<Result> results = runCorpus(runs);
+
+    for (Result r : results) {
+      System.out.println(String.format("%-60s %-12s %8d cycles %10d instr/s", r.getKey(), r.outcome, r.statistics[0], r.getInstructionsPerSecond()));
+    }
+
+    if (mode.equals("record")) {
+      writeBaseline(baselinePath, results, false);
+      System.out.println("Baseline written to " + baselinePath);
+    } else if (mode.equals("record-speed")) {
+      writeBaseline(speedPath, results, true);
+      System.out.println("Speeds written to " + speedPath);
+    } else if (mode.equals("check")) {
+      Map<String, Result> speeds = null;
+
+      if (new File(speedPath).isFile()) {
+        speeds = readBaseline(speedPath);
+      } else {
+        System.out.println("No speeds recorded in " + speedPath + ": the speed is not checked.");
+      }
+
+      List<String> warnings = new ArrayList<String>();
+      List<String> problems = compare(readBaseline(baselinePath), speeds, results, threshold, warnings);
+
+      for (String w : warnings) {
+        System.out.println(w);
+      }
+
+      for (String p : problems) {
+        System.out.println(p);
+      }
+
+      System.out.println(problems.isEmpty() ? "No regressions." : problems.size() + " regressions.");
+      System.exit(problems.isEmpty() ? 0 : 1);
+    } else {
+      System.err.println("Usage: RegressionHarness record|record-speed|check [-baseline file] [-speed file] [-runs n] [-threshold percent]");
+      System.exit(2);
+    }
+  }
+}
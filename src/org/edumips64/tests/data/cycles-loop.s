@@ -0,0 +1,30 @@
+; cycles-loop.s - a long run for the temporal diagram of the pipeline
+; Sums an array of 8 doublewords 500 times, with the RAW stalls of the
+; loads and a DIV.D that keeps the following instructions waiting.
+                .data
+values:         .word64     1, 2, 3, 4, 5, 6, 7, 8
+sum:            .word64     0
+one:            .double     1.0
+
+                .code
+    daddi       r4, r0, 500
+    ldc1        f1, one(r0)
+
+outer:
+    daddi       r1, r0, 0
+    daddi       r2, r0, 0
+
+inner:
+    ld          r3, values(r1)
+    dadd        r2, r2, r3
+    daddi       r1, r1, 8
+    slti        r5, r1, 64
+    bnez        r5, inner
+
+    sd          r2, sum(r0)
+    div.d       f2, f1, f1
+    add.d       f3, f2, f1
+    daddi       r4, r4, -1
+    bnez        r4, outer
+
+    syscall     0
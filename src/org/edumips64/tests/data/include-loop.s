@@ -0,0 +1,4 @@
+; Includes a file that includes this one.
+.code
+#include utils/include-loop.s
+halt
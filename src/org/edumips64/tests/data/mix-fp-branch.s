@@ -0,0 +1,14 @@
+; mix-fp-branch.s
+;
+; Loop whose body starts with an FP multiplication, that leaves the CPU after
+; the branches that follow it: the outcomes of the branches must not be
+; derived from the order in which the instructions leave the CPU.
+; The first branch is never taken, the second one is taken twice.
+
+        .code
+        daddi   r1, r0, 3
+loop:   mul.d   f0, f1, f2
+        bnez    r0, loop
+        daddi   r1, r1, -1
+        bnez    r1, loop
+        syscall 0
@@ -0,0 +1,7 @@
+; mmap-in-code.s
+;
+; The .mmap directive is not allowed in the code section.
+
+        .code
+        .mmap   "mmap.bin"
+        syscall 0
@@ -0,0 +1,14 @@
+; mmap-ro-sdc1.s
+;
+; Floating point stores to a read-only mapped file must raise an address
+; error, like the integer ones.
+
+        .data
+table:  .mmap   "mmap.bin", ro
+
+        .code
+        daddi   r1, r0, table
+        daddi   r1, r1, 4096
+        ldc1    f2, 0(r1)
+        sdc1    f2, 0(r1)
+        syscall 0
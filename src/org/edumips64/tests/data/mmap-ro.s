@@ -0,0 +1,13 @@
+; mmap-ro.s
+;
+; Stores to a read-only mapped file must raise an address error.
+
+        .data
+table:  .mmap   "mmap.bin"
+
+        .code
+        daddi   r1, r0, table
+        daddi   r1, r1, 4096
+        ld      r2, 0(r1)
+        sd      r2, 0(r1)
+        syscall 0
@@ -0,0 +1,39 @@
+; mmap.s
+;
+; Maps a binary file in the data section with copy-on-write, and reads and
+; writes it. The file holds 1025 doublewords, the k-th having value k.
+;
+; Errors are handled by calling BREAK, that in the unit tests running code is
+; treated as an error.
+
+        .data
+first:  .word   -1
+table:  .mmap   "mmap.bin", cow
+
+        .code
+        daddi   r1, r0, table
+        ; Element in the first page, shared with the .word.
+        ld      r2, 8(r1)
+        daddi   r10, r0, 1
+        bne     r2, r10, err
+        ; Element in a page backed by the file.
+        daddi   r4, r1, 4096
+        ld      r2, 0(r4)
+        daddi   r10, r0, 512
+        bne     r2, r10, err
+        ; Last element.
+        daddi   r5, r1, 8192
+        ld      r2, 0(r5)
+        daddi   r10, r0, 1024
+        bne     r2, r10, err
+        ; Stores change the memory, not the file.
+        daddi   r3, r0, 42
+        sd      r3, 0(r4)
+        ld      r2, 0(r4)
+        bne     r2, r3, err
+        ld      r2, 8(r4)
+        daddi   r10, r0, 513
+        bne     r2, r10, err
+        syscall 0
+
+err:    break
@@ -0,0 +1,12 @@
+; MOVT.D reads the FCC written by C.LT.D, which waits for the DIV.D.
+.data
+var1: .double 1.5
+var2: .double 4.5
+.text
+ldc1 f1,var1(r0)
+ldc1 f2,var2(r0)
+div.d f3,f1,f2
+c.lt.d 0,f3,f1
+movt.d f4,f2,0
+mul.d f5,f4,f4
+halt
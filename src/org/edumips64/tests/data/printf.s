@@ -0,0 +1,25 @@
+; printf.s
+;
+; Prints a format string with placeholders twice, the second time with
+; different parameters.
+
+        .data
+fmt:    .asciiz "%s=%d/%i!"
+name:   .asciiz "value"
+params: .space  32
+
+        .code
+        daddi   r14, r0, params
+        daddi   r2, r0, fmt
+        sd      r2, 0(r14)
+        daddi   r2, r0, name
+        sd      r2, 8(r14)
+        daddi   r2, r0, -1234
+        sd      r2, 16(r14)
+        daddi   r2, r0, 56
+        sd      r2, 24(r14)
+        syscall 5
+        daddi   r2, r0, 7
+        sd      r2, 16(r14)
+        syscall 5
+        syscall 0
@@ -0,0 +1,10 @@
+; Independent instructions, followed by a dependency inside an issue group.
+.code
+daddi r1, r0, 1
+daddi r2, r0, 2
+daddi r3, r0, 3
+daddi r4, r0, 4
+dadd  r5, r1, r2
+dadd  r6, r5, r3
+dadd  r7, r4, r6
+halt
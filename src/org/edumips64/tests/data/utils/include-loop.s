@@ -0,0 +1,2 @@
+; Included by include-loop.s, that it includes again.
+#include include-loop.s
@@ -27,16 +27,47 @@ package org.edumips64.ui;
 
 import org.edumips64.core.*;
 import org.edumips64.core.is.*;
+import org.edumips64.utils.Metrics;
 import java.util.*;
 
+/**
+* Builds the temporal diagram of the pipeline, one row per fetched instruction.
+*
+* Only the rows of the instructions that are still in the pipeline are
+* CycleElement objects. When a row cannot change anymore, and all the rows
+* before it are finished as well, it is packed into a byte array:
+* - the start time, as a variable-length delta from the start time of the
+*   previous row;
+* - the instruction, as a variable-length index in the table of the
+*   instructions seen so far (all the BUBBLEs share the same entry);
+* - the number of runs of identical states, followed by the runs: the code
+*   of the state (see CycleState), with the highest bit set if the run is
+*   longer than one cycle and its length follows as a variable-length number.
+* A row usually takes less than 10 bytes, so that the diagram of a million
+* cycles fits in a few MB. The CycleElements of the packed rows are rebuilt
+* by getElements() only to render or export them.
+*/
 public class CycleBuilder {
+  private static final int LONG_RUN = 0x80;
+
   private Instruction [] instr;
   private CPU cpu;
   private int curTime, oldTime;
   private int instructionsCount;
 
-  // Data structure that contains the actual time diagram of the pipeline.
-  List<CycleElement> elementsList;
+  // Packed rows, in chronological order.
+  private byte[] rows;
+  private int rowsSize, packedCount, lastPackedStart;
+
+  // Instructions referred by the packed rows.
+  private Instruction[] instructions;
+  private int instructionsSize;
+  private Map<Instruction, Integer> instructionIndexes;
+  private int bubbleIndex;
+
+  // Rows that are not packed yet, in chronological order: the ones that can
+  // still be updated and the finished ones that follow an unfinished one.
+  private LinkedList<CycleElement> activeElements;
 
   // Stalls counters.
   int RAWStalls, WAWStalls, structStallsEX, structStallsDivider, structStallsFuncUnit;
@@ -50,43 +81,221 @@ public class CycleBuilder {
   public CycleBuilder() {
     cpu = CPU.getInstance();
     instr = new Instruction[5];
-    elementsList = Collections.synchronizedList(new LinkedList<CycleElement>());
+    activeElements = new LinkedList<CycleElement>();
+    clear();
     updateStalls();
+    Metrics.getInstance().gauge("cycle_history_bytes", new Metrics.Gauge() {
+      public long getValue() {
+        return getHeapSize();
+      }
+    });
   }
-  public List<CycleElement> getElementsList() {
-    return elementsList;
+
+  private void clear() {
+    rows = new byte[1024];
+    rowsSize = packedCount = lastPackedStart = 0;
+    instructions = new Instruction[64];
+    instructionsSize = 0;
+    instructionIndexes = new IdentityHashMap<Instruction, Integer>();
+    bubbleIndex = -1;
+    activeElements.clear();
+    instructionsCount = 0;
   }
-  public int getInstructionsCount() {
+
+  /** Returns an estimate of the bytes of heap used by the history of the
+   * instructions: the packed rows, the table of their instructions (without
+   * the instructions themselves) and the rows that are not packed yet. */
+  public synchronized long getHeapSize() {
+    // Array headers, and about 40 bytes per entry of the identity map.
+    long size = (16 + rows.length) + (16 + 4L * instructions.length) + 40L * instructionIndexes.size();
+
+    for (CycleElement el : activeElements) {
+      size += el.getHeapSize();
+    }
+
+    return size;
+  }
+
+  /** Returns the rows of the diagram, in chronological order. The rows that
+   * are packed are unpacked one at a time while iterating, into new
+   * CycleElements; the iteration must hold the lock of the builder. */
+  public Iterable<CycleElement> getElements() {
+    return new Iterable<CycleElement>() {
+      public Iterator<CycleElement> iterator() {
+        return new RowIterator();
+      }
+    };
+  }
+
+  public synchronized int getInstructionsCount() {
     return instructionsCount;
   }
 
   // Does a chronological search in the list of CycleElements, finding the
   // next CycleElement belonging to the given instruction serial number that
-  // is not finalized (i.e., past WB) and has not been updated yet.
-  public int getInstructionToUpdate(long serialNumber) {
-    for (int i = 0; i < elementsList.size(); ++i) {
-      CycleElement tmp = elementsList.get(i);
-
+  // is not finalized (i.e., past WB) and has not been updated yet. Only the
+  // elements that were updated in the previous cycle can match, so the search
+  // is limited to the (few) elements still travelling in the pipeline.
+  public CycleElement getInstructionToUpdate(long serialNumber) {
+    for (CycleElement tmp : activeElements) {
       if (tmp.getSerialNumber() == serialNumber && tmp.getUpdateTime() == curTime - 1 && !tmp.isFinalized()) {
-        return i;
+        return tmp;
+      }
+    }
+
+    return null;
+  }
+
+  // Packs the oldest rows that cannot be updated anymore: the finalized ones
+  // and the ones that were not updated in the last cycle (e.g., instructions
+  // discarded because of a jump). A finished row waits for the ones before
+  // it, so that the packed rows stay in chronological order.
+  private void pruneActiveElements() {
+    while (!activeElements.isEmpty()) {
+      CycleElement tmp = activeElements.getFirst();
+
+      if (!tmp.isFinalized() && tmp.getUpdateTime() >= curTime - 1) {
+        break;
       }
+
+      pack(activeElements.removeFirst());
+    }
+  }
+
+  private void pack(CycleElement el) {
+    int runs = el.getRunCount();
+    // Three numbers and, for each run, a code and its length.
+    ensureCapacity(15 + runs * 6);
+    writeNumber(el.getTime() - lastPackedStart);
+    writeNumber(indexOf(el.getInstruction()));
+    writeNumber(runs);
+
+    for (int run = 0; run < runs; ++run) {
+      int code = el.getRunState(run).getCode();
+      int length = el.getRunLength(run);
+
+      if (length == 1) {
+        rows[rowsSize++] = (byte) code;
+      } else {
+        rows[rowsSize++] = (byte) (code | LONG_RUN);
+        writeNumber(length);
+      }
+    }
+
+    lastPackedStart = el.getTime();
+    packedCount++;
+  }
+
+  private int indexOf(Instruction instruction) {
+    if (instruction.isBubble() && bubbleIndex >= 0) {
+      return bubbleIndex;
+    }
+
+    Integer index = instructionIndexes.get(instruction);
+
+    if (index != null) {
+      return index;
+    }
+
+    if (instructionsSize == instructions.length) {
+      instructions = Arrays.copyOf(instructions, instructionsSize * 2);
+    }
+
+    instructions[instructionsSize] = instruction;
+    instructionIndexes.put(instruction, instructionsSize);
+
+    if (instruction.isBubble()) {
+      bubbleIndex = instructionsSize;
     }
 
-    return -1;
+    return instructionsSize++;
   }
 
+  private void ensureCapacity(int bytes) {
+    if (rowsSize + bytes > rows.length) {
+      rows = Arrays.copyOf(rows, Math.max(rowsSize + bytes, rows.length + (rows.length >> 1)));
+    }
+  }
+
+  // Writes a non-negative number in 7-bit groups, the lowest first; the
+  // highest bit of a byte is set if another group follows.
+  private void writeNumber(int value) {
+    while ((value & ~0x7F) != 0) {
+      rows[rowsSize++] = (byte) ((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+
+    rows[rowsSize++] = (byte) value;
+  }
+
+  /** Unpacks the packed rows, then returns the rows not packed yet. */
+  private class RowIterator implements Iterator<CycleElement> {
+    private int position, row, start;
+    private Iterator<CycleElement> active;
+
+    public boolean hasNext() {
+      return row < packedCount || activeIterator().hasNext();
+    }
+
+    public CycleElement next() {
+      if (row == packedCount) {
+        return activeIterator().next();
+      }
+
+      start += readNumber();
+      Instruction instruction = instructions[readNumber()];
+      int runs = readNumber();
+      byte[] states = new byte[runs];
+      int[] lengths = new int[runs];
+
+      for (int run = 0; run < runs; ++run) {
+        int code = rows[position++];
+        states[run] = (byte) (code & ~LONG_RUN);
+        lengths[run] = ((code & LONG_RUN) != 0) ? readNumber() : 1;
+      }
+
+      row++;
+      return new CycleElement(instruction, start, states, lengths);
+    }
+
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+
+    private Iterator<CycleElement> activeIterator() {
+      if (active == null) {
+        active = activeElements.iterator();
+      }
+
+      return active;
+    }
+
+    private int readNumber() {
+      int value = 0;
+
+      for (int shift = 0; ; shift += 7) {
+        int b = rows[position++];
+        value |= (b & 0x7F) << shift;
+
+        if ((b & 0x80) == 0) {
+          return value;
+        }
+      }
+    }
+  }
 
   public int getTime() {
     return curTime;
   }
 
-  public void step() {
+  public synchronized void step() {
     Map<CPU.PipeStatus, Instruction> pipeline = cpu.getPipeline();
     curTime = cpu.getCycles();
 
     if (oldTime != curTime) {
       if (curTime > 0) {
-        int index; //used for searching instructions by serial number into "elementsList"
+        CycleElement el; //used for searching instructions by serial number into "elementsList"
+        pruneActiveElements();
         instr[0] = pipeline.get(CPU.PipeStatus.IF);
         instr[1] = pipeline.get(CPU.PipeStatus.ID);
         instr[2] = pipeline.get(CPU.PipeStatus.EX);
@@ -94,41 +303,41 @@ public class CycleBuilder {
         instr[4] = pipeline.get(CPU.PipeStatus.WB);
 
         // WB
-        if (instr[4] != null && instr[4].getName() != " ") {
-          index = getInstructionToUpdate(instr[4].getSerialNumber());
+        if (instr[4] != null && !instr[4].isBubble()) {
+          el = getInstructionToUpdate(instr[4].getSerialNumber());
 
-          if (index != -1) {
-            elementsList.get(index).addState("WB");
+          if (el != null) {
+            el.addState(CycleState.WB);
           }
         }
 
         // MEM
-        if (instr[3] != null && instr[3].getName() != " ") {
-          index = getInstructionToUpdate(instr[3].getSerialNumber());
+        if (instr[3] != null && !instr[3].isBubble()) {
+          el = getInstructionToUpdate(instr[3].getSerialNumber());
 
-          if (index != -1) {
-            elementsList.get(index).addState("MEM");
+          if (el != null) {
+            el.addState(CycleState.MEM);
           }
         }
 
         // EX
-        if (instr[2] != null && instr[2].getName() != " ") {
-          index = getInstructionToUpdate(instr[2].getSerialNumber());
+        if (instr[2] != null && !instr[2].isBubble()) {
+          el = getInstructionToUpdate(instr[2].getSerialNumber());
           // If a structural stall(memory) occurs, the instruction in EX has to be tagged first with "EX" and then with "StEx"
           boolean exTagged = false;
 
-          if (index != -1) {
-            if (elementsList.get(index).getLastState() == "ID" ||
-                elementsList.get(index).getLastState() == "RAW" ||
-                elementsList.get(index).getLastState() == "WAW" ||
-                elementsList.get(index).getLastState() == "StEx") {
-              elementsList.get(index).addState("EX");
+          if (el != null) {
+            if (el.getLastState() == CycleState.ID ||
+                el.getLastState() == CycleState.RAW ||
+                el.getLastState() == CycleState.WAW ||
+                el.getLastState() == CycleState.STEX) {
+              el.addState(CycleState.EX);
               exTagged = true;
             }
 
             //we check if a structural hazard  occurred if there's a difference between the previous value of memoryStall counter and the current one
             if (memoryStalls != cpu.getMemoryStalls() && !exTagged) {
-              elementsList.get(index).addState("Str");
+              el.addState(CycleState.STR);
             }
           }
 
@@ -149,31 +358,33 @@ public class CycleBuilder {
         boolean inputStallOccurred = (inputStructuralStalls != cpu.getStructuralStallsDivider() + cpu.getStructuralStallsEX() + cpu.getStructuralStallsFuncUnit() + cpu.getRAWStalls() + cpu.getWAWStalls());
 
         // ID
-        if (instr[1] != null && instr[1].getName() != " ") {
-          index = getInstructionToUpdate(instr[1].getSerialNumber());
+        if (instr[1] != null && !instr[1].isBubble()) {
+          el = getInstructionToUpdate(instr[1].getSerialNumber());
 
-          if (!inputStallOccurred) {
-            elementsList.get(index).addState("ID");
-          }
+          if (el != null) {
+            if (!inputStallOccurred) {
+              el.addState(CycleState.ID);
+            }
 
-          if (RAWStallOccurred) {
-            elementsList.get(index).addState("RAW");
-          }
+            if (RAWStallOccurred) {
+              el.addState(CycleState.RAW);
+            }
 
-          if (WAWStallOccurred) {
-            elementsList.get(index).addState("WAW");
-          }
+            if (WAWStallOccurred) {
+              el.addState(CycleState.WAW);
+            }
 
-          if (structStallDividerOccured) {
-            elementsList.get(index).addState("StDiv");
-          }
+            if (structStallDividerOccured) {
+              el.addState(CycleState.STDIV);
+            }
 
-          if (structStallEXOccurred) {
-            elementsList.get(index).addState("StEx");
-          }
+            if (structStallEXOccurred) {
+              el.addState(CycleState.STEX);
+            }
 
-          if (structStallsFuncUnitOccurred) {
-            elementsList.get(index).addState("StFun");
+            if (structStallsFuncUnitOccurred) {
+              el.addState(CycleState.STFUN);
+            }
           }
         }
 
@@ -181,62 +392,62 @@ public class CycleBuilder {
         if (instr[0] != null) {
           if (!inputStallOccurred) {
             // We must instantiate a new CycleElement only if the CPU is running or there was a JumpException and the the IF instruction was changed.
-            elementsList.add(new CycleElement(instr[0], curTime));
+            el = new CycleElement(instr[0], curTime);
+            activeElements.add(el);
             instructionsCount++;
           } else {
-            index = getInstructionToUpdate(instr[0].getSerialNumber());
+            el = getInstructionToUpdate(instr[0].getSerialNumber());
 
-            if (index != -1) {
-              elementsList.get(index).addState(" ");
+            if (el != null) {
+              el.addState(CycleState.EMPTY);
             }
           }
         }
 
         //we have to check instructions in the FP pipeline
         //ADDER -------------------------------------------------
-        String stage;
         Instruction instrSearched;
 
         if (cpu.getInstructionByFuncUnit("ADDER", 1) != null) {
-          index = getInstructionToUpdate(cpu.getInstructionByFuncUnit("ADDER", 1).getSerialNumber());
+          el = getInstructionToUpdate(cpu.getInstructionByFuncUnit("ADDER", 1).getSerialNumber());
 
-          if (index != -1) {
-            elementsList.get(index).addState("A1");
+          if (el != null) {
+            el.addState(CycleState.A1);
           }
         }
 
         if (cpu.getInstructionByFuncUnit("ADDER", 2) != null) {
 
-          index = getInstructionToUpdate(cpu.getInstructionByFuncUnit("ADDER", 2).getSerialNumber());
+          el = getInstructionToUpdate(cpu.getInstructionByFuncUnit("ADDER", 2).getSerialNumber());
 
-          if (index != -1) {
-            elementsList.get(index).addState("A2");
+          if (el != null) {
+            el.addState(CycleState.A2);
           }
         }
 
         if (cpu.getInstructionByFuncUnit("ADDER", 3) != null) {
 
-          index = getInstructionToUpdate(cpu.getInstructionByFuncUnit("ADDER", 3).getSerialNumber());
+          el = getInstructionToUpdate(cpu.getInstructionByFuncUnit("ADDER", 3).getSerialNumber());
 
-          if (index != -1) {
-            elementsList.get(index).addState("A3");
+          if (el != null) {
+            el.addState(CycleState.A3);
           }
         }
 
         if (cpu.getInstructionByFuncUnit("ADDER", 4) != null) {
 
-          index = getInstructionToUpdate(cpu.getInstructionByFuncUnit("ADDER", 4).getSerialNumber());
+          el = getInstructionToUpdate(cpu.getInstructionByFuncUnit("ADDER", 4).getSerialNumber());
           boolean A4tagged = false;
 
-          if (index != -1) {
-            if (elementsList.get(index).getLastState() == "A3") {
-              elementsList.get(index).addState("A4");
+          if (el != null) {
+            if (el.getLastState() == CycleState.A3) {
+              el.addState(CycleState.A4);
               A4tagged = true;
             }
 
             //we have to check if a structural hazard  occurred and it involved the divider or the multiplier (it is sufficient to control if the "A4" o "StAdd" tag was added to the instruction
-            if (!A4tagged && (elementsList.get(index).getLastState() == "A4" || elementsList.get(index).getLastState() == "StAdd")) {
-              elementsList.get(index).addState("StAdd");
+            if (!A4tagged && (el.getLastState() == CycleState.A4 || el.getLastState() == CycleState.STADD)) {
+              el.addState(CycleState.STADD);
             }
           }
 
@@ -245,66 +456,66 @@ public class CycleBuilder {
 
         //MULTIPLIER ----------------------------------------------------------------
         if ((instrSearched = cpu.getInstructionByFuncUnit("MULTIPLIER", 1)) != null) {
-          index = getInstructionToUpdate(instrSearched.getSerialNumber());
+          el = getInstructionToUpdate(instrSearched.getSerialNumber());
 
-          if (index != -1) {
-            elementsList.get(index).addState("M1");
+          if (el != null) {
+            el.addState(CycleState.M1);
           }
         }
 
         if ((instrSearched = cpu.getInstructionByFuncUnit("MULTIPLIER", 2)) != null) {
-          index = getInstructionToUpdate(instrSearched.getSerialNumber());
+          el = getInstructionToUpdate(instrSearched.getSerialNumber());
 
-          if (index != -1) {
-            elementsList.get(index).addState("M2");
+          if (el != null) {
+            el.addState(CycleState.M2);
           }
         }
 
         if ((instrSearched = cpu.getInstructionByFuncUnit("MULTIPLIER", 3)) != null) {
-          index = getInstructionToUpdate(instrSearched.getSerialNumber());
+          el = getInstructionToUpdate(instrSearched.getSerialNumber());
 
-          if (index != -1) {
-            elementsList.get(index).addState("M3");
+          if (el != null) {
+            el.addState(CycleState.M3);
           }
         }
 
         if ((instrSearched = cpu.getInstructionByFuncUnit("MULTIPLIER", 4)) != null) {
-          index = getInstructionToUpdate(instrSearched.getSerialNumber());
+          el = getInstructionToUpdate(instrSearched.getSerialNumber());
 
-          if (index != -1) {
-            elementsList.get(index).addState("M4");
+          if (el != null) {
+            el.addState(CycleState.M4);
           }
         }
 
         if ((instrSearched = cpu.getInstructionByFuncUnit("MULTIPLIER", 5)) != null) {
-          index = getInstructionToUpdate(instrSearched.getSerialNumber());
+          el = getInstructionToUpdate(instrSearched.getSerialNumber());
 
-          if (index != -1) {
-            elementsList.get(index).addState("M5");
+          if (el != null) {
+            el.addState(CycleState.M5);
           }
         }
 
         if ((instrSearched = cpu.getInstructionByFuncUnit("MULTIPLIER", 6)) != null) {
-          index = getInstructionToUpdate(instrSearched.getSerialNumber());
+          el = getInstructionToUpdate(instrSearched.getSerialNumber());
 
-          if (index != -1) {
-            elementsList.get(index).addState("M6");
+          if (el != null) {
+            el.addState(CycleState.M6);
           }
         }
 
         if ((instrSearched = cpu.getInstructionByFuncUnit("MULTIPLIER", 7)) != null) {
-          index = getInstructionToUpdate(instrSearched.getSerialNumber());
+          el = getInstructionToUpdate(instrSearched.getSerialNumber());
           boolean M7tagged = false;
 
-          if (index != -1) {
-            if (elementsList.get(index).getLastState() == "M6") {
-              elementsList.get(index).addState("M7");
+          if (el != null) {
+            if (el.getLastState() == CycleState.M6) {
+              el.addState(CycleState.M7);
               M7tagged = true;
             }
 
             //we check if a structural hazard  occurred and involved the divider
-            if (!M7tagged && (elementsList.get(index).getLastState() == "M7" || elementsList.get(index).getLastState() == "StMul")) {
-              elementsList.get(index).addState("StMul");
+            if (!M7tagged && (el.getLastState() == CycleState.M7 || el.getLastState() == CycleState.STMUL)) {
+              el.addState(CycleState.STMUL);
             }
           }
 
@@ -314,28 +525,25 @@ public class CycleBuilder {
         //DIVIDER ------------------------------------------------------
         if ((instrSearched = cpu.getInstructionByFuncUnit("DIVIDER", 0)) != null) {
           boolean DIVtagged = false;
-          index = getInstructionToUpdate(instrSearched.getSerialNumber());
-          stage = elementsList.get(index).getLastState();
+          el = getInstructionToUpdate(instrSearched.getSerialNumber());
 
-          if (index != -1) {
-            if (stage != "DIV" && !stage.matches("D[0-2][0-9]")) {
-              elementsList.get(index).addState("DIV");
+          if (el != null) {
+            if (!el.getLastState().isDivider()) {
+              el.addState(CycleState.DIV);
               DIVtagged = true;
             }
 
             if (!DIVtagged) {
-              int divCount = cpu.getDividerCounter();
-              String divCountStr = String.valueOf(divCount);  //divCount in the format DXX (XX belongs to [00  24])
-              elementsList.get(index).addState((divCount < 10) ? "D0" + divCountStr : "D" + divCountStr);
+              //divCount in the format DXX (XX belongs to [00  24])
+              el.addState(CycleState.dividerCounter(cpu.getDividerCounter()));
             }
           }
 
           DIVtagged = false;
         }
       } else {
-        elementsList.clear();
+        clear();
         oldTime = 0;
-        instructionsCount = 0;
       }
 
       oldTime = curTime;
@@ -31,14 +31,25 @@ import org.edumips64.core.is.Instruction;
 /**
 * This class represents the single element that is then drawn in the cycles
 * component.
+*
+* The states are stored as run-length encoded byte codes (see CycleState):
+* an instruction stalled for many cycles in the same state only costs one run.
+* CycleBuilder keeps these objects only for the instructions still in the
+* pipeline, and rebuilds the other ones from its packed rows when they are
+* rendered.
 * @author Filippo Mondello
 */
 public class CycleElement {
 
   int startTime;
-  private LinkedList<String> states;
   private Instruction instruction;
 
+  // Run-length encoded history of the states.
+  private byte[] runStates;
+  private int[] runLengths;
+  private int runs;
+  private int length;
+
   private static final Logger logger = Logger.getLogger(CycleElement.class.getName());
 
   /**
@@ -49,8 +60,22 @@ public class CycleElement {
   public CycleElement(Instruction instruction, int startTime) {
     this.startTime = startTime;
     this.instruction = instruction;
-    states = new LinkedList<String>();
-    states.add("IF");
+    runStates = new byte[4];
+    runLengths = new int[4];
+    append(CycleState.IF);
+  }
+
+  /** Rebuilds an element from its runs of states. */
+  CycleElement(Instruction instruction, int startTime, byte[] runStates, int[] runLengths) {
+    this.startTime = startTime;
+    this.instruction = instruction;
+    this.runStates = runStates;
+    this.runLengths = runLengths;
+    runs = runStates.length;
+
+    for (int length : runLengths) {
+      this.length += length;
+    }
   }
 
   /**
@@ -60,38 +85,98 @@ public class CycleElement {
     return instruction.getFullName();
   }
 
+  public Instruction getInstruction() {
+    return instruction;
+  }
+
   public int getUpdateTime() {
-    return startTime + states.size() - 1;
+    return startTime + length - 1;
   }
   public boolean isFinalized() {
     // TODO(lupino): make this check if the instruction has been discarded
     // because of a jump.
-    return states.getLast() == "WB";
+    return getLastState() == CycleState.WB;
   }
 
   /**
   * This method is called for every clock cycle.
   * @param stat the current stage in pipeline of the instruction.
   */
-  public void addState(String newState) {
-    String lastState = states.getLast();
+  public void addState(CycleState newState) {
+    CycleState lastState = getLastState();
 
     if (!validateStateTransition(lastState, newState)) {
       logger.severe("State " + newState + " is not allowed after state " + lastState);
     }
 
-    states.add(newState);
+    append(newState);
+  }
+
+  private void append(CycleState state) {
+    byte code = state.getCode();
+
+    if (runs > 0 && runStates[runs - 1] == code) {
+      runLengths[runs - 1]++;
+    } else {
+      if (runs == runStates.length) {
+        runStates = Arrays.copyOf(runStates, runs * 2);
+        runLengths = Arrays.copyOf(runLengths, runs * 2);
+      }
+
+      runStates[runs] = code;
+      runLengths[runs] = 1;
+      runs++;
+    }
+
+    length++;
   }
 
   /**
-  * @return the whole list of stages in pipeline
+  * @return the whole list of stages in pipeline, one per clock cycle
   */
-  public LinkedList<String> getStates() {
+  public List<CycleState> getStates() {
+    List<CycleState> states = new ArrayList<CycleState>(length);
+
+    for (int i = 0; i < runs; ++i) {
+      CycleState state = CycleState.fromCode(runStates[i]);
+
+      for (int j = 0; j < runLengths[i]; ++j) {
+        states.add(state);
+      }
+    }
+
     return states;
   }
 
-  public String getLastState() {
-    return states.getLast();
+  /** Returns the number of clock cycles spent in the pipeline so far. */
+  public int getLength() {
+    return length;
+  }
+
+  /** Returns an estimate of the bytes of heap used by the element and by
+   * its history, without the instruction. */
+  public long getHeapSize() {
+    // Object headers and fields, and the two arrays with their headers.
+    return 40 + (16 + runStates.length) + (16 + 4L * runLengths.length);
+  }
+
+  /** Returns the number of runs of consecutive identical states. */
+  public int getRunCount() {
+    return runs;
+  }
+
+  /** Returns the state of the given run. */
+  public CycleState getRunState(int run) {
+    return CycleState.fromCode(runStates[run]);
+  }
+
+  /** Returns the number of consecutive cycles spent in the given run. */
+  public int getRunLength(int run) {
+    return runLengths[run];
+  }
+
+  public CycleState getLastState() {
+    return CycleState.fromCode(runStates[runs - 1]);
   }
 
   /**
@@ -113,25 +198,27 @@ public class CycleElement {
   // Map that associates to a given state the set of allowed successor states.
   // The states that are not added in the list are not checked.
   // TODO: complete the map (it does not contain all possible transitions).
-  private static Map<String, Set<String>> allowedTransitions;
+  private static Map<CycleState, Set<CycleState>> allowedTransitions;
   static {
-    allowedTransitions = new HashMap<String, Set<String>>();
-    allowedTransitions.put("IF", new HashSet<String>(Arrays.asList("ID", " ")));
-    allowedTransitions.put("ID", new HashSet<String>(Arrays.asList("ID", "EX", "RAW", "WAW", "DIV", "StDiv", "StEx", "StFun", "A1", "M1")));
-    allowedTransitions.put("RAW", new HashSet<String>(Arrays.asList("RAW", "EX", "M1", "A1")));
-    allowedTransitions.put("WAW", new HashSet<String>(Arrays.asList("WAW", "EX", "M1", "A1")));
-
-    allowedTransitions.put("EX", new HashSet<String>(Arrays.asList("MEM", "Str")));
-    allowedTransitions.put("MEM", new HashSet<String>(Arrays.asList("WB")));
-    allowedTransitions.put("WB", new HashSet<String>(Arrays.asList(" ")));
+    allowedTransitions = new EnumMap<CycleState, Set<CycleState>>(CycleState.class);
+    allowedTransitions.put(CycleState.IF, EnumSet.of(CycleState.ID, CycleState.EMPTY));
+    allowedTransitions.put(CycleState.ID, EnumSet.of(CycleState.ID, CycleState.EX, CycleState.RAW, CycleState.WAW, CycleState.DIV, CycleState.STDIV, CycleState.STEX, CycleState.STFUN, CycleState.A1, CycleState.M1));
+    allowedTransitions.put(CycleState.RAW, EnumSet.of(CycleState.RAW, CycleState.EX, CycleState.M1, CycleState.A1));
+    allowedTransitions.put(CycleState.WAW, EnumSet.of(CycleState.WAW, CycleState.EX, CycleState.M1, CycleState.A1));
+
+    allowedTransitions.put(CycleState.EX, EnumSet.of(CycleState.MEM, CycleState.STR));
+    allowedTransitions.put(CycleState.MEM, EnumSet.of(CycleState.WB));
+    allowedTransitions.put(CycleState.WB, EnumSet.of(CycleState.EMPTY));
   }
 
-  private static boolean validateStateTransition(String curState, String nextState) {
-    if (!allowedTransitions.containsKey(curState)) {
+  private static boolean validateStateTransition(CycleState curState, CycleState nextState) {
+    Set<CycleState> allowed = allowedTransitions.get(curState);
+
+    if (allowed == null) {
       // Don't check states that are not in the map.
       return true;
     }
 
-    return allowedTransitions.get(curState).contains(nextState);
+    return allowed.contains(nextState);
   }
 }
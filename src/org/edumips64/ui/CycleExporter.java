@@ -0,0 +1,181 @@
+/* CycleExporter.java
+ *
+ * Exports the temporal diagram of the pipeline built by CycleBuilder.
+ * (c) 2016 EduMIPS64 project
+ *
+ * This file is part of the EduMIPS64 project, and is released under the GNU
+ * General Public License.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.edumips64.ui;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+* Writes the temporal diagram of the pipeline to a CSV or JSON stream.
+*
+* Both formats keep the run-length encoding used by CycleElement, so that long
+* stalls don't blow up the size of the output:
+*
+* CSV: one row per instruction, with columns serial, instruction, start, end
+* and stages; stages is a space-separated list of STATE or STATE*LENGTH items.
+*
+* JSON: an array of objects with the same fields; stages is an array of
+* [state, length] pairs.
+*/
+public class CycleExporter {
+  public enum Format {CSV, JSON}
+
+  private CycleExporter() {}
+
+  /** Exports the diagram built by the given CycleBuilder. */
+  public static void export(CycleBuilder builder, Format format, Writer out) throws IOException {
+    synchronized (builder) {
+      if (format == Format.CSV) {
+        writeCSV(builder.getElements(), out);
+      } else {
+        writeJSON(builder.getElements(), out);
+      }
+    }
+  }
+
+  public static void writeCSV(Iterable<CycleElement> elements, Writer out) throws IOException {
+    StringBuilder sb = new StringBuilder(128);
+    out.write("serial,instruction,start,end,stages\n");
+
+    for (CycleElement el : elements) {
+      if (!el.shouldRender()) {
+        continue;
+      }
+
+      sb.setLength(0);
+      sb.append(el.getSerialNumber()).append(',');
+      appendCSVField(sb, el.getName());
+      sb.append(',').append(el.getTime()).append(',').append(el.getUpdateTime()).append(',');
+
+      for (int run = 0; run < el.getRunCount(); ++run) {
+        if (run > 0) {
+          sb.append(' ');
+        }
+
+        // The empty state is a blank, which would be lost in a
+        // space-separated list.
+        CycleState st = el.getRunState(run);
+        sb.append(st == CycleState.EMPTY ? "-" : st.getLabel());
+
+        if (el.getRunLength(run) > 1) {
+          sb.append('*').append(el.getRunLength(run));
+        }
+      }
+
+      sb.append('\n');
+      out.write(sb.toString());
+    }
+
+    out.flush();
+  }
+
+  public static void writeJSON(Iterable<CycleElement> elements, Writer out) throws IOException {
+    StringBuilder sb = new StringBuilder(128);
+    boolean first = true;
+    out.write("[");
+
+    for (CycleElement el : elements) {
+      if (!el.shouldRender()) {
+        continue;
+      }
+
+      sb.setLength(0);
+      sb.append(first ? "\n" : ",\n");
+      first = false;
+      sb.append("{\"serial\":").append(el.getSerialNumber());
+      sb.append(",\"instruction\":");
+      appendJSONString(sb, el.getName());
+      sb.append(",\"start\":").append(el.getTime());
+      sb.append(",\"end\":").append(el.getUpdateTime());
+      sb.append(",\"stages\":[");
+
+      for (int run = 0; run < el.getRunCount(); ++run) {
+        if (run > 0) {
+          sb.append(',');
+        }
+
+        sb.append('[');
+        appendJSONString(sb, el.getRunState(run).getLabel());
+        sb.append(',').append(el.getRunLength(run)).append(']');
+      }
+
+      sb.append("]}");
+      out.write(sb.toString());
+    }
+
+    out.write("\n]\n");
+    out.flush();
+  }
+
+  private static void appendCSVField(StringBuilder sb, String field) {
+    if (field.indexOf(',') < 0 && field.indexOf('"') < 0 && field.indexOf('\n') < 0) {
+      sb.append(field);
+      return;
+    }
+
+    sb.append('"');
+
+    for (int i = 0; i < field.length(); ++i) {
+      char c = field.charAt(i);
+
+      if (c == '"') {
+        sb.append('"');
+      }
+
+      sb.append(c);
+    }
+
+    sb.append('"');
+  }
+
+  static void appendJSONString(StringBuilder sb, String s) {
+    sb.append('"');
+
+    for (int i = 0; i < s.length(); ++i) {
+      char c = s.charAt(i);
+
+      switch (c) {
+      case '"':
+        sb.append("\\\"");
+        break;
+      case '\\':
+        sb.append("\\\\");
+        break;
+      case '\n':
+        sb.append("\\n");
+        break;
+      case '\t':
+        sb.append("\\t");
+        break;
+      default:
+        if (c < 0x20) {
+          sb.append(String.format("\\u%04x", (int) c));
+        } else {
+          sb.append(c);
+        }
+      }
+    }
+
+    sb.append('"');
+  }
+}
@@ -0,0 +1,122 @@
+/* CycleState.java
+ *
+ * Compact encoding of the states that an instruction can assume in the
+ * temporal diagram of the pipeline.
+ * (c) 2016 EduMIPS64 project
+ *
+ * This file is part of the EduMIPS64 project, and is released under the GNU
+ * General Public License.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.edumips64.ui;
+
+/**
+* States that a CycleElement can assume in a clock cycle. Every state is
+* identified by a byte-sized code (its ordinal), so that the history of an
+* instruction can be stored in a primitive array instead of a list of strings.
+*/
+public enum CycleState {
+  IF("IF", "IFColor"),
+  ID("ID", "IDColor"),
+  EX("EX", "EXColor"),
+  MEM("MEM", "MEMColor"),
+  WB("WB", "WBColor"),
+  RAW("RAW", "IDColor"),
+  WAW("WAW", "IDColor"),
+  STDIV("StDiv", "IDColor"),
+  STEX("StEx", "IDColor"),
+  STFUN("StFun", "IDColor"),
+  STR("Str", "EXColor"),
+  EMPTY(" ", null),
+  A1("A1", "FPAdderColor"),
+  A2("A2", "FPAdderColor"),
+  A3("A3", "FPAdderColor"),
+  A4("A4", "FPAdderColor"),
+  STADD("StAdd", "FPAdderColor"),
+  M1("M1", "FPMultiplierColor"),
+  M2("M2", "FPMultiplierColor"),
+  M3("M3", "FPMultiplierColor"),
+  M4("M4", "FPMultiplierColor"),
+  M5("M5", "FPMultiplierColor"),
+  M6("M6", "FPMultiplierColor"),
+  M7("M7", "FPMultiplierColor"),
+  STMUL("StMul", "FPMultiplierColor"),
+  DIV("DIV", "FPDividerColor"),
+  D00("D00", "FPDividerColor"), D01("D01", "FPDividerColor"), D02("D02", "FPDividerColor"),
+  D03("D03", "FPDividerColor"), D04("D04", "FPDividerColor"), D05("D05", "FPDividerColor"),
+  D06("D06", "FPDividerColor"), D07("D07", "FPDividerColor"), D08("D08", "FPDividerColor"),
+  D09("D09", "FPDividerColor"), D10("D10", "FPDividerColor"), D11("D11", "FPDividerColor"),
+  D12("D12", "FPDividerColor"), D13("D13", "FPDividerColor"), D14("D14", "FPDividerColor"),
+  D15("D15", "FPDividerColor"), D16("D16", "FPDividerColor"), D17("D17", "FPDividerColor"),
+  D18("D18", "FPDividerColor"), D19("D19", "FPDividerColor"), D20("D20", "FPDividerColor"),
+  D21("D21", "FPDividerColor"), D22("D22", "FPDividerColor"), D23("D23", "FPDividerColor"),
+  D24("D24", "FPDividerColor");
+
+  private static final CycleState[] byCode = values();
+  private static final int MAX_DIVIDER_COUNT = D24.ordinal() - D00.ordinal();
+
+  private final String label;
+  private final String colorKey;
+
+  CycleState(String label, String colorKey) {
+    this.label = label;
+    this.colorKey = colorKey;
+  }
+
+  /** Returns the byte code of this state, i.e. its ordinal. */
+  public byte getCode() {
+    return (byte) ordinal();
+  }
+
+  /** Returns the state associated to the given byte code. */
+  public static CycleState fromCode(byte code) {
+    return byCode[code];
+  }
+
+  /** Returns the total number of states. */
+  public static int count() {
+    return byCode.length;
+  }
+
+  /** Returns the text that is drawn in the cycles component for this state. */
+  public String getLabel() {
+    return label;
+  }
+
+  /** Returns the configuration key of the color of this state, or null if the
+   * state has no fixed color. */
+  public String getColorKey() {
+    return colorKey;
+  }
+
+  /** Returns true if the state belongs to the FP divider (DIV or DXX). */
+  public boolean isDivider() {
+    return this == DIV || (ordinal() >= D00.ordinal() && ordinal() <= D24.ordinal());
+  }
+
+  /** Returns the DXX state for the given value of the divider counter. */
+  public static CycleState dividerCounter(int count) {
+    if (count < 0 || count > MAX_DIVIDER_COUNT) {
+      return DIV;
+    }
+
+    return byCode[D00.ordinal() + count];
+  }
+
+  public String toString() {
+    return label;
+  }
+}
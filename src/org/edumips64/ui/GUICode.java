@@ -34,12 +34,35 @@ import javax.swing.table.*;
 */
 public class GUICode extends GUIComponent {
   CodePanel codePanel;
-  String memoryAddress[] = new String[CPU.CODELIMIT];
-  private static int ifIndex, idIndex, exIndex, memIndex, wbIndex, A1Index, A2Index, A3Index, A4Index, M1Index, M2Index, M3Index, M4Index, M5Index, M6Index, M7Index, DIVIndex;
+
+  // Stages whose instructions are highlighted, with their colors. A row in
+  // more stages gets the color of the last one.
+  private static final int IF = 0, STAGES = 17;
+  private static final String[] stageColors = {"IFColor", "IDColor", "EXColor", "MEMColor", "WBColor",
+                                               "FPMultiplierColor", "FPMultiplierColor", "FPMultiplierColor", "FPMultiplierColor",
+                                               "FPMultiplierColor", "FPMultiplierColor", "FPMultiplierColor",
+                                               "FPAdderColor", "FPAdderColor", "FPAdderColor", "FPAdderColor", "FPDividerColor"
+                                              };
+
+  // Row of the instruction in each stage, or -1, and the rows highlighted
+  // by the last drawing.
+  private int[] stageRows = new int[STAGES];
+  private int[] drawnRows = new int[STAGES];
+  private int drawnCycles = -1;
+  // Cycles that the heat of all the rows is relative to. It is raised ahead
+  // of the hottest instruction, so that the whole view is repainted only
+  // when that one outgrows it.
+  private int heatScale = 1;
 
   public GUICode() {
     super();
     codePanel = new CodePanel();
+    Arrays.fill(stageRows, -1);
+    Arrays.fill(drawnRows, -1);
+
+    // All the columns hold strings. The default renderer is kept when the
+    // columns are rebuilt by updateLanguageStrings().
+    codePanel.theTable.setDefaultRenderer(String.class, new MyTableCellRenderer());
   }
 
   public void setContainer(Container co) {
@@ -52,54 +75,62 @@ public class GUICode extends GUIComponent {
   }
 
   public void update() {
-    //codePanel.scrollTable.getViewport().setViewPosition(new Point(0,position+15));
-
-    TableColumn column0 = codePanel.theTable.getColumnModel().getColumn(0);
-    column0.setCellRenderer(new MyTableCellRenderer());
-
-    TableColumn column1 = codePanel.theTable.getColumnModel().getColumn(1);
-    column1.setCellRenderer(new MyTableCellRenderer());
-
-    TableColumn column2 = codePanel.theTable.getColumnModel().getColumn(2);
-    column2.setCellRenderer(new MyTableCellRenderer());
-
-    TableColumn column3 = codePanel.theTable.getColumnModel().getColumn(3);
-    column3.setCellRenderer(new MyTableCellRenderer());
-
-    TableColumn column4 = codePanel.theTable.getColumnModel().getColumn(4);
-    column4.setCellRenderer(new MyTableCellRenderer());
+    Memory memory = cpu.getMemory();
+    Map<CPU.PipeStatus, Instruction> pipeline = cpu.getPipeline();
+    Instruction ifInstruction = pipeline.get(CPU.PipeStatus.IF);
+
+    // The row of an instruction is found from its address.
+    stageRows[IF] = (ifInstruction != null && ifInstruction.isBubble()) ? -1 : memory.getInstructionIndex(ifInstruction);
+    stageRows[1] = memory.getInstructionIndex(pipeline.get(CPU.PipeStatus.ID));
+    stageRows[2] = memory.getInstructionIndex(pipeline.get(CPU.PipeStatus.EX));
+    stageRows[3] = memory.getInstructionIndex(pipeline.get(CPU.PipeStatus.MEM));
+    stageRows[4] = memory.getInstructionIndex(pipeline.get(CPU.PipeStatus.WB));
+
+    for (int i = 1; i <= 7; ++i) {
+      stageRows[4 + i] = memory.getInstructionIndex(cpu.getInstructionByFuncUnit("MULTIPLIER", i));
+    }
 
-    Instruction ifInstruction = cpu.getPipeline().get(CPU.PipeStatus.IF);
-    ifIndex = cpu.getMemory().getInstructionIndex(ifInstruction);
-    if ((ifInstruction != null) && ifInstruction.isBubble()) {
-      ifIndex = -1;
+    for (int i = 1; i <= 4; ++i) {
+      stageRows[11 + i] = memory.getInstructionIndex(cpu.getInstructionByFuncUnit("ADDER", i));
     }
-    idIndex = cpu.getMemory().getInstructionIndex(cpu.getPipeline().get(CPU.PipeStatus.ID));
-    exIndex = cpu.getMemory().getInstructionIndex(cpu.getPipeline().get(CPU.PipeStatus.EX));
-    memIndex = cpu.getMemory().getInstructionIndex(cpu.getPipeline().get(CPU.PipeStatus.MEM));
-    wbIndex = cpu.getMemory().getInstructionIndex(cpu.getPipeline().get(CPU.PipeStatus.WB));
-
-    A1Index = cpu.getMemory().getInstructionIndex(cpu.getInstructionByFuncUnit("ADDER", 1));
-    A2Index = cpu.getMemory().getInstructionIndex(cpu.getInstructionByFuncUnit("ADDER", 2));
-    A3Index = cpu.getMemory().getInstructionIndex(cpu.getInstructionByFuncUnit("ADDER", 3));
-    A4Index = cpu.getMemory().getInstructionIndex(cpu.getInstructionByFuncUnit("ADDER", 4));
-    M1Index = cpu.getMemory().getInstructionIndex(cpu.getInstructionByFuncUnit("MULTIPLIER", 1));
-    M2Index = cpu.getMemory().getInstructionIndex(cpu.getInstructionByFuncUnit("MULTIPLIER", 2));
-    M3Index = cpu.getMemory().getInstructionIndex(cpu.getInstructionByFuncUnit("MULTIPLIER", 3));
-    M4Index = cpu.getMemory().getInstructionIndex(cpu.getInstructionByFuncUnit("MULTIPLIER", 4));
-    M5Index = cpu.getMemory().getInstructionIndex(cpu.getInstructionByFuncUnit("MULTIPLIER", 5));
-    M6Index = cpu.getMemory().getInstructionIndex(cpu.getInstructionByFuncUnit("MULTIPLIER", 6));
-    M7Index = cpu.getMemory().getInstructionIndex(cpu.getInstructionByFuncUnit("MULTIPLIER", 7));
-    DIVIndex = cpu.getMemory().getInstructionIndex(cpu.getInstructionByFuncUnit("DIVIDER", 0));
 
+    stageRows[16] = memory.getInstructionIndex(cpu.getInstructionByFuncUnit("DIVIDER", 0));
   }
 
   public void draw() {
-    cont.repaint();
+    int cycles = cpu.getCycles();
+    int maxCycles = cpu.getProfiler().getMaxCycles();
+
+    // When the simulation moves forward only the rows of the instructions
+    // in the pipeline, now and at the last drawing, are repainted: their
+    // highlighting changed, or they were charged the cycles of the profiler.
+    // The heat of every row is relative to the same scale, so the whole
+    // view is repainted when the scale changes, as well as for a new
+    // program, a reset or new colors.
+    if (cycles > drawnCycles && maxCycles <= heatScale) {
+      for (int i = 0; i < STAGES; ++i) {
+        repaintRow(drawnRows[i]);
+        repaintRow(stageRows[i]);
+      }
+    } else {
+      heatScale = Math.max(maxCycles + maxCycles / 8, 1);
+      cont.repaint();
+    }
+
+    System.arraycopy(stageRows, 0, drawnRows, 0, STAGES);
+    drawnCycles = cycles;
 
     // I can get the table because it has package visibility.
     // This row makes the IF row always visible.
-    codePanel.theTable.scrollRectToVisible(codePanel.theTable.getCellRect(ifIndex, 0, true));
+    codePanel.theTable.scrollRectToVisible(codePanel.theTable.getCellRect(stageRows[IF], 0, true));
+  }
+
+  private void repaintRow(int row) {
+    if (row >= 0) {
+      JTable table = codePanel.theTable;
+      Rectangle r = table.getCellRect(row, 0, true);
+      table.repaint(0, r.y, table.getWidth(), r.height);
+    }
   }
 
   class CodePanel extends JPanel {
@@ -112,7 +143,7 @@ public class GUICode extends GUIComponent {
 
       setLayout(new BorderLayout());
       setBackground(Color.WHITE);
-      tableModel = new MyTableModel(memoryAddress);
+      tableModel = new MyTableModel();
       theTable = new JTable(tableModel);
       theTable.setCellSelectionEnabled(false);
       theTable.setFocusable(false);
@@ -132,18 +163,13 @@ public class GUICode extends GUIComponent {
     class MyTableModel extends AbstractTableModel {
       private String[] columnLocaleStrings = {"ADDRESS", "HEXREPR", "LABEL", "INSTRUCTION", "COMMENT"};
       private Class[] columnClasses = {String.class, String.class, String.class, String.class, String.class};
-      private String memoryAddress[];
-
-      public MyTableModel(String[] memoryAddress) {
-        this.memoryAddress = memoryAddress;
-      }
 
       public int getColumnCount() {
         return columnLocaleStrings.length;
       }
 
       public int getRowCount() {
-        return memoryAddress.length;
+        return cpu.getMemory().getCodeSize();
       }
 
       public String getColumnName(int col) {
@@ -222,6 +248,17 @@ public class GUICode extends GUIComponent {
         } catch (IrregularStringOfBitsException e) {
           e.printStackTrace();
         }
+
+        // Heat: the more cycles the profiler charged to the instruction,
+        // the redder its address.
+        Profiler profiler = cpu.getProfiler();
+        int heat = profiler.getCycles(rowTable * 4);
+
+        if (heat > 0) {
+          int shade = 255 - (int)(191L * Math.min(heat, heatScale) / heatScale);
+          label.setOpaque(true);
+          label.setBackground(new Color(255, shade, shade));
+        }
       }
 
       if (column == 1) {
@@ -250,44 +287,11 @@ public class GUICode extends GUIComponent {
         label.setFont(f);
       }
 
-      if (rowTable == ifIndex) {
-        label.setOpaque(true);
-        label.setBackground(config.getColor("IFColor"));
-      }
-
-      if (rowTable == idIndex) {
-        label.setOpaque(true);
-        label.setBackground(config.getColor("IDColor"));
-      }
-
-      if (rowTable == exIndex) {
-        label.setOpaque(true);
-        label.setBackground(config.getColor("EXColor"));
-      }
-
-      if (rowTable == memIndex) {
-        label.setOpaque(true);
-        label.setBackground(config.getColor("MEMColor"));
-      }
-
-      if (rowTable == wbIndex) {
-        label.setOpaque(true);
-        label.setBackground(config.getColor("WBColor"));
-      }
-
-      if (rowTable == M1Index || rowTable == M2Index || rowTable == M3Index || rowTable == M4Index || rowTable == M5Index || rowTable == M6Index || rowTable == M7Index) {
-        label.setOpaque(true);
-        label.setBackground(config.getColor("FPMultiplierColor"));
-      }
-
-      if (rowTable == A1Index || rowTable == A2Index || rowTable == A3Index || rowTable == A4Index) {
-        label.setOpaque(true);
-        label.setBackground(config.getColor("FPAdderColor"));
-      }
-
-      if (rowTable == DIVIndex) {
-        label.setOpaque(true);
-        label.setBackground(config.getColor("FPDividerColor"));
+      for (int i = 0; i < STAGES; ++i) {
+        if (rowTable == stageRows[i]) {
+          label.setOpaque(true);
+          label.setBackground(config.getColor(stageColors[i]));
+        }
       }
 
       return label;
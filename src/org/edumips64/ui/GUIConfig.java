@@ -110,10 +110,24 @@ public class GUIConfig extends JDialog {
     int row = 2;
 
     addRow(panel, row++, "forwarding", new JCheckBox());
+    addRow(panel, row++, "forwarding_ex_ex", new JCheckBox());
+    addRow(panel, row++, "forwarding_mem_ex", new JCheckBox());
+    addRow(panel, row++, "forwarding_mem_mem", new JCheckBox());
     addRow(panel, row++, "n_step", new JNumberField());
     addRow(panel, row++, "branch_prediction", new JCheckBox());
     addRow(panel, row++, "number_of_entries", new JNumberField());
     addRow(panel, row++, "bits_per_entry", new JNumberField());
+    addRow(panel, row++, "functional_mode", new JCheckBox());
+    addRow(panel, row++, "functional_switch_pc", new JNumberField());
+    addRow(panel, row++, "functional_switch_count", new JNumberField());
+    addRow(panel, row++, "out_of_order", new JCheckBox());
+    addRow(panel, row++, "ooo_rob_entries", new JNumberField());
+    addRow(panel, row++, "ooo_rs_entries", new JNumberField());
+    addRow(panel, row++, "superscalar", new JCheckBox());
+    addRow(panel, row++, "issue_width", new JNumberField());
+    addRow(panel, row++, "data_memory_size", new JNumberField());
+    addRow(panel, row++, "code_memory_size", new JNumberField());
+    addRow(panel, row++, "direct_io", new JCheckBox());
 
     // fill remaining vertical space
     grid_add(panel, new JPanel(), gbl, gbc, 0, 1, 0, row, GridBagConstraints.REMAINDER, 1);
@@ -137,6 +151,7 @@ public class GUIConfig extends JDialog {
     addRow(panel, row++, "warnings", new JCheckBox());
     addRow(panel, row++, "verbose", new JCheckBox());
     addRow(panel, row++, "sleep_interval", new JNumberField());
+    addRow(panel, row++, "metrics_interval", new JNumberField());
     addRow(panel, row++, "syncexc-masked", new JCheckBox());
     addRow(panel, row++, "syncexc-terminate", new JCheckBox());
 
@@ -394,21 +409,14 @@ public class GUIConfig extends JDialog {
           // Might be needed if show_alias is changed.
           org.edumips64.Main.getGUIFrontend().updateComponents();
 
-          if (Instruction.getEnableForwarding() != config.getBoolean("forwarding")) {
-            CPU cpu = CPU.getInstance();
-            Instruction.setEnableForwarding(config.getBoolean("forwarding"));
-
-            // Let's verify that we have to reset the CPU
-            if (cpu.getStatus() == CPU.CPUStatus.RUNNING) {
-              logger.info("Reset");
-              org.edumips64.Main.resetSimulator(true);
-            }
-          } else { 
-             CPU cpu = CPU.getInstance();
-             if (cpu.getStatus() == CPU.CPUStatus.RUNNING) {
-              logger.info("Reset");
-              org.edumips64.Main.resetSimulator(true);
-            }
+          // Also applies the changes of the single forwarding paths.
+          Instruction.setEnableForwarding(config.getBoolean("forwarding"));
+          CPU cpu = CPU.getInstance();
+
+          // Let's verify that we have to reset the CPU
+          if (cpu.getStatus() == CPU.CPUStatus.RUNNING) {
+            logger.info("Reset");
+            org.edumips64.Main.resetSimulator(true);
           }
 
           org.edumips64.Main.updateCGT();
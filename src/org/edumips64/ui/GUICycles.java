@@ -73,6 +73,11 @@ public class GUICycles extends GUIComponent {
 
   }
 
+  /** Returns the builder of the temporal diagram shown by this component. */
+  public CycleBuilder getBuilder() {
+    return builder;
+  }
+
   public void setContainer(Container co) {
     super.setContainer(co);
     cont.add(splitPane);
@@ -121,65 +126,56 @@ public class GUICycles extends GUIComponent {
 
     public synchronized void fill(Graphics g) {
       int row = 0;
+      // The colors are looked up once per repaint, not once per cell.
+      Color[] colors = new Color[CycleState.count()];
 
-      for (CycleElement el: builder.getElementsList()) {
-        // TODO: verify rendering for other cases.
-        if (!el.shouldRender()) {
-          continue;
+      for (CycleState st : CycleState.values()) {
+        if (st.getColorKey() != null) {
+          colors[st.ordinal()] = config.getColor(st.getColorKey());
         }
-        int column = 0;
-        String pre = "IF";
-        int elementTime = el.getTime();
-
-        for (String st: el.getStates()) {
-          Color color = getColorByState(st, pre);
-          if (color != null) {
-            g.setColor(color);
+      }
+
+      synchronized (builder) {
+        for (CycleElement el: builder.getElements()) {
+          // TODO: verify rendering for other cases.
+          if (!el.shouldRender()) {
+            continue;
           }
-          g.fillRect(10 + (elementTime + column - 1) * 30, 9 + row * 15, 30, 13);
-          g.setColor(Color.black);
-          g.drawRect(10 + (elementTime + column - 1) * 30, 9 + row * 15, 30, 13);
-          g.drawString(st, 15 + (elementTime + column - 1) * 30, 20 + row * 15);
-          column++;
-
-          if ((!st.equals(" ")) && (!st.equals("RAW"))) {
-            pre = st;
+          int column = 0;
+          CycleState pre = CycleState.IF;
+          int elementTime = el.getTime();
+
+          for (int run = 0; run < el.getRunCount(); ++run) {
+            CycleState st = el.getRunState(run);
+            Color color = getColorByState(colors, st, pre);
+
+            for (int i = 0; i < el.getRunLength(run); ++i) {
+              if (color != null) {
+                g.setColor(color);
+              }
+              g.fillRect(10 + (elementTime + column - 1) * 30, 9 + row * 15, 30, 13);
+              g.setColor(Color.black);
+              g.drawRect(10 + (elementTime + column - 1) * 30, 9 + row * 15, 30, 13);
+              g.drawString(st.getLabel(), 15 + (elementTime + column - 1) * 30, 20 + row * 15);
+              column++;
+            }
+
+            if (st != CycleState.EMPTY && st != CycleState.RAW) {
+              pre = st;
+            }
           }
-        }
 
-        row++;
+          row++;
+        }
       }
     }
 
-    private Color getColorByState(String st, String pre) {
-      if (st.equals("IF")) {
-        return config.getColor("IFColor");
-      } else if (st.equals("ID")) {
-        return config.getColor("IDColor");
-      } else if (st.equals("EX")) {
-        return config.getColor("EXColor");
-      } else if (st.equals("MEM")) {
-        return config.getColor("MEMColor");
-      } else if (st.equals("WB")) {
-        return config.getColor("WBColor");
-      } else if (st.equals("Str")) {
-        return config.getColor("EXColor");
-      } else if (st.equals("A1") || st.equals("A2") || st.equals("A3") || st.equals("A4") || st.equals("StAdd")) {
-        return config.getColor("FPAdderColor");
-      } else if (st.equals("M1") || st.equals("M2") || st.equals("M3") || st.equals("M4") || st.equals("M5") || st.equals("M6") || st.equals("M7") || st.equals("StMul")) {
-        return config.getColor("FPMultiplierColor");
-      } else if (st.matches("D[0-2][0-9]") || st.matches("DIV")) {
-        return config.getColor("FPDividerColor");
-      } else if (st.equals("RAW")) {
-        return config.getColor("IDColor");
-      } else if (st.equals("WAW") || st.equals("StDiv") || st.equals("StEx") || st.equals("StFun")) {
-        return config.getColor("IDColor");
-      } else if (st.equals(" ")) {
-        if (pre.equals("IF")) {
-          return config.getColor("IFColor");
-        }
+    private Color getColorByState(Color[] colors, CycleState st, CycleState pre) {
+      if (st == CycleState.EMPTY) {
+        return (pre == CycleState.IF) ? colors[CycleState.IF.ordinal()] : null;
       }
-      return null;
+
+      return colors[st.ordinal()];
     }
   }
 
@@ -193,9 +189,11 @@ public class GUICycles extends GUIComponent {
       g.setFont(f1);
       int i = 0;
 
-      for (CycleElement el: builder.getElementsList()) {
-        g.drawString(el.getName(), 5, 20 + i * 15);
-        i++;
+      synchronized (builder) {
+        for (CycleElement el: builder.getElements()) {
+          g.drawString(el.getName(), 5, 20 + i * 15);
+          i++;
+        }
       }
     }
   }
@@ -23,6 +23,7 @@
 package org.edumips64.ui;
 
 import org.edumips64.core.*;
+import org.edumips64.core.is.AddressErrorException;
 import org.edumips64.utils.*;
 
 import java.awt.*;
@@ -40,7 +41,6 @@ public class GUIData extends GUIComponent {
   DataPanel dataPanel;
   Memory memory;
   MemoryElement memoryElement;
-  String memoryAddress[] = new String[CPU.DATALIMIT];
   JTextArea text;
   int row;
 
@@ -79,7 +79,7 @@ public class GUIData extends GUIComponent {
       super();
       setBackground(Color.WHITE);
       setLayout(new BorderLayout());
-      tableModel = new FileTableModel(memoryAddress);
+      tableModel = new FileTableModel();
       theTable = new JTable(tableModel);
       theTable.setCellSelectionEnabled(false);
       theTable.getColumnModel().getColumn(0).setPreferredWidth(60);
@@ -175,18 +175,13 @@ public class GUIData extends GUIComponent {
     class FileTableModel extends AbstractTableModel {
       private String[] columnLocaleStrings = {"ADDRESS", "HEXREPR", "LABEL", "DATA", "COMMENT"};
       private Class[] columnClasses = {String.class, String.class, String.class, String.class, String.class};
-      private String memoryAddress[];
-
-      public FileTableModel(String[] memoryAddress) {
-        this.memoryAddress = memoryAddress;
-      }
 
       public int getColumnCount() {
         return columnLocaleStrings.length;
       }
 
       public int getRowCount() {
-        return memoryAddress.length;
+        return cpu.getMemory().getMemorySize();
       }
 
       public String getColumnName(int col) {
@@ -233,7 +228,6 @@ public class GUIData extends GUIComponent {
     class InsertValueDialog extends JDialog implements ActionListener {
       JButton OK;
       int rowCurrent;
-      String valueCurrent[] = new String[CPU.DATALIMIT];
 
       public InsertValueDialog() {
         super();
@@ -314,8 +308,10 @@ public class GUIData extends GUIComponent {
               String hexAddress = (String) tableModel.getValueAt(row, 0);
               String binAddress = Converter.hexToBin(hexAddress);
               int address = Converter.binToInt(binAddress, true);
-              memoryElement = memory.getCellByAddress(address);
+              memoryElement = memory.getCellForStore(address, null);
               memoryElement.setBits(Converter.hexToBin(banana), 0);
+            } catch (AddressErrorException e) {
+              JOptionPane.showMessageDialog(this, e.getMessage(), "EduMIPS64 - " + CurrentLocale.getString("ERROR"), JOptionPane.ERROR_MESSAGE);
             } catch (Exception e) {
               e.printStackTrace();
             }
@@ -326,8 +322,10 @@ public class GUIData extends GUIComponent {
               String hexAddress = (String) tableModel.getValueAt(row, 0);
               String binAddress = Converter.hexToBin(hexAddress);
               int address = Converter.binToInt(binAddress, true);
-              memoryElement = memory.getCellByAddress(address);
+              memoryElement = memory.getCellForStore(address, null);
               memoryElement.setBits(Converter.hexToBin(banana), 0);
+            } catch (AddressErrorException e) {
+              JOptionPane.showMessageDialog(this, e.getMessage(), "EduMIPS64 - " + CurrentLocale.getString("ERROR"), JOptionPane.ERROR_MESSAGE);
             } catch (Exception e) {
               e.printStackTrace();
             }
@@ -43,13 +43,14 @@ public class GUIFrontend {
   GUIPipeline pipe;
   GUIData data;
   GUICode code;
+  GUIProfiler profiler;
 
-  // Array containing the six components, useful to write more compact code
+  // Array containing the seven components, useful to write more compact code
   GUIComponent components[];
 
   private static final Logger logger = Logger.getLogger(GUIFrontend.class.getName());
 
-  /**Creates the six internal component
+  /**Creates the seven internal component
   */
   public GUIFrontend() {
     cycles = new GUICycles();
@@ -58,19 +59,32 @@ public class GUIFrontend {
     pipe = new GUIPipeline();
     data = new GUIData();
     code = new GUICode();
+    profiler = new GUIProfiler();
 
-    components = new GUIComponent[6];
+    components = new GUIComponent[7];
     components[0] = cycles;
     components[1] = regs;
     components[2] = stats;
     components[3] = pipe;
     components[4] = data;
     components[5] = code;
+    components[6] = profiler;
+
+    Metrics.getInstance().gauge("gui_frame_update_avg_micros", new Metrics.Gauge() {
+      public long getValue() {
+        return frameNanos.sum() / 1000 / Math.max(frames.sum(), 1);
+      }
+    });
   }
 
   /**Set the container for the Cycles component.
   * @param con the container sent by the main program.
   */
+  /** Returns the builder of the temporal diagram of the pipeline. */
+  public CycleBuilder getCycleBuilder() {
+    return cycles.getBuilder();
+  }
+
   public void setCyclesContainer(Container con) {
     cycles.setContainer(con);
   }
@@ -110,18 +124,23 @@ public class GUIFrontend {
     code.setContainer(con);
   }
 
+  /**Set the container for the Profiler component.
+  * @param con the container sent by the main program.
+  */
+  public void setProfilerContainer(Container con) {
+    profiler.setContainer(con);
+  }
+
 
   /**
-  * This method call the six component's update methods.
+  * This method call the seven component's update methods.
   */
   public void updateComponents() {
     if (!SwingUtilities.isEventDispatchThread()) {
       try {
         SwingUtilities.invokeAndWait(new Runnable() {
           public void run() {
-            for (GUIComponent c : components) {
-              c.update();
-            }
+            updateAll();
           }
         });
       } catch (InterruptedException e) {
@@ -130,14 +149,38 @@ public class GUIFrontend {
         logger.info("InvocationTargetException in GUIFrontend");
       }
     } else {
-      for (GUIComponent c : components) {
-        c.update();
-      }
+      updateAll();
     }
   }
 
+  // Time spent updating and drawing the components, and number of frames
+  // drawn, published as metrics.
+  private final StripedCounter frameNanos = Metrics.getInstance().counter("gui_frame_update_nanos");
+  private final StripedCounter frames = Metrics.getInstance().counter("gui_frames");
+
+  private void updateAll() {
+    long start = System.nanoTime();
+
+    for (GUIComponent c : components) {
+      c.update();
+    }
+
+    frameNanos.add(System.nanoTime() - start);
+  }
+
+  private void drawAll() {
+    long start = System.nanoTime();
+
+    for (GUIComponent c : components) {
+      c.draw();
+    }
+
+    frameNanos.add(System.nanoTime() - start);
+    frames.increment();
+  }
+
   /**
-  * This method call the six components' updateLanguageStrings methods.
+  * This method call the seven components' updateLanguageStrings methods.
   */
   public void updateLanguageStrings() {
     for (GUIComponent c : components) {
@@ -146,16 +189,14 @@ public class GUIFrontend {
   }
 
   /**
-  * This method call the six component's draw methods.
+  * This method call the seven component's draw methods.
   */
   public void represent() {
     if (!SwingUtilities.isEventDispatchThread()) {
       try {
         SwingUtilities.invokeAndWait(new Runnable() {
           public void run() {
-            for (GUIComponent c : components) {
-              c.draw();
-            }
+            drawAll();
           }
         });
       } catch (InterruptedException e) {
@@ -164,9 +205,7 @@ public class GUIFrontend {
         logger.info("InvocationTargetException in GUIFrontend");
       }
     } else {
-      for (GUIComponent c : components) {
-        c.draw();
-      }
+      drawAll();
     }
   }
 
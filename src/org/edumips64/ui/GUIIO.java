@@ -23,6 +23,7 @@
 
 package org.edumips64.ui;
 
+import org.edumips64.core.OutputRingBuffer;
 import org.edumips64.utils.*;
 import javax.swing.*;
 import javax.swing.border.*;
@@ -39,9 +40,15 @@ import java.text.*;
 
 
 public class GUIIO extends JInternalFrame {
+  /** Interval between two updates of the output area, in milliseconds. */
+  public static final int DRAIN_INTERVAL = 50;
+
   private JTextArea output_area;
   private JButton clear;
 
+  // Output of the simulator, drained to the output area by a timer.
+  private OutputRingBuffer output;
+
   private class OutputTask implements Runnable {
     public String message;
     public OutputTask(String message) {
@@ -123,10 +130,23 @@ public class GUIIO extends JInternalFrame {
     cp.add(new JScrollPane(output_area));
     cp.add(lowerbox);
     setSize(650, 300);
+
+    output = new OutputRingBuffer(new WriterProxy(this));
+    new javax.swing.Timer(DRAIN_INTERVAL, new ActionListener() {
+      public void actionPerformed(ActionEvent e) {
+        try {
+          output.drain();
+        } catch (IOException ex) {
+          // The proxy doesn't throw.
+        }
+      }
+    }).start();
   }
 
+  /** Returns the writer for the output of the simulator. The text is
+   * buffered, and shown by a timer or when the writer is flushed. */
   public Writer getWriter() {
-    return new WriterProxy(this);
+    return output;
   }
 
   public Reader getReader() {
@@ -157,13 +177,7 @@ public class GUIIO extends JInternalFrame {
      */
     @Override
     public void write(char[] cbuf, int off, int len) throws IOException {
-      StringBuffer stringToBeWritten = new StringBuffer();
-
-      for (int i = 0; i < len; i++) {
-        stringToBeWritten.append(cbuf[off + i]);
-      }
-
-      guiio.write(stringToBeWritten.toString());
+      guiio.write(new String(cbuf, off, len));
     }
 
   }
@@ -0,0 +1,172 @@
+/* GUIProfiler.java
+ *
+ * Shows the instructions, basic blocks and labels that took the most cycles.
+ * (c) 2016 EduMIPS64 project
+ *
+ * This file is part of the EduMIPS64 project, and is released under the GNU
+ * General Public License.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.edumips64.ui;
+
+import org.edumips64.core.Profiler;
+import org.edumips64.utils.CurrentLocale;
+
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayList;
+import java.util.List;
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+
+/**
+* This class shows the hot spots of the program found by the profiler of the
+* CPU, as instructions, basic blocks or labels sorted by cycles.
+*/
+public class GUIProfiler extends GUIComponent {
+  private static final String[] views = {"PROFILER_INSTRUCTIONS", "PROFILER_BLOCKS", "PROFILER_LABELS"};
+
+  private JPanel panel;
+  @SuppressWarnings("rawtypes")
+  private JComboBox viewBox;
+  private JTable table;
+  private ProfileTableModel tableModel;
+  private List<Profiler.Region> rows = new ArrayList<Profiler.Region>();
+  private int totalCycles;
+
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  public GUIProfiler() {
+    super();
+    panel = new JPanel(new BorderLayout());
+    panel.setBackground(Color.WHITE);
+
+    viewBox = new JComboBox();
+    fillViewBox();
+    viewBox.addActionListener(new ActionListener() {
+      public void actionPerformed(ActionEvent e) {
+        // The items are replaced when the language changes.
+        if (viewBox.getSelectedIndex() >= 0) {
+          update();
+          draw();
+        }
+      }
+    });
+
+    tableModel = new ProfileTableModel();
+    table = new JTable(tableModel);
+    table.setCellSelectionEnabled(false);
+    table.setFocusable(false);
+    table.setFont(new Font("Monospaced", Font.PLAIN, 12));
+    table.getColumnModel().getColumn(1).setPreferredWidth(200);
+
+    panel.add(viewBox, BorderLayout.NORTH);
+    panel.add(new JScrollPane(table), BorderLayout.CENTER);
+  }
+
+  @SuppressWarnings("unchecked")
+  private void fillViewBox() {
+    int selected = Math.max(viewBox.getSelectedIndex(), 0);
+    viewBox.removeAllItems();
+
+    for (String view : views) {
+      viewBox.addItem(CurrentLocale.getString(view));
+    }
+
+    viewBox.setSelectedIndex(selected);
+  }
+
+  public void setContainer(Container co) {
+    super.setContainer(co);
+    cont.add(panel);
+  }
+
+  public void updateLanguageStrings() {
+    fillViewBox();
+    GUIFrontend.updateColumnHeaderNames(table);
+  }
+
+  public void update() {
+    // Aggregating the profile takes a pass over the code: skip it while the
+    // window is iconified.
+    if (cont != null && !cont.isShowing()) {
+      return;
+    }
+
+    Profiler profiler = cpu.getProfiler();
+    totalCycles = profiler.getTotalCycles();
+
+    switch (viewBox.getSelectedIndex()) {
+    case 1:
+      rows = profiler.getBasicBlocks();
+      break;
+    case 2:
+      rows = profiler.getLabels();
+      break;
+    default:
+      rows = profiler.getHotSpots(Integer.MAX_VALUE);
+    }
+  }
+
+  public void draw() {
+    tableModel.fireTableDataChanged();
+  }
+
+  class ProfileTableModel extends AbstractTableModel {
+    private String[] columnLocaleStrings = {"ADDRESS", "PROFILER_REGION", "CYCLES", "%", "INSTRUCTIONS", "CPI", "STALLS", "PROFILER_CAUSED"};
+
+    public int getColumnCount() {
+      return columnLocaleStrings.length;
+    }
+
+    public int getRowCount() {
+      return rows.size();
+    }
+
+    public String getColumnName(int col) {
+      // The short headers are the same in every language.
+      if (col == 3 || col == 5) {
+        return columnLocaleStrings[col];
+      }
+
+      return CurrentLocale.getString(columnLocaleStrings[col]);
+    }
+
+    public Object getValueAt(int row, int col) {
+      Profiler.Region r = rows.get(row);
+
+      switch (col) {
+      case 0:
+        return String.format("%04X", r.getStart());
+      case 1:
+        return r.getName();
+      case 2:
+        return r.getCycles();
+      case 3:
+        return String.format("%.1f", (totalCycles > 0) ? 100f * r.getCycles() / totalCycles : 0f);
+      case 4:
+        return r.getExecutions();
+      case 5:
+        return String.format("%.2f", (r.getExecutions() > 0) ? (float) r.getCycles() / r.getExecutions() : 0f);
+      case 6:
+        return r.getStalls();
+      default:
+        return r.getCausedStalls();
+      }
+    }
+  }
+}
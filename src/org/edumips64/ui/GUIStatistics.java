@@ -22,6 +22,7 @@
  */
 
 package org.edumips64.ui;
+import org.edumips64.core.ForwardingNetwork;
 import org.edumips64.utils.*;
 
 import java.awt.BorderLayout;
@@ -29,6 +30,7 @@ import java.awt.Color;
 import java.awt.Component;
 import java.awt.Container;
 import java.awt.Font;
+import java.util.Map;
 import javax.swing.*;
 
 /**
@@ -39,8 +41,13 @@ public class GUIStatistics extends GUIComponent {
 
   StatPanel statPanel;
   JScrollPane jsp;
-  private int nCycles, nInstructions, rawStalls, codeSize, WAWStalls, dividerStalls, memoryStalls, branchStalls, correctPredictions;
+  private int nCycles, nInstructions, nFunctionalInstructions, rawStalls, codeSize, WAWStalls, dividerStalls, memoryStalls, branchStalls, correctPredictions;
   private float cpi;
+  private int issueStalls, dispatchStalls, completeStalls, commitStalls;
+  private int superscalarDependencyStalls, groupDependencyStalls, superscalarStructuralStalls;
+  private String slotUtilization = "";
+  private int[] avoidedStalls = new int[ForwardingNetwork.Path.values().length];
+  private String rawStallCauses = "";
 
   public GUIStatistics() {
     super();
@@ -57,6 +64,9 @@ public class GUIStatistics extends GUIComponent {
     JList statList;
     String [] statistics = {" Execution", " 0 Cycles", " 0 Instructions", " ", " Stalls", " 0 RAW Stalls", " 0 WAW Stalls",
                             " 0 WAR Stalls", " 0 Structural Stalls(Divider not available)", "0 Structural Stalls (Memory not available)", " 0 Branch Taken Stalls", " 0 Branch Misprediction Stalls",
+                            " Forwarding", " 0 EX -> EX", " 0 MEM -> EX", " 0 MEM -> MEM",
+                            " Out-of-order", " 0 Issue", " 0 Dispatch", " 0 Complete", " 0 Commit",
+                            " Superscalar", " Slots", " 0 Dependency", " 0 Structural",
                             " Code Size", " 0 Bytes", "FPU info", "FCSR", "FCSRGroups", "FCSRMnemonics", "FCSRValues"
                            };
     public StatPanel() {
@@ -78,18 +88,64 @@ public class GUIStatistics extends GUIComponent {
   public void update() {
     nCycles = cpu.getCycles();
     nInstructions = cpu.getInstructions();
+    nFunctionalInstructions = cpu.getFunctionalInstructions();
 
     if (nInstructions > 0) {
       cpi = (float) nCycles / (float) nInstructions;
     }
 
     rawStalls = cpu.getRAWStalls();
+    rawStallCauses = formatCauses(cpu.getRAWStallCauses());
     codeSize = (cpu.getMemory().getInstructionsNumber()) * 4;
     WAWStalls = cpu.getWAWStalls();
     dividerStalls = cpu.getStructuralStallsDivider();
     memoryStalls = cpu.getStructuralStallsMemory();
     branchStalls = cpu.getBranchMispredictionStalls();
     correctPredictions = cpu.getCorrectBranchPredictions();
+
+    for (ForwardingNetwork.Path p : ForwardingNetwork.Path.values()) {
+      avoidedStalls[p.ordinal()] = cpu.getAvoidedStalls(p);
+    }
+
+    issueStalls = cpu.getIssueStalls();
+    dispatchStalls = cpu.getDispatchStalls();
+    completeStalls = cpu.getCompleteStalls();
+    commitStalls = cpu.getCommitStalls();
+    superscalarDependencyStalls = cpu.getSuperscalarDependencyStalls();
+    groupDependencyStalls = cpu.getGroupDependencyStalls();
+    superscalarStructuralStalls = cpu.getSuperscalarStructuralStalls();
+    slotUtilization = formatSlots();
+  }
+
+  /** Formats the percentage of the cycles in which each issue slot was used. */
+  private String formatSlots() {
+    StringBuilder sb = new StringBuilder();
+
+    for (int i = 0; i < cpu.getIssueWidth(); ++i) {
+      int percent = (nCycles > 0) ? (int)(100L * cpu.getSlotIssues(i) / nCycles) : 0;
+      sb.append(' ').append(percent).append('%');
+    }
+
+    return sb.toString();
+  }
+
+  /** Formats the number of stalls caused by each instruction. */
+  private static String formatCauses(Map<String, Integer> causes) {
+    if (causes.isEmpty()) {
+      return "";
+    }
+
+    StringBuilder sb = new StringBuilder(" (");
+
+    for (Map.Entry<String, Integer> e : causes.entrySet()) {
+      if (sb.length() > 2) {
+        sb.append(", ");
+      }
+
+      sb.append(e.getKey()).append(": ").append(e.getValue());
+    }
+
+    return sb.append(")").toString();
   }
 
   public void draw() {
@@ -128,6 +184,10 @@ public class GUIStatistics extends GUIComponent {
           label.setText(" " + nInstructions + " " + CurrentLocale.getString("INSTRUCTION"));
         }
 
+        if (nFunctionalInstructions > 0) {
+          label.setText(label.getText() + " (+" + nFunctionalInstructions + " " + CurrentLocale.getString("FUNCTIONAL_INSTRUCTIONS") + ")");
+        }
+
         return label;
       case 3:
 
@@ -151,9 +211,9 @@ public class GUIStatistics extends GUIComponent {
       case 5:
 
         if (rawStalls != 1) {
-          label.setText(" " + rawStalls + " " + CurrentLocale.getString("RAWS"));
+          label.setText(" " + rawStalls + " " + CurrentLocale.getString("RAWS") + rawStallCauses);
         } else {
-          label.setText(" " + rawStalls + " " + CurrentLocale.getString("RAW"));
+          label.setText(" " + rawStalls + " " + CurrentLocale.getString("RAW") + rawStallCauses);
         }
         return label;
       case 6:
@@ -175,26 +235,73 @@ public class GUIStatistics extends GUIComponent {
         label.setText(" " + (int)(branchStalls/2) + " " + CurrentLocale.getString("BMS") + " (" + branchStalls + " Stalls)");
         return label;
       case 12:
-        label.setText(" " + CurrentLocale.getString("CSIZE"));
+        label.setText(" " + CurrentLocale.getString("FORWARDING"));
         label.setForeground(Color.red);
         return label;
       case 13:
-        label.setText(" " + codeSize + " " + CurrentLocale.getString("BYTES"));
+        label.setText(" " + avoidedStalls[0] + " " + CurrentLocale.getString("AVOIDED_EX_EX"));
         return label;
       case 14:
+        label.setText(" " + avoidedStalls[1] + " " + CurrentLocale.getString("AVOIDED_MEM_EX"));
+        return label;
+      case 15:
+        label.setText(" " + avoidedStalls[2] + " " + CurrentLocale.getString("AVOIDED_MEM_MEM"));
+        return label;
+      case 16:
+        label.setText(" " + CurrentLocale.getString("OUT_OF_ORDER"));
+        label.setForeground(Color.red);
+        return label;
+      case 17:
+        label.setText(" " + issueStalls + " " + CurrentLocale.getString("ISSUE_STALLS"));
+        return label;
+      case 18:
+        label.setText(" " + dispatchStalls + " " + CurrentLocale.getString("DISPATCH_STALLS"));
+        return label;
+      case 19:
+        label.setText(" " + completeStalls + " " + CurrentLocale.getString("COMPLETE_STALLS"));
+        return label;
+      case 20:
+        label.setText(" " + commitStalls + " " + CurrentLocale.getString("COMMIT_STALLS"));
+        return label;
+      case 21:
+        label.setText(" " + CurrentLocale.getString("SUPERSCALAR"));
+        label.setForeground(Color.red);
+        return label;
+      case 22:
+        label.setText(" " + CurrentLocale.getString("SLOT_UTILIZATION") + slotUtilization);
+
+        if (nCycles > 0) {
+          label.setText(label.getText() + String.format(" - %.2f ", (float) nInstructions / nCycles) + CurrentLocale.getString("IPC"));
+        }
+
+        return label;
+      case 23:
+        label.setText(" " + superscalarDependencyStalls + " " + CurrentLocale.getString("DEPENDENCY_STALLS") + " (" + groupDependencyStalls + " " + CurrentLocale.getString("IN_GROUP") + ")");
+        return label;
+      case 24:
+        label.setText(" " + superscalarStructuralStalls + " " + CurrentLocale.getString("SUPERSCALAR_STRUCTURAL_STALLS"));
+        return label;
+      case 25:
+        label.setText(" " + CurrentLocale.getString("CSIZE"));
+        label.setForeground(Color.red);
+        return label;
+      case 26:
+        label.setText(" " + codeSize + " " + CurrentLocale.getString("BYTES"));
+        return label;
+      case 27:
         label.setText(" " + CurrentLocale.getString("FPUINFO"));
         label.setForeground(Color.red);
         return label;
-      case 15:
+      case 28:
         label.setText(" " + CurrentLocale.getString("FPUFCSR"));
         return label;
-      case 16:
+      case 29:
         label.setText(" " + "    FCC       Cause EnablFlag RM");
         return label;
-      case 17:
+      case 30:
         label.setText(" " + "7654321 0      VZOUIVZOUIVZOUI");
         return label;
-      case 18:
+      case 31:
         label.setText(" " + cpu.getFCSR());
         return label;
       }
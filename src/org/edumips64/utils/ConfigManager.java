@@ -24,7 +24,6 @@ public class ConfigManager {
     // encapsulated in some way.
     defaults.put("lastdir", System.getProperty("user.dir"));
     defaults.put("dineroIV", "dineroIV");
-    defaults.put("serialNumber", 0);
 
     // Colors.
     defaults.put("IFColor", Color.yellow.getRGB());
@@ -40,6 +39,9 @@ public class ConfigManager {
 
     // Simulation parameters.
     defaults.put("forwarding", false);
+    defaults.put("forwarding_ex_ex", true);
+    defaults.put("forwarding_mem_ex", true);
+    defaults.put("forwarding_mem_mem", true);
     defaults.put("warnings", false);
     defaults.put("verbose", true);
     defaults.put("syncexc-masked", false);
@@ -50,6 +52,21 @@ public class ConfigManager {
     defaults.put("branch_prediction", false);
     defaults.put("bits_per_entry", 0);
     defaults.put("number_of_entries", 0);
+    defaults.put("functional_mode", false);
+    defaults.put("functional_switch_pc", -1);
+    defaults.put("functional_switch_count", 0);
+    defaults.put("out_of_order", false);
+    defaults.put("ooo_rob_entries", 16);
+    defaults.put("ooo_rs_entries", 4);
+    defaults.put("superscalar", false);
+    defaults.put("issue_width", 2);
+    defaults.put("data_memory_size", 4);
+    defaults.put("code_memory_size", 4);
+    defaults.put("direct_io", false);
+    defaults.put("image_cache", true);
+    defaults.put("image_cache_dir", "");
+    defaults.put("metrics_interval", 0);
+    defaults.put("metrics_file", "");
 
     // FPU exceptions defaults.
     defaults.put("INVALID_OPERATION", true);
@@ -0,0 +1,222 @@
+/* Metrics.java
+ *
+ * Registry of the metrics of the simulator, exported through JMX.
+ * (c) 2016 EduMIPS64 project
+ *
+ * This file is part of the EduMIPS64 project, and is released under the GNU
+ * General Public License.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.edumips64.utils;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+import javax.management.*;
+
+/** Named metrics of the simulator: gauges, that read a value when they are
+ * queried, striped counters, updated by the code being measured, and rates
+ * per second of other metrics.
+ *
+ * The components register their metrics when they are built. Gauges read
+ * the counters the components already keep, so that the simulation loop
+ * pays nothing for them. All the metrics are attributes of the MBean
+ * org.edumips64:type=Simulator.
+ */
+public class Metrics {
+  private static final Logger logger = Logger.getLogger(Metrics.class.getName());
+  private static final Metrics instance = new Metrics();
+
+  /** The name of the MBean that exports the metrics. */
+  public static final String OBJECT_NAME = "org.edumips64:type=Simulator";
+
+  /** A metric whose value is read when it is queried. */
+  public interface Gauge {
+    long getValue();
+  }
+
+  private static class CounterGauge implements Gauge {
+    final StripedCounter counter = new StripedCounter();
+
+    public long getValue() {
+      return counter.sum();
+    }
+  }
+
+  /** Rate per second of another metric, measured between two readings at
+   * least a second apart. */
+  private class RateGauge implements Gauge {
+    private static final long MIN_INTERVAL = 1000000000L;
+
+    private final String source;
+    private long lastTime, lastValue, rate;
+
+    RateGauge(String source) {
+      this.source = source;
+      lastTime = System.nanoTime();
+      lastValue = get(source);
+    }
+
+    public synchronized long getValue() {
+      long now = System.nanoTime();
+
+      if (now - lastTime >= MIN_INTERVAL) {
+        long value = get(source);
+        // The metric goes back to 0 when the simulator is reset.
+        rate = (value >= lastValue) ? (value - lastValue) * 1000000000L / (now - lastTime) : 0;
+        lastTime = now;
+        lastValue = value;
+      }
+
+      return rate;
+    }
+  }
+
+  // Metrics in order of registration.
+  private final Map<String, Gauge> metrics = new LinkedHashMap<String, Gauge>();
+
+  private Metrics() {}
+
+  public static Metrics getInstance() {
+    return instance;
+  }
+
+  /** Registers a gauge, replacing the metric with the same name, if any. */
+  public synchronized void gauge(String name, Gauge gauge) {
+    metrics.put(name, gauge);
+  }
+
+  /** Returns the counter with the given name, registering it the first
+   * time. */
+  public synchronized StripedCounter counter(String name) {
+    Gauge g = metrics.get(name);
+
+    if (!(g instanceof CounterGauge)) {
+      g = new CounterGauge();
+      metrics.put(name, g);
+    }
+
+    return ((CounterGauge) g).counter;
+  }
+
+  /** Registers the rate per second of another metric. */
+  public synchronized void rate(String name, String source) {
+    metrics.put(name, new RateGauge(source));
+  }
+
+  /** Returns the value of a metric, or 0 if it is not registered. */
+  public long get(String name) {
+    Gauge g;
+
+    synchronized (this) {
+      g = metrics.get(name);
+    }
+
+    return (g == null) ? 0 : g.getValue();
+  }
+
+  /** Returns the values of all the metrics, in order of registration. */
+  public Map<String, Long> snapshot() {
+    Map<String, Gauge> gauges;
+
+    synchronized (this) {
+      gauges = new LinkedHashMap<String, Gauge>(metrics);
+    }
+
+    Map<String, Long> values = new LinkedHashMap<String, Long>();
+
+    for (Map.Entry<String, Gauge> e : gauges.entrySet()) {
+      values.put(e.getKey(), e.getValue().getValue());
+    }
+
+    return values;
+  }
+
+  /** Registers the MBean of the metrics in the platform MBean server, if it
+   * is not already there. */
+  public void registerMBean() {
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = new ObjectName(OBJECT_NAME);
+
+      if (!server.isRegistered(name)) {
+        server.registerMBean(new MetricsMBean(), name);
+      }
+    } catch (JMException | SecurityException e) {
+      logger.warning("Could not register the metrics MBean: " + e);
+    }
+  }
+
+  /** Read-only MBean with an attribute of type long for each metric. */
+  private class MetricsMBean implements DynamicMBean {
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+      Gauge g;
+
+      synchronized (Metrics.this) {
+        g = metrics.get(attribute);
+      }
+
+      if (g == null) {
+        throw new AttributeNotFoundException(attribute);
+      }
+
+      return g.getValue();
+    }
+
+    public AttributeList getAttributes(String[] attributes) {
+      AttributeList list = new AttributeList();
+
+      for (String a : attributes) {
+        try {
+          list.add(new Attribute(a, getAttribute(a)));
+        } catch (AttributeNotFoundException e) {
+          // Unknown attributes are left out of the list.
+        }
+      }
+
+      return list;
+    }
+
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+      throw new AttributeNotFoundException("The metrics are read-only: " + attribute.getName());
+    }
+
+    public AttributeList setAttributes(AttributeList attributes) {
+      return new AttributeList();
+    }
+
+    public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+      throw new ReflectionException(new NoSuchMethodException(actionName));
+    }
+
+    public MBeanInfo getMBeanInfo() {
+      String[] names;
+
+      synchronized (Metrics.this) {
+        names = metrics.keySet().toArray(new String[0]);
+      }
+
+      MBeanAttributeInfo[] attributes = new MBeanAttributeInfo[names.length];
+
+      for (int i = 0; i < names.length; ++i) {
+        attributes[i] = new MBeanAttributeInfo(names[i], "long", names[i], true, false, false);
+      }
+
+      return new MBeanInfo(Metrics.class.getName(), "Metrics of the EduMIPS64 simulator", attributes, null, null, null);
+    }
+  }
+}
@@ -0,0 +1,133 @@
+/* MetricsReporter.java
+ *
+ * Periodic report of the metrics of the simulator.
+ * (c) 2016 EduMIPS64 project
+ *
+ * This file is part of the EduMIPS64 project, and is released under the GNU
+ * General Public License.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.edumips64.utils;
+
+import java.io.*;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/** Writes the values of all the metrics at a fixed interval, from a daemon
+ * thread: to the log, or to a CSV file with a row per report and a column
+ * per metric.
+ */
+public class MetricsReporter {
+  private static final Logger logger = Logger.getLogger(MetricsReporter.class.getName());
+
+  private final ScheduledExecutorService executor;
+  private final Writer csv;
+  // Names of the columns of the last header written to the CSV file.
+  private String header;
+
+  /** Starts a reporter.
+   * @param seconds the interval between two reports
+   * @param csv the CSV file to write, or null to write to the log
+   */
+  public MetricsReporter(int seconds, Writer csv) {
+    this.csv = csv;
+    executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      public Thread newThread(Runnable r) {
+        Thread t = new Thread(r, "metrics-reporter");
+        t.setDaemon(true);
+        return t;
+      }
+    });
+    executor.scheduleAtFixedRate(new Runnable() {
+      public void run() {
+        report();
+      }
+    }, seconds, seconds, TimeUnit.SECONDS);
+  }
+
+  /** Starts the reporter configured by metrics_interval (0 disables it)
+   * and metrics_file (empty to write to the log).
+   * @return the reporter, or null if it is disabled
+   */
+  public static MetricsReporter fromConfig(ConfigStore config) {
+    int seconds = config.getInt("metrics_interval");
+    String file = config.getString("metrics_file");
+
+    if (seconds <= 0) {
+      return null;
+    }
+
+    Writer csv = null;
+
+    if (!file.isEmpty()) {
+      try {
+        csv = new BufferedWriter(new FileWriter(file));
+      } catch (IOException e) {
+        logger.warning("Could not open " + file + ", the metrics will be logged: " + e);
+      }
+    }
+
+    return new MetricsReporter(seconds, csv);
+  }
+
+  private synchronized void report() {
+    Map<String, Long> values = Metrics.getInstance().snapshot();
+
+    if (csv == null) {
+      logger.info("Metrics: " + values);
+      return;
+    }
+
+    try {
+      // A new header is written if some metrics were registered after the
+      // previous report.
+      StringBuilder columns = new StringBuilder("time");
+
+      for (String name : values.keySet()) {
+        columns.append(',').append(name);
+      }
+
+      if (!columns.toString().equals(header)) {
+        header = columns.toString();
+        csv.write(header + "\n");
+      }
+
+      StringBuilder sb = new StringBuilder().append(System.currentTimeMillis());
+
+      for (long value : values.values()) {
+        sb.append(',').append(value);
+      }
+
+      csv.write(sb.append('\n').toString());
+      csv.flush();
+    } catch (IOException e) {
+      logger.warning("Could not write the metrics: " + e);
+    }
+  }
+
+  /** Stops the reporter, closing its file. */
+  public synchronized void close() throws IOException {
+    executor.shutdownNow();
+
+    if (csv != null) {
+      csv.close();
+    }
+  }
+}
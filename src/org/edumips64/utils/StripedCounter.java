@@ -0,0 +1,70 @@
+/* StripedCounter.java
+ *
+ * Counter that can be incremented by many threads without contention.
+ * (c) 2016 EduMIPS64 project
+ *
+ * This file is part of the EduMIPS64 project, and is released under the GNU
+ * General Public License.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.edumips64.utils;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/** A sum spread over cells, each updated by a subset of the threads, that
+ * are added together only when the value is read. The cells are 64 bytes
+ * apart, so that threads on different cores don't share cache lines.
+ */
+public class StripedCounter {
+  private static final int STRIPES = 8;
+
+  // Longs between a cell and the next one.
+  private static final int PADDING = 8;
+
+  private final AtomicLongArray cells = new AtomicLongArray(STRIPES * PADDING);
+
+  private static int cell() {
+    long id = Thread.currentThread().getId();
+    int h = (int)(id ^ (id >>> 32)) * 0x9E3779B9;
+    return ((h >>> 16) & (STRIPES - 1)) * PADDING;
+  }
+
+  public void add(long x) {
+    cells.getAndAdd(cell(), x);
+  }
+
+  public void increment() {
+    add(1);
+  }
+
+  /** Returns the sum of the cells. It is exact only if no thread is adding
+   * at the same time. */
+  public long sum() {
+    long sum = 0;
+
+    for (int i = 0; i < STRIPES; ++i) {
+      sum += cells.get(i * PADDING);
+    }
+
+    return sum;
+  }
+
+  public void reset() {
+    for (int i = 0; i < STRIPES; ++i) {
+      cells.set(i * PADDING, 0);
+    }
+  }
+}